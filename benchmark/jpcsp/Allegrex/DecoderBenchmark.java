@@ -0,0 +1,90 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.Allegrex;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import jpcsp.BenchmarkEnvironment;
+
+/**
+ * Decoding of a typical mix of instructions, plus some VFPU instructions
+ * which are going through deeper decoding tables.
+ * The scores are per instruction.
+ *
+ * @author gid15
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecoderBenchmark {
+	private static final int numberInstructions = 64;
+	private static final int[] vfpuOpcodes = {
+		0x60048088, // vadd.q  C200, C000, C100
+		0x64848088, // vdot.q  S200, C000, C100
+		0xF0048088, // vmmul.q M200, E000, M100
+		0xF1848088, // vtfm4.q C200, M000, C100
+		0xD0008088, // vmov.q  C200, C000
+		0xD0068088, // vzero.q C200
+		0xD0138088, // vcos.q  C200, C000
+		0xDC0000E4  // vpfxs   [x, y, z, w]
+	};
+	private int[] opcodes;
+	private int[] vfpuCode;
+
+	@Setup
+	public void setUp() {
+		opcodes = BenchmarkEnvironment.buildTypicalCode(numberInstructions / 16);
+
+		vfpuCode = new int[numberInstructions];
+		for (int i = 0; i < vfpuCode.length; i++) {
+			vfpuCode[i] = vfpuOpcodes[i % vfpuOpcodes.length];
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(numberInstructions)
+	public void decode(Blackhole blackhole) {
+		for (int i = 0; i < numberInstructions; i++) {
+			blackhole.consume(Decoder.instruction(opcodes[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(numberInstructions)
+	public void decodeVfpu(Blackhole blackhole) {
+		for (int i = 0; i < numberInstructions; i++) {
+			blackhole.consume(Decoder.instruction(vfpuCode[i]));
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.Allegrex;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jpcsp.BenchmarkEnvironment;
+import jpcsp.Emulator;
+import jpcsp.Processor;
+import jpcsp.Allegrex.Common.Instruction;
+
+/**
+ * Interpretation of a typical mix of instructions, see BenchmarkEnvironment.buildTypicalCode().
+ * The scores are per instruction.
+ *
+ * @author gid15
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1024m")
+public class InstructionsBenchmark {
+	private static final int numberInstructions = 64;
+	private Processor processor;
+	private int[] opcodes;
+	private Instruction[] instructions;
+
+	@Setup
+	public void setUp() {
+		BenchmarkEnvironment.init();
+		processor = Emulator.getProcessor();
+
+		opcodes = BenchmarkEnvironment.buildTypicalCode(numberInstructions / 16);
+		BenchmarkEnvironment.loadCode(opcodes);
+
+		instructions = new Instruction[opcodes.length];
+		for (int i = 0; i < opcodes.length; i++) {
+			instructions[i] = Decoder.instruction(opcodes[i]);
+		}
+	}
+
+	/**
+	 * Fetch, decode and interpret, as done by the interpreter.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(numberInstructions)
+	public void interpret() {
+		processor.cpu.pc = BenchmarkEnvironment.codeAddress;
+		for (int i = 0; i < numberInstructions; i++) {
+			processor.interpret();
+		}
+	}
+
+	/**
+	 * Only the interpretation of already decoded instructions,
+	 * as done by the CachedInterpreter.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(numberInstructions)
+	public void interpretDecoded() {
+		Processor processor = this.processor;
+		for (int i = 0; i < numberInstructions; i++) {
+			instructions[i].interpret(processor, opcodes[i]);
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.Allegrex;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jpcsp.BenchmarkEnvironment;
+
+/**
+ * VFPU matrix and vector operations on quad (4x4) registers,
+ * as executed by the interpreter and by the compiled code.
+ *
+ * Registers used: M000 and M100 as inputs, M200 as output.
+ *
+ * @author gid15
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VfpuStateBenchmark {
+	private static final int quad = 4;
+	private static final int M000 = 0;
+	private static final int M100 = 4;
+	private static final int M200 = 8;
+	private static final int M300 = 12;
+	private VfpuState vfpu;
+
+	@Setup
+	public void setUp() {
+		BenchmarkEnvironment.init();
+		vfpu = new CpuState();
+
+		for (int c = 0; c < 4; c++) {
+			for (int r = 0; r < 4; r++) {
+				vfpu.setVprFloat(0, c, r, 1.f + c * 0.25f + r * 0.5f);
+				vfpu.setVprFloat(1, c, r, (c == r) ? 0.5f : 0.125f);
+			}
+		}
+	}
+
+	@Benchmark
+	public void vmmul() {
+		vfpu.doVMMUL(quad, M200, M000, M100);
+	}
+
+	@Benchmark
+	public void vtfm4() {
+		vfpu.doVTFM4(M200, M000, M100);
+	}
+
+	@Benchmark
+	public void vmscl() {
+		vfpu.doVMSCL(quad, M200, M000, M100);
+	}
+
+	@Benchmark
+	public void vmidt() {
+		vfpu.doVMIDT(quad, M300);
+	}
+
+	@Benchmark
+	public void vmmov() {
+		vfpu.doVMMOV(quad, M200, M000);
+	}
+
+	@Benchmark
+	public void vdot() {
+		vfpu.doVDOT(quad, M200, M000, M100);
+	}
+
+	@Benchmark
+	public void vadd() {
+		vfpu.doVADD(quad, M200, M000, M100);
+	}
+}
@@ -0,0 +1,83 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.Allegrex.compiler;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jpcsp.BenchmarkEnvironment;
+import jpcsp.Allegrex.Common;
+
+/**
+ * Latency of the compilation of one code block into a Java class,
+ * for code blocks of different sizes (typical mix of instructions
+ * followed by "jr $ra").
+ *
+ * @author gid15
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1024m")
+public class CompilerBenchmark {
+	@Param({"16", "64", "256"})
+	public int numberInstructions;
+	private Compiler compiler;
+	private int instanceIndex;
+
+	@Setup
+	public void setUp() {
+		BenchmarkEnvironment.init();
+
+		int[] code = BenchmarkEnvironment.buildTypicalCode(numberInstructions / 16);
+		int[] block = new int[code.length + 2];
+		System.arraycopy(code, 0, block, 0, code.length);
+		block[code.length] = BenchmarkEnvironment.rType(Common._ra, 0, 0, 0, 0x08); // jr $ra
+		block[code.length + 1] = 0; // nop
+		BenchmarkEnvironment.loadCode(block);
+
+		compiler = Compiler.getInstance();
+	}
+
+	@Setup(Level.Iteration)
+	public void setUpIteration() {
+		// Drop the classes compiled during the previous iteration
+		compiler.reset();
+		instanceIndex = 0;
+	}
+
+	@Benchmark
+	public IExecutable compile() {
+		// A new instance index generates a new class for the same code block
+		return compiler.compile(BenchmarkEnvironment.codeAddress, instanceIndex++);
+	}
+}
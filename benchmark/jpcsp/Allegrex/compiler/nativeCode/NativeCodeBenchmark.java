@@ -0,0 +1,139 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.Allegrex.compiler.nativeCode;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jpcsp.BenchmarkEnvironment;
+import jpcsp.Emulator;
+import jpcsp.Memory;
+import jpcsp.Allegrex.CpuState;
+import jpcsp.Allegrex.compiler.RuntimeContext;
+
+/**
+ * Native code sequences replacing the usual libc functions,
+ * called with their parameters in $a0-$a2 as from the compiled code.
+ * The scores are per call, for strings/blocks of the given length.
+ *
+ * @author gid15
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1024m")
+public class NativeCodeBenchmark {
+	@Param({"16", "256", "4096"})
+	public int length;
+	private CpuState cpu;
+	private int src1Addr;
+	private int src2Addr;
+	private int dstAddr;
+
+	@Setup
+	public void setUp() {
+		BenchmarkEnvironment.init();
+
+		RuntimeContext.processor = Emulator.getProcessor();
+		RuntimeContext.cpu = RuntimeContext.processor.cpu;
+		RuntimeContext.memory = Memory.getInstance();
+		cpu = RuntimeContext.cpu;
+
+		src1Addr = BenchmarkEnvironment.dataAddress;
+		src2Addr = src1Addr + 0x10000;
+		dstAddr = src2Addr + 0x10000;
+
+		// Two identical zero-terminated strings
+		Memory mem = RuntimeContext.memory;
+		for (int i = 0; i < length; i++) {
+			byte c = (byte) ('a' + (i % 26));
+			mem.write8(src1Addr + i, c);
+			mem.write8(src2Addr + i, c);
+		}
+		mem.write8(src1Addr + length, (byte) 0);
+		mem.write8(src2Addr + length, (byte) 0);
+	}
+
+	private void setParameters(int a0, int a1, int a2) {
+		cpu._a0 = a0;
+		cpu._a1 = a1;
+		cpu._a2 = a2;
+	}
+
+	@Benchmark
+	public int memcpy() {
+		setParameters(dstAddr, src1Addr, length);
+		Memcpy.call();
+		return cpu._v0;
+	}
+
+	@Benchmark
+	public int memmove() {
+		setParameters(src1Addr + 1, src1Addr, length);
+		Memmove.call();
+		return cpu._v0;
+	}
+
+	@Benchmark
+	public int memset() {
+		setParameters(dstAddr, 0x5A, length);
+		Memset.call();
+		return cpu._v0;
+	}
+
+	@Benchmark
+	public int memcmp() {
+		setParameters(src1Addr, src2Addr, length);
+		Memcmp.call();
+		return cpu._v0;
+	}
+
+	@Benchmark
+	public int strlen() {
+		setParameters(src1Addr, 0, 0);
+		Strlen.call();
+		return cpu._v0;
+	}
+
+	@Benchmark
+	public int strcmp() {
+		setParameters(src1Addr, src2Addr, 0);
+		Strcmp.call();
+		return cpu._v0;
+	}
+
+	@Benchmark
+	public int strcpy() {
+		setParameters(dstAddr, src2Addr, 0);
+		Strcpy.call();
+		return cpu._v0;
+	}
+}
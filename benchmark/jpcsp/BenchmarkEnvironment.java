@@ -0,0 +1,131 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import jpcsp.Allegrex.Common;
+import jpcsp.Allegrex.CpuState;
+import jpcsp.hardware.Screen;
+
+/**
+ * Minimal emulator environment shared by the benchmarks:
+ * the PSP memory, the processor and the clock, without any
+ * HLE module started and without display.
+ *
+ * @author gid15
+ *
+ */
+public class BenchmarkEnvironment {
+	public static final int codeAddress = MemoryMap.START_USERSPACE + 0x100000;
+	public static final int dataAddress = MemoryMap.START_USERSPACE + 0x200000;
+	// Register $s0 is pointing to the dataAddress
+	public static final int dataRegister = Common._s0;
+	private static boolean initialized;
+
+	public static synchronized void init() {
+		if (initialized) {
+			return;
+		}
+
+		// Only log the warnings and errors to the console
+		BasicConfigurator.configure();
+		Logger.getRootLogger().setLevel(Level.WARN);
+
+		// Has to be set before any access to the Modules class
+		Screen.setHasScreen(false);
+
+		// Creates the processor, the memory and the clock
+		new Emulator(null);
+		Emulator.getClock().resume();
+
+		initialized = true;
+	}
+
+	/**
+	 * Build a straight-line sequence (without branches) with a typical mix of
+	 * instructions: loads/stores, ALU, shifts, Allegrex specific and FPU.
+	 *
+	 * @param repeat  the number of times the base sequence of 16 instructions is repeated
+	 * @return        the opcodes
+	 */
+	public static int[] buildTypicalCode(int repeat) {
+		final int t0 = Common._t0, t1 = Common._t1, t2 = Common._t2, t3 = Common._t3;
+		final int t4 = Common._t4, t5 = Common._t5, t6 = Common._t6, t7 = Common._t7;
+		final int s0 = dataRegister;
+		int[] sequence = {
+			iType(0x23, s0, t0, 0),          // lw    $t0, 0($s0)
+			iType(0x23, s0, t1, 4),          // lw    $t1, 4($s0)
+			rType(t0, t1, t2, 0, 0x21),      // addu  $t2, $t0, $t1
+			iType(0x09, t2, t3, 0x10),       // addiu $t3, $t2, 0x10
+			rType(0, t3, t4, 2, 0x00),       // sll   $t4, $t3, 2
+			rType(t4, t1, t5, 0, 0x24),      // and   $t5, $t4, $t1
+			rType(t5, t0, t6, 0, 0x25),      // or    $t6, $t5, $t0
+			rType(t6, t2, t7, 0, 0x2A),      // slt   $t7, $t6, $t2
+			iType(0x0F, 0, t0, 0x1234),      // lui   $t0, 0x1234
+			iType(0x0D, t0, t0, 0x5678),     // ori   $t0, $t0, 0x5678
+			iType(0x2B, s0, t2, 8),          // sw    $t2, 8($s0)
+			iType(0x24, s0, t1, 12),         // lbu   $t1, 12($s0)
+			iType(0x28, s0, t1, 13),         // sb    $t1, 13($s0)
+			rType(t3, t7, t3, 0, 0x2C),      // max   $t3, $t3, $t7
+			fpuType(0x10, 1, 0, 2, 0x00),    // add.s $f2, $f0, $f1
+			fpuType(0x10, 1, 2, 3, 0x02)     // mul.s $f3, $f2, $f1
+		};
+
+		int[] code = new int[sequence.length * repeat];
+		for (int i = 0; i < repeat; i++) {
+			System.arraycopy(sequence, 0, code, i * sequence.length, sequence.length);
+		}
+
+		return code;
+	}
+
+	/**
+	 * Write the code at the codeAddress and initialize the registers
+	 * used by the code.
+	 */
+	public static void loadCode(int[] code) {
+		Memory mem = Memory.getInstance();
+		for (int i = 0; i < code.length; i++) {
+			mem.write32(codeAddress + (i << 2), code[i]);
+		}
+		mem.memset(dataAddress, (byte) 0x5A, 0x100);
+
+		CpuState cpu = Emulator.getProcessor().cpu;
+		cpu.setRegister(dataRegister, dataAddress);
+		cpu.fpr[0] = 1.5f;
+		cpu.fpr[1] = 0.75f;
+		cpu.pc = codeAddress;
+		cpu.npc = codeAddress + 4;
+	}
+
+	// Encoding of some Allegrex instructions, used to build the benchmark code
+
+	public static int rType(int rs, int rt, int rd, int sa, int funct) {
+		return (rs << 21) | (rt << 16) | (rd << 11) | (sa << 6) | funct;
+	}
+
+	public static int iType(int op, int rs, int rt, int imm16) {
+		return (op << 26) | (rs << 21) | (rt << 16) | (imm16 & 0xFFFF);
+	}
+
+	public static int fpuType(int fmt, int ft, int fs, int fd, int funct) {
+		return (0x11 << 26) | (fmt << 21) | (ft << 16) | (fs << 11) | (fd << 6) | funct;
+	}
+}
@@ -0,0 +1,141 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.HLE.kernel.types;
+
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jpcsp.BenchmarkEnvironment;
+import jpcsp.HLE.Modules;
+
+/**
+ * Rescheduling with a number of ready threads having mixed priorities:
+ * the thread having the highest priority is selected and moved to the
+ * end of its priority list, as done when a thread is yielding or
+ * when calling sceKernelRotateThreadReadyQueue.
+ *
+ * The linkedList benchmark is the previous implementation of the
+ * ready threads in ThreadManForUser (scan of a LinkedList),
+ * kept as a reference.
+ *
+ * @author gid15
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThreadReadyQueueBenchmark {
+	@Param({"8", "64"})
+	public int numberThreads;
+	private ThreadReadyQueue readyQueue;
+	private LinkedList<SceKernelThreadInfo> readyList;
+	private SceKernelThreadInfo[] threads;
+	private int index;
+
+	@Setup
+	public void setUp() {
+		BenchmarkEnvironment.init();
+		Modules.SysMemUserForUserModule.start();
+
+		readyQueue = new ThreadReadyQueue();
+		readyList = new LinkedList<SceKernelThreadInfo>();
+		threads = new SceKernelThreadInfo[numberThreads];
+		for (int i = 0; i < numberThreads; i++) {
+			// Mixed priorities between 0x10 and 0x3F, with several threads per priority
+			int priority = 0x10 + (i * 7) % 0x30;
+			threads[i] = new SceKernelThreadInfo(String.format("Thread%d", i), 0, priority, 0x200, SceKernelThreadInfo.PSP_THREAD_ATTR_NO_FILLSTACK, 0);
+			readyQueue.add(threads[i], false);
+			readyList.addLast(threads[i]);
+		}
+	}
+
+	@Benchmark
+	public SceKernelThreadInfo readyQueue() {
+		SceKernelThreadInfo thread = readyQueue.getFirst();
+		readyQueue.remove(thread);
+		readyQueue.add(thread, false);
+
+		return thread;
+	}
+
+	@Benchmark
+	public SceKernelThreadInfo readyQueueChangePriority() {
+		// Change the priority of any ready thread, then select the next thread
+		SceKernelThreadInfo thread = threads[index];
+		index = (index + 1) % numberThreads;
+		readyQueue.remove(thread);
+		thread.currentPriority ^= 1;
+		readyQueue.add(thread, false);
+
+		return readyQueue.getFirst();
+	}
+
+	@Benchmark
+	public SceKernelThreadInfo linkedList() {
+		SceKernelThreadInfo found = null;
+		synchronized (readyList) {
+			for (SceKernelThreadInfo thread : readyList) {
+				if (found == null || thread.currentPriority < found.currentPriority) {
+					found = thread;
+				}
+			}
+		}
+		synchronized (readyList) {
+			readyList.remove(found);
+			readyList.addLast(found);
+		}
+
+		return found;
+	}
+
+	@Benchmark
+	public SceKernelThreadInfo linkedListChangePriority() {
+		SceKernelThreadInfo thread = threads[index];
+		index = (index + 1) % numberThreads;
+		synchronized (readyList) {
+			readyList.remove(thread);
+			thread.currentPriority ^= 1;
+			readyList.addLast(thread);
+		}
+
+		SceKernelThreadInfo found = null;
+		synchronized (readyList) {
+			for (SceKernelThreadInfo readyThread : readyList) {
+				if (found == null || readyThread.currentPriority < found.currentPriority) {
+					found = readyThread;
+				}
+			}
+		}
+
+		return found;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.media.codec.h264;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare the performance of the YUV to ABGR color conversions:
+ * - the conversion using lookup tables
+ * - the vectorizable conversion
+ * - the multi-threaded conversion
+ * for the usual video sizes (PSP screen and DVD).
+ * The scores are per converted frame.
+ *
+ * @author gid15
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class YUVConversionBenchmark {
+	@Param({"480x272", "720x480"})
+	public String size;
+	private int width;
+	private int height;
+	private int[] luma;
+	private int[] cb;
+	private int[] cr;
+	private int[] abgr;
+
+	@Setup
+	public void setUp() {
+		String[] dimensions = size.split("x");
+		width = Integer.parseInt(dimensions[0]);
+		height = Integer.parseInt(dimensions[1]);
+
+		Random random = new Random(0);
+		luma = new int[width * height];
+		cb = new int[luma.length >> 2];
+		cr = new int[luma.length >> 2];
+		for (int i = 0; i < luma.length; i++) {
+			luma[i] = random.nextInt(256);
+		}
+		for (int i = 0; i < cb.length; i++) {
+			cb[i] = random.nextInt(256);
+			cr[i] = random.nextInt(256);
+		}
+		abgr = new int[luma.length];
+	}
+
+	@Benchmark
+	public int[] table() {
+		H264Utils.YUV2ABGRTable(width, 0, height, luma, cb, cr, abgr);
+		return abgr;
+	}
+
+	@Benchmark
+	public int[] vectorizable() {
+		H264Utils.YUV2ABGRVectorizable(width, 0, height, luma, cb, cr, abgr);
+		return abgr;
+	}
+
+	@Benchmark
+	public int[] multiThreaded() {
+		H264ImageConverter.YUV2ABGR(width, height, luma, cb, cr, abgr);
+		return abgr;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.memory;
+
+import static jpcsp.graphics.GeCommands.CMODE_FORMAT_16BIT_ABGR5551;
+
+import java.nio.IntBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jpcsp.BenchmarkEnvironment;
+import jpcsp.Memory;
+import jpcsp.MemoryMap;
+import jpcsp.Allegrex.compiler.RuntimeContext;
+
+/**
+ * Decoding of a 256x256 texture: through the chain of decoders
+ * returned by ImageReader.getImageReader() and through the compiled
+ * image reader used by ImageReader.readImage().
+ * The scores are per image.
+ *
+ * @author gid15
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageReaderBenchmark {
+	private static final int width = 256;
+	private static final int height = 256;
+	private static final int address = MemoryMap.START_USERSPACE + 0x400000;
+	private static final int clutAddress = MemoryMap.START_USERSPACE + 0x200000;
+	// TPSM_PIXEL_STORAGE_MODE_xxx: 16BIT_ABGR5551, 32BIT_ABGR8888, 4BIT_INDEXED, 8BIT_INDEXED
+	@Param({"1", "3", "4", "5"})
+	public int pixelFormat;
+	@Param({"false", "true"})
+	public boolean swizzle;
+	private int[] pixels = new int[width * height];
+	private short[] clut16 = new short[256];
+
+	@Setup
+	public void setUp() {
+		BenchmarkEnvironment.init();
+		RuntimeContext.updateMemory();
+
+		Memory mem = Memory.getInstance();
+		Random random = new Random(0);
+		for (int i = 0; i < width * height * 4; i += 4) {
+			mem.write32(address + i, random.nextInt());
+		}
+		for (int i = 0; i < clut16.length; i++) {
+			clut16[i] = (short) random.nextInt();
+		}
+	}
+
+	@Benchmark
+	public int[] decoderChain() {
+		IMemoryReader imageReader = ImageReader.getImageReader(address, width, height, width, pixelFormat, swizzle, clutAddress, CMODE_FORMAT_16BIT_ABGR5551, 32, 0, 0, 0xFF, null, clut16);
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = imageReader.readNext();
+		}
+
+		return pixels;
+	}
+
+	@Benchmark
+	public int[] compiled() {
+		ImageReader.readImage(IntBuffer.wrap(pixels), address, width, height, width, pixelFormat, swizzle, clutAddress, CMODE_FORMAT_16BIT_ABGR5551, 32, 0, 0, 0xFF, null, clut16);
+
+		return pixels;
+	}
+}
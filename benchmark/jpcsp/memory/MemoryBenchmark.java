@@ -0,0 +1,160 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.memory;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jpcsp.BenchmarkEnvironment;
+import jpcsp.Memory;
+import jpcsp.MemoryMap;
+
+/**
+ * Read and write paths of the different Memory implementations.
+ * The scores of the read/write benchmarks are per access,
+ * the scores of memcpy/memset are per block of blockLength bytes.
+ *
+ * NativeMemory and SparseNativeMemory require the "memory" native library
+ * (jni/memory.c) in the java.library.path, their benchmarks are failing otherwise.
+ *
+ * @author gid15
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1024m")
+public class MemoryBenchmark {
+	private static final int accesses = 1024;
+	private static final int blockLength = 64 * 1024;
+	private static final int baseAddress = MemoryMap.START_USERSPACE + 0x400000;
+	@Param({"FastMemory", "SafeFastMemory", "NativeMemory", "SparseNativeMemory"})
+	public String memoryType;
+	private Memory mem;
+	private int value;
+
+	private static Memory createMemory(String memoryType) {
+		if (memoryType.equals("FastMemory")) {
+			return new FastMemory();
+		}
+		if (memoryType.equals("SafeFastMemory")) {
+			return new SafeFastMemory();
+		}
+
+		System.loadLibrary("memory");
+		if (memoryType.equals("NativeMemory")) {
+			return new NativeMemory();
+		}
+		if (memoryType.equals("SparseNativeMemory")) {
+			return new SparseNativeMemory();
+		}
+
+		throw new IllegalArgumentException(memoryType);
+	}
+
+	@Setup
+	public void setUp() {
+		BenchmarkEnvironment.init();
+
+		mem = createMemory(memoryType);
+		if (!mem.allocate()) {
+			throw new IllegalStateException(String.format("Cannot allocate %s", memoryType));
+		}
+		mem.Initialise();
+
+		for (int i = 0; i < blockLength; i += 4) {
+			mem.write32(baseAddress + i, i * 0x01010101);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(accesses)
+	public int read32() {
+		int sum = 0;
+		for (int i = 0; i < accesses; i++) {
+			sum += mem.read32(baseAddress + (i << 2));
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(accesses)
+	public int read16() {
+		int sum = 0;
+		for (int i = 0; i < accesses; i++) {
+			sum += mem.read16(baseAddress + (i << 1));
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(accesses)
+	public int read8() {
+		int sum = 0;
+		for (int i = 0; i < accesses; i++) {
+			sum += mem.read8(baseAddress + i);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(accesses)
+	public void write32() {
+		int value = this.value++;
+		for (int i = 0; i < accesses; i++) {
+			mem.write32(baseAddress + (i << 2), value);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(accesses)
+	public void write8() {
+		byte value = (byte) this.value++;
+		for (int i = 0; i < accesses; i++) {
+			mem.write8(baseAddress + i, value);
+		}
+	}
+
+	@Benchmark
+	public void memcpy() {
+		mem.memcpy(baseAddress + blockLength, baseAddress, blockLength);
+	}
+
+	@Benchmark
+	public void memcpyUnaligned() {
+		mem.memcpy(baseAddress + blockLength + 1, baseAddress + 2, blockLength - 4);
+	}
+
+	@Benchmark
+	public void memset() {
+		mem.memset(baseAddress + blockLength, (byte) value++, blockLength);
+	}
+}
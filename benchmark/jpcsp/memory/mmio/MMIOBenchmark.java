@@ -0,0 +1,121 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.memory.mmio;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jpcsp.BenchmarkEnvironment;
+import jpcsp.Memory;
+import jpcsp.MemoryMap;
+import jpcsp.mediaengine.MEMemory;
+
+/**
+ * Memory accesses in LLE mode, i.e. through the MMIO, and the creation
+ * of the MMIO and of the Media Engine memory as done when booting in LLE mode.
+ * The scores of the read/write benchmarks are per access.
+ *
+ * @author gid15
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MMIOBenchmark {
+	private static final int accesses = 1024;
+	private static final int ramAddress = MemoryMap.START_USERSPACE + 0x400000;
+	// Register of the Memory interface (MMIOHandlerReadWrite)
+	private static final int registerAddress = 0xBC000010;
+	private static final Logger log = Logger.getLogger("me");
+	private Memory mem;
+	private MMIO mmio;
+	private int value;
+
+	@Setup
+	public void setUp() {
+		BenchmarkEnvironment.init();
+
+		mem = Memory.getInstance();
+		mmio = new MMIO(mem);
+		mmio.allocate();
+		mmio.Initialise();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Memory boot() {
+		MMIO mmio = new MMIO(mem);
+		mmio.allocate();
+		mmio.Initialise();
+
+		return new MEMemory(mmio, log);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(accesses)
+	public int readRam32() {
+		int sum = 0;
+		for (int i = 0; i < accesses; i++) {
+			sum += mmio.read32(ramAddress + (i << 2));
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(accesses)
+	public void writeRam32() {
+		int value = this.value++;
+		for (int i = 0; i < accesses; i++) {
+			mmio.write32(ramAddress + (i << 2), value);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(accesses)
+	public int readRam8() {
+		int sum = 0;
+		for (int i = 0; i < accesses; i++) {
+			sum += mmio.read8(ramAddress + i);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(accesses)
+	public int readRegister32() {
+		int sum = 0;
+		for (int i = 0; i < accesses; i++) {
+			sum += mmio.read32(registerAddress);
+		}
+		return sum;
+	}
+}
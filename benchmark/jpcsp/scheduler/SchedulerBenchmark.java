@@ -0,0 +1,117 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jpcsp.BenchmarkEnvironment;
+import jpcsp.HLE.kernel.types.IAction;
+
+/**
+ * Scheduler with thousands of pending alarms, as created by
+ * sceKernelSetAlarm/sceKernelSetVTimerHandler or by the wait timeouts:
+ * - an alarm is added and cancelled before being triggered,
+ *   using the handle returned by addAction() or using the previous
+ *   removeAction(schedule, action) call, kept as a reference;
+ * - an alarm is added and triggered, as done by step().
+ *
+ * @author gid15
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchedulerBenchmark {
+	@Param({"1000", "10000"})
+	public int numberAlarms;
+	private Scheduler scheduler;
+	private IAction action;
+	private long farSchedule;
+	private int index;
+
+	private static class AlarmAction implements IAction {
+		@Override
+		public void execute() {
+		}
+	}
+
+	@Setup
+	public void setUp() {
+		BenchmarkEnvironment.init();
+
+		scheduler = new Scheduler();
+		action = new AlarmAction();
+
+		// The pending alarms are all in the future, they are never triggered
+		farSchedule = Scheduler.getNow() + 3600000000L;
+		for (int i = 0; i < numberAlarms; i++) {
+			scheduler.addAction(farSchedule + i * 1000L, new AlarmAction());
+		}
+		// Move the submitted alarms into the queue
+		scheduler.getNumberOfActions();
+	}
+
+	private long nextSchedule() {
+		// Spread the new alarms between the pending ones
+		index = (index + 997) % numberAlarms;
+		return farSchedule + index * 1000L + 1;
+	}
+
+	@Benchmark
+	public int addRemoveHandle() {
+		SchedulerAction schedulerAction = scheduler.addAction(nextSchedule(), action);
+		scheduler.removeAction(schedulerAction);
+
+		return scheduler.getNumberOfActions();
+	}
+
+	@Benchmark
+	public int addRemoveSchedule() {
+		long schedule = nextSchedule();
+		scheduler.addAction(schedule, action);
+		scheduler.removeAction(schedule, action);
+
+		return scheduler.getNumberOfActions();
+	}
+
+	@Benchmark
+	public IAction addTrigger() {
+		scheduler.addAction(0, action);
+
+		return scheduler.getAction(Scheduler.getNow());
+	}
+
+	@Benchmark
+	public long nextActionDelay() {
+		return scheduler.getNextActionDelayNoLock(0);
+	}
+}
@@ -0,0 +1,170 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.Allegrex.compiler;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import jpcsp.Memory;
+import jpcsp.Allegrex.Decoder;
+import jpcsp.Allegrex.Instructions;
+import jpcsp.Allegrex.Common.Instruction;
+
+/**
+ * Executable used for a code block while it is being compiled
+ * by a background compiler thread.
+ * The code block is interpreted until the compiled executable is available,
+ * after that, all the calls are delegated to the compiled executable.
+ * The stub classes delegating to this executable (see CodeBlockStub)
+ * are directly delegating to the compiled executable once available.
+ * The HLE syscalls are only implemented by the compiled code: a code block
+ * executing a syscall (e.g. an import stub "jr $ra; syscall") is not
+ * interpreted, its compilation is completed on the emulation thread.
+ *
+ * @author gid15
+ *
+ */
+public class BackgroundCompileExecutable implements IExecutable {
+	private final int address;
+	private final int instanceIndex;
+	private final InterpretExecutable interpretExecutable;
+	private volatile IExecutable compiledExecutable;
+	private final List<IExecutable> stubs = new LinkedList<IExecutable>();
+	private static final int maxSyscallSearchInstructions = 1000;
+	private boolean isSyscallSearched;
+	private boolean hasSyscall;
+
+	public BackgroundCompileExecutable(int address, int instanceIndex) {
+		this.address = address;
+		this.instanceIndex = instanceIndex;
+		// This code block is only used by the interpreter,
+		// it is not registered in the RuntimeContext.
+		interpretExecutable = new InterpretExecutable(new CodeBlock(address, instanceIndex));
+	}
+
+	public int getAddress() {
+		return address;
+	}
+
+	public int getInstanceIndex() {
+		return instanceIndex;
+	}
+
+	public boolean isCompiled() {
+		return compiledExecutable != null;
+	}
+
+	public void setCompiledExecutable(IExecutable compiledExecutable) {
+		synchronized (stubs) {
+			this.compiledExecutable = compiledExecutable;
+			for (IExecutable stub : stubs) {
+				stub.setExecutable(compiledExecutable);
+			}
+			stubs.clear();
+		}
+	}
+
+	/**
+	 * Let a stub class delegate to this code block.
+	 *
+	 * @param stub  the stub class instance
+	 */
+	public void addStub(IExecutable stub) {
+		synchronized (stubs) {
+			IExecutable executable = compiledExecutable;
+			if (executable != null) {
+				stub.setExecutable(executable);
+			} else {
+				stub.setExecutable(this);
+				stubs.add(stub);
+			}
+		}
+	}
+
+	/**
+	 * Search for a syscall in the code block, up to its first unconditional end.
+	 *
+	 * @return true if the code block is executing a syscall
+	 */
+	private boolean searchSyscall() {
+		Memory mem = Memory.getInstance();
+		for (int i = 0, pc = address; i < maxSyscallSearchInstructions && Memory.isAddressGood(pc); i++, pc += 4) {
+			Instruction insn = Decoder.instruction(mem.read32(pc));
+			if (insn == Instructions.SYSCALL) {
+				return true;
+			}
+			if (insn.hasFlags(Instruction.FLAG_ENDS_BLOCK) && !insn.hasFlags(Instruction.FLAG_IS_CONDITIONAL)) {
+				// Check the delay slot
+				return insn.hasFlags(Instruction.FLAG_HAS_DELAY_SLOT) && Decoder.instruction(mem.read32(pc + 4)) == Instructions.SYSCALL;
+			}
+		}
+
+		return false;
+	}
+
+	private boolean isInterpretable() {
+		if (RuntimeContextLLE.isLLEActive()) {
+			// The LLE syscalls are supported by the interpreter
+			return true;
+		}
+
+		if (!isSyscallSearched) {
+			hasSyscall = searchSyscall();
+			isSyscallSearched = true;
+		}
+
+		return !hasSyscall;
+	}
+
+	@Override
+	public int exec() throws Exception {
+		IExecutable executable = compiledExecutable;
+		if (executable == null && !isInterpretable()) {
+			Compiler.getInstance().compileBackgroundExecutable(this, Compiler.getResetCount());
+			executable = compiledExecutable;
+		}
+
+		if (executable != null) {
+			return executable.exec();
+		}
+
+		return interpretExecutable.exec();
+	}
+
+	@Override
+	public void setExecutable(IExecutable e) {
+		IExecutable executable = compiledExecutable;
+		if (executable != null) {
+			executable.setExecutable(e);
+		}
+	}
+
+	@Override
+	public IExecutable getExecutable() {
+		IExecutable executable = compiledExecutable;
+		if (executable != null) {
+			return executable.getExecutable();
+		}
+
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("BackgroundCompileExecutable 0x%08X (compiled=%b)", address, isCompiled());
+	}
+}
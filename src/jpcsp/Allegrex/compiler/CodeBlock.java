@@ -71,6 +71,9 @@ public class CodeBlock {
 	private int flags;
 	private HLEModuleFunction hleFunction;
 	private IAction updateOpcodesAction;
+	private boolean hasNativeCodeSequences;
+	private String classCacheKey;
+	private boolean backgroundCompiled;
 
 	public CodeBlock(int startAddress, int instanceCount) {
 		this.startAddress = startAddress;
@@ -139,6 +142,14 @@ public class CodeBlock {
 		return highestAddress;
 	}
 
+	public List<CodeInstruction> getCodeInstructions() {
+		return codeInstructions;
+	}
+
+	public String getClassCacheKey() {
+		return classCacheKey;
+	}
+
 	public int getLength() {
 		return (getHighestAddress() - getLowestAddress()) / 4 + 1;
 	}
@@ -163,9 +174,16 @@ public class CodeBlock {
 	}
 
 	public String getClassName() {
+		if (backgroundCompiled) {
+			return CompilerContext.getBackgroundClassName(getStartAddress(), getInstanceIndex());
+		}
 	    return CompilerContext.getClassName(getStartAddress(), getInstanceIndex());
 	}
 
+	public void setBackgroundCompiled(boolean backgroundCompiled) {
+		this.backgroundCompiled = backgroundCompiled;
+	}
+
 	public String getInternalClassName() {
 		return getInternalName(getClassName());
 	}
@@ -348,6 +366,7 @@ public class CodeBlock {
     		CodeInstruction codeInstruction = lit.next();
     		NativeCodeSequence nativeCodeSequence = nativeCodeManager.getNativeCodeSequence(codeInstruction, this);
     		if (nativeCodeSequence != null) {
+    			hasNativeCodeSequences = true;
     			if (nativeCodeSequence.isHook()) {
     				HookCodeInstruction hookCodeInstruction = new HookCodeInstruction(nativeCodeSequence, codeInstruction);
 
@@ -495,6 +514,20 @@ public class CodeBlock {
 			}
 		}
 
+        CompilerClassCache classCache = Compiler.getInstance().getClassCache();
+        if (classCache != null) {
+        	classCacheKey = classCache.getKey(context, this);
+        	byte[] cachedBytes = classCache.read(classCacheKey);
+        	if (cachedBytes != null) {
+        		// The current opcodes are required to detect later modifications
+        		memoryRanges.updateValues();
+        		compiledClass = loadExecutable(context, className, cachedBytes);
+        		if (compiledClass != null) {
+        			return compiledClass;
+        		}
+        	}
+        }
+
         prepare(context, context.getMethodMaxInstructions());
 
         currentSequence = null;
@@ -557,12 +590,18 @@ public class CodeBlock {
     	    log.trace(debugOutput.toString());
     	}
 
+    	byte[] bytes = cw.toByteArray();
     	try {
-    		compiledClass = loadExecutable(context, className, cw.toByteArray());
+    		compiledClass = loadExecutable(context, className, bytes);
     	} catch (NullPointerException e) {
     		log.error("Error while compiling " + className + ": " + e);
     	}
 
+    	// Only cache the classes whose generation had no side effect
+    	if (classCache != null && compiledClass != null && !hasNativeCodeSequences && hleFunction == null && updateOpcodesAction == null) {
+    		classCache.write(classCacheKey, bytes);
+    	}
+
     	return compiledClass;
 	}
 
@@ -0,0 +1,269 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.Allegrex.compiler;
+
+import java.util.List;
+
+/**
+ * Index of the code blocks by their address range
+ * [lowestAddress, highestAddress].
+ *
+ * Implemented as a treap (randomized balanced binary search tree)
+ * ordered by lowest address and augmented with the maximum
+ * highest address of each subtree.
+ * - add, remove: O(log n)
+ * - find the code blocks overlapping an address range: O(log n + k).
+ *
+ * This class is not thread-safe.
+ *
+ * @author gid15
+ *
+ */
+public class CodeBlockIntervalTree {
+	private static class Node {
+		private final CodeBlock codeBlock;
+		private final int low;
+		private final int high;
+		private final int priority;
+		private int maxHigh;
+		private Node left;
+		private Node right;
+
+		public Node(CodeBlock codeBlock, int priority) {
+			this.codeBlock = codeBlock;
+			low = codeBlock.getLowestAddress();
+			high = codeBlock.getHighestAddress();
+			this.priority = priority;
+			maxHigh = high;
+		}
+
+		public void update() {
+			int max = high;
+			if (left != null && left.maxHigh > max) {
+				max = left.maxHigh;
+			}
+			if (right != null && right.maxHigh > max) {
+				max = right.maxHigh;
+			}
+			maxHigh = max;
+		}
+
+		public boolean isBefore(Node node) {
+			if (low != node.low) {
+				return low < node.low;
+			}
+			// Unique ordering for code blocks having the same lowest address
+			return System.identityHashCode(codeBlock) < System.identityHashCode(node.codeBlock);
+		}
+	}
+
+	private Node root;
+	private int size;
+	private int seed = 0x2545F491;
+
+	private int nextPriority() {
+		// xorshift pseudo-random generator
+		seed ^= seed << 13;
+		seed ^= seed >>> 17;
+		seed ^= seed << 5;
+		return seed;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	public void clear() {
+		root = null;
+		size = 0;
+	}
+
+	public void add(CodeBlock codeBlock) {
+		root = add(root, new Node(codeBlock, nextPriority()));
+		size++;
+	}
+
+	private Node add(Node node, Node newNode) {
+		if (node == null) {
+			return newNode;
+		}
+
+		if (newNode.isBefore(node)) {
+			node.left = add(node.left, newNode);
+			if (node.left.priority > node.priority) {
+				node = rotateRight(node);
+			}
+		} else {
+			node.right = add(node.right, newNode);
+			if (node.right.priority > node.priority) {
+				node = rotateLeft(node);
+			}
+		}
+		node.update();
+
+		return node;
+	}
+
+	/**
+	 * Remove a code block.
+	 *
+	 * @return true if the code block has been removed
+	 */
+	public boolean remove(CodeBlock codeBlock) {
+		int sizeBefore = size;
+		root = remove(root, codeBlock, codeBlock.getLowestAddress());
+		if (size == sizeBefore) {
+			// The code block lowest address has been changed since it was added,
+			// search through the whole tree.
+			root = removeFullSearch(root, codeBlock);
+		}
+
+		return size < sizeBefore;
+	}
+
+	private Node removeFullSearch(Node node, CodeBlock codeBlock) {
+		if (node == null) {
+			return null;
+		}
+
+		if (node.codeBlock == codeBlock) {
+			size--;
+			return merge(node.left, node.right);
+		}
+
+		int sizeBefore = size;
+		node.left = removeFullSearch(node.left, codeBlock);
+		if (size == sizeBefore) {
+			node.right = removeFullSearch(node.right, codeBlock);
+		}
+		node.update();
+
+		return node;
+	}
+
+	private Node remove(Node node, CodeBlock codeBlock, int low) {
+		if (node == null) {
+			return null;
+		}
+
+		if (node.codeBlock == codeBlock) {
+			size--;
+			return merge(node.left, node.right);
+		}
+
+		if (low < node.low) {
+			node.left = remove(node.left, codeBlock, low);
+		} else if (low > node.low) {
+			node.right = remove(node.right, codeBlock, low);
+		} else {
+			// Same lowest address, the code block can be on both sides
+			int sizeBefore = size;
+			node.left = remove(node.left, codeBlock, low);
+			if (size == sizeBefore) {
+				node.right = remove(node.right, codeBlock, low);
+			}
+		}
+		node.update();
+
+		return node;
+	}
+
+	private Node merge(Node left, Node right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null) {
+			return left;
+		}
+
+		if (left.priority > right.priority) {
+			left.right = merge(left.right, right);
+			left.update();
+			return left;
+		}
+
+		right.left = merge(left, right.left);
+		right.update();
+		return right;
+	}
+
+	private Node rotateRight(Node node) {
+		Node left = node.left;
+		node.left = left.right;
+		left.right = node;
+		node.update();
+		left.update();
+
+		return left;
+	}
+
+	private Node rotateLeft(Node node) {
+		Node right = node.right;
+		node.right = right.left;
+		right.left = node;
+		node.update();
+		right.update();
+
+		return right;
+	}
+
+	/**
+	 * Find the code blocks whose address range is overlapping
+	 * with the range [low, high].
+	 * The result list is provided by the caller so that it can be reused
+	 * between calls. Use a different list when the code blocks found
+	 * have to be processed while calling find() again.
+	 *
+	 * @param result  the list receiving the code blocks found,
+	 *                it is cleared before the search
+	 */
+	public void find(int low, int high, List<CodeBlock> result) {
+		result.clear();
+		if (root != null && root.maxHigh >= low) {
+			find(root, low, high, result);
+		}
+	}
+
+	private void find(Node node, int low, int high, List<CodeBlock> result) {
+		while (node != null) {
+			// No code block in this subtree is ending after "low"
+			if (node.maxHigh < low) {
+				return;
+			}
+
+			if (node.left != null) {
+				find(node.left, low, high, result);
+			}
+
+			// This node and all the nodes in the right subtree
+			// are starting after "high"
+			if (node.low > high) {
+				return;
+			}
+
+			if (node.high >= low) {
+				result.add(node.codeBlock);
+			}
+
+			node = node.right;
+		}
+	}
+}
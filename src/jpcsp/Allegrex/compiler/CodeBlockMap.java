@@ -0,0 +1,170 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.Allegrex.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Map from a code block start address to the code block.
+ *
+ * Open addressing with linear probing on primitive int keys:
+ * get, put and remove do not allocate any object (apart from
+ * the occasional growth of the table).
+ *
+ * This class is not thread-safe.
+ *
+ * @author gid15
+ *
+ */
+public class CodeBlockMap {
+	private static final int initialCapacity = 1024;
+	private int[] keys;
+	private CodeBlock[] values;
+	private int size;
+	private int mask;
+	private int resizeThreshold;
+
+	public CodeBlockMap() {
+		allocate(initialCapacity);
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new CodeBlock[capacity];
+		mask = capacity - 1;
+		// Load factor 0.5
+		resizeThreshold = capacity >> 1;
+	}
+
+	private static int hash(int key) {
+		// Code block addresses are multiple of 4, mix the bits
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private int indexOf(int key) {
+		for (int index = hash(key) & mask; values[index] != null; index = (index + 1) & mask) {
+			if (keys[index] == key) {
+				return index;
+			}
+		}
+
+		return -1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public CodeBlock get(int key) {
+		int index = indexOf(key);
+		return index < 0 ? null : values[index];
+	}
+
+	public boolean containsKey(int key) {
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * @return the previous code block stored for this key, or null
+	 */
+	public CodeBlock put(int key, CodeBlock value) {
+		int index;
+		for (index = hash(key) & mask; values[index] != null; index = (index + 1) & mask) {
+			if (keys[index] == key) {
+				CodeBlock previousValue = values[index];
+				values[index] = value;
+				return previousValue;
+			}
+		}
+
+		keys[index] = key;
+		values[index] = value;
+		size++;
+		if (size > resizeThreshold) {
+			resize(values.length << 1);
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return the removed code block, or null
+	 */
+	public CodeBlock remove(int key) {
+		int index = indexOf(key);
+		if (index < 0) {
+			return null;
+		}
+
+		CodeBlock removedValue = values[index];
+		size--;
+
+		// Backward shift deletion: move back the following entries
+		// of the probe sequence so that no tombstone is required.
+		int hole = index;
+		for (int next = (hole + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+			int ideal = hash(keys[next]) & mask;
+			// Can the entry at "next" be moved into the hole?
+			if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+				keys[hole] = keys[next];
+				values[hole] = values[next];
+				hole = next;
+			}
+		}
+		values[hole] = null;
+
+		return removedValue;
+	}
+
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	private void resize(int capacity) {
+		int[] oldKeys = keys;
+		CodeBlock[] oldValues = values;
+		allocate(capacity);
+		size = 0;
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	/**
+	 * @return a new list containing all the code blocks
+	 */
+	public List<CodeBlock> values() {
+		List<CodeBlock> list = new ArrayList<CodeBlock>(size);
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				list.add(values[i]);
+			}
+		}
+
+		return list;
+	}
+}
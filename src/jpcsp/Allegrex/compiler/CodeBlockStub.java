@@ -0,0 +1,135 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.Allegrex.compiler;
+
+import static jpcsp.Allegrex.compiler.CompilerContext.executableDescriptor;
+import static jpcsp.Allegrex.compiler.CompilerContext.executableInternalName;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Generation of the stub classes used when compiling in background.
+ *
+ * The compiled code is calling the other code blocks through a static method
+ * of the class named after the called code block (see CompilerContext.getClassName()).
+ * The first call has to load this class. When compiling in background,
+ * the class loader does not compile the called code block but
+ * defines a stub class delegating all the calls to an executable,
+ * e.g. a BackgroundCompileExecutable interpreting the code block
+ * until it has been compiled, and then the compiled code block itself.
+ *
+ * The generated stub class is equivalent to:
+ * <pre>
+ *     public class _S1_n_0xXXXXXXXX implements IExecutable {
+ *         private static IExecutable e;
+ *         public static int s() throws Exception { return e.exec(); }
+ *         public int exec() throws Exception { return s(); }
+ *         public void setExecutable(IExecutable e) { this.e = e; }
+ *         public IExecutable getExecutable() { return e; }
+ *     }
+ * </pre>
+ *
+ * @author gid15
+ *
+ */
+public class CodeBlockStub {
+	private final static String objectInternalName = Type.getInternalName(Object.class);
+	private final static String[] interfacesForExecutable = new String[] { executableInternalName };
+	private final static String[] exceptions = new String[] { Type.getInternalName(Exception.class) };
+
+	private static byte[] generate(CompilerContext context, String className) {
+		ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, objectInternalName, interfacesForExecutable);
+
+		// private static IExecutable e;
+		FieldVisitor fv = cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, context.getReplaceFieldName(), executableDescriptor, null, null);
+		fv.visitEnd();
+
+		// public constructor
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, objectInternalName, "<init>", "()V");
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+
+		// public static int s() throws Exception { return e.exec(); }
+		mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, context.getStaticExecMethodName(), context.getStaticExecMethodDesc(), null, exceptions);
+		mv.visitCode();
+		mv.visitFieldInsn(Opcodes.GETSTATIC, className, context.getReplaceFieldName(), executableDescriptor);
+		mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, executableInternalName, context.getExecMethodName(), context.getExecMethodDesc());
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitMaxs(1, 0);
+		mv.visitEnd();
+
+		// public int exec() throws Exception { return s(); }
+		mv = cw.visitMethod(Opcodes.ACC_PUBLIC, context.getExecMethodName(), context.getExecMethodDesc(), null, exceptions);
+		mv.visitCode();
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, className, context.getStaticExecMethodName(), context.getStaticExecMethodDesc());
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+
+		// public void setExecutable(IExecutable e) { this.e = e; }
+		mv = cw.visitMethod(Opcodes.ACC_PUBLIC, context.getReplaceMethodName(), context.getReplaceMethodDesc(), null, exceptions);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 1);
+		mv.visitFieldInsn(Opcodes.PUTSTATIC, className, context.getReplaceFieldName(), executableDescriptor);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(1, 2);
+		mv.visitEnd();
+
+		// public IExecutable getExecutable() { return e; }
+		mv = cw.visitMethod(Opcodes.ACC_PUBLIC, context.getGetMethodName(), context.getGetMethodDesc(), null, exceptions);
+		mv.visitCode();
+		mv.visitFieldInsn(Opcodes.GETSTATIC, className, context.getReplaceFieldName(), executableDescriptor);
+		mv.visitInsn(Opcodes.ARETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+
+		cw.visitEnd();
+
+		return cw.toByteArray();
+	}
+
+	/**
+	 * Define a new stub class.
+	 *
+	 * @param context    the compiler context, providing the class loader
+	 * @param className  the name of the stub class
+	 * @return           an instance of the stub class. Its executable
+	 *                   has to be set using setExecutable() before being called.
+	 */
+	@SuppressWarnings("deprecation")
+	public static IExecutable create(CompilerContext context, String className) {
+		Class<?> stubClass = context.getClassLoader().defineClass(className, generate(context, className));
+		try {
+			return (IExecutable) stubClass.newInstance();
+		} catch (InstantiationException e) {
+			Compiler.log.error(e);
+		} catch (IllegalAccessException e) {
+			Compiler.log.error(e);
+		}
+
+		return null;
+	}
+}
@@ -24,9 +24,16 @@ import static jpcsp.Allegrex.Common.Instruction.FLAG_SYSCALL;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -51,6 +58,8 @@ import jpcsp.settings.AbstractIntSettingsListener;
 import jpcsp.settings.Settings;
 import jpcsp.util.CpuDurationStatistics;
 import jpcsp.util.DurationStatistics;
+import jpcsp.util.metrics.Histogram;
+import jpcsp.util.metrics.MetricsRegistry;
 
 import org.apache.log4j.Logger;
 import org.w3c.dom.Document;
@@ -142,17 +151,26 @@ import org.xml.sax.SAXException;
 public class Compiler implements ICompiler {
     public static Logger log = Logger.getLogger("compiler");
 	private static Compiler instance;
-	private static int resetCount = 0;
-	private CompilerClassLoader classLoader;
+	private static volatile int resetCount = 0;
+	private volatile CompilerClassLoader classLoader;
 	public static CpuDurationStatistics compileDuration = new CpuDurationStatistics("Compilation Time");
+	private static final Histogram compileDurationMetric = MetricsRegistry.getInstance().register(new Histogram("jpcsp_compile_duration_seconds", "Duration of the compilation of one code block"));
 	private Document configuration;
 	private NativeCodeManager nativeCodeManager;
     private boolean ignoreInvalidMemory = false;
     public int defaultMethodMaxInstructions = 3000;
     private static final int maxRecompileExecutable = 50;
     private CompilerTypeManager compilerTypeManager;
-    private HashSet<Integer> interpretedAddresses = new HashSet<Integer>();
-    private Set<Integer> useMMIOAddresses = new HashSet<Integer>();
+    private Set<Integer> interpretedAddresses = Collections.synchronizedSet(new HashSet<Integer>());
+    private Set<Integer> useMMIOAddresses = Collections.synchronizedSet(new HashSet<Integer>());
+    private int backgroundCompilerThreads = 0;
+    // Background compilations not yet completed, by code block address
+    private final Map<Integer, BackgroundCompileExecutable> backgroundCompilations = new HashMap<Integer, BackgroundCompileExecutable>();
+    // Only one code block is analysed and compiled at a time (see compileBlock())
+    private final Object compileLock = new Object();
+    private CompilerClassCache classCache = new CompilerClassCache();
+    private boolean classCacheEnabled = false;
+    private ExecutorService backgroundCompilerExecutor;
 
 	private class IgnoreInvalidMemoryAccessSettingsListerner extends AbstractBoolSettingsListener {
 		@Override
@@ -168,6 +186,103 @@ public class Compiler implements ICompiler {
 		}
 	}
 
+	private class BackgroundCompilerThreadsSettingsListerner extends AbstractIntSettingsListener {
+		@Override
+		protected void settingsValueChanged(int value) {
+			setBackgroundCompilerThreads(value);
+		}
+	}
+
+	private class ClassCacheSettingsListerner extends AbstractBoolSettingsListener {
+		@Override
+		protected void settingsValueChanged(boolean value) {
+			setClassCacheEnabled(value);
+		}
+	}
+
+	private static class BackgroundCompilerThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, String.format("Background Compiler %d", threadNumber.getAndIncrement()));
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	}
+
+	private class BackgroundCompileTask implements Runnable {
+		private final BackgroundCompileExecutable backgroundExecutable;
+		private final int resetCount;
+
+		public BackgroundCompileTask(BackgroundCompileExecutable backgroundExecutable, int resetCount) {
+			this.backgroundExecutable = backgroundExecutable;
+			this.resetCount = resetCount;
+		}
+
+		@Override
+		public void run() {
+			try {
+				compileBackgroundExecutable(backgroundExecutable, resetCount);
+			} finally {
+				removeBackgroundCompilation(backgroundExecutable);
+			}
+		}
+	}
+
+	/**
+	 * Compile the code block of a BackgroundCompileExecutable.
+	 * Called by a background compiler thread, or by the emulation thread
+	 * when the code block cannot be interpreted. The first caller is compiling,
+	 * the other one is waiting for the end of the compilation.
+	 *
+	 * @param backgroundExecutable  the executable to be compiled
+	 * @param resetCount            the reset count when the compilation was requested
+	 */
+	void compileBackgroundExecutable(BackgroundCompileExecutable backgroundExecutable, int resetCount) {
+		synchronized (backgroundExecutable) {
+			if (backgroundExecutable.isCompiled()) {
+				return;
+			}
+
+			int address = backgroundExecutable.getAddress();
+			int instanceIndex = backgroundExecutable.getInstanceIndex();
+
+			// The compiler has been reset since this compilation was requested
+			if (resetCount != getResetCount()) {
+				return;
+			}
+
+			IExecutable executable;
+			try {
+				executable = compileBlock(address, instanceIndex, true);
+			} catch (Throwable e) {
+				log.error(String.format("Background compilation of 0x%08X failed", address), e);
+				return;
+			}
+
+			if (executable == null || resetCount != getResetCount()) {
+				return;
+			}
+
+			// The opcodes could have been modified by the application while
+			// being compiled: the changes have not been seen by invalidateRange()
+			// because the code block was not yet registered.
+			CodeBlock codeBlock = RuntimeContext.getCodeBlock(address & Memory.addressMask);
+			if (codeBlock != null && codeBlock.getExecutable() == executable && codeBlock.areOpcodesChanged()) {
+				invalidateCodeBlock(codeBlock);
+			}
+
+			backgroundExecutable.setCompiledExecutable(executable);
+			RuntimeContext.replaceExecutable(address, backgroundExecutable, executable);
+
+			if (log.isDebugEnabled()) {
+				log.debug(String.format("Background compilation of 0x%08X completed", address));
+			}
+		}
+	}
+
     private boolean isIgnoreInvalidMemory() {
         return ignoreInvalidMemory;
     }
@@ -192,6 +307,9 @@ public class Compiler implements ICompiler {
 	    if (instance != null) {
 	    	if (DurationStatistics.collectStatistics) {
 	    		log.info(compileDuration);
+	    		if (instance.classCacheEnabled) {
+	    			log.info(instance.classCache);
+	    		}
 	    	}
 	    }
 	}
@@ -199,8 +317,15 @@ public class Compiler implements ICompiler {
 	public void reset() {
 		resetCount++;
 		classLoader = new CompilerClassLoader(this);
-		compileDuration.reset();
+		synchronized (compileDuration) {
+			compileDuration.reset();
+		}
 		nativeCodeManager.reset();
+		// The pending background compilations are dropped
+		// when noticing the reset.
+		synchronized (backgroundCompilations) {
+			backgroundCompilations.clear();
+		}
 	}
 
     public void invalidateAll() {
@@ -287,6 +412,11 @@ public class Compiler implements ICompiler {
     	}
 
 		getNativeCodeManager().invalidateCompiledNativeCodeBlocks(codeBlock.getLowestAddress(), codeBlock.getHighestAddress());
+
+		// The opcodes have been modified, the cached class is no longer matching
+		if (classCacheEnabled) {
+			classCache.remove(codeBlock.getClassCacheKey());
+		}
     }
 
     public void checkCodeBlockValidity(CodeBlock codeBlock) {
@@ -314,6 +444,8 @@ public class Compiler implements ICompiler {
     private void Initialise() {
     	Settings.getInstance().registerSettingsListener("Compiler", "emu.ignoreInvalidMemoryAccess", new IgnoreInvalidMemoryAccessSettingsListerner());
     	Settings.getInstance().registerSettingsListener("Compiler", "emu.compiler.methodMaxInstructions", new MethodMaxInstructionsSettingsListerner());
+    	Settings.getInstance().registerSettingsListener("Compiler", "emu.compiler.backgroundThreads", new BackgroundCompilerThreadsSettingsListerner());
+    	Settings.getInstance().registerSettingsListener("Compiler", "emu.compiler.classCache", new ClassCacheSettingsListerner());
 
     	DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
 		documentBuilderFactory.setIgnoringElementContentWhitespace(true);
@@ -322,7 +454,9 @@ public class Compiler implements ICompiler {
 		configuration = null;
 		try {
 			DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-			configuration = documentBuilder.parse(new File("Compiler.xml"));
+			File configurationFile = new File("Compiler.xml");
+			configuration = documentBuilder.parse(configurationFile);
+			classCache.setConfiguration(configurationFile);
 		} catch (ParserConfigurationException e) {
 			log.error(e);
 		} catch (SAXException e) {
@@ -355,6 +489,7 @@ public class Compiler implements ICompiler {
             log.debug(String.format("Compiler.interpret Block 0x%08X", startAddress));
         }
         CodeBlock codeBlock = new CodeBlock(startAddress, instanceIndex);
+        codeBlock.setBackgroundCompiled(context.isBackgroundCompilation());
 
         codeBlock.addCodeBlock();
 
@@ -397,6 +532,7 @@ public class Compiler implements ICompiler {
         int maxBranchInstructions = Integer.MAX_VALUE; // 5 for FRONTIER_1337 homebrew
         MemorySections memorySections = MemorySections.getInstance();
         CodeBlock codeBlock = new CodeBlock(startAddress, instanceIndex);
+        codeBlock.setBackgroundCompiled(context.isBackgroundCompilation());
         Stack<Integer> pendingBlockAddresses = new Stack<Integer>();
         pendingBlockAddresses.clear();
         pendingBlockAddresses.push(startAddress);
@@ -531,7 +667,55 @@ public class Compiler implements ICompiler {
 
     @Override
     public IExecutable compile(String name) {
-        return compile(CompilerContext.getClassAddress(name), CompilerContext.getClassInstanceIndex(name));
+    	int address = CompilerContext.getClassAddress(name);
+    	int instanceIndex = CompilerContext.getClassInstanceIndex(name);
+
+    	if (isBackgroundCompilationEnabled() && name.equals(CompilerContext.getClassName(address, instanceIndex))) {
+    		return compileStub(name, address, instanceIndex);
+    	}
+
+        return compile(address, instanceIndex);
+    }
+
+    /**
+     * A compiled code block is calling another code block whose class
+     * has not yet been loaded. Instead of compiling the called code block
+     * on the emulation thread, define a stub class delegating to the
+     * called code block: either the code block already compiled, or
+     * its interpreter until compiled by a background compiler thread.
+     *
+     * @param name           the name of the class to be defined
+     * @param address        the address of the called code block
+     * @param instanceIndex  the instance index of the called code block
+     * @return               the stub executable
+     */
+    private IExecutable compileStub(String name, int address, int instanceIndex) {
+    	if (!isAddressGood(address)) {
+    		return compile(address, instanceIndex);
+    	}
+
+    	IExecutable stub = CodeBlockStub.create(new CompilerContext(classLoader, instanceIndex), name);
+    	if (stub == null) {
+    		return null;
+    	}
+
+    	CodeBlock codeBlock = RuntimeContext.getCodeBlock(address & Memory.addressMask);
+    	IExecutable executable = codeBlock != null ? codeBlock.getExecutable() : null;
+    	if (executable == null) {
+    		executable = compileInBackground(address, instanceIndex);
+    	}
+
+    	if (executable instanceof BackgroundCompileExecutable) {
+    		((BackgroundCompileExecutable) executable).addStub(stub);
+    	} else {
+    		stub.setExecutable(executable);
+    	}
+
+    	if (log.isDebugEnabled()) {
+    		log.debug(String.format("Defined stub class %s delegating to %s", name, executable));
+    	}
+
+    	return stub;
     }
 
     @Override
@@ -546,10 +730,11 @@ public class Compiler implements ICompiler {
         	log.debug(String.format("Catched exception '%s' (can be ignored)", e.toString()));
         	log.debug(String.format("Retrying compilation again with maxInstruction=%d, retries left=%d...", methodMaxInstructions, retries - 1));
         }
-        context = new CompilerContext(classLoader, instanceIndex);
-        context.setMethodMaxInstructions(methodMaxInstructions);
+        CompilerContext retryContext = new CompilerContext(classLoader, instanceIndex);
+        retryContext.setMethodMaxInstructions(methodMaxInstructions);
+        retryContext.setBackgroundCompilation(context.isBackgroundCompilation());
 
-        return context;
+        return retryContext;
     }
 
     private boolean isAddressGood(int address) {
@@ -580,6 +765,117 @@ public class Compiler implements ICompiler {
     	// in some applications while compiling large MIPS functions.
     	Emulator.getClock().pause();
 
+    	// When compiling in background, the classes named after the code blocks
+    	// are reserved to the stub classes.
+    	IExecutable executable = compileBlock(address, instanceIndex, isBackgroundCompilationEnabled());
+
+        // Resume the PSP clock after compilation
+        Emulator.getClock().resume();
+
+        return executable;
+    }
+
+    /**
+     * Compile the code block starting at the given address
+     * without blocking the caller: the code block is interpreted
+     * until one of the background compiler threads has completed
+     * its compilation.
+     *
+     * @param address   the code block start address
+     * @return          the executable to be used for this code block
+     */
+    public IExecutable compileInBackground(int address) {
+    	return compileInBackground(address, getResetCount());
+    }
+
+    /**
+     * Compile the code block starting at the given address
+     * without blocking the caller.
+     * A code block already being compiled in background is not compiled twice.
+     *
+     * @param address        the code block start address
+     * @param instanceIndex  the code block instance index
+     * @return               the executable to be used for this code block
+     */
+    public IExecutable compileInBackground(int address, int instanceIndex) {
+    	ExecutorService executor = backgroundCompilerExecutor;
+    	if (executor == null || !isAddressGood(address) || interpretedAddresses.contains(address)) {
+    		// Nothing to be gained, keep the synchronous processing
+    		return compile(address, instanceIndex);
+    	}
+
+    	synchronized (backgroundCompilations) {
+    		int key = address & Memory.addressMask;
+    		BackgroundCompileExecutable backgroundExecutable = backgroundCompilations.get(key);
+    		if (backgroundExecutable == null) {
+    			backgroundExecutable = new BackgroundCompileExecutable(address, instanceIndex);
+    			backgroundCompilations.put(key, backgroundExecutable);
+    			executor.execute(new BackgroundCompileTask(backgroundExecutable, getResetCount()));
+    		}
+
+    		return backgroundExecutable;
+    	}
+    }
+
+    private void removeBackgroundCompilation(BackgroundCompileExecutable backgroundExecutable) {
+    	synchronized (backgroundCompilations) {
+    		int key = backgroundExecutable.getAddress() & Memory.addressMask;
+    		if (backgroundCompilations.get(key) == backgroundExecutable) {
+    			backgroundCompilations.remove(key);
+    		}
+    	}
+    }
+
+    public boolean isBackgroundCompilationEnabled() {
+    	return backgroundCompilerExecutor != null;
+    }
+
+    public int getBackgroundCompilerThreads() {
+    	return backgroundCompilerThreads;
+    }
+
+    public void setBackgroundCompilerThreads(int backgroundCompilerThreads) {
+    	if (backgroundCompilerThreads < 0 || backgroundCompilerThreads == this.backgroundCompilerThreads) {
+    		return;
+    	}
+
+    	if (backgroundCompilerExecutor != null) {
+    		// Pending compilations are dropped, their code blocks are still interpreted
+    		// and will be compiled synchronously when they are invalidated.
+    		backgroundCompilerExecutor.shutdownNow();
+    		backgroundCompilerExecutor = null;
+    		synchronized (backgroundCompilations) {
+    			backgroundCompilations.clear();
+    		}
+    	}
+
+    	this.backgroundCompilerThreads = backgroundCompilerThreads;
+    	if (backgroundCompilerThreads > 0) {
+    		backgroundCompilerExecutor = Executors.newFixedThreadPool(backgroundCompilerThreads, new BackgroundCompilerThreadFactory());
+    	}
+
+    	log.info(String.format("Compiler background threads: %d", backgroundCompilerThreads));
+    }
+
+    /**
+     * Compile a code block.
+     * This can be called concurrently by the emulation thread and by
+     * the background compiler threads. The analysis and the code generation
+     * are using state shared between the compilations (e.g. the native code
+     * manager, the type manager, the static state of the CompilerContext),
+     * they are therefore serialized through compileLock.
+     * The stub classes (see compileStub()) are defined without this lock,
+     * so that loading a class while holding the lock cannot wait
+     * for another thread waiting for the lock.
+     *
+     * @param address                the code block start address
+     * @param instanceIndex          the code block instance index
+     * @param backgroundCompilation  true to use the class name reserved
+     *                               for the background compilation
+     *                               (see CompilerContext.getBackgroundClassName())
+     * @return                       the executable for the code block
+     */
+    private IExecutable compileBlock(int address, int instanceIndex, boolean backgroundCompilation) {
     	long compilationStartMicros = 0;
     	if (Profiler.isProfilerEnabled()) {
     		compilationStartMicros = System.nanoTime() / 1000;
@@ -597,35 +893,47 @@ public class Compiler implements ICompiler {
         		log.debug(String.format("Forcing an interpreter call for address 0x%08X", address));
         	}
     	} else {
-	    	compileDuration.start();
+	    	// compileDuration is shared by the compiling threads
+	    	CpuDurationStatistics duration = new CpuDurationStatistics();
+	    	duration.start();
+	    	long compileStartNanos = MetricsRegistry.isEnabled() ? System.nanoTime() : 0L;
 	        context = new CompilerContext(classLoader, instanceIndex);
-	        for (int retries = 2; retries > 0; retries--) {
-	            try {
-	            	lastContext = context;
-	                executable = analyse(context, address, false, instanceIndex);
-	                break;
-	            } catch (ClassFormatError e) {
-	                // Catch exception
-	                //     java.lang.ClassFormatError: Invalid method Code length nnnnnn in class file XXXX
-	                //
-	                error = e;
-
-	                context = retryCompilation(context, instanceIndex, retries, e);
-	            } catch (NullPointerException e) {
-	            	log.error(String.format("Catched exception '%s' while compiling 0x%08X (0x%08X-0x%08X)", e.toString(), address, context.getCodeBlock().getLowestAddress(), context.getCodeBlock().getHighestAddress()));
-	            	break;
-	            } catch (VerifyError e) {
-	            	log.error(String.format("Catched exception '%s' while compiling 0x%08X (0x%08X-0x%08X)", e.toString(), address, context.getCodeBlock().getLowestAddress(), context.getCodeBlock().getHighestAddress()));
-	            	break;
-	            } catch (RuntimeException e) {
-	            	// Catch exception
-	            	//     java.lang.RuntimeException: Method code too large!
-	                exception = e;
-
-	                context = retryCompilation(context, instanceIndex, retries, e);
-	            }
+	        context.setBackgroundCompilation(backgroundCompilation);
+	        synchronized (compileLock) {
+		        for (int retries = 2; retries > 0; retries--) {
+		            try {
+		            	lastContext = context;
+		                executable = analyse(context, address, false, instanceIndex);
+		                break;
+		            } catch (ClassFormatError e) {
+		                // Catch exception
+		                //     java.lang.ClassFormatError: Invalid method Code length nnnnnn in class file XXXX
+		                //
+		                error = e;
+
+		                context = retryCompilation(context, instanceIndex, retries, e);
+		            } catch (NullPointerException e) {
+		            	log.error(String.format("Catched exception '%s' while compiling 0x%08X (0x%08X-0x%08X)", e.toString(), address, context.getCodeBlock().getLowestAddress(), context.getCodeBlock().getHighestAddress()));
+		            	break;
+		            } catch (VerifyError e) {
+		            	log.error(String.format("Catched exception '%s' while compiling 0x%08X (0x%08X-0x%08X)", e.toString(), address, context.getCodeBlock().getLowestAddress(), context.getCodeBlock().getHighestAddress()));
+		            	break;
+		            } catch (RuntimeException e) {
+		            	// Catch exception
+		            	//     java.lang.RuntimeException: Method code too large!
+		                exception = e;
+
+		                context = retryCompilation(context, instanceIndex, retries, e);
+		            }
+		        }
+	        }
+	        duration.end();
+	        synchronized (compileDuration) {
+	        	compileDuration.add(duration);
+	        }
+	        if (compileStartNanos != 0L) {
+	        	compileDurationMetric.observeNanos(System.nanoTime() - compileStartNanos);
 	        }
-	        compileDuration.end();
     	}
 
         if (Profiler.isProfilerEnabled()) {
@@ -641,6 +949,7 @@ public class Compiler implements ICompiler {
             	interpretedAddresses.addAll(lastContext.analysedAddresses);
             }
             context = new CompilerContext(classLoader, instanceIndex);
+            context.setBackgroundCompilation(backgroundCompilation);
             executable = interpret(context, address, instanceIndex);
             if (executable == null) {
             	if (error != null) {
@@ -656,9 +965,6 @@ public class Compiler implements ICompiler {
         	}
         }
 
-        // Resume the PSP clock after compilation
-        Emulator.getClock().resume();
-
         return executable;
     }
 
@@ -678,6 +984,17 @@ public class Compiler implements ICompiler {
 		Compiler.resetCount = resetCount;
 	}
 
+	/**
+	 * @return the persistent class cache, or null if it is disabled
+	 */
+	public CompilerClassCache getClassCache() {
+		return classCacheEnabled ? classCache : null;
+	}
+
+	public void setClassCacheEnabled(boolean classCacheEnabled) {
+		this.classCacheEnabled = classCacheEnabled;
+	}
+
 	public NativeCodeManager getNativeCodeManager() {
 		return nativeCodeManager;
 	}
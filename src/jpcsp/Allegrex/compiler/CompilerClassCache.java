@@ -0,0 +1,278 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.Allegrex.compiler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jpcsp.Memory;
+import jpcsp.Allegrex.Common.Instruction;
+import jpcsp.Allegrex.compiler.nativeCode.NativeCodeManager;
+import jpcsp.Allegrex.compiler.nativeCode.NativeCodeSequence;
+import jpcsp.memory.MemoryWriteTracker;
+import jpcsp.settings.Settings;
+import jpcsp.util.DurationStatistics;
+import jpcsp.util.Utilities;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Persistent cache of the classes generated by the compiler.
+ *
+ * The generated bytecode of a code block is stored on disk under a key
+ * built from the code block opcodes and from everything else that could
+ * influence the code generation (class name, compiler settings,
+ * native code configuration). At the next run, the class can be defined
+ * directly from the cached bytecode, without going through the
+ * code generation.
+ *
+ * Only code blocks whose generation has no side effect are cached:
+ * code blocks with syscalls, native code sequences or hooks
+ * are always compiled.
+ *
+ * @author gid15
+ *
+ */
+public class CompilerClassCache {
+	public static Logger log = Compiler.log;
+	// Increment this version when the code generation has been changed
+	// so that previously cached classes are no longer used.
+	private static final int version = 2;
+	private static final String classCacheDirectoryName = "COMPILER";
+	private static final String classFileExtension = ".class";
+	private static final char[] hexDigits = "0123456789abcdef".toCharArray();
+	private byte[] configurationDigest = new byte[0];
+	// The cache is used concurrently by the compiling threads
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+	private final AtomicInteger writes = new AtomicInteger();
+	private final AtomicInteger removes = new AtomicInteger();
+
+	public void setConfiguration(File configurationFile) {
+		configurationDigest = new byte[0];
+		if (configurationFile == null || !configurationFile.canRead()) {
+			return;
+		}
+
+		InputStream is = null;
+		try {
+			MessageDigest md = getMessageDigest();
+			is = new FileInputStream(configurationFile);
+			byte[] buffer = new byte[4096];
+			while (true) {
+				int length = is.read(buffer);
+				if (length < 0) {
+					break;
+				}
+				md.update(buffer, 0, length);
+			}
+			configurationDigest = md.digest();
+		} catch (IOException e) {
+			log.error("CompilerClassCache.setConfiguration", e);
+		} finally {
+			Utilities.close(is);
+		}
+	}
+
+	private static MessageDigest getMessageDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void update(MessageDigest md, int value) {
+		md.update((byte) value);
+		md.update((byte) (value >> 8));
+		md.update((byte) (value >> 16));
+		md.update((byte) (value >> 24));
+	}
+
+	private static void update(MessageDigest md, boolean value) {
+		md.update((byte) (value ? 1 : 0));
+	}
+
+	private static void update(MessageDigest md, String value) {
+		if (value == null) {
+			update(md, -1);
+		} else {
+			update(md, value.length());
+			for (int i = 0; i < value.length(); i++) {
+				update(md, value.charAt(i));
+			}
+		}
+	}
+
+	/**
+	 * Build the cache key for a code block.
+	 * The code block must have been analysed but not yet prepared
+	 * for the code generation.
+	 *
+	 * @param context    the compiler context used to generate the code block
+	 * @param codeBlock  the code block
+	 * @return           the cache key or null if the code block cannot be cached
+	 */
+	public String getKey(CompilerContext context, CodeBlock codeBlock) {
+		if (codeBlock.hasFlags(Instruction.FLAG_SYSCALL) || codeBlock.isHLEFunction()) {
+			return null;
+		}
+
+		MessageDigest md = getMessageDigest();
+
+		update(md, version);
+		md.update(configurationDigest);
+
+		// Settings having an influence on the code generation
+		update(md, codeBlock.getClassName());
+		update(md, context.getMethodMaxInstructions());
+		update(md, Profiler.isProfilerEnabled());
+		update(md, DurationStatistics.collectStatistics);
+		update(md, RuntimeContext.enableDebugger);
+		update(md, RuntimeContext.hasMemoryInt());
+		update(md, RuntimeContextLLE.getMMIO() != null);
+		update(md, Memory.getInstance().getClass().getName());
+		// The memory writes are tracked by the generated code
+		update(md, MemoryWriteTracker.isEnabled());
+
+		NativeCodeManager nativeCodeManager = context.getNativeCodeManager();
+		for (CodeInstruction codeInstruction : codeBlock.getCodeInstructions()) {
+			update(md, codeInstruction.getAddress());
+			update(md, codeInstruction.getOpcode());
+			update(md, codeInstruction.isBranchTarget());
+			update(md, codeInstruction.useMMIO());
+
+			// A call to a native code block is inlined by the compiler
+			if (codeInstruction.hasFlags(Instruction.FLAG_STARTS_NEW_BLOCK)) {
+				NativeCodeSequence nativeCodeSequence = nativeCodeManager.getCompiledNativeCodeBlock(codeInstruction.getBranchingTo());
+				update(md, nativeCodeSequence == null ? null : nativeCodeSequence.getName());
+			}
+		}
+
+		byte[] digest = md.digest();
+		char[] key = new char[digest.length * 2];
+		for (int i = 0; i < digest.length; i++) {
+			key[i * 2] = hexDigits[(digest[i] >> 4) & 0xF];
+			key[i * 2 + 1] = hexDigits[digest[i] & 0xF];
+		}
+
+		return new String(key);
+	}
+
+	private File getClassFile(String key) {
+		String directoryName = String.format("%s%s%c", Settings.getInstance().getDiscTmpDirectory(), classCacheDirectoryName, File.separatorChar);
+		return new File(directoryName + key + classFileExtension);
+	}
+
+	public byte[] read(String key) {
+		if (key == null) {
+			return null;
+		}
+
+		File file = getClassFile(key);
+		if (!file.canRead()) {
+			misses.incrementAndGet();
+			return null;
+		}
+
+		byte[] bytes = new byte[(int) file.length()];
+		InputStream is = null;
+		try {
+			is = new FileInputStream(file);
+			int offset = 0;
+			while (offset < bytes.length) {
+				int length = is.read(bytes, offset, bytes.length - offset);
+				if (length < 0) {
+					break;
+				}
+				offset += length;
+			}
+			if (offset < bytes.length) {
+				misses.incrementAndGet();
+				return null;
+			}
+		} catch (IOException e) {
+			log.error(String.format("CompilerClassCache.read %s", file), e);
+			misses.incrementAndGet();
+			return null;
+		} finally {
+			Utilities.close(is);
+		}
+
+		if (log.isDebugEnabled()) {
+			log.debug(String.format("CompilerClassCache hit %s", file));
+		}
+		hits.incrementAndGet();
+
+		return bytes;
+	}
+
+	public void write(String key, byte[] bytes) {
+		if (key == null || bytes == null) {
+			return;
+		}
+
+		File file = getClassFile(key);
+		file.getParentFile().mkdirs();
+
+		// Write first into a temporary file and rename it when complete
+		// so that a partially written class is never read.
+		File tmpFile = new File(file.getPath() + ".tmp");
+		OutputStream os = null;
+		try {
+			os = new FileOutputStream(tmpFile);
+			os.write(bytes);
+			os.close();
+			os = null;
+			if (tmpFile.renameTo(file)) {
+				writes.incrementAndGet();
+			} else {
+				tmpFile.delete();
+			}
+		} catch (IOException e) {
+			log.error(String.format("CompilerClassCache.write %s", file), e);
+		} finally {
+			Utilities.close(os);
+		}
+	}
+
+	public void remove(String key) {
+		if (key == null) {
+			return;
+		}
+
+		File file = getClassFile(key);
+		if (file.delete()) {
+			removes.incrementAndGet();
+			if (log.isDebugEnabled()) {
+				log.debug(String.format("CompilerClassCache removed %s", file));
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("CompilerClassCache hits=%d, misses=%d, writes=%d, removes=%d", hits.get(), misses.get(), writes.get(), removes.get());
+	}
+}
@@ -26,6 +26,12 @@ public class CompilerClassLoader extends ClassLoader {
     public static Logger log = Logger.getLogger("loader");
     private ICompiler compiler;
 
+    static {
+    	// Classes can be compiled by the background compiler threads
+    	// while the emulation thread is loading other classes.
+    	registerAsParallelCapable();
+    }
+
     public CompilerClassLoader(ICompiler compiler) {
         this.compiler = compiler;
     }
@@ -86,6 +86,7 @@ import jpcsp.HLE.Modules;
 import jpcsp.HLE.PspString;
 import jpcsp.HLE.SceKernelErrorException;
 import jpcsp.HLE.StringInfo;
+import jpcsp.HLE.SyscallProfiler;
 import jpcsp.HLE.TErrorPointer32;
 import jpcsp.HLE.TPointer;
 import jpcsp.HLE.TPointer16;
@@ -101,6 +102,7 @@ import jpcsp.HLE.kernel.types.pspAbstractMemoryMappedStructure;
 import jpcsp.HLE.modules.ThreadManForUser;
 import jpcsp.memory.DebuggerMemory;
 import jpcsp.memory.FastMemory;
+import jpcsp.memory.MemoryWriteTracker;
 import jpcsp.memory.SafeFastMemory;
 import jpcsp.util.ClassAnalyzer;
 import jpcsp.util.DurationStatistics;
@@ -173,11 +175,14 @@ public class CompilerContext implements ICompilerContext {
     private static final String memoryDescriptor = Type.getDescriptor(Memory.class);
     private static final String memoryInternalName = Type.getInternalName(Memory.class);
     private static final String profilerInternalName = Type.getInternalName(Profiler.class);
+    private static final String syscallProfilerInternalName = Type.getInternalName(SyscallProfiler.class);
+    private static final String memoryWriteTrackerInternalName = Type.getInternalName(MemoryWriteTracker.class);
 	public  static final String executableDescriptor = Type.getDescriptor(IExecutable.class);
 	public  static final String executableInternalName = Type.getInternalName(IExecutable.class);
 	public  static final String arraycopyDescriptor = "(" + Type.getDescriptor(Object.class) + "I" + Type.getDescriptor(Object.class) + "II)V";
-	private static Set<Integer> fastSyscalls;
+	private static volatile Set<Integer> fastSyscalls;
 	private int instanceIndex;
+	private boolean backgroundCompilation;
 	private NativeCodeSequence preparedCallNativeCodeBlock = null;
 	private int maxStackSize = DEFAULT_MAX_STACK_SIZE;
 	private int maxLocalSize = LOCAL_MAX;
@@ -199,29 +204,32 @@ public class CompilerContext implements ICompilerContext {
         }
 
         if (fastSyscalls == null) {
-	        fastSyscalls = new TreeSet<Integer>();
-	        addFastSyscall(0x3AD58B8C); // sceKernelSuspendDispatchThread
-	        addFastSyscall(0x110DEC9A); // sceKernelUSec2SysClock
-	        addFastSyscall(0xC8CD158C); // sceKernelUSec2SysClockWide
-	        addFastSyscall(0xBA6B92E2); // sceKernelSysClock2USec 
-	        addFastSyscall(0xE1619D7C); // sceKernelSysClock2USecWide 
-	        addFastSyscall(0xDB738F35); // sceKernelGetSystemTime
-	        addFastSyscall(0x82BC5777); // sceKernelGetSystemTimeWide
-	        addFastSyscall(0x369ED59D); // sceKernelGetSystemTimeLow
-	        addFastSyscall(0xB5F6DC87); // sceMpegRingbufferAvailableSize
-	        addFastSyscall(0xE0D68148); // sceGeListUpdateStallAddr
-	        addFastSyscall(0x34B9FA9E); // sceKernelDcacheWritebackInvalidateRange
-	        addFastSyscall(0xE47E40E4); // sceGeEdramGetAddr
-	        addFastSyscall(0x1F6752AD); // sceGeEdramGetSize
-	        addFastSyscall(0x74AE582A); // __sceSasGetEnvelopeHeight
-	        addFastSyscall(0x68A46B95); // __sceSasGetEndFlag
+        	// Contexts can be created concurrently by the background compiler threads:
+        	// publish the set only once it is complete.
+        	Set<Integer> syscalls = new TreeSet<Integer>();
+	        addFastSyscall(syscalls, 0x3AD58B8C); // sceKernelSuspendDispatchThread
+	        addFastSyscall(syscalls, 0x110DEC9A); // sceKernelUSec2SysClock
+	        addFastSyscall(syscalls, 0xC8CD158C); // sceKernelUSec2SysClockWide
+	        addFastSyscall(syscalls, 0xBA6B92E2); // sceKernelSysClock2USec 
+	        addFastSyscall(syscalls, 0xE1619D7C); // sceKernelSysClock2USecWide 
+	        addFastSyscall(syscalls, 0xDB738F35); // sceKernelGetSystemTime
+	        addFastSyscall(syscalls, 0x82BC5777); // sceKernelGetSystemTimeWide
+	        addFastSyscall(syscalls, 0x369ED59D); // sceKernelGetSystemTimeLow
+	        addFastSyscall(syscalls, 0xB5F6DC87); // sceMpegRingbufferAvailableSize
+	        addFastSyscall(syscalls, 0xE0D68148); // sceGeListUpdateStallAddr
+	        addFastSyscall(syscalls, 0x34B9FA9E); // sceKernelDcacheWritebackInvalidateRange
+	        addFastSyscall(syscalls, 0xE47E40E4); // sceGeEdramGetAddr
+	        addFastSyscall(syscalls, 0x1F6752AD); // sceGeEdramGetSize
+	        addFastSyscall(syscalls, 0x74AE582A); // __sceSasGetEnvelopeHeight
+	        addFastSyscall(syscalls, 0x68A46B95); // __sceSasGetEndFlag
+	        fastSyscalls = syscalls;
         }
     }
 
-    private void addFastSyscall(int nid) {
+    private static void addFastSyscall(Set<Integer> syscalls, int nid) {
     	int syscallCode = NIDMapper.getInstance().getSyscallByNid(nid);
     	if (syscallCode >= 0) {
-    		fastSyscalls.add(syscallCode);
+    		syscalls.add(syscallCode);
     	}
     }
 
@@ -241,6 +249,19 @@ public class CompilerContext implements ICompilerContext {
         this.codeBlock = codeBlock;
     }
 
+    /**
+     * @return true if the code blocks are compiled while the background
+     *         compilation is enabled: their classes are then named
+     *         using getBackgroundClassName()
+     */
+    public boolean isBackgroundCompilation() {
+    	return backgroundCompilation;
+    }
+
+    public void setBackgroundCompilation(boolean backgroundCompilation) {
+    	this.backgroundCompilation = backgroundCompilation;
+    }
+
     public NativeCodeManager getNativeCodeManager() {
     	return nativeCodeManager;
     }
@@ -905,7 +926,10 @@ public class CompilerContext implements ICompilerContext {
 
     public void visitCall(int address, String methodName) {
     	flushInstructionCount(false, false);
-        mv.visitMethodInsn(Opcodes.INVOKESTATIC, getClassName(address, instanceIndex), methodName, "()V");
+    	// The sequence methods are located in the class of the code block,
+    	// which is not the class used for the calls when compiled in background.
+    	String className = address == codeBlock.getStartAddress() ? codeBlock.getClassName() : getClassName(address, instanceIndex);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, className, methodName, "()V");
     }
 
     public void visitIntepreterCall(int opcode, Instruction insn) {
@@ -1733,6 +1757,9 @@ public class CompilerContext implements ICompilerContext {
      *         if (!fastSyscall) {
      *             RuntimeContext.preSyscall();
      *         }
+     *         if (SyscallProfiler.profilerEnabled) {
+     *             SyscallProfiler.startSyscall(func.getSyscallCode());
+     *         }
      *         if (func.checkInsideInterrupt()) {
      *             if (IntrManager.getInstance.isInsideInterrupt()) {
      *                 cpu.gpr[_v0] = SceKernelErrors.ERROR_KERNEL_CANNOT_BE_CALLED_FROM_INTERRUPT;
@@ -1771,11 +1798,17 @@ public class CompilerContext implements ICompilerContext {
      *             reload cpu.gpr[_ra]; // an exception is always clearing the whole stack
      *         }
      *         afterSyscall:
+     *         if (SyscallProfiler.profilerEnabled) {
+     *             SyscallProfiler.syscallExecuted();
+     *         }
      *         if (fastSyscall) {
      *             RuntimeContext.postSyscallFast();
      *         } else {
      *             RuntimeContext.postSyscall();
      *         }
+     *         if (SyscallProfiler.profilerEnabled) {
+     *             SyscallProfiler.endSyscall();
+     *         }
      *     } else {
      *         Modules.getLogger(func.getModuleName()).warn("<function name> is not supported in firmware version <firmwareVersion>, it requires at least firmware version <function firmwareVersion>");
      *         cpu.gpr[_v0] = -1;
@@ -1826,6 +1859,16 @@ public class CompilerContext implements ICompilerContext {
     		mv.visitMethodInsn(Opcodes.INVOKESTATIC, runtimeContextInternalName, "preSyscall", "()V");
     	}
 
+    	// if (SyscallProfiler.profilerEnabled) {
+    	//     SyscallProfiler.startSyscall(code);
+    	// }
+    	Label notProfilingStart = new Label();
+    	mv.visitFieldInsn(Opcodes.GETSTATIC, syscallProfilerInternalName, "profilerEnabled", "Z");
+    	mv.visitJumpInsn(Opcodes.IFEQ, notProfilingStart);
+    	loadImm(func.getSyscallCode());
+    	mv.visitMethodInsn(Opcodes.INVOKESTATIC, syscallProfilerInternalName, "startSyscall", "(I)V");
+    	mv.visitLabel(notProfilingStart);
+
     	Label afterSyscallLabel = new Label();
 
     	if (func.checkInsideInterrupt()) {
@@ -1981,12 +2024,30 @@ public class CompilerContext implements ICompilerContext {
 
     	mv.visitLabel(afterSyscallLabel);
 
+    	// if (SyscallProfiler.profilerEnabled) {
+    	//     SyscallProfiler.syscallExecuted();
+    	// }
+    	Label notProfilingExecuted = new Label();
+    	mv.visitFieldInsn(Opcodes.GETSTATIC, syscallProfilerInternalName, "profilerEnabled", "Z");
+    	mv.visitJumpInsn(Opcodes.IFEQ, notProfilingExecuted);
+    	mv.visitMethodInsn(Opcodes.INVOKESTATIC, syscallProfilerInternalName, "syscallExecuted", "()V");
+    	mv.visitLabel(notProfilingExecuted);
+
         if (fastSyscall) {
     		mv.visitMethodInsn(Opcodes.INVOKESTATIC, runtimeContextInternalName, "postSyscallFast", "()V");
         } else {
     		mv.visitMethodInsn(Opcodes.INVOKESTATIC, runtimeContextInternalName, "postSyscall", "()V");
         }
 
+    	// if (SyscallProfiler.profilerEnabled) {
+    	//     SyscallProfiler.endSyscall();
+    	// }
+    	Label notProfilingEnd = new Label();
+    	mv.visitFieldInsn(Opcodes.GETSTATIC, syscallProfilerInternalName, "profilerEnabled", "Z");
+    	mv.visitJumpInsn(Opcodes.IFEQ, notProfilingEnd);
+    	mv.visitMethodInsn(Opcodes.INVOKESTATIC, syscallProfilerInternalName, "endSyscall", "()V");
+    	mv.visitLabel(notProfilingEnd);
+
         if (needFirmwareVersionCheck) {
         	Label afterVersionCheckLabel = new Label();
         	mv.visitJumpInsn(Opcodes.GOTO, afterVersionCheckLabel);
@@ -2445,6 +2506,16 @@ public class CompilerContext implements ICompilerContext {
     	return String.format("_S1_%d_0x%08X", instanceIndex, address);
     }
 
+    /**
+     * Class name used for a code block compiled by a background compiler thread.
+     * The class name returned by getClassName() is then used by a stub class
+     * (see CodeBlockStub) delegating to this class, so that a call to
+     * a code block not yet compiled does not block the emulation thread.
+     */
+    public static String getBackgroundClassName(int address, int instanceIndex) {
+    	return String.format("_S2_%d_0x%08X", instanceIndex, address);
+    }
+
     public static int getClassAddress(String name) {
     	String hexAddress = name.substring(name.lastIndexOf("0x") + 2);
     	if (hexAddress.length() == 8) {
@@ -2744,6 +2815,30 @@ public class CompilerContext implements ICompilerContext {
 		}
 	}
 
+	/**
+	 * Store a value into memoryInt.
+	 * Stack before: memoryInt, index, value
+	 * Stack after: (empty)
+	 */
+	private void storeMemoryInt() {
+		if (MemoryWriteTracker.isEnabled()) {
+			// MemoryWriteTracker.writeIndex(index)
+			mv.visitInsn(Opcodes.DUP2);
+			mv.visitInsn(Opcodes.POP);
+			mv.visitMethodInsn(Opcodes.INVOKESTATIC, memoryWriteTrackerInternalName, "writeIndex", "(I)V");
+		}
+		mv.visitInsn(Opcodes.IASTORE);
+	}
+
+	/**
+	 * Mark as written the memoryInt elements.
+	 * Stack before: index, count
+	 * Stack after: (empty)
+	 */
+	private void trackMemoryIntWrite() {
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, memoryWriteTrackerInternalName, "writeIndex", "(II)V");
+	}
+
 	private boolean useMMIO() {
 		if (codeInstruction == null) {
 			return false;
@@ -2985,7 +3080,7 @@ public class CompilerContext implements ICompilerContext {
 		if (useMMIO() || !RuntimeContext.hasMemoryInt()) {
 	        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, memoryInternalName, "write32", "(II)V");
 		} else {
-			mv.visitInsn(Opcodes.IASTORE);
+			storeMemoryInt();
 		}
 
 		memWritePrepared = false;
@@ -3080,7 +3175,7 @@ public class CompilerContext implements ICompilerContext {
 			loadTmp1();
 			mv.visitInsn(Opcodes.ISHL);
 			mv.visitInsn(Opcodes.IOR);
-			mv.visitInsn(Opcodes.IASTORE);
+			storeMemoryInt();
 		}
 
 		memWritePrepared = false;
@@ -3175,7 +3270,7 @@ public class CompilerContext implements ICompilerContext {
 			loadTmp1();
 			mv.visitInsn(Opcodes.ISHL);
 			mv.visitInsn(Opcodes.IOR);
-			mv.visitInsn(Opcodes.IASTORE);
+			storeMemoryInt();
 		}
 
 		memWritePrepared = false;
@@ -3233,7 +3328,7 @@ public class CompilerContext implements ICompilerContext {
 			loadImm(-1);
 			mv.visitInsn(Opcodes.IXOR);
 			mv.visitInsn(Opcodes.IAND);
-			mv.visitInsn(Opcodes.IASTORE);
+			storeMemoryInt();
 		}
 	}
 
@@ -4255,6 +4350,12 @@ public class CompilerContext implements ICompilerContext {
     	loadImm(count);
     	mv.visitMethodInsn(Opcodes.INVOKESTATIC, Type.getInternalName(System.class), "arraycopy", arraycopyDescriptor);
 
+    	if (MemoryWriteTracker.isEnabled()) {
+    		prepareMemIndex(registerIndex, offset, false, 32);
+    		loadImm(count);
+    		trackMemoryIntWrite();
+    	}
+
     	return true;
 	}
 
@@ -4495,6 +4596,12 @@ public class CompilerContext implements ICompilerContext {
 	    	loadImm(copyLength);
 	    	mv.visitMethodInsn(Opcodes.INVOKESTATIC, Type.getInternalName(System.class), "arraycopy", arraycopyDescriptor);
 
+	    	if (MemoryWriteTracker.isEnabled()) {
+	    		prepareMemIndex(baseRegister, offset, false, 32);
+	    		loadImm(copyLength);
+	    		trackMemoryIntWrite();
+	    	}
+
 	    	length -= copyLength;
 	    	offset += copyLength;
 		} while (length > 0);
@@ -4550,6 +4657,23 @@ public class CompilerContext implements ICompilerContext {
     		}
     	}
 
+    	if (!isLW && MemoryWriteTracker.isEnabled()) {
+    		// The whole sequence is marked as written at once
+    		int minOffset = offset;
+    		int maxOffset = offset;
+    		for (int i = 0; i < offsets.length; i++) {
+    			minOffset = Math.min(minOffset, offsets[i]);
+    			maxOffset = Math.max(maxOffset, offsets[i]);
+    		}
+    		loadTmp1();
+    		if (minOffset != offset) {
+    			loadImm((minOffset - offset) >> 2);
+    			mv.visitInsn(Opcodes.IADD);
+    		}
+    		loadImm(((maxOffset - minOffset) >> 2) + 1);
+    		trackMemoryIntWrite();
+    	}
+
     	return true;
 	}
 
@@ -95,7 +95,7 @@ public class Profiler {
         List<Integer> sortedBackBranches = new ArrayList<Integer>(backBranchCounts.keySet());
         Collections.sort(sortedBackBranches, new BackBranchComparator());
 
-        List<CodeBlock> sortedCodeBlocks = new ArrayList<CodeBlock>(RuntimeContext.getCodeBlocks().values());
+        List<CodeBlock> sortedCodeBlocks = RuntimeContext.getCodeBlocks();
         Collections.sort(sortedCodeBlocks, new CodeBlockComparator());
 
         long allCycles = 0;
@@ -278,7 +278,7 @@ public class Profiler {
         }
     }
 
-    public static void addCompilation(long compilationTimeMicros) {
+    public static synchronized void addCompilation(long compilationTimeMicros) {
     	compilationCount++;
     	Profiler.compilationTimeMicros += compilationTimeMicros;
     	if (compilationTimeMicros > longestCompilationTimeMicros) {
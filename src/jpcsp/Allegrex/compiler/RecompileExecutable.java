@@ -38,7 +38,14 @@ public class RecompileExecutable extends InvalidatedExecutable {
 	public int exec() throws Exception {
 		// Recompile the codeBlock
 		int newInstanceIndex = codeBlock.getNewInstanceIndex();
-		IExecutable executable = Compiler.getInstance().compile(codeBlock.getStartAddress(), newInstanceIndex);
+		Compiler compiler = Compiler.getInstance();
+		IExecutable executable;
+		if (compiler.isBackgroundCompilationEnabled()) {
+			// The codeBlock is interpreted until it has been recompiled
+			executable = compiler.compileInBackground(codeBlock.getStartAddress(), newInstanceIndex);
+		} else {
+			executable = compiler.compile(codeBlock.getStartAddress(), newInstanceIndex);
+		}
 
 		// Set the executable used at runtime to the recompiled executable.
 		codeBlock.getExecutable().setExecutable(executable);
@@ -30,6 +30,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import jpcsp.DeterministicClock;
 import jpcsp.Emulator;
 import jpcsp.Memory;
 import jpcsp.MemoryMap;
@@ -96,15 +97,14 @@ public class RuntimeContext {
 	public  static final boolean checkCodeModification = false;
 	private static final boolean invalidateAllCodeBlocks = false;
 	private static final int idleSleepMicros = 1000;
-	private static final Map<Integer, CodeBlock> codeBlocks = Collections.synchronizedMap(new HashMap<Integer, CodeBlock>());
-	private static int codeBlocksLowestAddress = Integer.MAX_VALUE;
-	private static int codeBlocksHighestAddress = Integer.MIN_VALUE;
+	// All the accesses to codeBlocks and codeBlocksIndex are synchronized on codeBlocks
+	private static final CodeBlockMap codeBlocks = new CodeBlockMap();
+	// Index of the non-internal code blocks by address range (used by the Allegrex instruction ICACHE HIT INVALIDATE)
+	private static final CodeBlockIntervalTree codeBlocksIndex = new CodeBlockIntervalTree();
+	// List reused by invalidateRange(), synchronized on codeBlocks
+	private static List<CodeBlock> invalidateRangeCodeBlocks = new ArrayList<CodeBlock>();
 	// A fast lookup array for executables (to improve the performance of the Allegrex instruction jalr)
 	private static IExecutable[] fastExecutableLookup;
-	// A fast lookup for the Allegrex instruction ICACHE HIT INVALIDATE
-	private static CodeBlockList[] fastCodeBlockLookup;
-	private static final int fastCodeBlockLookupShift = 8;
-	private static final int fastCodeBlockSize = 64; // Matching the size used by the Allegrex instruction ICACHE HIT INVALIDATE
 	private static final Map<SceKernelThreadInfo, RuntimeThread> threads = Collections.synchronizedMap(new HashMap<SceKernelThreadInfo, RuntimeThread>());
 	private static final Map<SceKernelThreadInfo, RuntimeThread> toBeStoppedThreads = Collections.synchronizedMap(new HashMap<SceKernelThreadInfo, RuntimeThread>());
 	private static final Map<SceKernelThreadInfo, RuntimeThread> alreadyStoppedThreads = Collections.synchronizedMap(new HashMap<SceKernelThreadInfo, RuntimeThread>());
@@ -125,6 +125,8 @@ public class RuntimeContext {
 	private static RuntimeThread syscallRuntimeThread;
 	private static sceDisplay sceDisplayModule;
 	private static final Object idleSyncObject = new Object();
+	// Whether a thread is waiting on the idleSyncObject
+	private static volatile boolean idleWaiting = false;
 	public static int firmwareVersion;
 	private static boolean isHomebrew = false;
 
@@ -135,10 +137,6 @@ public class RuntimeContext {
 		}
 	}
 
-	private static class CodeBlockList extends LinkedList<CodeBlock> {
-		private static final long serialVersionUID = 7370950118403866860L;
-	}
-
 	private static void setCompilerEnabled(boolean enabled) {
 		compilerEnabled = enabled;
 	}
@@ -254,7 +252,20 @@ public class RuntimeContext {
 		cpu.pc = address;
 		int returnValue = 0;
 		while (interpret) {
+			int insnAddress = cpu.pc;
 			Instruction insn = processor.interpret();
+			// Back branch? i.e. probably a loop: sync like the compiled code
+			// (see CompilerContext.visitJump()), e.g. for a code block interpreted
+			// while being compiled in background.
+			if (cpu.pc <= insnAddress && enableDaemonThreadSync && wantSync && !insn.hasFlags(Instruction.FLAG_STARTS_NEW_BLOCK)) {
+				if (useMMIO) {
+					cpu.setMemory(memory);
+				}
+				sync();
+				if (useMMIO) {
+					cpu.setMemory(RuntimeContextLLE.getMMIO());
+				}
+			}
 			if (insn.hasFlags(Instruction.FLAG_STARTS_NEW_BLOCK)) {
 				if (useMMIO) {
 					cpu.setMemory(memory);
@@ -388,7 +399,6 @@ public class RuntimeContext {
         sceDisplayModule = Modules.sceDisplayModule;
 
         fastExecutableLookup = new IExecutable[MemoryMap.SIZE_RAM >> 2];
-        fastCodeBlockLookup = new CodeBlockList[MemoryMap.SIZE_RAM >> fastCodeBlockLookupShift];
 
 		return true;
     }
@@ -569,7 +579,11 @@ public class RuntimeContext {
 					// This is for example the case when a GE list is ending (FINISH/SIGNAL + END)
 					// and a GE callback has to be executed immediately.
 					long delay = scheduler.getNextActionDelay(idleSleepMicros);
-					if (delay > 0) {
+					if (delay > 0 && Emulator.getClock() instanceof DeterministicClock) {
+						// The time is not related to the host time,
+						// skip immediately to the next scheduler action.
+						((DeterministicClock) Emulator.getClock()).advance(delay * 1000L);
+					} else if (delay > 0) {
 						int intDelay;
 						if (delay >= idleSleepMicros) {
 							intDelay = idleSleepMicros;
@@ -582,7 +596,9 @@ public class RuntimeContext {
 							// The wait state will be terminated whenever the scheduler
 							// is receiving a new scheduler action (see onNextScheduleModified()).
 							synchronized (idleSyncObject) {
+								idleWaiting = true;
 								idleSyncObject.wait(intDelay / 1000, intDelay % 1000);
+								idleWaiting = false;
 							}
 						} catch (InterruptedException e) {
 							// Ignore exception
@@ -901,65 +917,46 @@ public class RuntimeContext {
 		}
     }
 
-    private static void computeCodeBlocksRange() {
-    	codeBlocksLowestAddress = Integer.MAX_VALUE;
-    	codeBlocksHighestAddress = Integer.MIN_VALUE;
-    	for (CodeBlock codeBlock : codeBlocks.values()) {
-    		if (!codeBlock.isInternal()) {
-	    		codeBlocksLowestAddress = Math.min(codeBlocksLowestAddress, codeBlock.getLowestAddress());
-	    		codeBlocksHighestAddress = Math.max(codeBlocksHighestAddress, codeBlock.getHighestAddress());
-    		}
-    	}
-    }
-
     public static void addCodeBlock(int address, CodeBlock codeBlock) {
-    	CodeBlock previousCodeBlock = codeBlocks.put(address, codeBlock);
-
-    	if (!codeBlock.isInternal()) {
-	    	if (previousCodeBlock != null) {
-	    		// One code block has been deleted, recompute the whole code blocks range
-	    		computeCodeBlocksRange();
+    	synchronized (codeBlocks) {
+	    	CodeBlock previousCodeBlock = codeBlocks.put(address, codeBlock);
 
-	    		int fastExecutableLoopukIndex = (address - MemoryMap.START_RAM) >> 2;
-	    		if (fastExecutableLoopukIndex >= 0 && fastExecutableLoopukIndex < fastExecutableLookup.length) {
-	    			fastExecutableLookup[fastExecutableLoopukIndex] = null;
-	    		}
-	    	} else {
-	    		// One new code block has been added, update the code blocks range
-	    		codeBlocksLowestAddress = Math.min(codeBlocksLowestAddress, codeBlock.getLowestAddress());
-	    		codeBlocksHighestAddress = Math.max(codeBlocksHighestAddress, codeBlock.getHighestAddress());
+	    	if (previousCodeBlock != null && !previousCodeBlock.isInternal()) {
+	    		codeBlocksIndex.remove(previousCodeBlock);
 	    	}
 
-	    	int startIndex = (codeBlock.getLowestAddress() - MemoryMap.START_RAM) >> fastCodeBlockLookupShift;
-    		int endIndex = (codeBlock.getHighestAddress() - MemoryMap.START_RAM) >> fastCodeBlockLookupShift;
-    		for (int i = startIndex; i <= endIndex; i++) {
-    			if (i >= 0 && i < fastCodeBlockLookup.length) {
-    				CodeBlockList codeBlockList = fastCodeBlockLookup[i];
-    				if (codeBlockList != null) {
-    					if (previousCodeBlock != null) {
-    						codeBlockList.remove(previousCodeBlock);
-    					}
-    					int addr = (i << fastCodeBlockLookupShift) + MemoryMap.START_RAM;
-    					int size = 1 << fastCodeBlockLookupShift;
-    					if (codeBlock.isOverlappingWithAddressRange(addr, size)) {
-    						codeBlockList.add(codeBlock);
-    					}
-    				}
-    			}
-    		}
+	    	if (!codeBlock.isInternal()) {
+	    		codeBlocksIndex.add(codeBlock);
+
+		    	if (previousCodeBlock != null) {
+		    		int fastExecutableLoopukIndex = (address - MemoryMap.START_RAM) >> 2;
+		    		if (fastExecutableLookup != null && fastExecutableLoopukIndex >= 0 && fastExecutableLoopukIndex < fastExecutableLookup.length) {
+		    			fastExecutableLookup[fastExecutableLoopukIndex] = null;
+		    		}
+		    	}
+	    	}
     	}
     }
 
     public static CodeBlock getCodeBlock(int address) {
-	    return codeBlocks.get(address);
+    	synchronized (codeBlocks) {
+    		return codeBlocks.get(address);
+    	}
 	}
 
     public static boolean hasCodeBlock(int address) {
-        return codeBlocks.containsKey(address);
+    	synchronized (codeBlocks) {
+    		return codeBlocks.containsKey(address);
+    	}
     }
 
-    public static Map<Integer, CodeBlock> getCodeBlocks() {
-    	return codeBlocks;
+    /**
+     * @return a snapshot of all the code blocks
+     */
+    public static List<CodeBlock> getCodeBlocks() {
+    	synchronized (codeBlocks) {
+    		return codeBlocks.values();
+    	}
     }
 
     public static IExecutable getExecutable(int address) {
@@ -975,12 +972,21 @@ public class RuntimeContext {
 
 		if (executable == null) {
 	        CodeBlock codeBlock = getCodeBlock(maskedAddress);
-	        if (codeBlock == null) {
-	            executable = Compiler.getInstance().compile(address);
-	        } else {
+	        if (codeBlock != null) {
 	            executable = codeBlock.getExecutable();
 	        }
 
+	        // The code block could still be in the process of being
+	        // compiled by a background compiler thread.
+	        if (executable == null) {
+	        	Compiler compiler = Compiler.getInstance();
+	        	if (compiler.isBackgroundCompilationEnabled()) {
+	        		executable = compiler.compileInBackground(address);
+	        	} else {
+	        		executable = compiler.compile(address);
+	        	}
+	        }
+
 	        // Store the executable in the fastExecutableLookup array
 			if (fastExecutableLoopukIndex >= 0 && fastExecutableLoopukIndex < fastExecutableLookup.length) {
 	    		fastExecutableLookup[fastExecutableLoopukIndex] = executable;
@@ -990,6 +996,25 @@ public class RuntimeContext {
         return executable;
     }
 
+    /**
+     * Replace the executable stored in the fastExecutableLookup array,
+     * but only if it has not been changed in the meantime.
+     *
+     * @param address             the code block start address
+     * @param previousExecutable  the executable expected to be currently stored
+     * @param executable          the new executable
+     */
+    public static void replaceExecutable(int address, IExecutable previousExecutable, IExecutable executable) {
+		int fastExecutableLoopukIndex = ((address & addressMask) - MemoryMap.START_RAM) >> 2;
+		if (fastExecutableLookup != null && fastExecutableLoopukIndex >= 0 && fastExecutableLoopukIndex < fastExecutableLookup.length) {
+			synchronized (fastExecutableLookup) {
+				if (fastExecutableLookup[fastExecutableLoopukIndex] == previousExecutable) {
+					fastExecutableLookup[fastExecutableLoopukIndex] = executable;
+				}
+			}
+		}
+    }
+
     public static void start() {
     	Settings.getInstance().registerSettingsListener("RuntimeContext", "emu.compiler", new CompilerEnabledSettingsListerner());
     }
@@ -1171,13 +1196,13 @@ public class RuntimeContext {
     	if (compilerEnabled) {
     		log.debug("RuntimeContext.reset");
     		Compiler.getInstance().reset();
-    		codeBlocks.clear();
+    		synchronized (codeBlocks) {
+    			codeBlocks.clear();
+    			codeBlocksIndex.clear();
+    		}
     		if (fastExecutableLookup != null) {
     			Arrays.fill(fastExecutableLookup, null);
     		}
-    		if (fastCodeBlockLookup != null) {
-    			Arrays.fill(fastCodeBlockLookup, null);
-    		}
     		currentThread = null;
     		currentRuntimeThread = null;
     		reset = true;
@@ -1194,9 +1219,11 @@ public class RuntimeContext {
     			// Simple method: invalidate all the code blocks,
     			// independently if their were modified or not.
         		log.debug("RuntimeContext.invalidateAll simple");
-                codeBlocks.clear();
+        		synchronized (codeBlocks) {
+        			codeBlocks.clear();
+        			codeBlocksIndex.clear();
+        		}
         		Arrays.fill(fastExecutableLookup, null);
-    			Arrays.fill(fastCodeBlockLookup, null);
                 Compiler.getInstance().invalidateAll();
     		} else {
     			// Advanced method: check all the code blocks for a modification
@@ -1204,7 +1231,7 @@ public class RuntimeContext {
     			// have been modified.
         		log.debug("RuntimeContext.invalidateAll advanced");
         		Compiler compiler = Compiler.getInstance();
-	    		for (CodeBlock codeBlock : codeBlocks.values()) {
+        		for (CodeBlock codeBlock : getCodeBlocks()) {
 	    			if (log.isDebugEnabled()) {
 	    				log.debug(String.format("invalidateAll %s: opcodes changed %b", codeBlock, codeBlock.areOpcodesChanged()));
 	    			}
@@ -1212,42 +1239,11 @@ public class RuntimeContext {
 	    			if (codeBlock.areOpcodesChanged()) {
 	    				compiler.invalidateCodeBlock(codeBlock);
 	    			}
-	    		}
-    		}
-    	}
-    }
-
-    private static void invalidateRangeFullCheck(int addr, int size) {
-		Compiler compiler = Compiler.getInstance();
-    	for (CodeBlock codeBlock : codeBlocks.values()) {
-			if (size == 0x4000 && codeBlock.getHighestAddress() >= addr) {
-    			// Some applications do not clear more than 16KB as this is the size of the complete Instruction Cache.
-    			// Be conservative in this case and check any code block above the given address.
-				compiler.checkCodeBlockValidity(codeBlock);
-			} else if (codeBlock.isOverlappingWithAddressRange(addr, size)) {
-				compiler.checkCodeBlockValidity(codeBlock);
+        		}
     		}
     	}
     }
 
-    private static CodeBlockList fillFastCodeBlockList(int index) {
-		int startAddr = (index << fastCodeBlockLookupShift)  + MemoryMap.START_RAM;
-		int size = 1 << fastCodeBlockLookupShift;
-		if (log.isDebugEnabled()) {
-			log.debug(String.format("Creating new fastCodeBlockList for 0x%08X", startAddr));
-		}
-
-		CodeBlockList codeBlockList = new CodeBlockList();
-		for (CodeBlock codeBlock : codeBlocks.values()) {
-			if (codeBlock.isOverlappingWithAddressRange(startAddr, size)) {
-				codeBlockList.add(codeBlock);
-			}
-		}
-		fastCodeBlockLookup[index] = codeBlockList;
-
-		return codeBlockList;
-    }
-
     public static void invalidateRange(int addr, int size) {
         if (compilerEnabled) {
         	addr &= Memory.addressMask;
@@ -1256,40 +1252,33 @@ public class RuntimeContext {
         		log.debug(String.format("RuntimeContext.invalidateRange(addr=0x%08X, size=%d)", addr, size));
         	}
 
-        	// Fast check: if the address range is outside the largest code blocks range,
-        	// there is noting to do.
-        	if (addr + size < codeBlocksLowestAddress || addr > codeBlocksHighestAddress) {
-        		return;
-        	}
+        	synchronized (codeBlocks) {
+        		// Reuse the same list, except when being called recursively
+        		// while processing the list (e.g. from an updateOpcodesAction).
+        		List<CodeBlock> list = invalidateRangeCodeBlocks;
+        		invalidateRangeCodeBlocks = null;
+        		if (list == null) {
+        			list = new ArrayList<CodeBlock>();
+        		}
 
-        	// Check if the code blocks located in the given range have to be invalidated
-        	if (size == fastCodeBlockSize) {
-        		// This is a fast track to avoid checking all the code blocks
-        		int startIndex = (addr - MemoryMap.START_RAM) >> fastCodeBlockLookupShift;
-				int endIndex = (addr + size - MemoryMap.START_RAM) >> fastCodeBlockLookupShift;
-				if (startIndex >= 0 && endIndex <= fastCodeBlockLookup.length) {
-					for (int index = startIndex; index <= endIndex; index++) {
-	        			CodeBlockList codeBlockList = fastCodeBlockLookup[index];
-	        			if (codeBlockList == null) {
-	        				codeBlockList = fillFastCodeBlockList(index);
-	        			} else {
-	        				if (log.isDebugEnabled()) {
-	        					log.debug(String.format("Reusing fastCodeBlockList for 0x%08X (size=%d)", addr, codeBlockList.size()));
-	        				}
-	        			}
-
-	            		Compiler compiler = Compiler.getInstance();
-	            		for (CodeBlock codeBlock : codeBlockList) {
-	            			if (codeBlock.isOverlappingWithAddressRange(addr, size)) {
-	            				compiler.checkCodeBlockValidity(codeBlock);
-	            			}
-	            		}
-					}
+        		if (size == 0x4000) {
+        			// Some applications do not clear more than 16KB as this is the size of the complete Instruction Cache.
+        			// Be conservative in this case and check any code block above the given address.
+        			codeBlocksIndex.find(addr, Integer.MAX_VALUE, list);
         		} else {
-            		invalidateRangeFullCheck(addr, size);
+        			codeBlocksIndex.find(addr, addr + size - 1, list);
         		}
-        	} else {
-        		invalidateRangeFullCheck(addr, size);
+
+        		// Check if the code blocks located in the given range have to be invalidated
+        		Compiler compiler = Compiler.getInstance();
+        		for (CodeBlock codeBlock : list) {
+        			if (size == 0x4000 || codeBlock.isOverlappingWithAddressRange(addr, size)) {
+        				compiler.checkCodeBlockValidity(codeBlock);
+        			}
+        		}
+
+        		list.clear();
+        		invalidateRangeCodeBlocks = list;
         	}
     	}
     }
@@ -1475,13 +1464,18 @@ public class RuntimeContext {
 
     	// Notify the thread waiting on the idleSyncObject that
     	// the scheduler has now received a new schedule.
-    	synchronized (idleSyncObject) {
-        	idleSyncObject.notifyAll();
-		}
+    	// Do not take the idleSyncObject lock when no thread is waiting.
+    	if (idleWaiting) {
+	    	synchronized (idleSyncObject) {
+	        	idleSyncObject.notifyAll();
+			}
+    	}
     }
 
     private static void checkSync(boolean sleep) {
-    	long delay = Emulator.getScheduler().getNextActionDelay(idleSleepMicros);
+    	// Do not take the Scheduler lock, this is also called
+    	// by the threads adding actions to the Scheduler
+    	long delay = Emulator.getScheduler().getNextActionDelayNoLock(idleSleepMicros);
     	if (delay > 0) {
     		if (sleep) {
 	    		int intDelay = (int) delay;
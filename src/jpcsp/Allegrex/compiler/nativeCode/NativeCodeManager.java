@@ -55,7 +55,7 @@ public class NativeCodeManager {
 		load(configuration);
 	}
 
-	public void reset() {
+	public synchronized void reset() {
 		compiledNativeCodeBlocks.clear();
 	}
 
@@ -318,15 +318,15 @@ public class NativeCodeManager {
 		}
 	}
 
-	public void setCompiledNativeCodeBlock(int address, NativeCodeSequence nativeCodeBlock) {
+	public synchronized void setCompiledNativeCodeBlock(int address, NativeCodeSequence nativeCodeBlock) {
 		compiledNativeCodeBlocks.put(address, nativeCodeBlock);
 	}
 
-	public NativeCodeSequence getCompiledNativeCodeBlock(int address) {
+	public synchronized NativeCodeSequence getCompiledNativeCodeBlock(int address) {
 		return compiledNativeCodeBlocks.get(address);
 	}
 
-	public void invalidateCompiledNativeCodeBlocks(int startAddress, int endAddress) {
+	public synchronized void invalidateCompiledNativeCodeBlocks(int startAddress, int endAddress) {
 		// Most common case: nothing to do.
 		if (compiledNativeCodeBlocks.size() == 0) {
 			return;
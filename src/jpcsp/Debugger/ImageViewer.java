@@ -21,6 +21,7 @@ import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Insets;
 import java.awt.event.KeyEvent;
+import java.nio.IntBuffer;
 
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
@@ -33,7 +34,6 @@ import jpcsp.Memory;
 import jpcsp.MemoryMap;
 import jpcsp.WindowPropSaver;
 import jpcsp.graphics.GeCommands;
-import jpcsp.memory.IMemoryReader;
 import jpcsp.memory.ImageReader;
 
 public class ImageViewer extends javax.swing.JFrame {
@@ -162,11 +162,12 @@ public class ImageViewer extends javax.swing.JFrame {
                 g.setColor(backgroundColors[backgroundColor]);
                 g.fillRect(insets.left, insets.top, minWidth, imageHeight);
 
-                IMemoryReader imageReader = ImageReader.getImageReader(startAddress, imageWidth, imageHeight, bufferWidth, pixelFormat, imageSwizzle, clutAddress, clutFormat, clutNumberBlocks, clutStart, clutShift, clutMask, null, null);
+                int[] image = new int[minWidth * imageHeight];
+                ImageReader.readImage(IntBuffer.wrap(image), startAddress, imageWidth, imageHeight, bufferWidth, pixelFormat, imageSwizzle, clutAddress, clutFormat, clutNumberBlocks, clutStart, clutShift, clutMask, null, null);
 
-                for (int y = 0; y < imageHeight; y++) {
-                    for (int x = 0; x < minWidth; x++) {
-                        int colorABGR = imageReader.readNext();
+                for (int y = 0, i = 0; y < imageHeight; y++) {
+                    for (int x = 0; x < minWidth; x++, i++) {
+                        int colorABGR = image[i];
                         int colorARGB = ImageReader.colorABGRtoARGB(colorABGR);
                         g.setColor(new Color(colorARGB, useAlpha));
 
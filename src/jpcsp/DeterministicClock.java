@@ -0,0 +1,71 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp;
+
+/**
+ * A PSP Clock independent from the host time, so that repeated runs
+ * of the same application are seeing the same time values.
+ * 
+ * The time is advancing by a fixed amount each time it is read,
+ * and can be advanced explicitly, e.g. to skip the time while the PSP is idle.
+ * The current date is starting at a fixed value.
+ * 
+ * @author gid15
+ *
+ */
+public class DeterministicClock extends Clock {
+	private long startTimeMillis;
+	private long nanosPerRead;
+	// Not initialized, as already used by the parent constructor
+	private long systemNanoTime;
+
+	/**
+	 * @param startTimeMillis  the current date at the clock start,
+	 *                         in milliseconds since 1970-01-01
+	 * @param nanosPerRead     the number of nanoseconds the clock
+	 *                         is advancing each time it is read
+	 */
+	public DeterministicClock(long startTimeMillis, long nanosPerRead) {
+		this.startTimeMillis = startTimeMillis;
+		this.nanosPerRead = nanosPerRead;
+
+		// The parent constructor has been called before our fields were set
+		reset();
+	}
+
+	/**
+	 * Advance the clock.
+	 * 
+	 * @param nanos  the number of nanoseconds to be added to the clock
+	 */
+	public synchronized void advance(long nanos) {
+		if (nanos > 0) {
+			systemNanoTime += nanos;
+		}
+	}
+
+	@Override
+	protected synchronized long getSystemNanoTime() {
+		systemNanoTime += nanosPerRead;
+		return systemNanoTime;
+	}
+
+	@Override
+	protected synchronized long getSystemMilliTime() {
+		return startTimeMillis + systemNanoTime / 1000000L;
+	}
+}
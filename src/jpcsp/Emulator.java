@@ -31,6 +31,7 @@ import jpcsp.GUI.IMainGUI;
 import jpcsp.HLE.HLEModuleManager;
 import jpcsp.HLE.HLEUidObjectMapping;
 import jpcsp.HLE.Modules;
+import jpcsp.HLE.SyscallProfiler;
 import jpcsp.HLE.kernel.Managers;
 import jpcsp.HLE.kernel.managers.SceUidManager;
 import jpcsp.HLE.kernel.types.SceModule;
@@ -46,6 +47,7 @@ import jpcsp.graphics.RE.software.RendererExecutor;
 import jpcsp.graphics.textures.TextureCache;
 import jpcsp.hardware.Battery;
 import jpcsp.hardware.Wlan;
+import jpcsp.media.codec.DecodedFrameCache;
 import jpcsp.memory.MemorySections;
 import jpcsp.network.proonline.ProOnlineNetworkAdapter;
 import jpcsp.scheduler.Scheduler;
@@ -97,18 +99,18 @@ public class Emulator implements Runnable {
 
     @SuppressWarnings("unused")
 	public static void exit() {
-        if (DurationStatistics.collectStatistics) {
-            log.info(TextureCache.getInstance().statistics);
-        }
+        TextureCache.getInstance().exit();
         RendererExecutor.exit();
         VertexCache.getInstance().exit();
         Compiler.exit();
         RuntimeContext.exit();
         Profiler.exit();
         GEProfiler.exit();
+        SyscallProfiler.exit();
         BaseRenderer.exit();
         BasePrimitiveRenderer.exit();
         ExternalGE.exit();
+        DecodedFrameCache.exit();
         if (DurationStatistics.collectStatistics && Modules.ThreadManForUserModule.statistics != null && Modules.sceDisplayModule.statistics != null) {
             long totalMillis = getClock().milliTime();
             long displayMillis = Modules.sceDisplayModule.statistics.cumulatedTimeMillis;
@@ -270,6 +272,7 @@ public class Emulator implements Runnable {
         RuntimeContext.start();
         RuntimeContextLLE.start();
         GEProfiler.initialise();
+        SyscallProfiler.initialise();
 
         clock.resume();
 
@@ -438,7 +441,10 @@ public class Emulator implements Runnable {
     }
 
     public static void setVariableSpeedClock(int numerator, int denominator) {
-        if (getClock() instanceof VariableSpeedClock) {
+        if (getClock() instanceof DeterministicClock) {
+            // The deterministic clock is not related to the host time,
+            // changing its speed has no meaning.
+        } else if (getClock() instanceof VariableSpeedClock) {
             // Update the speed of the current variable speed clock
             ((VariableSpeedClock) getClock()).setSpeed(numerator, denominator);
         } else if (numerator != 1 || denominator != 1) {
@@ -448,6 +454,14 @@ public class Emulator implements Runnable {
         }
     }
 
+    /**
+     * Use a clock independent from the host time.
+     * See DeterministicClock.
+     */
+    public static void setDeterministicClock(long startTimeMillis, long nanosPerRead) {
+        setClock(new DeterministicClock(startTimeMillis, nanosPerRead));
+    }
+
     public void setModuleLoaded(boolean moduleLoaded) {
     	this.moduleLoaded = moduleLoaded;
     }
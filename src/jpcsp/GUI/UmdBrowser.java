@@ -70,7 +70,7 @@ public class UmdBrowser extends javax.swing.JDialog {
         @Override
         public boolean accept(File file) {
             String lower = file.getName().toLowerCase();
-            if (lower.endsWith(".cso") || lower.endsWith(".iso")) {
+            if (lower.endsWith(".cso") || lower.endsWith(".zso") || lower.endsWith(".iso")) {
                 return true;
             }
             if (file.isDirectory()) {
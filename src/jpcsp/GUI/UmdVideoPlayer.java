@@ -81,6 +81,7 @@ import jpcsp.hardware.Screen;
 import jpcsp.media.codec.CodecFactory;
 import jpcsp.media.codec.ICodec;
 import jpcsp.media.codec.IVideoCodec;
+import jpcsp.media.codec.h264.H264ImageConverter;
 import jpcsp.media.codec.h264.H264Utils;
 import jpcsp.memory.IMemoryReader;
 import jpcsp.memory.IMemoryWriter;
@@ -1237,7 +1238,7 @@ public class UmdVideoPlayer implements KeyListener {
 	    		abgr = resize(abgr, size);
 	    		// TODO How to find out if we have a YUVJ image?
 	    		// H264Utils.YUVJ2YUV(luma, luma, size);
-	    		H264Utils.YUV2ARGB(width, height, luma, cb, cr, abgr);
+	    		H264ImageConverter.YUV2ARGB(width, height, luma, cb, cr, abgr);
 	    		image = display.createImage(new MemoryImageSource(videoWidth, videoHeight, abgr, 0, width));
 
 	    		long now = System.currentTimeMillis();
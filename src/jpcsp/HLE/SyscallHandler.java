@@ -204,6 +204,15 @@ public class SyscallHandler {
     	}
 
     	// All HLE syscalls are now implemented natively in the compiler
+    	if (SyscallProfiler.profilerEnabled) {
+    		SyscallProfiler.startSyscall(code);
+    		try {
+    			return unsupportedSyscall(code);
+    		} finally {
+    			SyscallProfiler.endSyscall();
+    		}
+    	}
+
 		return unsupportedSyscall(code);
     }
 }
\ No newline at end of file
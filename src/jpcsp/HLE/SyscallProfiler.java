@@ -0,0 +1,290 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.HLE;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import jpcsp.NIDMapper;
+import jpcsp.settings.AbstractBoolSettingsListener;
+import jpcsp.settings.Settings;
+import jpcsp.util.metrics.Histogram;
+import jpcsp.util.metrics.MetricsRegistry;
+
+/**
+ * Profiler for the HLE syscalls: number of calls and latency distribution
+ * of each HLE function, split into
+ * - the time spent executing the HLE function itself,
+ * - the time spent blocked after the HLE function has returned, i.e.
+ *   waiting for the calling thread to be scheduled again (e.g. after
+ *   sceKernelDelayThread or sceDisplayWaitVblankStart).
+ *
+ * The compiled code is always calling startSyscall/syscallExecuted/endSyscall
+ * when profilerEnabled is set, so that the profiler can be toggled at any time
+ * using the setting "emu.syscallProfiler" or the HTTPServer ("/syscalls?enable=true").
+ * The syscalls executed through SyscallHandler.syscall (interpreter, syscalls
+ * without HLE function, overwritten syscalls) are profiled as well.
+ * The latencies are also exposed as histograms through the MetricsRegistry.
+ *
+ * @author gid15
+ *
+ */
+public class SyscallProfiler {
+	public static Logger log = Logger.getLogger("profiler");
+	// Read by the compiled code around each syscall
+	public static volatile boolean profilerEnabled = false;
+	public static final int defaultTopCount = 20;
+	private static final int maxNestedSyscalls = 16;
+	private static ProfilerEnabledSettingsListerner profilerEnabledSettingsListerner;
+	private static SyscallInfo[] syscallInfos = new SyscallInfo[0x1000];
+	// Incremented each time the profiler is enabled,
+	// to discard the syscalls started before.
+	private static volatile int generation;
+	private static final ThreadLocal<ThreadState> threadStates = new ThreadLocal<ThreadState>() {
+		@Override
+		protected ThreadState initialValue() {
+			return new ThreadState();
+		}
+	};
+
+	private static class ProfilerEnabledSettingsListerner extends AbstractBoolSettingsListener {
+		@Override
+		protected void settingsValueChanged(boolean value) {
+			setProfilerEnabled(value);
+		}
+	}
+
+	private static class SyscallInfo {
+		public final String moduleName;
+		public final String functionName;
+		public final Histogram executionDuration;
+		public final Histogram blockedDuration;
+
+		public SyscallInfo(String moduleName, String functionName) {
+			this.moduleName = moduleName;
+			this.functionName = functionName;
+			MetricsRegistry registry = MetricsRegistry.getInstance();
+			executionDuration = registry.register(new Histogram("jpcsp_syscall_duration_seconds", "Time spent executing an HLE function", "module", moduleName, "function", functionName));
+			blockedDuration = registry.register(new Histogram("jpcsp_syscall_blocked_seconds", "Time spent blocked after the execution of an HLE function", "module", moduleName, "function", functionName));
+		}
+
+		public long getTotalNanos() {
+			return executionDuration.getSumNanos() + blockedDuration.getSumNanos();
+		}
+	}
+
+	/**
+	 * The syscalls in progress in one thread. Syscalls can be nested
+	 * when a callback is executed while a syscall is blocked.
+	 */
+	private static class ThreadState {
+		public int generation;
+		public int depth;
+		public final SyscallInfo[] syscallInfos = new SyscallInfo[maxNestedSyscalls];
+		public final long[] startNanos = new long[maxNestedSyscalls];
+		public final long[] executedNanos = new long[maxNestedSyscalls];
+
+		public boolean isCurrent() {
+			if (generation != SyscallProfiler.generation) {
+				generation = SyscallProfiler.generation;
+				depth = 0;
+				return false;
+			}
+			return depth > 0;
+		}
+	}
+
+	private static class SyscallInfoComparator implements Comparator<SyscallInfo> {
+		@Override
+		public int compare(SyscallInfo info1, SyscallInfo info2) {
+			long total1 = info1.getTotalNanos();
+			long total2 = info2.getTotalNanos();
+			if (total1 != total2) {
+				return total1 < total2 ? 1 : -1;
+			}
+			return info1.functionName.compareTo(info2.functionName);
+		}
+	}
+
+	public static void initialise() {
+		if (profilerEnabledSettingsListerner == null) {
+			profilerEnabledSettingsListerner = new ProfilerEnabledSettingsListerner();
+			Settings.getInstance().registerSettingsListener("SyscallProfiler", "emu.syscallProfiler", profilerEnabledSettingsListerner);
+		}
+	}
+
+	public static boolean isProfilerEnabled() {
+		return profilerEnabled;
+	}
+
+	public static void setProfilerEnabled(boolean enabled) {
+		if (enabled && !profilerEnabled) {
+			generation++;
+		}
+		profilerEnabled = enabled;
+	}
+
+	public static synchronized void reset() {
+		syscallInfos = new SyscallInfo[syscallInfos.length];
+		generation++;
+	}
+
+	private static synchronized SyscallInfo getSyscallInfo(int code) {
+		if (code < 0) {
+			return null;
+		}
+		if (code >= syscallInfos.length) {
+			SyscallInfo[] newSyscallInfos = new SyscallInfo[Math.max(code + 1, syscallInfos.length * 2)];
+			System.arraycopy(syscallInfos, 0, newSyscallInfos, 0, syscallInfos.length);
+			syscallInfos = newSyscallInfos;
+		}
+
+		SyscallInfo syscallInfo = syscallInfos[code];
+		if (syscallInfo == null) {
+			HLEModuleFunction func = HLEModuleManager.getInstance().getFunctionFromSyscallCode(code);
+			if (func != null) {
+				syscallInfo = new SyscallInfo(func.getModuleName(), func.getFunctionName());
+			} else {
+				// Syscall without HLE function, executed by the SyscallHandler
+				String name = NIDMapper.getInstance().getNameBySyscall(code);
+				if (name == null) {
+					name = String.format("syscall_0x%05X", code);
+				}
+				syscallInfo = new SyscallInfo(SyscallHandler.class.getSimpleName(), name);
+			}
+			syscallInfos[code] = syscallInfo;
+		}
+
+		return syscallInfo;
+	}
+
+	/**
+	 * Called by the compiled code and by the SyscallHandler
+	 * before the syscall is executed.
+	 *
+	 * @param code   the syscall code
+	 */
+	public static void startSyscall(int code) {
+		ThreadState threadState = threadStates.get();
+		threadState.isCurrent();
+		if (threadState.depth >= maxNestedSyscalls) {
+			// Syscalls not completed (e.g. exceptions), restart from scratch
+			threadState.depth = 0;
+		}
+
+		SyscallInfo[] syscallInfos = SyscallProfiler.syscallInfos;
+		SyscallInfo syscallInfo = code >= 0 && code < syscallInfos.length ? syscallInfos[code] : null;
+		if (syscallInfo == null) {
+			syscallInfo = getSyscallInfo(code);
+		}
+
+		int depth = threadState.depth++;
+		threadState.syscallInfos[depth] = syscallInfo;
+		threadState.startNanos[depth] = System.nanoTime();
+		threadState.executedNanos[depth] = 0L;
+	}
+
+	/**
+	 * Called by the compiled code after the HLE function has returned,
+	 * before switching to another thread.
+	 */
+	public static void syscallExecuted() {
+		ThreadState threadState = threadStates.get();
+		if (threadState.isCurrent()) {
+			threadState.executedNanos[threadState.depth - 1] = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Called by the compiled code when the calling thread is continuing
+	 * its execution after the syscall, and by the SyscallHandler
+	 * after the syscall has been executed.
+	 */
+	public static void endSyscall() {
+		ThreadState threadState = threadStates.get();
+		if (!threadState.isCurrent()) {
+			return;
+		}
+
+		long now = System.nanoTime();
+		int depth = --threadState.depth;
+		SyscallInfo syscallInfo = threadState.syscallInfos[depth];
+		threadState.syscallInfos[depth] = null;
+		if (syscallInfo == null) {
+			return;
+		}
+
+		long startNanos = threadState.startNanos[depth];
+		long executedNanos = threadState.executedNanos[depth];
+		if (executedNanos == 0L) {
+			executedNanos = now;
+		}
+		syscallInfo.executionDuration.observeNanos(executedNanos - startNanos);
+		syscallInfo.blockedDuration.observeNanos(now - executedNanos);
+	}
+
+	/**
+	 * @param topCount   the maximum number of HLE functions to be reported
+	 * @return           the HLE functions having the highest total time
+	 *                   (executing + blocked), one per line
+	 */
+	public static String getReport(int topCount) {
+		List<SyscallInfo> sortedSyscallInfos = new ArrayList<SyscallInfo>();
+		SyscallInfo[] syscallInfos = SyscallProfiler.syscallInfos;
+		long allNanos = 0L;
+		for (int i = 0; i < syscallInfos.length; i++) {
+			if (syscallInfos[i] != null) {
+				sortedSyscallInfos.add(syscallInfos[i]);
+				allNanos += syscallInfos[i].getTotalNanos();
+			}
+		}
+		Collections.sort(sortedSyscallInfos, new SyscallInfoComparator());
+
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("Syscall profiler %s, %d HLE functions called, %.3fms in total%n", profilerEnabled ? "enabled" : "disabled", sortedSyscallInfos.size(), allNanos / 1000000.0));
+		report.append(String.format("%-48s %10s %12s %12s %10s %12s %7s%n", "Function", "Calls", "Total ms", "Executing ms", "Avg us", "Blocked ms", "Total %"));
+		int count = 0;
+		for (SyscallInfo syscallInfo : sortedSyscallInfos) {
+			if (count >= topCount) {
+				break;
+			}
+			long calls = syscallInfo.executionDuration.getCount();
+			long executingNanos = syscallInfo.executionDuration.getSumNanos();
+			long blockedNanos = syscallInfo.blockedDuration.getSumNanos();
+			long totalNanos = executingNanos + blockedNanos;
+			report.append(String.format("%-48s %10d %12.3f %12.3f %10.3f %12.3f %6.1f%%%n", syscallInfo.moduleName + "." + syscallInfo.functionName, calls, totalNanos / 1000000.0, executingNanos / 1000000.0, calls == 0 ? 0.0 : executingNanos / 1000.0 / calls, blockedNanos / 1000000.0, allNanos == 0 ? 0.0 : totalNanos * 100.0 / allNanos));
+			count++;
+		}
+
+		return report.toString();
+	}
+
+	public static void exit() {
+		if (!profilerEnabled) {
+			return;
+		}
+
+		log.info("------------------ SyscallProfiler ----------------------");
+		for (String line : getReport(defaultTopCount).split(String.format("%n"))) {
+			log.info(line);
+		}
+	}
+}
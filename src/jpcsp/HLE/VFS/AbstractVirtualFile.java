@@ -74,7 +74,19 @@ public abstract class AbstractVirtualFile implements IVirtualFile {
 		return 0;
 	}
 
-	private int getReadLength(int outputLength) {
+	/**
+	 * Read the file content into the memory.
+	 * Can be overwritten when the file can be copied more efficiently.
+	 *
+	 * @param address  the memory address
+	 * @param length   the number of bytes to be read
+	 * @throws IOException
+	 */
+	protected void readFully(int address, int length) throws IOException {
+		Utilities.readFully(file, address, length);
+	}
+
+	protected int getReadLength(int outputLength) {
 		int readLength = outputLength;
 		long restLength = length() - getPosition();
 		if (restLength < readLength) {
@@ -88,7 +100,7 @@ public abstract class AbstractVirtualFile implements IVirtualFile {
 	public int ioRead(TPointer outputPointer, int outputLength) {
 		int readLength = getReadLength(outputLength);
 		try {
-			Utilities.readFully(file, outputPointer.getAddress(), readLength);
+			readFully(outputPointer.getAddress(), readLength);
 		} catch (IOException e) {
 			log.error("ioRead", e);
 			return SceKernelErrors.ERROR_KERNEL_FILE_READ_ERROR;
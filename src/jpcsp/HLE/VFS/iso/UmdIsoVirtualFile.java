@@ -54,6 +54,12 @@ public class UmdIsoVirtualFile extends AbstractVirtualFile {
 		this.iso = iso;
 	}
 
+	@Override
+	protected void readFully(int address, int length) throws IOException {
+		// Copy directly from the ISO into the memory, when possible
+		file.readFully(address, length);
+	}
+
 	@Override
 	public boolean isSectorBlockMode() {
 		return sectorBlockMode;
@@ -187,7 +193,7 @@ public class UmdIsoVirtualFile extends AbstractVirtualFile {
 	            	if (length > 0) {
 	            		if (outputPointer.isAddressGood() && outputLength >= length) {
 	            			try {
-								Utilities.readFully(file, outputPointer.getAddress(), length);
+								file.readFully(outputPointer.getAddress(), length);
 								setPosition(getPosition() + length);
 	                            result = length;
 	    					} catch (IOException e) {
@@ -213,7 +219,7 @@ public class UmdIsoVirtualFile extends AbstractVirtualFile {
 	            		if (outputPointer.isAddressGood() && outputLength >= numberOfSectors) {
 	            			try {
 	                        	int length = numberOfSectors * UmdIsoFile.sectorLength;
-								Utilities.readFully(file, outputPointer.getAddress(), length);
+								file.readFully(outputPointer.getAddress(), length);
 								setPosition(getPosition() + length);
 	                            result = length / UmdIsoFile.sectorLength;
 	    					} catch (IOException e) {
@@ -20,6 +20,7 @@ import jpcsp.HLE.kernel.managers.SceUidManager;
 import jpcsp.HLE.kernel.types.interrupts.AlarmInterruptHandler;
 import jpcsp.scheduler.AlarmInterruptAction;
 import jpcsp.scheduler.AlarmInterruptResultAction;
+import jpcsp.scheduler.SchedulerAction;
 
 public class SceKernelAlarmInfo extends pspAbstractMemoryMappedStructureVariableLength {
 	private static final String uidPurpose = "ThreadMan-Alarm";
@@ -31,6 +32,8 @@ public class SceKernelAlarmInfo extends pspAbstractMemoryMappedStructureVariable
 	public final AlarmInterruptHandler alarmInterruptHandler;
 	public final AlarmInterruptAction alarmInterruptAction;
 	public final AlarmInterruptResultAction alarmInterruptResultAction;
+	// The scheduled alarmInterruptAction
+	public SchedulerAction schedulerAction;
 
 	public SceKernelAlarmInfo(long schedule, int handlerAddress, int handlerArgument) {
 		this.schedule = schedule;
@@ -37,6 +37,7 @@ import jpcsp.HLE.kernel.managers.SceUidManager;
 import jpcsp.HLE.modules.SysMemUserForUser;
 import jpcsp.HLE.modules.SysMemUserForUser.SysMemInfo;
 import jpcsp.HLE.modules.ThreadManForUser.Callback;
+import jpcsp.scheduler.SchedulerAction;
 
 public class SceKernelThreadInfo extends pspAbstractMemoryMappedStructureVariableLength implements Comparator<SceKernelThreadInfo> {
 
@@ -122,12 +123,18 @@ public class SceKernelThreadInfo extends pspAbstractMemoryMappedStructureVariabl
     public CpuState cpuContext;
     public boolean doDelete;
     public IAction doDeleteAction;
+    public SchedulerAction doDeleteSchedulerAction;
     public boolean unloadModuleAtDeletion;
     public boolean doCallbacks;
     public final ThreadWaitInfo wait;
     public int displayLastWaitVcount;
     public long javaThreadId = -1;
     public long javaThreadCpuTimeNanos = -1;
+    // Links in the ThreadReadyQueue, only valid while the thread is ready
+    ThreadReadyQueue readyQueue;
+    int readyPriority;
+    SceKernelThreadInfo readyPrevious;
+    SceKernelThreadInfo readyNext;
     // Callbacks, only 1 of each type can be registered per thread.
     public final static int THREAD_CALLBACK_UMD = 0;
     public final static int THREAD_CALLBACK_IO = 1;
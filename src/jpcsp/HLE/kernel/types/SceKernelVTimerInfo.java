@@ -22,6 +22,7 @@ import jpcsp.HLE.kernel.managers.SystemTimeManager;
 import jpcsp.HLE.kernel.types.interrupts.VTimerInterruptHandler;
 import jpcsp.HLE.modules.SysMemUserForUser;
 import jpcsp.HLE.modules.SysMemUserForUser.SysMemInfo;
+import jpcsp.scheduler.SchedulerAction;
 import jpcsp.scheduler.VTimerInterruptAction;
 import jpcsp.scheduler.VTimerInterruptResultAction;
 
@@ -38,6 +39,8 @@ public class SceKernelVTimerInfo extends pspAbstractMemoryMappedStructureVariabl
 	public VTimerInterruptHandler vtimerInterruptHandler;
 	public final VTimerInterruptAction vtimerInterruptAction;
 	public final VTimerInterruptResultAction vtimerInterruptResultAction;
+	// The scheduled vtimerInterruptAction
+	public SchedulerAction schedulerAction;
 	private int internalMemory;
 	private SysMemInfo sysMemInfo;
 
@@ -0,0 +1,174 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.HLE.kernel.types;
+
+/**
+ * The threads in status PSP_THREAD_READY, ordered by priority.
+ *
+ * There is one FIFO list per priority and a bitmap of the priorities
+ * having at least one ready thread, so that
+ * - the thread having the highest priority is found in constant time,
+ *   without scanning all the ready threads,
+ * - a thread is added, removed or moved to the end of its priority list
+ *   (e.g. sceKernelRotateThreadReadyQueue) in constant time.
+ *
+ * The threads are linked directly through their SceKernelThreadInfo,
+ * no allocation is performed.
+ * A thread is kept in the list of the priority it had when it was added:
+ * it has to be removed and added again when changing its priority.
+ *
+ * @author gid15
+ *
+ */
+public class ThreadReadyQueue {
+	// Lower numbers mean higher priority
+	public static final int NUMBER_PRIORITIES = 128;
+	private final SceKernelThreadInfo[] first = new SceKernelThreadInfo[NUMBER_PRIORITIES];
+	private final SceKernelThreadInfo[] last = new SceKernelThreadInfo[NUMBER_PRIORITIES];
+	// Bit n is set when the list for priority n is not empty:
+	// nonEmpty[0] for the priorities 0..63, nonEmpty[1] for the priorities 64..127
+	private final long[] nonEmpty = new long[NUMBER_PRIORITIES / 64];
+	private int size;
+
+	private static int getPriorityIndex(int priority) {
+		return Math.max(0, Math.min(priority, NUMBER_PRIORITIES - 1));
+	}
+
+	/**
+	 * Add a thread to the list of its current priority.
+	 * A thread already present is first removed.
+	 *
+	 * @param thread     the thread to be added
+	 * @param addFirst   true to add the thread in front of the threads having the same priority,
+	 *                   false to add it after them
+	 */
+	public synchronized void add(SceKernelThreadInfo thread, boolean addFirst) {
+		remove(thread);
+
+		int priority = getPriorityIndex(thread.currentPriority);
+		thread.readyQueue = this;
+		thread.readyPriority = priority;
+		if (first[priority] == null) {
+			thread.readyPrevious = null;
+			thread.readyNext = null;
+			first[priority] = thread;
+			last[priority] = thread;
+			nonEmpty[priority >> 6] |= 1L << priority;
+		} else if (addFirst) {
+			thread.readyPrevious = null;
+			thread.readyNext = first[priority];
+			first[priority].readyPrevious = thread;
+			first[priority] = thread;
+		} else {
+			thread.readyPrevious = last[priority];
+			thread.readyNext = null;
+			last[priority].readyNext = thread;
+			last[priority] = thread;
+		}
+		size++;
+	}
+
+	/**
+	 * Remove a thread from the ready threads.
+	 *
+	 * @param thread   the thread to be removed
+	 * @return         true if the thread was present
+	 */
+	public synchronized boolean remove(SceKernelThreadInfo thread) {
+		if (thread.readyQueue != this) {
+			return false;
+		}
+
+		int priority = thread.readyPriority;
+		if (thread.readyPrevious == null) {
+			first[priority] = thread.readyNext;
+		} else {
+			thread.readyPrevious.readyNext = thread.readyNext;
+		}
+		if (thread.readyNext == null) {
+			last[priority] = thread.readyPrevious;
+		} else {
+			thread.readyNext.readyPrevious = thread.readyPrevious;
+		}
+		if (first[priority] == null) {
+			nonEmpty[priority >> 6] &= ~(1L << priority);
+		}
+
+		thread.readyQueue = null;
+		thread.readyPrevious = null;
+		thread.readyNext = null;
+		size--;
+
+		return true;
+	}
+
+	/**
+	 * @return the first thread having the highest priority,
+	 *         or null if there is no ready thread
+	 */
+	public synchronized SceKernelThreadInfo getFirst() {
+		for (int i = 0; i < nonEmpty.length; i++) {
+			if (nonEmpty[i] != 0L) {
+				return first[(i << 6) + Long.numberOfTrailingZeros(nonEmpty[i])];
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @param priority   the priority
+	 * @return           the first thread having the given priority,
+	 *                   or null if there is no ready thread with this priority
+	 */
+	public synchronized SceKernelThreadInfo getFirst(int priority) {
+		if (priority < 0 || priority >= NUMBER_PRIORITIES) {
+			return null;
+		}
+
+		return first[priority];
+	}
+
+	public synchronized boolean contains(SceKernelThreadInfo thread) {
+		return thread.readyQueue == this;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	public synchronized boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder s = new StringBuilder();
+		s.append("ThreadReadyQueue[");
+		for (int priority = 0; priority < NUMBER_PRIORITIES; priority++) {
+			for (SceKernelThreadInfo thread = first[priority]; thread != null; thread = thread.readyNext) {
+				if (s.length() > 17) {
+					s.append(", ");
+				}
+				s.append(String.format("0x%02X:%s", priority, thread.name));
+			}
+		}
+		s.append("]");
+
+		return s.toString();
+	}
+}
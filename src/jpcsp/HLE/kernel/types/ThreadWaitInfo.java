@@ -18,12 +18,14 @@ package jpcsp.HLE.kernel.types;
 
 import jpcsp.HLE.TPointer;
 import jpcsp.HLE.TPointer32;
+import jpcsp.scheduler.SchedulerAction;
 
 public class ThreadWaitInfo {
     public boolean forever;
     public long microTimeTimeout; // when Clock.microTime() reaches microTimeTimeout the wait has expired
     public int micros; // time period specified by the game, just stored here for logging/debugging purposes
     public IAction waitTimeoutAction; // execute this action when the timeout is reached
+    public SchedulerAction waitTimeoutSchedulerAction; // the scheduled waitTimeoutAction, not copied
     public IWaitStateChecker waitStateChecker; // checks if the wait condition still applies
 
     // Thread End
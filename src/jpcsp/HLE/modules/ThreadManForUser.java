@@ -132,6 +132,7 @@ import jpcsp.HLE.kernel.types.SceKernelThreadOptParam;
 import jpcsp.HLE.kernel.types.SceKernelTls;
 import jpcsp.HLE.kernel.types.SceKernelVTimerInfo;
 import jpcsp.HLE.kernel.types.SceModule;
+import jpcsp.HLE.kernel.types.ThreadReadyQueue;
 import jpcsp.HLE.kernel.types.ThreadWaitInfo;
 import jpcsp.HLE.kernel.types.pspBaseCallback;
 import jpcsp.HLE.kernel.types.SceKernelThreadInfo.RegisteredCallbacks;
@@ -141,7 +142,10 @@ import jpcsp.memory.IMemoryWriter;
 import jpcsp.memory.MemoryReader;
 import jpcsp.memory.MemoryWriter;
 import jpcsp.scheduler.Scheduler;
+import jpcsp.scheduler.SchedulerAction;
 import jpcsp.util.DurationStatistics;;
+import jpcsp.util.metrics.Gauge;
+import jpcsp.util.metrics.MetricsRegistry;
 
 /*
  * Thread scheduling on PSP:
@@ -181,7 +185,7 @@ public class ThreadManForUser extends HLEModule {
 
     private HashMap<Integer, SceKernelThreadInfo> threadMap;
     private HashMap<Integer, SceKernelThreadEventHandlerInfo> threadEventHandlers;
-    private LinkedList<SceKernelThreadInfo> readyThreads;
+    private ThreadReadyQueue readyThreads;
     private SceKernelThreadInfo currentThread;
     private SceKernelThreadInfo idle0, idle1;
     public Statistics statistics;
@@ -642,13 +646,29 @@ public class ThreadManForUser extends HLEModule {
     public ThreadManForUser() {
     }
 
+    private void registerMetrics() {
+    	MetricsRegistry.getInstance().register(new Gauge("jpcsp_kernel_ready_threads", "Number of threads ready to run, excluding the current thread") {
+			@Override
+			public double getValue() {
+				return readyThreads.size();
+			}
+    	});
+    	MetricsRegistry.getInstance().register(new Gauge("jpcsp_kernel_threads", "Number of existing threads") {
+			@Override
+			public double getValue() {
+				return threadMap.size();
+			}
+    	});
+    }
+
     @Override
     public void start() {
     	currentThread = null;
         threadMap = new HashMap<Integer, SceKernelThreadInfo>();
         threadEventHandlers = new HashMap<Integer, SceKernelThreadEventHandlerInfo>();
-        readyThreads = new LinkedList<SceKernelThreadInfo>();
+        readyThreads = new ThreadReadyQueue();
         statistics = new Statistics();
+        registerMetrics();
 
         callbackMap = new HashMap<Integer, pspBaseCallback>();
         callbackManager.Initialize();
@@ -1235,15 +1255,7 @@ public class ThreadManForUser extends HLEModule {
         // Find the thread with status PSP_THREAD_READY and the highest priority.
         // In this implementation low priority threads can get starved.
         // Remark: the currentThread is not present in the readyThreads List.
-        SceKernelThreadInfo found = null;
-        synchronized (readyThreads) {
-            for (SceKernelThreadInfo thread : readyThreads) {
-                if (found == null || thread.currentPriority < found.currentPriority) {
-                    found = thread;
-                }
-            }
-        }
-        return found;
+        return readyThreads.getFirst();
     }
 
     /**
@@ -1697,21 +1709,13 @@ public class ThreadManForUser extends HLEModule {
     }
 
     private void removeFromReadyThreads(SceKernelThreadInfo thread) {
-        synchronized (readyThreads) {
-            readyThreads.remove(thread);
-        	needThreadReschedule = true;
-        }
+        readyThreads.remove(thread);
+    	needThreadReschedule = true;
     }
 
     private void addToReadyThreads(SceKernelThreadInfo thread, boolean addFirst) {
-        synchronized (readyThreads) {
-        	if (addFirst) {
-        		readyThreads.addFirst(thread);
-        	} else {
-        		readyThreads.addLast(thread);
-        	}
-        	needThreadReschedule = true;
-        }
+    	readyThreads.add(thread, addFirst);
+    	needThreadReschedule = true;
     }
 
     private void setToBeDeletedThread(SceKernelThreadInfo thread) {
@@ -1725,7 +1729,7 @@ public class ThreadManForUser extends HLEModule {
             // - child thread calls sceKernelExitDeleteThread
             if (thread.doDeleteAction == null) {
                 thread.doDeleteAction = new DeleteThreadAction(thread);
-                Scheduler.getInstance().addAction(thread.doDeleteAction);
+                thread.doDeleteSchedulerAction = Scheduler.getInstance().addAction(thread.doDeleteAction);
             }
         }
     }
@@ -1738,6 +1742,23 @@ public class ThreadManForUser extends HLEModule {
     	}
     }
 
+    /**
+     * Set the priority of a thread without rescheduling, e.g. before starting the emulation.
+     * The current priority of a thread must not be changed directly:
+     * a ready thread is kept in the ready queue of the priority it had when it was added.
+     *
+     * @param thread       the thread to be updated
+     * @param newPriority  the new current priority
+     */
+    public void hleSetThreadPriority(SceKernelThreadInfo thread, int newPriority) {
+    	thread.currentPriority = newPriority;
+    	if (readyThreads.contains(thread)) {
+    		// Move the thread to the ready queue of its new priority
+    		removeFromReadyThreads(thread);
+    		addToReadyThreads(thread, false);
+    	}
+    }
+
     public void hleKernelChangeThreadPriority(SceKernelThreadInfo thread, int newPriority) {
     	if (thread == null) {
     		return;
@@ -1790,7 +1811,8 @@ public class ThreadManForUser extends HLEModule {
         // Moving out of the following states...
         if (thread.status == PSP_THREAD_WAITING && newStatus != PSP_THREAD_WAITING_SUSPEND) {
             if (thread.wait.waitTimeoutAction != null) {
-                Scheduler.getInstance().removeAction(thread.wait.microTimeTimeout, thread.wait.waitTimeoutAction);
+                removeSchedulerAction(thread.wait.waitTimeoutSchedulerAction);
+                thread.wait.waitTimeoutSchedulerAction = null;
                 thread.wait.waitTimeoutAction = null;
             }
         	if (thread.wait.onUnblockAction != null) {
@@ -1800,7 +1822,8 @@ public class ThreadManForUser extends HLEModule {
             thread.doCallbacks = false;
         } else if (thread.isStopped()) {
             if (thread.doDeleteAction != null) {
-                Scheduler.getInstance().removeAction(0, thread.doDeleteAction);
+                removeSchedulerAction(thread.doDeleteSchedulerAction);
+                thread.doDeleteSchedulerAction = null;
                 thread.doDeleteAction = null;
             }
         } else if (thread.isReady()) {
@@ -1820,7 +1843,7 @@ public class ThreadManForUser extends HLEModule {
         // Moving to the following states...
         if (thread.status == PSP_THREAD_WAITING) {
             if (thread.wait.waitTimeoutAction != null) {
-                Scheduler.getInstance().addAction(thread.wait.microTimeTimeout, thread.wait.waitTimeoutAction);
+                thread.wait.waitTimeoutSchedulerAction = Scheduler.getInstance().addAction(thread.wait.microTimeTimeout, thread.wait.waitTimeoutAction);
             }
 
             // debug
@@ -1838,7 +1861,7 @@ public class ThreadManForUser extends HLEModule {
             if (thread.doDelete) {
                 if (thread.doDeleteAction == null) {
                     thread.doDeleteAction = new DeleteThreadAction(thread);
-                    Scheduler.getInstance().addAction(0, thread.doDeleteAction);
+                    thread.doDeleteSchedulerAction = Scheduler.getInstance().addAction(0, thread.doDeleteAction);
                 }
             }
             onThreadStopped(thread);
@@ -1863,7 +1886,8 @@ public class ThreadManForUser extends HLEModule {
         thread.wait.waitStateChecker = null;
         thread.waitType = PSP_WAIT_NONE;
         if (thread.wait.waitTimeoutAction != null) {
-            Scheduler.getInstance().removeAction(thread.wait.microTimeTimeout, thread.wait.waitTimeoutAction);
+            removeSchedulerAction(thread.wait.waitTimeoutSchedulerAction);
+            thread.wait.waitTimeoutSchedulerAction = null;
             thread.wait.waitTimeoutAction = null;
         }
     }
@@ -2720,8 +2744,15 @@ public class ThreadManForUser extends HLEModule {
         return handled;
     }
 
+    private static void removeSchedulerAction(SchedulerAction schedulerAction) {
+    	if (schedulerAction != null) {
+    		Scheduler.getInstance().removeAction(schedulerAction);
+    	}
+    }
+
     public void cancelAlarm(SceKernelAlarmInfo sceKernelAlarmInfo) {
-        Scheduler.getInstance().removeAction(sceKernelAlarmInfo.schedule, sceKernelAlarmInfo.alarmInterruptAction);
+        removeSchedulerAction(sceKernelAlarmInfo.schedulerAction);
+        sceKernelAlarmInfo.schedulerAction = null;
         sceKernelAlarmInfo.schedule = 0;
         sceKernelAlarmInfo.delete();
         alarms.remove(sceKernelAlarmInfo.uid);
@@ -2741,7 +2772,7 @@ public class ThreadManForUser extends HLEModule {
     }
 
     private void scheduleAlarm(SceKernelAlarmInfo sceKernelAlarmInfo) {
-        Scheduler.getInstance().addAction(sceKernelAlarmInfo.schedule, sceKernelAlarmInfo.alarmInterruptAction);
+        sceKernelAlarmInfo.schedulerAction = Scheduler.getInstance().addAction(sceKernelAlarmInfo.schedule, sceKernelAlarmInfo.alarmInterruptAction);
     }
 
     protected int hleKernelSetAlarm(long delayUsec, TPointer handlerAddress, int handlerArgument) {
@@ -2781,7 +2812,8 @@ public class ThreadManForUser extends HLEModule {
     }
 
     protected void stopVTimer(SceKernelVTimerInfo sceKernelVTimerInfo) {
-        Scheduler.getInstance().removeAction(getVTimerScheduleForScheduler(sceKernelVTimerInfo), sceKernelVTimerInfo.vtimerInterruptAction);
+        removeSchedulerAction(sceKernelVTimerInfo.schedulerAction);
+        sceKernelVTimerInfo.schedulerAction = null;
         // Sum the elapsed time (multiple Start/Stop sequences are added)
         sceKernelVTimerInfo.current = sceKernelVTimerInfo.getCurrentTime();
         sceKernelVTimerInfo.active = SceKernelVTimerInfo.ACTIVE_STOPPED;
@@ -2790,14 +2822,15 @@ public class ThreadManForUser extends HLEModule {
 
     protected void scheduleVTimer(SceKernelVTimerInfo sceKernelVTimerInfo, long schedule) {
     	// Remove any previous schedule
-        Scheduler.getInstance().removeAction(getVTimerScheduleForScheduler(sceKernelVTimerInfo), sceKernelVTimerInfo.vtimerInterruptAction);
+        removeSchedulerAction(sceKernelVTimerInfo.schedulerAction);
+        sceKernelVTimerInfo.schedulerAction = null;
 
         sceKernelVTimerInfo.schedule = schedule;
 
         if (sceKernelVTimerInfo.active == SceKernelVTimerInfo.ACTIVE_RUNNING && sceKernelVTimerInfo.handlerAddress != 0) {
             Scheduler scheduler = Scheduler.getInstance();
             long schedulerSchedule = getVTimerScheduleForScheduler(sceKernelVTimerInfo);
-            scheduler.addAction(schedulerSchedule, sceKernelVTimerInfo.vtimerInterruptAction);
+            sceKernelVTimerInfo.schedulerAction = scheduler.addAction(schedulerSchedule, sceKernelVTimerInfo.vtimerInterruptAction);
             if (log.isDebugEnabled()) {
             	log.debug(String.format("Scheduling VTimer %s at %d(now=%d)", sceKernelVTimerInfo, schedulerSchedule, Scheduler.getNow()));
             }
@@ -2805,7 +2838,8 @@ public class ThreadManForUser extends HLEModule {
     }
 
     public void cancelVTimer(SceKernelVTimerInfo sceKernelVTimerInfo) {
-        Scheduler.getInstance().removeAction(getVTimerScheduleForScheduler(sceKernelVTimerInfo), sceKernelVTimerInfo.vtimerInterruptAction);
+        removeSchedulerAction(sceKernelVTimerInfo.schedulerAction);
+        sceKernelVTimerInfo.schedulerAction = null;
         sceKernelVTimerInfo.schedule = 0;
         sceKernelVTimerInfo.handlerAddress = 0;
         sceKernelVTimerInfo.handlerArgument = 0;
@@ -4018,7 +4052,7 @@ public class ThreadManForUser extends HLEModule {
         if (thread.isStopped()) {
             // Tested on PSP:
             // If the thread is stopped, it's current priority is replaced by it's initial priority.
-            thread.currentPriority = thread.initPriority;
+            hleSetThreadPriority(thread, thread.initPriority);
             return ERROR_KERNEL_THREAD_ALREADY_DORMANT;
         }
 
@@ -4076,24 +4110,20 @@ public class ThreadManForUser extends HLEModule {
      */
     @HLEFunction(nid = 0x912354A7, version = 150)
     public int sceKernelRotateThreadReadyQueue(@CheckArgument("checkThreadPriority") int priority) {
-        synchronized (readyThreads) {
-            for (SceKernelThreadInfo thread : readyThreads) {
-                if (thread.currentPriority == priority) {
-                	// When rotating the ready queue of the current thread,
-                	// the current thread yields and is moved to the end of its
-                	// ready queue.
-                	if (priority == currentThread.currentPriority) {
-                		thread = currentThread;
-                		// The current thread will be moved to the front of the ready queue
-                		hleChangeThreadState(thread, PSP_THREAD_READY);
-                	}
-                    // Move the thread to the end of the ready queue
-                	removeFromReadyThreads(thread);
-                    addToReadyThreads(thread, false);
-                    hleRescheduleCurrentThread();
-                    break;
-                }
-            }
+        SceKernelThreadInfo thread = readyThreads.getFirst(priority);
+        if (thread != null) {
+        	// When rotating the ready queue of the current thread,
+        	// the current thread yields and is moved to the end of its
+        	// ready queue.
+        	if (priority == currentThread.currentPriority) {
+        		thread = currentThread;
+        		// The current thread will be moved to the front of the ready queue
+        		hleChangeThreadState(thread, PSP_THREAD_READY);
+        	}
+            // Move the thread to the end of the ready queue
+        	removeFromReadyThreads(thread);
+            addToReadyThreads(thread, false);
+            hleRescheduleCurrentThread();
         }
         
         return 0;
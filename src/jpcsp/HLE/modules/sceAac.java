@@ -63,6 +63,7 @@ public class sceAac extends HLEModule {
 
     	protected AacInfo(int id) {
 			super(id);
+			decodedFrameCacheAllowed = true;
 		}
 
         public boolean isInit() {
@@ -85,7 +86,7 @@ public class sceAac extends HLEModule {
 		public void initCodec() {
         	initCodec(PSP_CODEC_AAC);
             init = true;
-            codec.init(0, outputChannels, outputChannels, 0);
+            initCodec(0, outputChannels, outputChannels, 0);
             setCodecInitialized();
         }
 
@@ -164,7 +165,7 @@ public class sceAac extends HLEModule {
 	            	log.debug(String.format("Decoding from 0x%08X, length=0x%X to 0x%08X", decodeInputAddr, decodeInputLength, decodeOutputAddr));
 	            }
 
-	        	result = codec.decode(decodeInputAddr, decodeInputLength, decodeOutputAddr);
+	        	result = decode(decodeInputAddr, decodeInputLength, decodeOutputAddr);
 
 	            if (result < 0) {
 	            	result = ERROR_AAC_DECODING_ERROR;
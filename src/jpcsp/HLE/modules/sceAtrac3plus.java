@@ -195,6 +195,7 @@ public class sceAtrac3plus extends HLEModule {
 
         public AtracID(int id) {
         	super(id);
+        	decodedFrameCacheAllowed = true;
         	info = new AtracFileInfo();
         }
 
@@ -219,7 +220,7 @@ public class sceAtrac3plus extends HLEModule {
 
     		setOutputChannels(isMonoOutput ? 1 : 2);
 
-        	int result = codec.init(info.atracBytesPerFrame, channels, outputChannels, info.atracCodingMode);
+        	int result = initCodec(info.atracBytesPerFrame, channels, outputChannels, info.atracCodingMode);
         	if (result < 0) {
         		return result;
         	}
@@ -305,7 +306,7 @@ public class sceAtrac3plus extends HLEModule {
         		log.debug(String.format("decodeData from 0x%08X(0x%X) to 0x%08X(0x%X), skippedSamples=0x%X, currentSample=0x%X, outputChannels=%d", readAddr, info.atracBytesPerFrame, decodedSamplesAddr, maxSamples, skippedSamples, currentSample, outputChannels));
         	}
 
-        	int result = codec.decode(readAddr, info.atracBytesPerFrame, decodedSamplesAddr);
+        	int result = decode(readAddr, info.atracBytesPerFrame, decodedSamplesAddr);
         	if (result < 0) {
         		if (log.isDebugEnabled()) {
         			log.debug(String.format("decodeData received codec decode error 0x%08X", result));
@@ -1607,7 +1608,7 @@ public class sceAtrac3plus extends HLEModule {
 
         int sourceBytesConsumed = 0;
     	int bytesPerSample = id.getOutputChannels() << 1;
-    	int result = codec.decode(sourceAddr.getAddress(), id.getSourceBufferLength(), samplesAddr.getAddress());
+    	int result = id.decode(sourceAddr.getAddress(), id.getSourceBufferLength(), samplesAddr.getAddress());
     	if (log.isDebugEnabled()) {
     		log.debug(String.format("sceAtracLowLevelDecode codec returned 0x%08X", result));
     	}
@@ -1646,7 +1647,7 @@ public class sceAtrac3plus extends HLEModule {
         id.setSourceBufferLength(sourceBufferLength);
 
     	// TODO How to find out the codingMode for AT3 audio? Assume STEREO, not JOINT_STEREO
-		result = id.getCodec().init(sourceBufferLength, numberOfChannels, outputChannels, 0);
+		result = id.initCodec(sourceBufferLength, numberOfChannels, outputChannels, 0);
 		id.setCodecInitialized();
 
         return result;
@@ -16,6 +16,7 @@ along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
  */
 package jpcsp.HLE.modules;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -35,10 +36,14 @@ import jpcsp.HLE.TPointer32;
 import jpcsp.HLE.kernel.types.SceKernelErrors;
 import jpcsp.HLE.modules.SysMemUserForUser.SysMemInfo;
 import jpcsp.media.codec.CodecFactory;
+import jpcsp.media.codec.DecodedFrameCache;
 import jpcsp.media.codec.ICodec;
 import jpcsp.media.codec.mp3.Mp3Decoder;
 import jpcsp.media.codec.mp3.Mp3Header;
+import jpcsp.memory.IntArrayMemory;
 import jpcsp.util.Utilities;
+import jpcsp.util.metrics.Histogram;
+import jpcsp.util.metrics.MetricsRegistry;
 
 public class sceAudiocodec extends HLEModule {
 	public static Logger log = Modules.getLogger("sceAudiocodec");
@@ -53,10 +58,36 @@ public class sceAudiocodec extends HLEModule {
 	public static final int AUDIOCODEC_AT3P_UNKNOWN_64 = 0x2E8;
 
 	public static class AudiocodecInfo {
+		// Do not cache the frames decoded from larger input buffers
+		private static final int maxCachedInputLength = 16 * 1024;
+		// Do not cache the frames decoding more samples
+		private static final int maxCachedNumberOfSamples = 2048;
+		private static final Histogram audioDecodeDurationMetric = MetricsRegistry.getInstance().register(new Histogram("jpcsp_audio_decode_duration_seconds", "Duration of the decoding of one audio frame"));
 		protected ICodec codec;
 		protected boolean codecInitialized;
 		protected final int id;
 		protected int outputChannels = 2; // Always default with 2 output channels
+		// Decoding statistics of this stream
+		protected long decodeTimeNanos;
+		protected int decodedFrames;
+		// Decoded frame cache
+		protected boolean decodedFrameCacheAllowed;
+		private boolean decodedFrameCacheReady;
+		private int codecType;
+		private int codecParameters;
+		private int codecOutputChannels;
+		// Hashes and bytes of the previous input frames, the most recent first
+		private int[] previousHashes = new int[0];
+		private byte[][] previousInputs = new byte[0][];
+		// Number of the previous frames matching the current codec state
+		private int validHistoryFrames;
+		// Number of the most recent frames copied from the cache, i.e. not decoded by the codec
+		private int skippedFrames;
+		// Host memory used to replay the skipped frames:
+		// the input frame followed by the decoded samples
+		private IntArrayMemory replayMemory;
+		// Buffer used to compare the input with the cached frames
+		private byte[] inputBuffer;
 
 		protected AudiocodecInfo(int id) {
 			this.id = id;
@@ -79,12 +110,200 @@ public class sceAudiocodec extends HLEModule {
 		}
 
 		public void release() {
+			if (decodedFrames > 0 && log.isDebugEnabled()) {
+				log.debug(String.format("%s 0x%X: %d frames decoded in %.3fms (avg=%.3fus/frame)", getClass().getSimpleName(), id, decodedFrames, decodeTimeNanos / 1000000.0, decodeTimeNanos / 1000.0 / decodedFrames));
+			}
+			decodeTimeNanos = 0L;
+			decodedFrames = 0;
 			setCodecInitialized(false);
+			decodedFrameCacheReady = false;
+			replayMemory = null;
+			inputBuffer = null;
+		}
+
+		/**
+		 * Decode one frame using the codec of this stream,
+		 * and account for the time spent decoding.
+		 *
+		 * @return the value returned by the codec
+		 */
+		public int decode(int inputAddr, int inputLength, int outputAddr) {
+			long start = System.nanoTime();
+			int result;
+			DecodedFrameCache decodedFrameCache = decodedFrameCacheReady ? getDecodedFrameCache() : null;
+			if (decodedFrameCache == null) {
+				result = codec.decode(inputAddr, inputLength, outputAddr);
+			} else {
+				result = decodeCached(decodedFrameCache, inputAddr, inputLength, outputAddr);
+			}
+			long duration = System.nanoTime() - start;
+			decodeTimeNanos += duration;
+			decodedFrames++;
+			if (MetricsRegistry.isEnabled()) {
+				audioDecodeDurationMetric.observeNanos(duration);
+			}
+
+			return result;
+		}
+
+		private int decodeCached(DecodedFrameCache decodedFrameCache, int inputAddr, int inputLength, int outputAddr) {
+			if (inputLength <= 0 || (outputAddr & 3) != 0) {
+				int result = codec.decode(inputAddr, inputLength, outputAddr);
+				// The codec state is no longer matching the history
+				validHistoryFrames = 0;
+				skippedFrames = 0;
+				return result;
+			}
+
+			DecodedFrameCache.Key key = null;
+			if (validHistoryFrames >= previousHashes.length && DecodedFrameCache.isHistoryComplete(codecType, previousInputs)) {
+				// The input buffer can be much larger than the frame,
+				// only its first bytes are part of the key
+				byte[] keyInput = new byte[Math.min(inputLength, DecodedFrameCache.keyInputLength)];
+				Utilities.readBytes(inputAddr, keyInput.length, keyInput, 0);
+				key = new DecodedFrameCache.Key(codecParameters, previousHashes.clone(), keyInput);
+				DecodedFrameCache.Frame frame = decodedFrameCache.get(key);
+				if (frame != null && frame.numberOfSamples == codec.getNumberOfSamples() && frame.input.length <= inputLength && isSameInput(inputAddr, frame.input)) {
+					Utilities.writeInt32(outputAddr, frame.output.length << 2, frame.output, 0);
+					addHistory(frame.input, frame.inputHash);
+					skippedFrames++;
+					return frame.result;
+				}
+			}
+
+			// The codec state has to be rebuilt from the frames not decoded
+			replaySkippedFrames();
+
+			int result = codec.decode(inputAddr, inputLength, outputAddr);
+			if (result <= 0 || result > inputLength || result > maxCachedInputLength || codec.getNumberOfSamples() > maxCachedNumberOfSamples) {
+				// This frame cannot be replayed
+				validHistoryFrames = 0;
+				return result;
+			}
+
+			// Only the bytes consumed by the codec are building the frame
+			byte[] input = new byte[result];
+			Utilities.readBytes(inputAddr, result, input, 0);
+			int inputHash = Arrays.hashCode(input);
+			if (key != null) {
+				int outputLength = codec.getNumberOfSamples() * codecOutputChannels * 2;
+				int[] output = new int[outputLength >> 2];
+				Utilities.readInt32(outputAddr, output.length << 2, output, 0);
+				decodedFrameCache.put(key, new DecodedFrameCache.Frame(result, codec.getNumberOfSamples(), output, input, inputHash));
+			}
+			addHistory(input, inputHash);
+
+			return result;
+		}
+
+		private boolean isSameInput(int inputAddr, byte[] input) {
+			if (inputBuffer == null) {
+				inputBuffer = new byte[maxCachedInputLength];
+			}
+			Utilities.readBytes(inputAddr, input.length, inputBuffer, 0);
+			for (int i = 0; i < input.length; i++) {
+				if (inputBuffer[i] != input[i]) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		private void addHistory(byte[] input, int inputHash) {
+			for (int i = previousHashes.length - 1; i > 0; i--) {
+				previousHashes[i] = previousHashes[i - 1];
+				previousInputs[i] = previousInputs[i - 1];
+			}
+			previousHashes[0] = inputHash;
+			previousInputs[0] = input;
+
+			if (validHistoryFrames < previousHashes.length) {
+				validHistoryFrames++;
+			}
+		}
+
+		/**
+		 * Decode again the most recent frames that have been copied from the cache,
+		 * so that the codec state is matching the previous frames.
+		 */
+		private void replaySkippedFrames() {
+			int replayFrames = Math.min(skippedFrames, previousHashes.length);
+			skippedFrames = 0;
+			if (replayFrames <= 0) {
+				return;
+			}
+
+			// Replay the oldest frame first
+			for (int i = replayFrames - 1; i >= 0; i--) {
+				byte[] input = previousInputs[i];
+				for (int j = 0; j < input.length; j++) {
+					replayMemory.write8(j, input[j]);
+				}
+				codec.decode(replayMemory, 0, input.length, maxCachedInputLength);
+			}
+		}
+
+		/**
+		 * @return the decoded frame cache to be used by this stream,
+		 *         or null when the cache is disabled
+		 */
+		protected DecodedFrameCache getDecodedFrameCache() {
+			return DecodedFrameCache.getInstance();
+		}
+
+		/**
+		 * @return the total time spent decoding this stream, in nanoseconds
+		 */
+		public long getDecodeTimeNanos() {
+			return decodeTimeNanos;
+		}
+
+		public int getDecodedFrames() {
+			return decodedFrames;
 		}
 
 		public void initCodec(int codecType) {
 			codec = CodecFactory.getCodec(codecType);
+			this.codecType = codecType;
 			setCodecInitialized(false);
+			decodedFrameCacheReady = false;
+
+			int historyFrames = DecodedFrameCache.getHistoryFrames(codecType);
+			previousHashes = new int[historyFrames];
+			previousInputs = new byte[historyFrames][];
+		}
+
+		/**
+		 * Initialize the codec of this stream (see ICodec.init()).
+		 * Only the streams whose codec has been initialized through this method
+		 * can use the decoded frame cache.
+		 */
+		public int initCodec(int bytesPerFrame, int channels, int outputChannels, int codingMode) {
+			int result = codec.init(bytesPerFrame, channels, outputChannels, codingMode);
+
+			codecParameters = codec.getClass().getName().hashCode();
+			codecParameters = codecParameters * 31 + bytesPerFrame;
+			codecParameters = codecParameters * 31 + channels;
+			codecParameters = codecParameters * 31 + outputChannels;
+			codecParameters = codecParameters * 31 + codingMode;
+			codecOutputChannels = outputChannels;
+
+			// The codec state is now the initial one
+			Arrays.fill(previousHashes, 0);
+			Arrays.fill(previousInputs, null);
+			validHistoryFrames = previousHashes.length;
+			skippedFrames = 0;
+			decodedFrameCacheReady = false;
+			if (result >= 0 && decodedFrameCacheAllowed && previousHashes.length > 0 && getDecodedFrameCache() != null) {
+				if (replayMemory == null) {
+					// Room for the largest input frame and for 2 channels of 16-bit samples
+					replayMemory = new IntArrayMemory(new int[(maxCachedInputLength + maxCachedNumberOfSamples * 2 * 2) >> 2]);
+				}
+				decodedFrameCacheReady = true;
+			}
+
+			return result;
 		}
 	}
 
@@ -282,7 +501,7 @@ public class sceAudiocodec extends HLEModule {
 			return -1;
 		}
 
-		int bytesConsumed = codec.decode(inputBuffer, inputBufferSize, outputBuffer);
+		int bytesConsumed = info.decode(inputBuffer, inputBufferSize, outputBuffer);
 		if (log.isDebugEnabled()) {
 			if (bytesConsumed < 0) {
 				log.debug(String.format("codec.decode returned error 0x%08X, data: %s", bytesConsumed, Utilities.getMemoryDump(inputBuffer, inputBufferSize)));
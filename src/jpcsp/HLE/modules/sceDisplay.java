@@ -84,6 +84,7 @@ import jpcsp.graphics.textures.TextureCache;
 import jpcsp.hardware.Screen;
 import jpcsp.memory.IMemoryReaderWriter;
 import jpcsp.memory.MemoryReaderWriter;
+import jpcsp.memory.MemoryWriteTracker;
 import jpcsp.scheduler.UnblockThreadAction;
 import jpcsp.settings.AbstractBoolSettingsListener;
 import jpcsp.settings.AbstractStringSettingsListener;
@@ -91,6 +92,9 @@ import jpcsp.settings.ISettingsListener;
 import jpcsp.settings.Settings;
 import jpcsp.util.DurationStatistics;
 import jpcsp.util.Utilities;
+import jpcsp.util.metrics.Counter;
+import jpcsp.util.metrics.Histogram;
+import jpcsp.util.metrics.MetricsRegistry;
 
 import org.apache.log4j.Logger;
 import org.lwjgl.LWJGLException;
@@ -313,6 +317,7 @@ public class sceDisplay extends HLEModule {
 
                         // Save GE/current texture to vram
                         copyScreenToPixels(ge.getPixels(), ge.getBufferWidth(), ge.getPixelFormat(), ge.getWidth(), ge.getHeight());
+                        MemoryWriteTracker.write(ge.getTopAddr(), ge.getSize());
                     }
                 }
 
@@ -560,6 +565,8 @@ public class sceDisplay extends HLEModule {
     private long prevFrameCount;
     private long prevPaintFrameCount;
     private long reportCount;
+    private long lastFrameNanos;
+    private static final Histogram frameTimeMetric = MetricsRegistry.getInstance().register(new Histogram("jpcsp_frame_time_seconds", "Real time between two frame buffer switches"));
     private int vcount;
     private long lastVblankMicroTime;
     private DisplayVblankAction displayVblankAction;
@@ -790,7 +797,10 @@ public class sceDisplay extends HLEModule {
 
     	displayScreen = new DisplayScreen();
 
-        canvas = new AWTGLCanvas_sceDisplay();
+        // No canvas is required when running without a screen (headless)
+        if (Screen.hasScreen()) {
+        	canvas = new AWTGLCanvas_sceDisplay();
+        }
         setScreenResolution(displayScreen.getWidth(), displayScreen.getHeight());
 
         // Remember the last window size only if not running in full screen
@@ -820,7 +830,9 @@ public class sceDisplay extends HLEModule {
     public final void setScreenResolution(int width, int height) {
         canvasWidth = width;
         canvasHeight = height;
-        canvas.setSize(width, height);
+        if (canvas != null) {
+        	canvas.setSize(width, height);
+        }
     }
 
     public float getViewportResizeScaleFactor() {
@@ -871,11 +883,13 @@ public class sceDisplay extends HLEModule {
 
 		Dimension size = new Dimension(getResizedWidth(displayScreen.getWidth()), getResizedHeight(displayScreen.getHeight()));
 
-		// Resize the component while keeping the PSP aspect ratio
-		canvas.setSize(size);
+		if (canvas != null) {
+			// Resize the component while keeping the PSP aspect ratio
+			canvas.setSize(size);
 
-		// The preferred size is used when resizing the MainGUI
-		canvas.setPreferredSize(size);
+			// The preferred size is used when resizing the MainGUI
+			canvas.setPreferredSize(size);
+		}
 
 		if (Emulator.getMainGUI().isFullScreen()) {
 			Emulator.getMainGUI().setFullScreenDisplaySize();
@@ -888,7 +902,7 @@ public class sceDisplay extends HLEModule {
 			ExternalGE.setScreenScale(viewportResizeFilterScaleFactorInt);
 		}
 
-		if (log.isDebugEnabled()) {
+		if (log.isDebugEnabled() && canvas != null) {
 			log.debug(String.format("setViewportResizeScaleFactor resize=%f, size(%dx%d), canvas(%dx%d), location(%d,%d)", viewportResizeFilterScaleFactor, size.width, size.height, canvasWidth, canvasHeight, canvas.getLocation().x, canvas.getLocation().y));
 		}
     }
@@ -981,6 +995,18 @@ public class sceDisplay extends HLEModule {
         statistics = new DurationStatistics("sceDisplay Statistics");
         statisticsCopyGeToMemory = new DurationStatistics("Copy GE to Memory");
         statisticsCopyMemoryToGe = new DurationStatistics("Copy Memory to GE");
+        MetricsRegistry.getInstance().register(new Counter("jpcsp_frames_total", "Number of frame buffer switches") {
+            @Override
+            public long getValue() {
+                return frameCount;
+            }
+        });
+        MetricsRegistry.getInstance().register(new Counter("jpcsp_vblanks_total", "Number of VBLANK interrupts") {
+            @Override
+            public long getValue() {
+                return vcount;
+            }
+        });
 
         // Log debug information...
         if (log.isDebugEnabled()) {
@@ -1028,12 +1054,14 @@ public class sceDisplay extends HLEModule {
         prevFrameCount = 0;
         prevPaintFrameCount = 0;
         reportCount = 0;
+        lastFrameNanos = 0L;
         insideRendering = false;
         framePerSecFactor = 1;
 
         vcount = 0;
 
-        if (asyncDisplayThread == null) {
+        // Without canvas, there is nothing to be displayed asynchronously
+        if (asyncDisplayThread == null && canvas != null) {
             asyncDisplayThread = new AsyncDisplayThread();
             asyncDisplayThread.setDaemon(true);
             asyncDisplayThread.setName("Async Display Thread");
@@ -1059,11 +1087,13 @@ public class sceDisplay extends HLEModule {
             log.info("Saving GE to Textures");
         }
 
-        try {
-            captureRobot = new Robot();
-            captureRobot.setAutoDelay(0);
-        } catch (Exception e) {
-            // Ignore.
+        if (canvas != null) {
+	        try {
+	            captureRobot = new Robot();
+	            captureRobot.setAutoDelay(0);
+	        } catch (Exception e) {
+	            // Ignore.
+	        }
         }
 
         setSettingsListener("emu.onlyGEGraphics", new OnlyGeSettingsListener());
@@ -1107,7 +1137,9 @@ public class sceDisplay extends HLEModule {
                     displayDirty = false;
                     geDirty = false;
 
-                    asyncDisplayThread.display();
+                    if (asyncDisplayThread != null) {
+                    	asyncDisplayThread.display();
+                    }
                 }
             }
             lastUpdate = now;
@@ -1767,6 +1799,7 @@ public class sceDisplay extends HLEModule {
             drawFrameBuffer(fb, true, true, ge.getBufferWidth(), ge.getPixelFormat(), ge.getWidth(), ge.getHeight());
 
             copyScreenToPixels(ge.getPixels(geTopAddress), ge.getBufferWidth(), ge.getPixelFormat(), ge.getWidth(), ge.getHeight());
+            MemoryWriteTracker.write(geTopAddress, ge.getSize());
 
             if (saveStencilToMemory) {
                 copyStencilToMemory();
@@ -2313,6 +2346,14 @@ public class sceDisplay extends HLEModule {
         if (topaddr != fb.getTopAddr()) {
             // New frame counting for FPS
             frameCount++;
+
+            if (MetricsRegistry.isEnabled()) {
+                long now = System.nanoTime();
+                if (lastFrameNanos != 0L) {
+                    frameTimeMetric.observeNanos(now - lastFrameNanos);
+                }
+                lastFrameNanos = now;
+            }
         }
 
         // Keep track of how many frames have been skipped in sequence
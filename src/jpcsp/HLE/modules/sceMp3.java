@@ -161,6 +161,7 @@ public class sceMp3 extends HLEModule {
 
         public Mp3Info(int id) {
         	super(id);
+        	decodedFrameCacheAllowed = true;
         }
 
         public boolean isReserved() {
@@ -251,7 +252,7 @@ public class sceMp3 extends HLEModule {
 	            	log.debug(String.format("Decoding from 0x%08X, length=0x%X to 0x%08X, inputBuffer %s", decodeInputAddr, decodeInputLength, decodeOutputAddr, inputBuffer));
 	            }
 
-	        	result = codec.decode(decodeInputAddr, decodeInputLength, decodeOutputAddr);
+	        	result = decode(decodeInputAddr, decodeInputLength, decodeOutputAddr);
 
 	            if (result < 0) {
 	            	result = ERROR_MP3_DECODING_ERROR;
@@ -404,7 +405,7 @@ public class sceMp3 extends HLEModule {
         public void init() {
         	parseMp3FrameHeader();
 
-            codec.init(0, channels, outputChannels, 0);
+            initCodec(0, channels, outputChannels, 0);
 
             sumDecodedSamples = 0;
         }
@@ -634,7 +635,7 @@ public class sceMp3 extends HLEModule {
     public int sceMp3LowLevelInit(@CheckArgument("checkInitId") int id, int unknown) {
     	Mp3Info mp3Info = getMp3Info(id);
     	// Always output in stereo, even if the input is mono
-    	mp3Info.getCodec().init(0, 2, 2, 0);
+    	mp3Info.initCodec(0, 2, 2, 0);
 
 		return 0;
 	}
@@ -642,7 +643,7 @@ public class sceMp3 extends HLEModule {
 	@HLEFunction(nid = 0xE3EE2C81, version = 620)
     public int sceMp3LowLevelDecode(@CheckArgument("checkInitId") int id, TPointer sourceAddr, TPointer32 sourceBytesConsumedAddr, TPointer samplesAddr, TPointer32 sampleBytesAddr) {
     	Mp3Info mp3Info = getMp3Info(id);
-		int result = mp3Info.getCodec().decode(sourceAddr.getAddress(), 10000, samplesAddr.getAddress());
+		int result = mp3Info.decode(sourceAddr.getAddress(), 10000, samplesAddr.getAddress());
 		if (log.isDebugEnabled()) {
 			log.debug(String.format("sceMp3LowLevelDecode result=0x%08X, samples=0x%X", result, mp3Info.getCodec().getNumberOfSamples()));
 		}
@@ -52,6 +52,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -74,10 +76,11 @@ import jpcsp.hardware.Screen;
 import jpcsp.media.codec.CodecFactory;
 import jpcsp.media.codec.ICodec;
 import jpcsp.media.codec.IVideoCodec;
-import jpcsp.media.codec.h264.H264Utils;
+import jpcsp.media.codec.h264.H264ImageConverter;
 import jpcsp.memory.IMemoryReader;
 import jpcsp.memory.IMemoryWriter;
 import jpcsp.memory.MemoryReader;
+import jpcsp.memory.MemoryWriteTracker;
 import jpcsp.memory.MemoryWriter;
 import jpcsp.scheduler.DelayThreadAction;
 import jpcsp.scheduler.UnblockThreadAction;
@@ -253,7 +256,11 @@ public class sceMpeg extends HLEModule {
     private PesHeader videoPesHeader;
     private final PesHeader dummyPesHeader = new PesHeader(0);
     private VideoDecoderThread videoDecoderThread;
-    private LinkedList<DecodedImageInfo> decodedImages;
+    // The images decoded in advance, handed from the video decoder thread
+    // to sceMpegAvcDecode. This queue is lock-free and holds at most
+    // MAX_DECODED_IMAGES images (see decodeNextImage()).
+    private ConcurrentLinkedDeque<DecodedImageInfo> decodedImages;
+    private static final int MAX_DECODED_IMAGES = 2;
     private int lastFrameABGR[];
     private int lastFrameWidth;
     private int lastFrameHeight;
@@ -275,6 +282,13 @@ public class sceMpeg extends HLEModule {
     	public int cr[];
     	public int cb[];
     	public int abgr[];
+    	// The conversion of the image to abgr, running in parallel to the decoder
+    	public Future<?> abgrConversion;
+
+    	public void waitForAbgr() {
+    		H264ImageConverter.waitFor(abgrConversion);
+    		abgrConversion = null;
+    	}
 
     	@Override
 		public String toString() {
@@ -1071,6 +1085,8 @@ public class sceMpeg extends HLEModule {
     /**
      * Always decode one frame in advance so that sceMpegAvcDecode
      * can be timed like on a real PSP.
+     * The frames are decoded by this single thread, only their color conversion
+     * is run in parallel by the H264ImageConverter.
      */
     private class VideoDecoderThread extends Thread {
     	private volatile boolean exit = false;
@@ -1217,10 +1233,7 @@ public class sceMpeg extends HLEModule {
     		return false;
     	}
 
-    	DecodedImageInfo decodedImageInfo;
-    	synchronized (decodedImages) {
-        	decodedImageInfo = decodedImages.pollFirst();
-		}
+    	DecodedImageInfo decodedImageInfo = decodedImages.pollFirst();
 
     	if (decodedImageInfo == null) {
     		avcGotFrame = false;
@@ -1239,6 +1252,8 @@ public class sceMpeg extends HLEModule {
     	}
 
     	if (decodedImageInfo.gotFrame) {
+    		decodedImageInfo.waitForAbgr();
+
     		if (buffer == 0) {
     			int width = decodedImageInfo.imageWidth;
     			int height = decodedImageInfo.imageHeight - 18;
@@ -1344,32 +1359,42 @@ public class sceMpeg extends HLEModule {
     }
 
     private boolean isDecoderInErrorCondition() {
-    	synchronized (decodedImages) {
-	    	if (decodedImages.size() == 0) {
-	    		return false;
-	    	}
-	
-	    	DecodedImageInfo decodedImageInfo = decodedImages.peek();
-	    	if (decodedImageInfo.frameEnd >= 0 || decodedImageInfo.gotFrame) {
-	    		return false;
-	    	}
+    	DecodedImageInfo decodedImageInfo = decodedImages.peek();
+    	if (decodedImageInfo == null) {
+    		return false;
+    	}
 
-	    	return true;
+    	if (decodedImageInfo.frameEnd >= 0 || decodedImageInfo.gotFrame) {
+    		return false;
     	}
+
+    	return true;
     }
 
     private void removeErrorImages() {
-    	synchronized (decodedImages) {
-	    	while (isDecoderInErrorCondition()) {
-	    		if (log.isDebugEnabled()) {
-	    			log.debug(String.format("Removing error image %s", decodedImages.peek()));
-	    		}
-				decodedImages.remove();
-	    	}
+    	while (isDecoderInErrorCondition()) {
+    		DecodedImageInfo decodedImageInfo = decodedImages.poll();
+    		if (log.isDebugEnabled()) {
+    			log.debug(String.format("Removing error image %s", decodedImageInfo));
+    		}
     	}
     }
 
     private void decodeNextImage(TPointer auAddr) {
+    	// The video decoder thread is the only one adding images to the queue,
+    	// the other threads are only removing images: checking the size here
+    	// is enough to never exceed MAX_DECODED_IMAGES.
+    	if (decodedImages.size() >= MAX_DECODED_IMAGES) {
+    		DecodedImageInfo errorImageInfo = decodedImages.peek();
+    		if (!isDecoderInErrorCondition() || errorImageInfo == null) {
+    			// Wait for an image to be consumed
+    			return;
+    		}
+    		// Keep on decoding to leave the error condition,
+    		// but drop the oldest error image to make room
+    		decodedImages.removeFirstOccurrence(errorImageInfo);
+    	}
+
 		PesHeader pesHeader = new PesHeader(getRegisteredVideoChannel());
 		pesHeader.setDtsPts(UNKNOWN_TIMESTAMP);
 
@@ -1439,9 +1464,7 @@ public class sceMpeg extends HLEModule {
 		if (log.isDebugEnabled()) {
 			log.debug(String.format("Adding decoded image %s", decodedImageInfo));
 		}
-    	synchronized (decodedImages) {
-    		decodedImages.add(decodedImageInfo);
-    	}
+    	decodedImages.add(decodedImageInfo);
     }
 
     private void hleVideoDecoderStep(int threadUid, int buffer, int frameWidth, int pixelMode, TPointer32 gotFrameAddr, boolean writeAbgr, TPointer auAddr, long threadWakeupMicroTime) {
@@ -1460,7 +1483,7 @@ public class sceMpeg extends HLEModule {
     	restartThread(threadUid, buffer, frameWidth, pixelMode, gotFrameAddr, writeAbgr, threadWakeupMicroTime);
 
     	// Always decode one frame in advance
-		if (decodedImages.size() <= 1 || isDecoderInErrorCondition()) {
+		if (decodedImages.size() < MAX_DECODED_IMAGES || isDecoderInErrorCondition()) {
 			decodeNextImage(auAddr);
 		}
     }
@@ -1981,6 +2004,7 @@ public class sceMpeg extends HLEModule {
 			int memoryIntOffset = addr >> 2;
 			for (int y = 0; y < frameHeight; y++) {
 				System.arraycopy(abgr, offset, getMemoryInt(), memoryIntOffset, lineWidth);
+				MemoryWriteTracker.writeIndex(memoryIntOffset, lineWidth);
 				memoryIntOffset += frameWidth;
 				offset += imageWidth;
 			}
@@ -2021,6 +2045,15 @@ public class sceMpeg extends HLEModule {
 			log.debug(String.format("writeImageYCbCr addr=0x%08X-0x%08X, frameWidth=%d, frameHeight=%d", addr, addr + length + length2 + length2, frameWidth, frameHeight));
 		}
 
+		if (hasMemoryInt() && ((addr | length | length2) & 3) == 0) {
+			addr &= Memory.addressMask;
+			// Fast path: pack directly 4 samples into each memory int
+			sceVideocodec.write(addr, length, luma, 0);
+			sceVideocodec.write(addr + length, length2, cb, 0);
+			sceVideocodec.write(addr + length + length2, length2, cr, 0);
+			return;
+		}
+
 		IMemoryWriter memoryWriter = MemoryWriter.getMemoryWriter(addr, length + length2 + length2, 1);
 		for (int i = 0; i < length; i++) {
 			memoryWriter.writeNext(luma[i] & 0xFF);
@@ -2087,8 +2120,9 @@ public class sceMpeg extends HLEModule {
 			return false;
 		}
 
+		// Convert the image while the next image is being decoded
 		decodedImageInfo.abgr = getIntBuffer(length);
-		H264Utils.YUV2ABGR(width, height, decodedImageInfo.luma, decodedImageInfo.cb, decodedImageInfo.cr, decodedImageInfo.abgr);
+		decodedImageInfo.abgrConversion = H264ImageConverter.submitYUV2ABGR(width, height, decodedImageInfo.luma, decodedImageInfo.cb, decodedImageInfo.cr, decodedImageInfo.abgr);
 
 		return true;
     }
@@ -2114,9 +2148,7 @@ public class sceMpeg extends HLEModule {
         userDataLength = 0;
 
         if (decodedImages != null) {
-        	synchronized (decodedImages) {
-        		decodedImages.clear();
-        	}
+        	decodedImages.clear();
         }
     }
 
@@ -2174,7 +2206,7 @@ public class sceMpeg extends HLEModule {
         audioBuffer = new AudioBuffer(data.getAddress() + AUDIO_BUFFER_OFFSET, AUDIO_BUFFER_SIZE);
         videoBuffer = new VideoBuffer();
 
-        decodedImages = new LinkedList<sceMpeg.DecodedImageInfo>();
+        decodedImages = new ConcurrentLinkedDeque<sceMpeg.DecodedImageInfo>();
 
         startVideoDecoderThread();
        	videoDecoderThread.resetWaitingThreadInfo();
@@ -2376,9 +2408,7 @@ public class sceMpeg extends HLEModule {
         	startVideoDecoderThread();
         	DecodedImageInfo decodedImageInfo;
         	while (true) {
-            	synchronized (decodedImages) {
-            		decodedImageInfo = decodedImages.peek();
-            	}
+            	decodedImageInfo = decodedImages.peek();
         		if (decodedImageInfo != null) {
         			break;
         		}
@@ -3739,7 +3769,7 @@ public class sceMpeg extends HLEModule {
 
         // Convert YCbCr to ABGR
         int[] abgr = getIntBuffer(length);
-        H264Utils.YUV2ABGR(width, height, luma, cb, cr, abgr);
+        H264ImageConverter.YUV2ABGR(width, height, luma, cb, cr, abgr);
 
         releaseIntBuffer(luma);
         releaseIntBuffer(cb);
@@ -3757,6 +3787,7 @@ public class sceMpeg extends HLEModule {
 	        for (int i = 0; i < rangeHeight; i++) {
 	        	int addr = destAddr.getAddress() + (i * frameWidth) * bytesPerPixel;
 	        	System.arraycopy(abgr, pixelIndex, getMemoryInt(), addr >> 2, rangeWidth);
+	        	MemoryWriteTracker.writeIndex(addr >> 2, rangeWidth);
 	        	pixelIndex += width;
 	        }
 		} else {
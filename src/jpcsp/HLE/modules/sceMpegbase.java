@@ -39,10 +39,12 @@ import jpcsp.HLE.kernel.types.SceMp4AvcCscStruct;
 import jpcsp.HLE.kernel.types.SceMpegYCrCbBuffer;
 import jpcsp.HLE.kernel.types.SceMpegYCrCbBufferSrc;
 import jpcsp.graphics.VideoEngine;
+import jpcsp.media.codec.h264.H264ImageConverter;
 import jpcsp.media.codec.h264.H264Utils;
 import jpcsp.memory.IMemoryReader;
 import jpcsp.memory.IMemoryWriter;
 import jpcsp.memory.MemoryReader;
+import jpcsp.memory.MemoryWriteTracker;
 import jpcsp.memory.MemoryWriter;
 import jpcsp.util.Debug;
 import jpcsp.util.Utilities;
@@ -184,7 +186,7 @@ public class sceMpegbase extends HLEModule {
 
         // Convert YCbCr to ABGR
         int[] abgr = getIntBuffer(length);
-        H264Utils.YUV2ABGR(width, height, luma, cb, cr, abgr);
+        H264ImageConverter.YUV2ABGR(width, height, luma, cb, cr, abgr);
 
         releaseIntBuffer(luma);
         releaseIntBuffer(cb);
@@ -200,6 +202,7 @@ public class sceMpegbase extends HLEModule {
         	int addr = destAddr;
 	        for (int i = 0; i < rangeHeight; i++) {
 	        	System.arraycopy(abgr, pixelIndex, RuntimeContext.getMemoryInt(), addr >> 2, rangeWidth);
+	        	MemoryWriteTracker.writeIndex(addr >> 2, rangeWidth);
 	        	pixelIndex += width;
 	        	addr += bufferWidth * bytesPerPixel;
 	        }
@@ -342,7 +345,7 @@ public class sceMpegbase extends HLEModule {
 
         // Convert YCbCr to ABGR
         int[] abgr = getIntBuffer(length);
-        H264Utils.YUV2ABGR(width, height, luma, cb, cr, abgr);
+        H264ImageConverter.YUV2ABGR(width, height, luma, cb, cr, abgr);
 
         releaseIntBuffer(luma);
         releaseIntBuffer(cb);
@@ -358,6 +361,7 @@ public class sceMpegbase extends HLEModule {
 	        for (int i = 0; i < rangeHeight; i++) {
 	        	int addr = destAddr + (i * bufferWidth) * bytesPerPixel;
 	        	System.arraycopy(abgr, pixelIndex, RuntimeContext.getMemoryInt(), addr >> 2, rangeWidth);
+	        	MemoryWriteTracker.writeIndex(addr >> 2, rangeWidth);
 	        	pixelIndex += width;
 	        }
 		} else {
@@ -58,6 +58,7 @@ import jpcsp.network.adhoc.PdpObject;
 import jpcsp.network.adhoc.PtpObject;
 import jpcsp.network.upnp.AutoDetectJpcsp;
 import jpcsp.scheduler.Scheduler;
+import jpcsp.scheduler.SchedulerAction;
 import jpcsp.settings.AbstractBoolSettingsListener;
 import jpcsp.util.Utilities;
 
@@ -118,26 +119,29 @@ public class sceNetAdhoc extends HLEModule {
 
     protected static class GameModeScheduledAction implements IAction {
     	private final int scheduleRepeatMicros;
-    	private long nextSchedule;
+    	private SchedulerAction schedulerAction;
 
     	public GameModeScheduledAction(int scheduleRepeatMicros) {
     		this.scheduleRepeatMicros = scheduleRepeatMicros;
     	}
 
     	public void stop() {
-    		Scheduler.getInstance().removeAction(nextSchedule, this);
+    		if (schedulerAction != null) {
+    			Scheduler.getInstance().removeAction(schedulerAction);
+    			schedulerAction = null;
+    		}
     	}
 
     	public void start() {
-    		Scheduler.getInstance().addAction(this);
+    		schedulerAction = Scheduler.getInstance().addAction(this);
     	}
 
     	@Override
 		public void execute() {
     		Modules.sceNetAdhocModule.hleGameModeUpdate();
 
-    		nextSchedule = Scheduler.getNow() + scheduleRepeatMicros;
-    		Scheduler.getInstance().addAction(nextSchedule, this);
+    		long nextSchedule = Scheduler.getNow() + scheduleRepeatMicros;
+    		schedulerAction = Scheduler.getInstance().addAction(nextSchedule, this);
 		}
     }
 
@@ -45,6 +45,7 @@ import jpcsp.media.codec.IVideoCodec;
 import jpcsp.memory.IMemoryReader;
 import jpcsp.memory.IMemoryWriter;
 import jpcsp.memory.MemoryReader;
+import jpcsp.memory.MemoryWriteTracker;
 import jpcsp.memory.MemoryWriter;
 import jpcsp.scheduler.DelayThreadAction;
 import jpcsp.scheduler.UnblockThreadAction;
@@ -573,6 +574,7 @@ public class sceVideocodec extends HLEModule {
         	int length4 = length >> 2;
         	int addrOffset = addr >> 2;
     		int[] memoryInt = RuntimeContext.getMemoryInt();
+    		MemoryWriteTracker.writeIndex(addrOffset, length4);
 	        for (int i = 0, j = offset; i < length4; i++) {
 	        	int value = buffer[j++] & 0xFF;
 	        	value += (buffer[j++] & 0xFF) << 8;
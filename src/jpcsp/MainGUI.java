@@ -49,6 +49,7 @@ import javax.swing.*;
 import jpcsp.Allegrex.compiler.Profiler;
 import jpcsp.Allegrex.compiler.RuntimeContext;
 import jpcsp.autotests.AutoTestsRunner;
+import jpcsp.autotests.HeadlessRunner;
 import jpcsp.crypto.AES128;
 import jpcsp.Debugger.ElfHeaderInfo;
 import jpcsp.Debugger.ImageViewer;
@@ -1462,6 +1463,7 @@ private void OpenFileActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRS
             switch (FileUtil.getExtension(file)) {
                 case "iso":
                 case "cso":
+                case "zso":
                     loadUMD(file);
                     break;
                 default:
@@ -1586,7 +1588,7 @@ private void OpenFileActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRS
         } catch (GeneralJpcspException e) {
             JpcspDialogManager.showError(this, bundle.getString("MainGUI.strGeneralError.text") + ": " + e.getLocalizedMessage());
         } catch (IOException e) {
-            if (file.getName().contains("iso") || file.getName().contains("cso")) {
+            if (file.getName().contains("iso") || file.getName().contains("cso") || file.getName().contains("zso")) {
                 JpcspDialogManager.showError(this, bundle.getString("MainGUI.strCriticalError.text") + ": " + bundle.getString("MainGUI.strWrongLoader.text"));
             } else {
                 e.printStackTrace();
@@ -2875,6 +2877,7 @@ private void threeTimesResizeActionPerformed(java.awt.event.ActionEvent evt) {//
         out.println("  -u, --loadumd FILE         Load a UMD. Example: umdimages/cube.iso");
         out.println("  -r, --run                  Run loaded file or umd. Use with -f or -u option.");
         out.println("  -t, --tests                Run the automated tests.");
+        out.println("  --headless [OPTIONS] FILE  Run without display. Has to be the first option, use without FILE to list its options.");
         out.println("  --netClientPortShift N     Increase Network client ports by N (when running 2 Jpcsp on the same computer)");
         out.println("  --netServerPortShift N     Increase Network server ports by N (when running 2 Jpcsp on the same computer)");
         out.println("  --flash0 DIRECTORY         Use the given directory name for the PSP flash0:  device, instead of \"flash0/\"  by default.");
@@ -2964,7 +2967,7 @@ private void threeTimesResizeActionPerformed(java.awt.event.ActionEvent evt) {//
             	// The VSH root thread is running in KERNEL mode.
             	SceKernelThreadInfo rootThread = Modules.ThreadManForUserModule.getRootThread(null);
             	if (rootThread != null) {
-            		rootThread.currentPriority = 0x7E;
+            		Modules.ThreadManForUserModule.hleSetThreadPriority(rootThread, 0x7E);
             		rootThread.attr |= SceKernelThreadInfo.PSP_THREAD_ATTR_KERNEL;
             		rootThread.attr &= ~SceKernelThreadInfo.PSP_THREAD_ATTR_USER;
             	}
@@ -3026,6 +3029,12 @@ private void threeTimesResizeActionPerformed(java.awt.event.ActionEvent evt) {//
      * @param args the command line arguments
      */
     public static void main(String args[]) {
+        if (args.length > 0 && args[0].equals("--headless")) {
+            // Run without any GUI, see HeadlessRunner.usage()
+            HeadlessRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
     	initLog(args);
 
 		// Re-enable all disabled algorithms as the PSP is allowing them
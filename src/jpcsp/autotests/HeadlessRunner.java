@@ -0,0 +1,559 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.autotests;
+
+import static jpcsp.Allegrex.compiler.RuntimeContext.setLog4jMDC;
+
+import java.awt.DisplayMode;
+import java.awt.Rectangle;
+import java.awt.Window;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+
+import jpcsp.Emulator;
+import jpcsp.GeneralJpcspException;
+import jpcsp.Loader;
+import jpcsp.State;
+import jpcsp.Allegrex.compiler.RuntimeContext;
+import jpcsp.GUI.IMainGUI;
+import jpcsp.HLE.Modules;
+import jpcsp.HLE.kernel.types.SceModule;
+import jpcsp.crypto.AES128;
+import jpcsp.filesystems.umdiso.UmdIsoFile;
+import jpcsp.filesystems.umdiso.UmdIsoReader;
+import jpcsp.format.PSF;
+import jpcsp.graphics.RE.RenderingEngineFactory;
+import jpcsp.hardware.Screen;
+import jpcsp.settings.Settings;
+import jpcsp.sound.SoundChannel;
+import jpcsp.util.Utilities;
+
+/**
+ * Run PSP applications without any display, e.g. for batch or CI execution.
+ *
+ * The GE lists are processed either by the software renderer (into the PSP memory)
+ * or by the NullRenderingEngine (nothing is rendered). No window, no OpenGL
+ * context and no Swing component are created.
+ *
+ * When a single file is given, it is run in the current JVM.
+ * When several files are given, each file is run in a separate JVM process
+ * (the emulator state is static and cannot be shared between multiple
+ * instances in one JVM), with a limited number of processes running in parallel.
+ * The output of each process is saved into a log file and the statistics
+ * of all the instances are summarized at the end.
+ *
+ * Usage: see usage().
+ *
+ * @author gid15
+ *
+ */
+public class HeadlessRunner {
+	private static Logger log = Logger.getLogger("headless");
+	private static final String statisticsPrefix = "HEADLESS-STATS";
+	private static final String STATUS_OK = "OK";
+	private static final String STATUS_TIMEOUT = "TIMEOUT";
+	private static final String STATUS_ERROR = "ERROR";
+	// Options
+	private boolean nullRenderer = true;
+	private int maxFrames = 600;
+	private int timeoutSeconds = 60;
+	private boolean deterministicClock = false;
+	private long deterministicStartTimeMillis = 1262304000000L; // 2010-01-01 00:00:00 UTC
+	private long deterministicNanosPerRead = 1000L;
+	private int processes = Runtime.getRuntime().availableProcessors();
+	private String logSettingsFileName = "LogSettings.xml";
+	private File outputDirectory = new File(".");
+	private List<String> settingsOverrides = new LinkedList<String>();
+	private List<String> fileNames = new LinkedList<String>();
+
+	private static class HeadlessGUI implements IMainGUI {
+		@Override public void setMainTitle(String title) { }
+		@Override public void RefreshButtons() { }
+		@Override public void setLocation() { }
+		@Override public DisplayMode getDisplayMode() { return new DisplayMode(Screen.width, Screen.height, 32, 60); }
+		@Override public void endWindowDialog() { }
+		@Override public boolean isFullScreen() { return false; }
+		@Override public boolean isVisible() { return false; }
+		@Override public void pack() { }
+		@Override public void setFullScreenDisplaySize() { }
+		@Override public void startWindowDialog(Window window) { }
+		@Override public void startBackgroundWindowDialog(Window window) { }
+		@Override public Rectangle getCaptureRectangle() { return null; }
+		@Override public void onUmdChange() { }
+		@Override public void onMemoryStickChange() { }
+		@Override public void setDisplayMinimumSize(int width, int height) { }
+		@Override public void setDisplaySize(int width, int height) { }
+		@Override public void run() { }
+		@Override public void pause() { }
+		@Override public void reset() { }
+		@Override public boolean isRunningFromVsh() { return false; }
+	}
+
+	/**
+	 * Statistics of one instance, exchanged between the child processes
+	 * and the launcher as one line on the standard output.
+	 */
+	private static class InstanceStatistics {
+		public String fileName;
+		public String status = STATUS_ERROR;
+		public long startupMillis;
+		public long runMillis;
+		public int frames;
+		public long emulatedMillis;
+
+		public double getFps() {
+			return runMillis == 0 ? 0.0 : frames * 1000.0 / runMillis;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s\tstatus=%s\tframes=%d\tstartupMillis=%d\trunMillis=%d\temulatedMillis=%d\tfile=%s", statisticsPrefix, status, frames, startupMillis, runMillis, emulatedMillis, fileName);
+		}
+
+		public static InstanceStatistics parse(String line) {
+			if (!line.startsWith(statisticsPrefix + "\t")) {
+				return null;
+			}
+
+			Map<String, String> values = new HashMap<String, String>();
+			for (String part : line.split("\t")) {
+				int equal = part.indexOf('=');
+				if (equal > 0) {
+					values.put(part.substring(0, equal), part.substring(equal + 1));
+				}
+			}
+
+			InstanceStatistics statistics = new InstanceStatistics();
+			try {
+				statistics.fileName = values.get("file");
+				statistics.status = values.get("status");
+				statistics.frames = Integer.parseInt(values.get("frames"));
+				statistics.startupMillis = Long.parseLong(values.get("startupMillis"));
+				statistics.runMillis = Long.parseLong(values.get("runMillis"));
+				statistics.emulatedMillis = Long.parseLong(values.get("emulatedMillis"));
+			} catch (NumberFormatException e) {
+				return null;
+			}
+
+			return statistics;
+		}
+	}
+
+	private static class LauncherThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, String.format("Headless Launcher #%d", threadNumber.incrementAndGet()));
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
+
+	private static void usage() {
+		System.out.println("Usage: HeadlessRunner [OPTIONS] FILE...");
+		System.out.println("Run PSP applications (ISO/CSO/PBP/ELF/PRX) without display.");
+		System.out.println();
+		System.out.println("  --renderer null|software    Rendering of the GE lists (default: null).");
+		System.out.println("  --frames N                  Stop after N displayed frames (vblanks), 0 for no limit (default: 600).");
+		System.out.println("  --timeout SECONDS           Stop after the given host time (default: 60).");
+		System.out.println("  --deterministic-clock       Use a clock independent from the host time.");
+		System.out.println("  --processes N               Number of parallel processes when running multiple files");
+		System.out.println("                              (default: number of available processors).");
+		System.out.println("  --output DIRECTORY          Directory for the log files of each process (default: current directory).");
+		System.out.println("  --set KEY=VALUE             Override a settings option for this run only.");
+		System.out.println("  --logsettings FILE          Use the given log4j configuration (default: LogSettings.xml).");
+	}
+
+	private static String nextArg(String[] args, int i) {
+		if (i >= args.length) {
+			throw new IllegalArgumentException(String.format("Missing value for option '%s'", args[i - 1]));
+		}
+		return args[i];
+	}
+
+	private void processArgs(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("--renderer")) {
+				String renderer = nextArg(args, ++i);
+				if (renderer.equals("null")) {
+					nullRenderer = true;
+				} else if (renderer.equals("software")) {
+					nullRenderer = false;
+				} else {
+					throw new IllegalArgumentException(String.format("Unknown renderer '%s'", renderer));
+				}
+			} else if (arg.equals("--frames")) {
+				maxFrames = Integer.parseInt(nextArg(args, ++i));
+			} else if (arg.equals("--timeout")) {
+				timeoutSeconds = Integer.parseInt(nextArg(args, ++i));
+			} else if (arg.equals("--deterministic-clock")) {
+				deterministicClock = true;
+			} else if (arg.equals("--processes")) {
+				processes = Math.max(Integer.parseInt(nextArg(args, ++i)), 1);
+			} else if (arg.equals("--output")) {
+				outputDirectory = new File(nextArg(args, ++i));
+			} else if (arg.equals("--set")) {
+				String setting = nextArg(args, ++i);
+				if (setting.indexOf('=') <= 0) {
+					throw new IllegalArgumentException(String.format("Invalid setting '%s', expecting KEY=VALUE", setting));
+				}
+				settingsOverrides.add(setting);
+			} else if (arg.equals("--logsettings")) {
+				logSettingsFileName = nextArg(args, ++i);
+			} else if (arg.startsWith("--")) {
+				throw new IllegalArgumentException(String.format("Unknown option '%s'", arg));
+			} else {
+				fileNames.add(arg);
+			}
+		}
+	}
+
+	/**
+	 * @return the options to be passed to a child process,
+	 *         i.e. all the options excepted the file names and
+	 *         the process management.
+	 */
+	private List<String> getChildArgs() {
+		List<String> childArgs = new ArrayList<String>();
+		childArgs.add("--renderer");
+		childArgs.add(nullRenderer ? "null" : "software");
+		childArgs.add("--frames");
+		childArgs.add(Integer.toString(maxFrames));
+		childArgs.add("--timeout");
+		childArgs.add(Integer.toString(timeoutSeconds));
+		if (deterministicClock) {
+			childArgs.add("--deterministic-clock");
+		}
+		for (String setting : settingsOverrides) {
+			childArgs.add("--set");
+			childArgs.add(setting);
+		}
+		childArgs.add("--logsettings");
+		childArgs.add(logSettingsFileName);
+
+		return childArgs;
+	}
+
+	private void loadUmd(Emulator emulator, File file) throws IOException, GeneralJpcspException {
+		UmdIsoReader iso = new UmdIsoReader(file.getPath());
+
+		PSF psf = new PSF();
+		UmdIsoFile psfFile = iso.getFile("PSP_GAME/param.sfo");
+		byte[] data = new byte[(int) psfFile.length()];
+		psfFile.read(data);
+		psfFile.close();
+		psf.read(ByteBuffer.wrap(data));
+
+		if (psf.isLikelyHomebrew()) {
+			emulator.setFirmwareVersion(Loader.FIRMWAREVERSION_HOMEBREW);
+		} else {
+			emulator.setFirmwareVersion(psf.getString("PSP_SYSTEM_VER"));
+		}
+		RuntimeContext.setIsHomebrew(psf.isLikelyHomebrew());
+		State.discId = psf.getString("DISC_ID");
+		if (State.discId == null) {
+			State.discId = State.DISCID_UNKNOWN_UMD;
+		}
+		State.title = psf.getPrintableString("TITLE");
+		Settings.getInstance().loadPatchSettings();
+		Modules.SysMemUserForUserModule.setMemory64MB(psf.getNumeric("MEMSIZE") == 1);
+
+		boolean loaded = false;
+		// Same boot files order as in MainGUI.loadUMDGame()
+		for (String bootPath : new String[] { "PSP_GAME/SYSDIR/EBOOT.OLD", "PSP_GAME/SYSDIR/EBOOT.BIN", "PSP_GAME/SYSDIR/BOOT.BIN" }) {
+			try {
+				UmdIsoFile bootFile = iso.getFile(bootPath);
+				if (bootFile.length() != 0) {
+					byte[] boot = new byte[(int) bootFile.length()];
+					bootFile.read(boot);
+					bootFile.close();
+					emulator.load("disc0:/" + bootPath, ByteBuffer.wrap(boot));
+					loaded = true;
+					break;
+				}
+			} catch (FileNotFoundException e) {
+				// Try the next boot file
+			} catch (GeneralJpcspException e) {
+				// Try the next boot file
+			}
+		}
+
+		if (!loaded) {
+			throw new GeneralJpcspException(String.format("No loadable boot file found in '%s'", file));
+		}
+
+		Modules.IoFileMgrForUserModule.setfilepath("disc0/");
+		Modules.IoFileMgrForUserModule.setIsoReader(iso);
+		Modules.sceUmdUserModule.setIsoReader(iso);
+	}
+
+	private void loadFile(Emulator emulator, File file) throws IOException, GeneralJpcspException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		SceModule module;
+		try {
+			module = emulator.load(file.getPath(), Utilities.readAsByteBuffer(raf));
+		} finally {
+			raf.close();
+		}
+
+		PSF psf = module.psf;
+		if (psf != null) {
+			RuntimeContext.setIsHomebrew(psf.isLikelyHomebrew());
+			State.title = psf.getPrintableString("TITLE");
+		} else {
+			RuntimeContext.setIsHomebrew(true);
+			State.title = file.getName();
+		}
+
+		Modules.IoFileMgrForUserModule.setfilepath(file.getAbsoluteFile().getParent());
+		Modules.IoFileMgrForUserModule.setIsoReader(null);
+		Modules.sceUmdUserModule.setIsoReader(null);
+	}
+
+	private static boolean isUmdFile(File file) {
+		String name = file.getName().toLowerCase();
+		return name.endsWith(".iso") || name.endsWith(".cso") || name.endsWith(".zso");
+	}
+
+	/**
+	 * Run one file in the current JVM.
+	 */
+	private InstanceStatistics runInstance(String fileName) {
+		InstanceStatistics statistics = new InstanceStatistics();
+		statistics.fileName = fileName;
+
+		for (String setting : settingsOverrides) {
+			int equal = setting.indexOf('=');
+			Settings.getInstance().overrideProperty(setting.substring(0, equal), setting.substring(equal + 1));
+		}
+		// The GE lists are always processed by the software rendering display thread,
+		// even after a restart of the modules (e.g. by sceKernelLoadExec)
+		Settings.getInstance().overrideProperty("emu.useSoftwareRenderer", "1");
+		RenderingEngineFactory.setEnableNullRendering(nullRenderer);
+		SoundChannel.setNullAudio(true);
+
+		Emulator emulator = new Emulator(new HeadlessGUI());
+		if (deterministicClock) {
+			Emulator.setDeterministicClock(deterministicStartTimeMillis, deterministicNanosPerRead);
+		}
+		Modules.sceDisplayModule.setCalledFromCommandLine();
+
+		try {
+			File file = new File(fileName);
+			if (isUmdFile(file)) {
+				loadUmd(emulator, file);
+			} else {
+				loadFile(emulator, file);
+			}
+
+			statistics.startupMillis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+			log.info(String.format("Running '%s' (%s)", fileName, State.title));
+
+			long start = System.currentTimeMillis();
+			long timeoutMillis = timeoutSeconds * 1000L;
+			emulator.RunEmu();
+
+			statistics.status = STATUS_OK;
+			while (!Emulator.pause) {
+				if (maxFrames > 0 && Modules.sceDisplayModule.getVcount() >= maxFrames) {
+					break;
+				}
+				if (timeoutMillis > 0 && System.currentTimeMillis() - start >= timeoutMillis) {
+					statistics.status = STATUS_TIMEOUT;
+					break;
+				}
+				Modules.sceDisplayModule.step();
+				Utilities.sleep(1);
+			}
+
+			statistics.runMillis = System.currentTimeMillis() - start;
+			statistics.frames = Modules.sceDisplayModule.getVcount();
+			statistics.emulatedMillis = Emulator.getClock().milliTime();
+
+			Emulator.PauseEmu();
+			Emulator.exit();
+		} catch (Exception e) {
+			log.error(String.format("Running '%s'", fileName), e);
+			statistics.status = STATUS_ERROR;
+		}
+
+		return statistics;
+	}
+
+	/**
+	 * Run one file in a child JVM process.
+	 */
+	private InstanceStatistics runProcess(String fileName, int index) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.add("-Djava.awt.headless=true");
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(HeadlessRunner.class.getName());
+		command.addAll(getChildArgs());
+		command.add(fileName);
+
+		ProcessBuilder processBuilder = new ProcessBuilder(command);
+		processBuilder.redirectErrorStream(true);
+		Process process = processBuilder.start();
+		process.getOutputStream().close();
+
+		File logFile = new File(outputDirectory, String.format("headless-%d-%s.log", index, new File(fileName).getName()));
+		PrintWriter logWriter = new PrintWriter(new FileWriter(logFile));
+		InstanceStatistics statistics = null;
+		BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		try {
+			while (true) {
+				String line = reader.readLine();
+				if (line == null) {
+					break;
+				}
+				InstanceStatistics lineStatistics = InstanceStatistics.parse(line);
+				if (lineStatistics != null) {
+					statistics = lineStatistics;
+				}
+				logWriter.println(line);
+			}
+		} finally {
+			reader.close();
+			logWriter.close();
+		}
+		process.waitFor();
+
+		if (statistics == null) {
+			// The process did not complete normally
+			statistics = new InstanceStatistics();
+			statistics.fileName = fileName;
+		}
+
+		return statistics;
+	}
+
+	private int runParallel() {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(processes, fileNames.size()), new LauncherThreadFactory());
+		List<Future<InstanceStatistics>> futures = new ArrayList<Future<InstanceStatistics>>();
+
+		long start = System.currentTimeMillis();
+		int index = 0;
+		for (final String fileName : fileNames) {
+			final int processIndex = index++;
+			futures.add(executor.submit(new Callable<InstanceStatistics>() {
+				@Override
+				public InstanceStatistics call() throws Exception {
+					return runProcess(fileName, processIndex);
+				}
+			}));
+		}
+
+		List<InstanceStatistics> allStatistics = new ArrayList<InstanceStatistics>();
+		for (int i = 0; i < futures.size(); i++) {
+			InstanceStatistics statistics = null;
+			while (true) {
+				try {
+					statistics = futures.get(i).get();
+					break;
+				} catch (InterruptedException e) {
+					// Ignore exception and retry
+				} catch (ExecutionException e) {
+					log.error("HeadlessRunner", e.getCause());
+					break;
+				}
+			}
+			if (statistics == null) {
+				statistics = new InstanceStatistics();
+				statistics.fileName = fileNames.get(i);
+			}
+			allStatistics.add(statistics);
+		}
+		executor.shutdown();
+		long duration = System.currentTimeMillis() - start;
+
+		int failed = 0;
+		System.out.println(String.format("%-8s %8s %10s %10s %8s %12s  %s", "Status", "Frames", "Startup ms", "Run ms", "FPS", "Emulated ms", "File"));
+		for (InstanceStatistics statistics : allStatistics) {
+			System.out.println(String.format("%-8s %8d %10d %10d %8.2f %12d  %s", statistics.status, statistics.frames, statistics.startupMillis, statistics.runMillis, statistics.getFps(), statistics.emulatedMillis, statistics.fileName));
+			if (!STATUS_OK.equals(statistics.status)) {
+				failed++;
+			}
+		}
+		System.out.println(String.format("%d instances run in %d ms using %d parallel processes, %d failed", allStatistics.size(), duration, Math.min(processes, fileNames.size()), failed));
+
+		return failed == 0 ? 0 : 1;
+	}
+
+	public static void main(String[] args) {
+		HeadlessRunner runner = new HeadlessRunner();
+		try {
+			runner.processArgs(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			usage();
+			System.exit(2);
+		}
+
+		if (runner.fileNames.isEmpty()) {
+			usage();
+			System.exit(2);
+		}
+
+		int exitCode;
+		if (runner.fileNames.size() == 1) {
+			// Has to be set before the sceDisplay module is created,
+			// i.e. before any access to the Modules class
+			Screen.setHasScreen(false);
+
+			DOMConfigurator.configure(runner.logSettingsFileName);
+			setLog4jMDC();
+			AES128.init();
+
+			InstanceStatistics statistics = runner.runInstance(runner.fileNames.get(0));
+			System.out.println(statistics);
+			exitCode = STATUS_OK.equals(statistics.status) ? 0 : 1;
+		} else {
+			exitCode = runner.runParallel();
+		}
+
+		System.exit(exitCode);
+	}
+}
@@ -16,54 +16,165 @@ along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
  */
 package jpcsp.filesystems.umdiso;
 
-import jpcsp.util.FileUtil;
-
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
-import java.util.zip.InflaterInputStream;
 
+import jpcsp.settings.Settings;
+import jpcsp.util.LZ4;
+
+/**
+ * Sector device for the compressed ISO formats:
+ * - CSO v1: blocks compressed with deflate
+ * - CSO v2: blocks compressed with deflate or LZ4
+ * - ZSO: blocks compressed with LZ4
+ *
+ * Adjacent compressed blocks are read from the file with one single read,
+ * and decompressed in parallel by a shared pool of threads.
+ * When a sequential access is detected (e.g. streaming of a video or audio),
+ * the next blocks are decompressed in advance.
+ * The Inflaters and buffers are reused between the reads.
+ */
 public class CSOFileSectorDevice extends AbstractFileSectorDevice {
+	private static final long indexOffsetMask = 0x7FFFFFFFL;
+	private static final int indexFlag = 0x80000000;
+	private static final int COMPRESSION_NONE = 0;
+	private static final int COMPRESSION_DEFLATE = 1;
+	private static final int COMPRESSION_LZ4 = 2;
+	// Number of consecutive sequential reads before starting to prefetch
+	private static final int sequentialReadsBeforePrefetch = 2;
+	// Number of blocks read and decompressed together by one prefetch task
+	private static final int prefetchChunkBlocks = 8;
+	private static ExecutorService executor;
+	private static int executorThreads;
 	protected int offsetShift;
 	protected int numSectors;
-	protected long[] sectorOffsets;
-	private static final long sectorOffsetMask = 0x7FFFFFFFL;
+	protected int numBlocks;
+	protected int blockSize;
+	protected int sectorsPerBlock;
+	protected long lengthInBytes;
+	protected int version;
+	protected boolean isZSO;
+	protected int[] blockIndex;
+	private FileChannel fileChannel;
+	private final int threads;
+	private final int prefetchBlocks;
+	private final ConcurrentLinkedQueue<Inflater> inflaters = new ConcurrentLinkedQueue<Inflater>();
+	private final ConcurrentLinkedQueue<byte[]> blockBuffers = new ConcurrentLinkedQueue<byte[]>();
+	private final ConcurrentLinkedQueue<byte[]> readBuffers = new ConcurrentLinkedQueue<byte[]>();
+	private final Map<Integer, PrefetchChunk> prefetchedBlocks = new HashMap<Integer, PrefetchChunk>();
+	private int nextSequentialSector = -1;
+	private int sequentialReads;
+	private int prefetchEndBlock;
+
+	private static class PrefetchChunk {
+		private final int firstBlock;
+		private final Future<byte[][]> future;
+
+		public PrefetchChunk(int firstBlock, Future<byte[][]> future) {
+			this.firstBlock = firstBlock;
+			this.future = future;
+		}
+	}
+
+	private static class DecompressorThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, String.format("CSO Decompressor #%d", threadNumber.incrementAndGet()));
+			thread.setDaemon(true);
+			thread.setPriority(Thread.NORM_PRIORITY - 1);
+
+			return thread;
+		}
+	}
 
 	public CSOFileSectorDevice(RandomAccessFile fileAccess, byte[] header) throws IOException {
 		super(fileAccess);
 		ByteBuffer byteBuffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
 
         /*
-	        u32 'CISO'
-	        u64 image size in bytes (first u32 is highest 32-bit, second u32 is lowest 32-bit)
-	        u32 sector size? (00000800 = 2048 = sector size)
-	        u32 ? (1)
-	        u32[] sector offsets (as many as image size / sector size, I guess)
+	        u32 'CISO' or 'ZISO'
+	        u32 header size (0 or 0x18)
+	        u64 image size in bytes
+	        u32 block size (00000800 = 2048 = sector size)
+	        u8  version (1 or 2)
+	        u8  index alignment shift
+	        u16 reserved
+	        u32[] block index (number of blocks + 1)
          */
-		long lengthInBytes = (((long) byteBuffer.getInt(4)) << 32) | (byteBuffer.getInt(8) & 0xFFFFFFFFL);
-		int sectorSize = byteBuffer.getInt(16);
+		isZSO = header[0] == 'Z';
+		lengthInBytes = byteBuffer.getLong(8);
+		blockSize = byteBuffer.getInt(16);
+		version = byteBuffer.get(20) & 0xFF;
 		offsetShift = byteBuffer.get(21) & 0xFF;
-		numSectors = getNumSectors(lengthInBytes, sectorSize);
-		sectorOffsets = new long[numSectors + 1];
+		if (blockSize < sectorLength || (blockSize % sectorLength) != 0) {
+			throw new IOException(String.format("Unsupported CISO block size 0x%X", blockSize));
+		}
+		sectorsPerBlock = blockSize / sectorLength;
+		numSectors = getNumSectors(lengthInBytes, sectorLength);
+		numBlocks = getNumSectors(lengthInBytes, blockSize);
+		blockIndex = new int[numBlocks + 1];
 
-		byte[] offsetData = new byte[(numSectors + 1) * 4];
+		byte[] indexData = new byte[(numBlocks + 1) * 4];
 		fileAccess.seek(24);
-		fileAccess.readFully(offsetData);
-		ByteBuffer offsetBuffer = ByteBuffer.wrap(offsetData).order(ByteOrder.LITTLE_ENDIAN);
+		fileAccess.readFully(indexData);
+		ByteBuffer indexBuffer = ByteBuffer.wrap(indexData).order(ByteOrder.LITTLE_ENDIAN);
 
-		for (int i = 0; i <= numSectors; i++) {
-			sectorOffsets[i] = offsetBuffer.getInt(i * 4) & 0xFFFFFFFFL;
+		for (int i = 0; i <= numBlocks; i++) {
+			blockIndex[i] = indexBuffer.getInt(i * 4);
 			if (i > 0) {
-				if ((sectorOffsets[i] & sectorOffsetMask) < (sectorOffsets[i - 1] & sectorOffsetMask)) {
-					log.error(String.format("Corrupted CISO - Invalid offset [%d]: 0x%08X < 0x%08X", i, sectorOffsets[i], sectorOffsets[i - 1]));
+				if ((blockIndex[i] & indexOffsetMask) < (blockIndex[i - 1] & indexOffsetMask)) {
+					log.error(String.format("Corrupted CISO - Invalid offset [%d]: 0x%08X < 0x%08X", i, blockIndex[i], blockIndex[i - 1]));
 				}
 			}
 		}
+
+		fileChannel = fileAccess.getChannel();
+
+		Settings settings = Settings.getInstance();
+		// 0: one thread per processor, at most 4
+		int csoThreads = settings.readInt("emu.umd.cso.threads", 0);
+		threads = csoThreads > 0 ? csoThreads : Math.min(Runtime.getRuntime().availableProcessors(), 4);
+		prefetchBlocks = settings.readInt("emu.umd.cso.prefetchBlocks", 32);
+
+		if (log.isDebugEnabled()) {
+			log.debug(String.format("%s v%d: %d bytes, blockSize=0x%X, %d blocks, align=%d, threads=%d, prefetch=%d", isZSO ? "ZISO" : "CISO", version, lengthInBytes, blockSize, numBlocks, offsetShift, threads, prefetchBlocks));
+		}
+	}
+
+	private static synchronized ExecutorService getExecutor(int threads) {
+		if (threads <= 1) {
+			return null;
+		}
+
+		if (executor == null || executorThreads != threads) {
+			if (executor != null) {
+				executor.shutdown();
+			}
+			executor = Executors.newFixedThreadPool(threads, new DecompressorThreadFactory());
+			executorThreads = threads;
+		}
+
+		return executor;
 	}
 
 	@Override
@@ -71,36 +182,366 @@ public class CSOFileSectorDevice extends AbstractFileSectorDevice {
 		return numSectors;
 	}
 
+	private long getBlockPosition(int block) {
+		return (blockIndex[block] & indexOffsetMask) << offsetShift;
+	}
+
+	private int getBlockCompressedLength(int block) {
+		return (int) (getBlockPosition(block + 1) - getBlockPosition(block));
+	}
+
+	private int getBlockLength(int block) {
+		return (int) Math.min(blockSize, lengthInBytes - ((long) block) * blockSize);
+	}
+
+	private int getCompression(int block, int compressedLength) {
+		boolean flag = (blockIndex[block] & indexFlag) != 0;
+		if (isZSO) {
+			return flag ? COMPRESSION_NONE : COMPRESSION_LZ4;
+		}
+		if (version >= 2) {
+			if (compressedLength >= blockSize) {
+				return COMPRESSION_NONE;
+			}
+			return flag ? COMPRESSION_LZ4 : COMPRESSION_DEFLATE;
+		}
+		return flag ? COMPRESSION_NONE : COMPRESSION_DEFLATE;
+	}
+
+	private byte[] getReadBuffer(int length) {
+		byte[] readBuffer = readBuffers.poll();
+		if (readBuffer == null || readBuffer.length < length) {
+			readBuffer = new byte[Math.max(length, blockSize)];
+		}
+
+		return readBuffer;
+	}
+
+	private byte[] getBlockBuffer() {
+		byte[] blockBuffer = blockBuffers.poll();
+		if (blockBuffer == null) {
+			blockBuffer = new byte[blockSize];
+		}
+
+		return blockBuffer;
+	}
+
+	private Inflater getInflater() {
+		Inflater inflater = inflaters.poll();
+		if (inflater == null) {
+			inflater = new Inflater(true);
+		}
+
+		return inflater;
+	}
+
+	private void releaseInflater(Inflater inflater) {
+		inflater.reset();
+		inflaters.add(inflater);
+	}
+
+	/**
+	 * Read the compressed data of the blocks [firstBlock..lastBlock]
+	 * with one single read.
+	 */
+	private byte[] readBlocks(int firstBlock, int lastBlock) throws IOException {
+		long position = getBlockPosition(firstBlock);
+		int length = (int) (getBlockPosition(lastBlock + 1) - position);
+		byte[] readBuffer = getReadBuffer(length);
+
+		ByteBuffer byteBuffer = ByteBuffer.wrap(readBuffer, 0, Math.max(length, 0));
+		while (byteBuffer.hasRemaining()) {
+			// Positional read: the file position is not used and
+			// multiple threads can read at the same time.
+			int readLength = fileChannel.read(byteBuffer, position + byteBuffer.position());
+			if (readLength < 0) {
+				// End of file
+				Arrays.fill(readBuffer, byteBuffer.position(), length, (byte) 0);
+				break;
+			}
+		}
+
+		return readBuffer;
+	}
+
+	/**
+	 * Decompress one block.
+	 * blockSize bytes are always stored into the output buffer.
+	 */
+	private void decompressBlock(int block, byte[] input, int inputOffset, byte[] output, int outputOffset) throws IOException {
+		int compressedLength = getBlockCompressedLength(block);
+		int length = getBlockLength(block);
+		int decompressedLength = 0;
+
+		if (compressedLength > 0) {
+			switch (getCompression(block, compressedLength)) {
+				case COMPRESSION_NONE:
+					decompressedLength = Math.min(compressedLength, length);
+					System.arraycopy(input, inputOffset, output, outputOffset, decompressedLength);
+					break;
+				case COMPRESSION_DEFLATE:
+					Inflater inflater = getInflater();
+					try {
+						inflater.setInput(input, inputOffset, compressedLength);
+						while (decompressedLength < length && !inflater.finished()) {
+							int n = inflater.inflate(output, outputOffset + decompressedLength, length - decompressedLength);
+							if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+								break;
+							}
+							decompressedLength += n;
+						}
+					} catch (DataFormatException e) {
+						throw new IOException(String.format("Exception while uncompressing block %d", block), e);
+					} finally {
+						releaseInflater(inflater);
+					}
+					break;
+				case COMPRESSION_LZ4:
+					decompressedLength = LZ4.decompress(input, inputOffset, compressedLength, output, outputOffset, length);
+					break;
+			}
+		}
+
+		if (decompressedLength < blockSize) {
+			Arrays.fill(output, outputOffset + decompressedLength, outputOffset + blockSize, (byte) 0);
+		}
+	}
+
+	/**
+	 * Copy the sectors of a decompressed block which are part of the requested sectors.
+	 */
+	private void copyBlock(int block, byte[] blockBuffer, int sectorNumber, int numberSectors, byte[] buffer, int offset) {
+		int blockFirstSector = block * sectorsPerBlock;
+		int firstSector = Math.max(blockFirstSector, sectorNumber);
+		int endSector = Math.min(blockFirstSector + sectorsPerBlock, sectorNumber + numberSectors);
+		System.arraycopy(blockBuffer, (firstSector - blockFirstSector) * sectorLength, buffer, offset + (firstSector - sectorNumber) * sectorLength, (endSector - firstSector) * sectorLength);
+	}
+
+	private class DecompressBlockTask implements Callable<Void> {
+		private final int block;
+		private final byte[] input;
+		private final int inputOffset;
+		private final int sectorNumber;
+		private final int numberSectors;
+		private final byte[] buffer;
+		private final int offset;
+
+		public DecompressBlockTask(int block, byte[] input, int inputOffset, int sectorNumber, int numberSectors, byte[] buffer, int offset) {
+			this.block = block;
+			this.input = input;
+			this.inputOffset = inputOffset;
+			this.sectorNumber = sectorNumber;
+			this.numberSectors = numberSectors;
+			this.buffer = buffer;
+			this.offset = offset;
+		}
+
+		@Override
+		public Void call() throws IOException {
+			int blockFirstSector = block * sectorsPerBlock;
+			if (blockFirstSector >= sectorNumber && blockFirstSector + sectorsPerBlock <= sectorNumber + numberSectors) {
+				// The complete block is requested, decompress directly into the buffer
+				decompressBlock(block, input, inputOffset, buffer, offset + (blockFirstSector - sectorNumber) * sectorLength);
+			} else {
+				byte[] blockBuffer = getBlockBuffer();
+				decompressBlock(block, input, inputOffset, blockBuffer, 0);
+				copyBlock(block, blockBuffer, sectorNumber, numberSectors, buffer, offset);
+				blockBuffers.add(blockBuffer);
+			}
+
+			return null;
+		}
+	}
+
+	private class PrefetchTask implements Callable<byte[][]> {
+		private final int firstBlock;
+		private final int lastBlock;
+
+		public PrefetchTask(int firstBlock, int lastBlock) {
+			this.firstBlock = firstBlock;
+			this.lastBlock = lastBlock;
+		}
+
+		@Override
+		public byte[][] call() throws IOException {
+			byte[] input = readBlocks(firstBlock, lastBlock);
+			byte[][] blocks = new byte[lastBlock - firstBlock + 1][];
+			long firstPosition = getBlockPosition(firstBlock);
+			for (int block = firstBlock; block <= lastBlock; block++) {
+				byte[] blockBuffer = getBlockBuffer();
+				decompressBlock(block, input, (int) (getBlockPosition(block) - firstPosition), blockBuffer, 0);
+				blocks[block - firstBlock] = blockBuffer;
+			}
+			readBuffers.add(input);
+
+			return blocks;
+		}
+	}
+
+	private static IOException getIOException(ExecutionException e) {
+		if (e.getCause() instanceof IOException) {
+			return (IOException) e.getCause();
+		}
+		return new IOException(e.getCause());
+	}
+
+	/**
+	 * Decompress the blocks [firstBlock..lastBlock] into the buffer.
+	 */
+	private void decompressBlocks(int firstBlock, int lastBlock, int sectorNumber, int numberSectors, byte[] buffer, int offset) throws IOException {
+		byte[] input = readBlocks(firstBlock, lastBlock);
+		long firstPosition = getBlockPosition(firstBlock);
+		ExecutorService executor = getExecutor(threads);
+
+		if (executor == null || firstBlock == lastBlock) {
+			for (int block = firstBlock; block <= lastBlock; block++) {
+				new DecompressBlockTask(block, input, (int) (getBlockPosition(block) - firstPosition), sectorNumber, numberSectors, buffer, offset).call();
+			}
+		} else {
+			// Decompress the first block in the current thread
+			// and the other blocks in parallel.
+			List<Future<Void>> futures = new ArrayList<Future<Void>>(lastBlock - firstBlock);
+			for (int block = firstBlock + 1; block <= lastBlock; block++) {
+				futures.add(executor.submit(new DecompressBlockTask(block, input, (int) (getBlockPosition(block) - firstPosition), sectorNumber, numberSectors, buffer, offset)));
+			}
+			IOException exception = null;
+			try {
+				new DecompressBlockTask(firstBlock, input, 0, sectorNumber, numberSectors, buffer, offset).call();
+			} catch (IOException e) {
+				exception = e;
+			}
+			for (Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch (InterruptedException e) {
+					exception = new IOException(e);
+				} catch (ExecutionException e) {
+					exception = getIOException(e);
+				}
+			}
+			if (exception != null) {
+				throw exception;
+			}
+		}
+
+		readBuffers.add(input);
+	}
+
+	/**
+	 * @return the prefetched block or null if the prefetch has failed
+	 */
+	private byte[] getPrefetchedBlock(int block, PrefetchChunk prefetchChunk) {
+		try {
+			return prefetchChunk.future.get()[block - prefetchChunk.firstBlock];
+		} catch (InterruptedException e) {
+			// Ignore exception
+		} catch (ExecutionException e) {
+			if (log.isDebugEnabled()) {
+				log.debug(String.format("CSO prefetch of block %d failed", block), e.getCause());
+			}
+		}
+
+		return null;
+	}
+
+	private void cancelPrefetch() {
+		for (PrefetchChunk prefetchChunk : prefetchedBlocks.values()) {
+			prefetchChunk.future.cancel(false);
+		}
+		prefetchedBlocks.clear();
+		prefetchEndBlock = 0;
+	}
+
+	private void updateSequentialReads(int sectorNumber, int numberSectors) {
+		if (sectorNumber == nextSequentialSector) {
+			sequentialReads++;
+		} else {
+			sequentialReads = 0;
+			cancelPrefetch();
+		}
+		nextSequentialSector = sectorNumber + numberSectors;
+	}
+
+	private void schedulePrefetch(int lastReadBlock) {
+		if (sequentialReads < sequentialReadsBeforePrefetch || prefetchBlocks <= 0) {
+			return;
+		}
+
+		ExecutorService executor = getExecutor(threads);
+		if (executor == null) {
+			return;
+		}
+
+		int firstBlock = Math.max(lastReadBlock + 1, prefetchEndBlock);
+		int lastBlock = Math.min(lastReadBlock + prefetchBlocks, numBlocks - 1);
+		for (int chunkFirstBlock = firstBlock; chunkFirstBlock <= lastBlock; chunkFirstBlock += prefetchChunkBlocks) {
+			int chunkLastBlock = Math.min(chunkFirstBlock + prefetchChunkBlocks - 1, lastBlock);
+			PrefetchChunk prefetchChunk = new PrefetchChunk(chunkFirstBlock, executor.submit(new PrefetchTask(chunkFirstBlock, chunkLastBlock)));
+			for (int block = chunkFirstBlock; block <= chunkLastBlock; block++) {
+				prefetchedBlocks.put(block, prefetchChunk);
+			}
+		}
+		prefetchEndBlock = Math.max(prefetchEndBlock, lastBlock + 1);
+	}
+
 	@Override
 	public void readSector(int sectorNumber, byte[] buffer, int offset) throws IOException {
-		long sectorOffset = sectorOffsets[sectorNumber];
-        long sectorEnd = sectorOffsets[sectorNumber + 1];
-
-        if ((sectorOffset & 0x80000000) != 0) {
-            long realOffset = (sectorOffset & sectorOffsetMask) << offsetShift;
-            fileAccess.seek(realOffset);
-            fileAccess.read(buffer, offset, sectorLength);
-        } else {
-	        sectorEnd = (sectorEnd & sectorOffsetMask) << offsetShift;
-	        sectorOffset = (sectorOffset & sectorOffsetMask) << offsetShift;
-
-	        int compressedLength = (int) (sectorEnd - sectorOffset);
-	        if (compressedLength < 0) {
-	        	Arrays.fill(buffer, offset, offset + sectorLength, (byte) 0);
-	        } else {
-		        byte[] compressedData = new byte[compressedLength];
-		        fileAccess.seek(sectorOffset);
-		        fileAccess.read(compressedData);
-
-		        try {
-		            Inflater inf = new Inflater(true);
-					try (InputStream s = new InflaterInputStream(new ByteArrayInputStream(compressedData), inf)) {
-						FileUtil.readAll(s, buffer, offset, sectorLength);
-					}
-		        } catch (IOException e) {
-		            throw new IOException(String.format("Exception while uncompressing sector %d", sectorNumber));
-		        }
-	        }
-        }
+		readSectors(sectorNumber, 1, buffer, offset);
+	}
+
+	@Override
+	public synchronized int readSectors(int sectorNumber, int numberSectors, byte[] buffer, int offset) throws IOException {
+		if (sectorNumber < 0) {
+			throw new IOException(String.format("Invalid sector number %d", sectorNumber));
+		}
+
+		// Only read the sectors up to the end of the image,
+		// the blockIndex is not covering the blocks after the end.
+		numberSectors = Math.min(numberSectors, numSectors - sectorNumber);
+		if (numberSectors <= 0) {
+			return 0;
+		}
+
+		updateSequentialReads(sectorNumber, numberSectors);
+
+		int firstBlock = sectorNumber / sectorsPerBlock;
+		int lastBlock = (sectorNumber + numberSectors - 1) / sectorsPerBlock;
+		for (int block = firstBlock; block <= lastBlock; ) {
+			PrefetchChunk prefetchChunk = prefetchedBlocks.remove(block);
+			if (prefetchChunk != null) {
+				byte[] blockBuffer = getPrefetchedBlock(block, prefetchChunk);
+				if (blockBuffer != null) {
+					copyBlock(block, blockBuffer, sectorNumber, numberSectors, buffer, offset);
+					blockBuffers.add(blockBuffer);
+					block++;
+					continue;
+				}
+			}
+
+			// Decompress together all the following blocks not being prefetched
+			int lastDecompressBlock = block;
+			while (lastDecompressBlock < lastBlock && !prefetchedBlocks.containsKey(lastDecompressBlock + 1)) {
+				lastDecompressBlock++;
+			}
+			decompressBlocks(block, lastDecompressBlock, sectorNumber, numberSectors, buffer, offset);
+			block = lastDecompressBlock + 1;
+		}
+
+		schedulePrefetch(lastBlock);
+
+		return numberSectors;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		cancelPrefetch();
+		for (Inflater inflater = inflaters.poll(); inflater != null; inflater = inflaters.poll()) {
+			inflater.end();
+		}
+		blockBuffers.clear();
+		readBuffers.clear();
+		fileChannel = null;
+
+		super.close();
 	}
 }
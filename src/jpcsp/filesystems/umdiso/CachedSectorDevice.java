@@ -0,0 +1,270 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.filesystems.umdiso;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import jpcsp.Emulator;
+import jpcsp.util.CacheStatistics;
+import jpcsp.util.DurationStatistics;
+import jpcsp.util.metrics.MetricsRegistry;
+
+import org.apache.log4j.Logger;
+
+/**
+ * In-memory cache of the sectors read from another sector device.
+ *
+ * The cache is holding a fixed number of sectors and evicts the sectors
+ * using the CLOCK algorithm (an approximation of LRU): a sector found
+ * in the cache is marked as referenced, and the eviction hand skips
+ * (and unmarks) the referenced sectors.
+ * A newly cached sector is not marked as referenced, so that a long
+ * sequential read does not evict the sectors being read repeatedly.
+ *
+ * The lookups are performed under a lock, but the sectors missing in the
+ * cache are read from the underlying device outside of the lock.
+ *
+ * @author gid15
+ *
+ */
+public class CachedSectorDevice implements ISectorDevice {
+	private static Logger log = Emulator.log;
+	private final ISectorDevice sectorDevice;
+	private final int numSectors;
+	private final int cacheSize;
+	// The sectors stored in the cache, cacheSize * sectorLength bytes
+	private final byte[] cache;
+	// For each cache slot, the sector number stored in the slot or -1
+	private final int[] slotSectors;
+	private final boolean[] slotReferenced;
+	// For each sector, the cache slot where it is stored or -1
+	private final int[] sectorSlots;
+	private int clockHand;
+	private int usedSlots;
+	private final CacheStatistics statistics;
+
+	/**
+	 * @param sectorDevice  the device to be cached
+	 * @param cacheSize     the maximum number of sectors in the cache
+	 * @throws IOException
+	 */
+	public CachedSectorDevice(ISectorDevice sectorDevice, int cacheSize) throws IOException {
+		this.sectorDevice = sectorDevice;
+		this.cacheSize = cacheSize;
+		numSectors = sectorDevice.getNumSectors();
+
+		cache = new byte[cacheSize * sectorLength];
+		slotSectors = new int[cacheSize];
+		Arrays.fill(slotSectors, -1);
+		slotReferenced = new boolean[cacheSize];
+		sectorSlots = new int[Math.max(numSectors, 0)];
+		Arrays.fill(sectorSlots, -1);
+
+		statistics = new CacheStatistics("Sector", cacheSize);
+		MetricsRegistry.getInstance().registerCacheStatistics("Sector", statistics);
+	}
+
+	public ISectorDevice getSectorDevice() {
+		return sectorDevice;
+	}
+
+	public CacheStatistics getStatistics() {
+		return statistics;
+	}
+
+	private boolean isCacheable(int sectorNumber) {
+		return sectorNumber >= 0 && sectorNumber < sectorSlots.length;
+	}
+
+	/**
+	 * Copy a sector from the cache.
+	 * Has to be called while holding the lock.
+	 *
+	 * @return true if the sector was present in the cache
+	 */
+	private boolean readFromCache(int sectorNumber, byte[] buffer, int offset) {
+		statistics.totalHits++;
+		int slot = sectorSlots[sectorNumber];
+		if (slot < 0) {
+			statistics.notPresentHits++;
+			return false;
+		}
+
+		statistics.successfulHits++;
+		slotReferenced[slot] = true;
+		System.arraycopy(cache, slot * sectorLength, buffer, offset, sectorLength);
+
+		return true;
+	}
+
+	/**
+	 * Store a sector into the cache.
+	 * Has to be called while holding the lock.
+	 */
+	private void storeIntoCache(int sectorNumber, byte[] buffer, int offset) {
+		int slot = sectorSlots[sectorNumber];
+		if (slot < 0) {
+			slot = getFreeSlot();
+			slotSectors[slot] = sectorNumber;
+			slotReferenced[slot] = false;
+			sectorSlots[sectorNumber] = slot;
+		}
+		System.arraycopy(buffer, offset, cache, slot * sectorLength, sectorLength);
+	}
+
+	private int getFreeSlot() {
+		if (usedSlots < cacheSize) {
+			int slot = usedSlots++;
+			if (usedSlots > statistics.maxSizeUsed) {
+				statistics.maxSizeUsed = usedSlots;
+			}
+			return slot;
+		}
+
+		// CLOCK eviction: give a second chance to the referenced sectors
+		while (true) {
+			int slot = clockHand;
+			clockHand++;
+			if (clockHand >= cacheSize) {
+				clockHand = 0;
+			}
+
+			if (slotReferenced[slot]) {
+				slotReferenced[slot] = false;
+			} else {
+				int evictedSectorNumber = slotSectors[slot];
+				if (evictedSectorNumber >= 0) {
+					sectorSlots[evictedSectorNumber] = -1;
+					statistics.entriesRemoved++;
+				}
+				return slot;
+			}
+		}
+	}
+
+	private synchronized void invalidate(int sectorNumber, int numberSectors) {
+		for (int i = 0; i < numberSectors; i++) {
+			if (isCacheable(sectorNumber + i)) {
+				int slot = sectorSlots[sectorNumber + i];
+				if (slot >= 0) {
+					sectorSlots[sectorNumber + i] = -1;
+					slotSectors[slot] = -1;
+					slotReferenced[slot] = false;
+				}
+			}
+		}
+	}
+
+	@Override
+	public int getNumSectors() throws IOException {
+		return sectorDevice.getNumSectors();
+	}
+
+	@Override
+	public void readSector(int sectorNumber, byte[] buffer, int offset) throws IOException {
+		if (!isCacheable(sectorNumber)) {
+			sectorDevice.readSector(sectorNumber, buffer, offset);
+			return;
+		}
+
+		synchronized (this) {
+			if (readFromCache(sectorNumber, buffer, offset)) {
+				return;
+			}
+		}
+
+		sectorDevice.readSector(sectorNumber, buffer, offset);
+
+		synchronized (this) {
+			storeIntoCache(sectorNumber, buffer, offset);
+		}
+	}
+
+	@Override
+	public int readSectors(int sectorNumber, int numberSectors, byte[] buffer, int offset) throws IOException {
+		if (numberSectors <= 0) {
+			return 0;
+		}
+		if (!isCacheable(sectorNumber) || !isCacheable(sectorNumber + numberSectors - 1)) {
+			return sectorDevice.readSectors(sectorNumber, numberSectors, buffer, offset);
+		}
+
+		// Do not let one large read evict the complete cache
+		boolean storeIntoCache = numberSectors <= (cacheSize >> 2);
+
+		int i = 0;
+		while (i < numberSectors) {
+			// Copy the sectors present in the cache and
+			// search for the next run of sectors missing in the cache
+			int missingSectors = 0;
+			synchronized (this) {
+				while (i < numberSectors && readFromCache(sectorNumber + i, buffer, offset + i * sectorLength)) {
+					i++;
+				}
+				if (i < numberSectors) {
+					missingSectors = 1;
+					while (i + missingSectors < numberSectors && sectorSlots[sectorNumber + i + missingSectors] < 0) {
+						missingSectors++;
+					}
+				}
+			}
+
+			if (missingSectors > 0) {
+				// Read all the missing sectors from the device at once
+				sectorDevice.readSectors(sectorNumber + i, missingSectors, buffer, offset + i * sectorLength);
+
+				synchronized (this) {
+					for (int j = 0; j < missingSectors; j++) {
+						if (j > 0) {
+							// Count the hit missed by the search for the run of missing sectors
+							statistics.totalHits++;
+							statistics.notPresentHits++;
+						}
+						if (storeIntoCache) {
+							storeIntoCache(sectorNumber + i + j, buffer, offset + (i + j) * sectorLength);
+						}
+					}
+				}
+				i += missingSectors;
+			}
+		}
+
+		return numberSectors;
+	}
+
+	@Override
+	public void writeSector(int sectorNumber, byte[] buffer, int offset) throws IOException {
+		invalidate(sectorNumber, 1);
+		sectorDevice.writeSector(sectorNumber, buffer, offset);
+	}
+
+	@Override
+	public void writeSectors(int sectorNumber, int numberSectors, byte[] buffer, int offset) throws IOException {
+		invalidate(sectorNumber, numberSectors);
+		sectorDevice.writeSectors(sectorNumber, numberSectors, buffer, offset);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (DurationStatistics.collectStatistics) {
+			log.info(statistics);
+		}
+
+		sectorDevice.close();
+	}
+}
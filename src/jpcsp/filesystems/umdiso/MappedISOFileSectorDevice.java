@@ -0,0 +1,222 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.filesystems.umdiso;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import jpcsp.Memory;
+
+/**
+ * ISO image read through memory mapped windows of the file.
+ *
+ * The image is mapped lazily by windows of windowSize bytes, so that
+ * images larger than a single mapping (2GB) can be served and only the
+ * parts of the image being accessed are using virtual address space.
+ * The sectors are copied directly from the mapping, without any
+ * seek or read system call.
+ *
+ * When a window cannot be mapped (e.g. not enough address space on
+ * a 32-bit JVM), the sectors are read through the RandomAccessFile
+ * as done by ISOFileSectorDevice.
+ *
+ * @author gid15
+ *
+ */
+public class MappedISOFileSectorDevice extends ISOFileSectorDevice {
+	// Must be a multiple of sectorLength
+	private static final int windowShift = 28;
+	private static final int windowSize = 1 << windowShift; // 256MB
+	private FileChannel channel;
+	private long length;
+	private MappedByteBuffer[] windows;
+	private boolean mapFailed;
+
+	public MappedISOFileSectorDevice(RandomAccessFile fileAccess) throws IOException {
+		super(fileAccess);
+
+		channel = fileAccess.getChannel();
+		length = channel.size();
+		int numberWindows = (int) ((length + windowSize - 1) >> windowShift);
+		windows = new MappedByteBuffer[numberWindows];
+	}
+
+	private synchronized MappedByteBuffer getWindow(int windowIndex) {
+		MappedByteBuffer window = windows[windowIndex];
+		if (window == null && !mapFailed && channel != null) {
+			long position = ((long) windowIndex) << windowShift;
+			long size = Math.min(length - position, windowSize);
+			try {
+				window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+				windows[windowIndex] = window;
+			} catch (IOException e) {
+				log.warn(String.format("Cannot map the ISO file at 0x%X, reading it without mapping: %s", position, e));
+				mapFailed = true;
+			}
+		}
+
+		return window;
+	}
+
+	/**
+	 * Copy bytes from the image into a byte array.
+	 * Synchronized with close(): the mappings are not released while being read.
+	 *
+	 * @return the number of bytes copied, or -1 if the mapping is not available
+	 */
+	private synchronized int read(long position, byte[] buffer, int offset, int size) {
+		int readLength = 0;
+		while (readLength < size && position < length) {
+			int windowIndex = (int) (position >> windowShift);
+			int windowOffset = (int) (position & (windowSize - 1));
+			MappedByteBuffer window = getWindow(windowIndex);
+			if (window == null) {
+				return -1;
+			}
+
+			int copyLength = (int) Math.min(Math.min(size - readLength, windowSize - windowOffset), length - position);
+			ByteBuffer source = window.duplicate();
+			source.position(windowOffset);
+			source.get(buffer, offset + readLength, copyLength);
+
+			readLength += copyLength;
+			position += copyLength;
+		}
+
+		return readLength;
+	}
+
+	@Override
+	public void readSector(int sectorNumber, byte[] buffer, int offset) throws IOException {
+		int readLength = read(((long) sectorLength) * sectorNumber, buffer, offset, sectorLength);
+		if (readLength < 0) {
+			super.readSector(sectorNumber, buffer, offset);
+		} else if (readLength < sectorLength) {
+			Arrays.fill(buffer, offset + readLength, offset + sectorLength, (byte) 0);
+		}
+	}
+
+	@Override
+	public int readSectors(int sectorNumber, int numberSectors, byte[] buffer, int offset) throws IOException {
+		int size = numberSectors * sectorLength;
+		int readLength = read(((long) sectorLength) * sectorNumber, buffer, offset, size);
+		if (readLength < 0) {
+			return super.readSectors(sectorNumber, numberSectors, buffer, offset);
+		}
+
+		// Fill the last sector when it is only partially available
+		int lastSectorGap = readLength % sectorLength;
+		if (lastSectorGap > 0) {
+			Arrays.fill(buffer, offset + readLength, offset + readLength + sectorLength - lastSectorGap, (byte) 0);
+			readLength += sectorLength - lastSectorGap;
+		}
+
+		return readLength / sectorLength;
+	}
+
+	/**
+	 * Copy bytes from the image directly into the PSP memory.
+	 *
+	 * @param position  the position in the image
+	 * @param address   the PSP memory address
+	 * @param size      the number of bytes to be copied
+	 * @return          true if the bytes have been copied,
+	 *                  false if the mapping is not available
+	 *                  (the caller has to read the bytes differently).
+	 */
+	public synchronized boolean readToMemory(long position, int address, int size) {
+		if (position < 0 || size < 0 || position + size > length) {
+			return false;
+		}
+
+		Memory mem = Memory.getInstance();
+		while (size > 0) {
+			int windowIndex = (int) (position >> windowShift);
+			int windowOffset = (int) (position & (windowSize - 1));
+			MappedByteBuffer window = getWindow(windowIndex);
+			if (window == null) {
+				return false;
+			}
+
+			int copyLength = Math.min(size, windowSize - windowOffset);
+			ByteBuffer source = window.duplicate();
+			source.limit(windowOffset + copyLength);
+			source.position(windowOffset);
+			mem.copyToMemory(address, source.slice(), copyLength);
+
+			position += copyLength;
+			address += copyLength;
+			size -= copyLength;
+		}
+
+		return true;
+	}
+
+	private static void unmap(MappedByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			Object unsafe = theUnsafe.get(null);
+			try {
+				// Java 9 and later
+				Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+				invokeCleaner.invoke(unsafe, buffer);
+			} catch (NoSuchMethodException e) {
+				// Java 8
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			}
+		} catch (Exception e) {
+			// The mapping will be released when garbage collected
+			log.warn(String.format("Cannot unmap the ISO file: %s", e));
+		}
+	}
+
+	@Override
+	public int getNumSectors() throws IOException {
+		return getNumSectors(length, sectorLength);
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			// Release the mappings now: they would otherwise only be released
+			// when garbage collected and, on Windows, the file stays locked
+			// as long as it is mapped.
+			for (int i = 0; i < windows.length; i++) {
+				if (windows[i] != null) {
+					unmap(windows[i]);
+					windows[i] = null;
+				}
+			}
+			channel = null;
+		}
+
+		super.close();
+	}
+}
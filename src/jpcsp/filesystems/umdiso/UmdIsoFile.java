@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.Date;
 
 import jpcsp.filesystems.SeekableInputStream;
+import jpcsp.util.Utilities;
 
 /**
  *
@@ -307,6 +308,27 @@ public class UmdIsoFile extends SeekableInputStream {
 		return totalLength;
 	}
 
+    /**
+     * Read bytes directly into the PSP memory.
+     * The bytes are copied from the ISO without intermediate buffer
+     * when supported by the ISO sector device.
+     *
+     * @param address  the PSP memory address where to write
+     * @param length   the number of bytes to be read
+     * @throws IOException
+     */
+    public void readFully(int address, int length) throws IOException {
+        if (length > (maxOffset - currentOffset)) {
+        	throw new EOFException();
+        }
+
+        if (length > 0 && internalReader.readToMemory(startSectorNumber, currentOffset, address, length)) {
+        	seek(currentOffset + length);
+        } else {
+        	Utilities.readFully(this, address, length);
+        }
+    }
+
     public int getCurrentSectorNumber() {
     	return currentSectorNumber;
     }
@@ -45,6 +45,8 @@ public class UmdIsoReader implements IBrowser {
     public static final int startSector = 16;
     public static final int startSectorJoliet = 17;
     private static final int headerLength = 24;
+    // Default number of sectors kept in the sector cache (4MB)
+    private static final int defaultSectorCacheSize = 2048;
     private ISectorDevice sectorDevice;
     private IBrowser browser;
     private final HashMap<String, Iso9660File> fileCache = new HashMap<String, Iso9660File>();
@@ -72,7 +74,7 @@ public class UmdIsoReader implements IBrowser {
 	        fileReader.read(header);
 	        fileReader.seek(0);
 
-	        if (header[0] == 'C' && header[1] == 'I' && header[2] == 'S' && header[3] == 'O') {
+	        if ((header[0] == 'C' || header[0] == 'Z') && header[1] == 'I' && header[2] == 'S' && header[3] == 'O') {
 	            sectorDevice = new CSOFileSectorDevice(fileReader, header);
 	        } else if (header[0] == 0 && header[1] == 'P' && header[2] == 'B' && header[3] == 'P') {
 	            // Dump unpacked PBP
@@ -80,6 +82,8 @@ public class UmdIsoReader implements IBrowser {
 	            	PBP.unpackPBP(new LocalVirtualFile(new SeekableRandomFile(umdFilename, "r")));
 	            }
 	        	sectorDevice = new PBPFileSectorDevice(fileReader);
+	        } else if (Settings.getInstance().readBool("emu.umd.mappedIso")) {
+	        	sectorDevice = new MappedISOFileSectorDevice(fileReader);
 	        } else {
 	            sectorDevice = new ISOFileSectorDevice(fileReader);
 	        }
@@ -90,6 +94,12 @@ public class UmdIsoReader implements IBrowser {
         	sectorDevice = new BufferedFileSectorDevice(new RandomAccessFile(tmp + "umdbuffer.toc", "rw"), new RandomAccessFile(tmp + "umdbuffer.iso", "rw"), sectorDevice);
         }
 
+        // The mapped ISO images are already served from memory
+        int sectorCacheSize = Settings.getInstance().readInt("emu.umd.sectorCacheSize", defaultSectorCacheSize);
+        if (sectorCacheSize > 0 && !(sectorDevice instanceof MappedISOFileSectorDevice)) {
+        	sectorDevice = new CachedSectorDevice(sectorDevice, sectorCacheSize);
+        }
+
         numSectors = sectorDevice.getNumSectors();
 
         setBrowser();
@@ -105,9 +115,17 @@ public class UmdIsoReader implements IBrowser {
         setBrowser();
     }
 
+    private ISectorDevice getBaseSectorDevice() {
+    	if (sectorDevice instanceof CachedSectorDevice) {
+    		return ((CachedSectorDevice) sectorDevice).getSectorDevice();
+    	}
+    	return sectorDevice;
+    }
+
     private void setBrowser() {
-        if (sectorDevice instanceof IBrowser) {
-        	browser = (IBrowser) sectorDevice;
+    	ISectorDevice baseSectorDevice = getBaseSectorDevice();
+        if (baseSectorDevice instanceof IBrowser) {
+        	browser = (IBrowser) baseSectorDevice;
         } else {
         	browser = null;
         }
@@ -179,6 +197,31 @@ public class UmdIsoReader implements IBrowser {
         return sectorDevice.readSectors(sectorNumber, numberSectors, buffer, offset);
     }
 
+    /**
+     * Read bytes from the ISO directly into the PSP memory,
+     * when supported by the sector device.
+     *
+     * @param sectorNumber - the sector where to start reading
+     * @param offset - offset in bytes from the start of the sector
+     * @param address - the PSP memory address where to write
+     * @param length - the number of bytes to be read
+     * @return true if the bytes have been read,
+     *         false if the sector device does not support it.
+     */
+    public boolean readToMemory(int sectorNumber, long offset, int address, int length) {
+        ISectorDevice baseSectorDevice = getBaseSectorDevice();
+        if (!(baseSectorDevice instanceof MappedISOFileSectorDevice)) {
+            return false;
+        }
+
+        long position = ((long) sectorNumber) * sectorLength + offset;
+        if (sectorNumber < 0 || position + length > ((long) numSectors) * sectorLength) {
+            return false;
+        }
+
+        return ((MappedISOFileSectorDevice) baseSectorDevice).readToMemory(position, address, length);
+    }
+
     /**
      * Read one sector into a byte array
      *
@@ -0,0 +1,3478 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.graphics.RE;
+
+import static jpcsp.util.Utilities.round4;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import jpcsp.graphics.VertexInfo;
+import jpcsp.settings.Settings;
+
+/**
+ * @author gid15
+ *
+ * Proxy recording the rendering calls into a command buffer.
+ *
+ * While a thread is recording (see startRecording()), the calls
+ * from this thread are not executed but stored into a command buffer,
+ * which is then executed by the thread owning the OpenGL context
+ * (see executeCommands()). This allows the processing of the GE lists
+ * by the VideoEngine on a separate thread, only the final
+ * OpenGL calls are performed on the OpenGL thread.
+ *
+ * Each call is recorded as a command number followed by its int, float,
+ * boolean and long parameters into an int array, the other parameters
+ * are stored into an object array (see CommandChunk).
+ * The chunks are reused once executed, so that recording a call
+ * does not allocate any object.
+ *
+ * The arrays and buffers passed as parameters are copied when recording,
+ * the caller is free to reuse them after the call.
+ * The calls returning a value or reading back from the rendering engine
+ * are executed synchronously: the recording thread waits until all
+ * the previous commands and this call have been executed.
+ *
+ * The calls from any other thread are forwarded immediately.
+ * This proxy has to be placed in the pipeline below the proxies
+ * depending on the GeContext (REShader, REFixedFunction), so that
+ * these are run on the recording thread in sequence with the GeContext updates.
+ */
+public class CommandBufferProxy extends BaseRenderingEngineProxy {
+	// Number of commands passed at once to the executing thread
+	private static final int commandsPerChunk = 256;
+	// The copies of the buffers are allocated in blocks of this size
+	private static final int copyBlockSize = 4 * 1024 * 1024;
+	// Flag set on the commands executed synchronously
+	private static final int SYNC_COMMAND = 0x10000;
+	// Command numbers, one for each recorded method
+	private static final int CMD_START_DIRECT_RENDERING = 0;
+	private static final int CMD_END_DIRECT_RENDERING = 1;
+	private static final int CMD_START_DISPLAY = 2;
+	private static final int CMD_END_DISPLAY = 3;
+	private static final int CMD_ENABLE_FLAG = 4;
+	private static final int CMD_DISABLE_FLAG = 5;
+	private static final int CMD_SET_MORPH_WEIGHT = 6;
+	private static final int CMD_SET_PATCH_DIV = 7;
+	private static final int CMD_SET_PATCH_PRIM = 8;
+	private static final int CMD_SET_MATRIX_MODE = 9;
+	private static final int CMD_SET_MATRIX = 10;
+	private static final int CMD_MULT_MATRIX = 11;
+	private static final int CMD_SET_PROJECTION_MATRIX = 12;
+	private static final int CMD_SET_VIEW_MATRIX = 13;
+	private static final int CMD_SET_MODEL_MATRIX = 14;
+	private static final int CMD_SET_MODEL_VIEW_MATRIX = 15;
+	private static final int CMD_SET_TEXTURE_MATRIX = 16;
+	private static final int CMD_END_MODEL_VIEW_MATRIX_UPDATE = 17;
+	private static final int CMD_SET_VIEWPORT = 18;
+	private static final int CMD_SET_DEPTH_RANGE = 19;
+	private static final int CMD_SET_DEPTH_FUNC = 20;
+	private static final int CMD_SET_SHADE_MODEL = 21;
+	private static final int CMD_SET_MATERIAL_EMISSIVE_COLOR = 22;
+	private static final int CMD_SET_MATERIAL_AMBIENT_COLOR = 23;
+	private static final int CMD_SET_MATERIAL_DIFFUSE_COLOR = 24;
+	private static final int CMD_SET_MATERIAL_SPECULAR_COLOR = 25;
+	private static final int CMD_SET_MATERIAL_SHININESS = 26;
+	private static final int CMD_SET_LIGHT_MODEL_AMBIENT_COLOR = 27;
+	private static final int CMD_SET_LIGHT_MODE = 28;
+	private static final int CMD_SET_LIGHT_POSITION = 29;
+	private static final int CMD_SET_LIGHT_DIRECTION = 30;
+	private static final int CMD_SET_LIGHT_SPOT_EXPONENT = 31;
+	private static final int CMD_SET_LIGHT_SPOT_CUTOFF = 32;
+	private static final int CMD_SET_LIGHT_CONSTANT_ATTENUATION = 33;
+	private static final int CMD_SET_LIGHT_LINEAR_ATTENUATION = 34;
+	private static final int CMD_SET_LIGHT_QUADRATIC_ATTENUATION = 35;
+	private static final int CMD_SET_LIGHT_AMBIENT_COLOR = 36;
+	private static final int CMD_SET_LIGHT_DIFFUSE_COLOR = 37;
+	private static final int CMD_SET_LIGHT_SPECULAR_COLOR = 38;
+	private static final int CMD_SET_LIGHT_TYPE = 39;
+	private static final int CMD_SET_BLEND_FUNC = 40;
+	private static final int CMD_SET_BLEND_COLOR = 41;
+	private static final int CMD_SET_LOGIC_OP = 42;
+	private static final int CMD_SET_DEPTH_MASK = 43;
+	private static final int CMD_SET_COLOR_MASK_IIII = 44;
+	private static final int CMD_SET_COLOR_MASK_ZZZZ = 45;
+	private static final int CMD_SET_TEXTURE_WRAP_MODE = 46;
+	private static final int CMD_SET_TEXTURE_MIPMAP_MIN_LEVEL = 47;
+	private static final int CMD_SET_TEXTURE_MIPMAP_MAX_LEVEL = 48;
+	private static final int CMD_SET_TEXTURE_MIPMAP_MIN_FILTER = 49;
+	private static final int CMD_SET_TEXTURE_MIPMAP_MAG_FILTER = 50;
+	private static final int CMD_SET_COLOR_MATERIAL = 51;
+	private static final int CMD_SET_TEXTURE_MAP_MODE = 52;
+	private static final int CMD_SET_TEXTURE_ENVIRONMENT_MAPPING = 53;
+	private static final int CMD_SET_VERTEX_COLOR = 54;
+	private static final int CMD_SET_UNIFORM_II = 55;
+	private static final int CMD_SET_UNIFORM_III = 56;
+	private static final int CMD_SET_UNIFORM_IF = 57;
+	private static final int CMD_SET_UNIFORM2 = 58;
+	private static final int CMD_SET_UNIFORM3_IIV = 59;
+	private static final int CMD_SET_UNIFORM3_IFV = 60;
+	private static final int CMD_SET_UNIFORM4_IIV = 61;
+	private static final int CMD_SET_UNIFORM4_IFV = 62;
+	private static final int CMD_SET_UNIFORM_MATRIX4 = 63;
+	private static final int CMD_SET_COLOR_TEST_FUNC = 64;
+	private static final int CMD_SET_COLOR_TEST_REFERENCE = 65;
+	private static final int CMD_SET_COLOR_TEST_MASK = 66;
+	private static final int CMD_SET_TEXTURE_FUNC = 67;
+	private static final int CMD_SET_BONES = 68;
+	private static final int CMD_SET_TEX_ENV_II = 69;
+	private static final int CMD_SET_TEX_ENV_IF = 70;
+	private static final int CMD_START_CLEAR_MODE = 71;
+	private static final int CMD_END_CLEAR_MODE = 72;
+	private static final int CMD_CREATE_SHADER = 73;
+	private static final int CMD_COMPILER_SHADER = 74;
+	private static final int CMD_CREATE_PROGRAM = 75;
+	private static final int CMD_USE_PROGRAM = 76;
+	private static final int CMD_ATTACH_SHADER = 77;
+	private static final int CMD_LINK_PROGRAM = 78;
+	private static final int CMD_VALIDATE_PROGRAM = 79;
+	private static final int CMD_GET_UNIFORM_LOCATION = 80;
+	private static final int CMD_GET_ATTRIB_LOCATION = 81;
+	private static final int CMD_BIND_ATTRIB_LOCATION = 82;
+	private static final int CMD_GET_SHADER_INFO_LOG = 83;
+	private static final int CMD_GET_PROGRAM_INFO_LOG = 84;
+	private static final int CMD_IS_EXTENSION_AVAILABLE = 85;
+	private static final int CMD_DRAW_ARRAYS = 86;
+	private static final int CMD_DRAW_ELEMENTS_IIIBI = 87;
+	private static final int CMD_DRAW_ELEMENTS_IIIJ = 88;
+	private static final int CMD_GEN_BUFFER = 89;
+	private static final int CMD_DELETE_BUFFER = 90;
+	private static final int CMD_SET_BUFFER_DATA = 91;
+	private static final int CMD_SET_BUFFER_SUB_DATA = 92;
+	private static final int CMD_BIND_BUFFER = 93;
+	private static final int CMD_ENABLE_CLIENT_STATE = 94;
+	private static final int CMD_DISABLE_CLIENT_STATE = 95;
+	private static final int CMD_ENABLE_VERTEX_ATTRIB_ARRAY = 96;
+	private static final int CMD_DISABLE_VERTEX_ATTRIB_ARRAY = 97;
+	private static final int CMD_SET_TEX_COORD_POINTER_IIIJ = 98;
+	private static final int CMD_SET_TEX_COORD_POINTER_IIIIB = 99;
+	private static final int CMD_SET_COLOR_POINTER_IIIJ = 100;
+	private static final int CMD_SET_COLOR_POINTER_IIIIB = 101;
+	private static final int CMD_SET_VERTEX_POINTER_IIIJ = 102;
+	private static final int CMD_SET_VERTEX_POINTER_IIIIB = 103;
+	private static final int CMD_SET_NORMAL_POINTER_IIJ = 104;
+	private static final int CMD_SET_NORMAL_POINTER_IIIB = 105;
+	private static final int CMD_SET_WEIGHT_POINTER_IIIJ = 106;
+	private static final int CMD_SET_WEIGHT_POINTER_IIIIB = 107;
+	private static final int CMD_SET_VERTEX_ATTRIB_POINTER_IIIZIJ = 108;
+	private static final int CMD_SET_VERTEX_ATTRIB_POINTER_IIIZIIB = 109;
+	private static final int CMD_SET_PIXEL_STORE = 110;
+	private static final int CMD_GEN_TEXTURE = 111;
+	private static final int CMD_BIND_TEXTURE = 112;
+	private static final int CMD_DELETE_TEXTURE = 113;
+	private static final int CMD_SET_COMPRESSED_TEX_IMAGE = 114;
+	private static final int CMD_SET_TEX_IMAGE = 115;
+	private static final int CMD_SET_TEX_IMAGEX_BRZ = 116;
+	private static final int CMD_SET_TEX_SUB_IMAGE = 117;
+	private static final int CMD_GET_TEX_IMAGE = 118;
+	private static final int CMD_COPY_TEX_SUB_IMAGE = 119;
+	private static final int CMD_SET_STENCIL_OP = 120;
+	private static final int CMD_SET_STENCIL_FUNC = 121;
+	private static final int CMD_SET_ALPHA_FUNC = 122;
+	private static final int CMD_SET_FOG_HINT = 123;
+	private static final int CMD_SET_FOG_COLOR = 124;
+	private static final int CMD_SET_FOG_DIST = 125;
+	private static final int CMD_SET_TEXTURE_ENV_COLOR = 126;
+	private static final int CMD_SET_FRONT_FACE = 127;
+	private static final int CMD_SET_SCISSOR = 128;
+	private static final int CMD_SET_BLEND_EQUATION = 129;
+	private static final int CMD_SET_LINE_SMOOTH_HINT = 130;
+	private static final int CMD_BEGIN_BOUNDING_BOX = 131;
+	private static final int CMD_DRAW_BOUNDING_BOX = 132;
+	private static final int CMD_END_BOUNDING_BOX = 133;
+	private static final int CMD_IS_BOUNDING_BOX_VISIBLE = 134;
+	private static final int CMD_GEN_QUERY = 135;
+	private static final int CMD_BEGIN_QUERY = 136;
+	private static final int CMD_END_QUERY = 137;
+	private static final int CMD_GET_QUERY_RESULT_AVAILABLE = 138;
+	private static final int CMD_GET_QUERY_RESULT = 139;
+	private static final int CMD_CLEAR = 140;
+	private static final int CMD_SET_VERTEX_INFO = 141;
+	private static final int CMD_SET_PROGRAM_PARAMETER = 142;
+	private static final int CMD_IS_QUERY_AVAILABLE = 143;
+	private static final int CMD_IS_SHADER_AVAILABLE = 144;
+	private static final int CMD_GET_UNIFORM_BLOCK_INDEX = 145;
+	private static final int CMD_BIND_BUFFER_BASE = 146;
+	private static final int CMD_SET_UNIFORM_BLOCK_BINDING = 147;
+	private static final int CMD_GET_UNIFORM_INDEX = 148;
+	private static final int CMD_GET_UNIFORM_INDICES = 149;
+	private static final int CMD_GET_ACTIVE_UNIFORM_OFFSET = 150;
+	private static final int CMD_IS_FRAMEBUFFER_OBJECT_AVAILABLE = 151;
+	private static final int CMD_GEN_FRAMEBUFFER = 152;
+	private static final int CMD_GEN_RENDERBUFFER = 153;
+	private static final int CMD_DELETE_FRAMEBUFFER = 154;
+	private static final int CMD_DELETE_RENDERBUFFER = 155;
+	private static final int CMD_BIND_FRAMEBUFFER = 156;
+	private static final int CMD_BIND_RENDERBUFFER = 157;
+	private static final int CMD_SET_RENDERBUFFER_STORAGE = 158;
+	private static final int CMD_SET_FRAMEBUFFER_RENDERBUFFER = 159;
+	private static final int CMD_SET_FRAMEBUFFER_TEXTURE = 160;
+	private static final int CMD_GEN_VERTEX_ARRAY = 161;
+	private static final int CMD_BIND_VERTEX_ARRAY = 162;
+	private static final int CMD_DELETE_VERTEX_ARRAY = 163;
+	private static final int CMD_IS_VERTEX_ARRAY_AVAILABLE = 164;
+	private static final int CMD_MULTI_DRAW_ARRAYS = 165;
+	private static final int CMD_DRAW_ARRAYS_BURST_MODE = 166;
+	private static final int CMD_MULTI_DRAW_ELEMENTS = 167;
+	private static final int CMD_DRAW_ELEMENTS_BURST_MODE = 168;
+	private static final int CMD_SET_PIXEL_TRANSFER_II = 169;
+	private static final int CMD_SET_PIXEL_TRANSFER_IF = 170;
+	private static final int CMD_SET_PIXEL_TRANSFER_IZ = 171;
+	private static final int CMD_SET_PIXEL_MAP = 172;
+	private static final int CMD_SET_ACTIVE_TEXTURE = 173;
+	private static final int CMD_SET_TEXTURE_FORMAT = 174;
+	private static final int CMD_BIND_ACTIVE_TEXTURE = 175;
+	private static final int CMD_SET_TEXTURE_ANISOTROPY = 176;
+	private static final int CMD_GET_MAX_TEXTURE_ANISOTROPY = 177;
+	private static final int CMD_GET_SHADING_LANGUAGE_VERSION = 178;
+	private static final int CMD_SET_BLEND_SFIX = 179;
+	private static final int CMD_SET_BLEND_DFIX = 180;
+	private static final int CMD_WAIT_FOR_RENDERING_COMPLETION = 181;
+	private static final int CMD_READ_STENCIL = 182;
+	private static final int CMD_BLIT_FRAMEBUFFER = 183;
+	private static final int CMD_CHECK_AND_LOG_ERRORS = 184;
+	private static final int CMD_SET_COPY_RED_TO_ALPHA = 185;
+	private static final int CMD_IS_TEXTURE_BARRIER_AVAILABLE = 186;
+	private static final int CMD_TEXTURE_BARRIER = 187;
+
+	private final LinkedList<CommandChunk> pendingChunks = new LinkedList<CommandChunk>();
+	private final LinkedList<CommandChunk> freeChunks = new LinkedList<CommandChunk>();
+	private final CommandChunk endOfRecording = new CommandChunk();
+	private CommandChunk chunk = new CommandChunk();
+	private volatile Thread recordingThread;
+	private final List<ByteBuffer> copyBlocks = new ArrayList<ByteBuffer>();
+	private int copyBlockIndex;
+	// Completion and results of the synchronous command
+	private final Semaphore syncDone = new Semaphore(0);
+	private RuntimeException syncException;
+	private int syncIntResult;
+	private boolean syncBooleanResult;
+	private float syncFloatResult;
+	private Object syncObjectResult;
+
+	/**
+	 * A sequence of recorded commands.
+	 */
+	private static class CommandChunk {
+		private int[] data = new int[4096];
+		private int length;
+		private Object[] objects = new Object[256];
+		private int objectsLength;
+		private int numberOfCommands;
+		private int readIndex;
+		private int readObjectIndex;
+
+		public boolean isEmpty() {
+			return numberOfCommands == 0;
+		}
+
+		public boolean isFull() {
+			return numberOfCommands >= commandsPerChunk;
+		}
+
+		public void addCommand(int command) {
+			addInt(command);
+			numberOfCommands++;
+		}
+
+		public void addInt(int value) {
+			if (length >= data.length) {
+				data = Arrays.copyOf(data, data.length << 1);
+			}
+			data[length++] = value;
+		}
+
+		public void addObject(Object value) {
+			if (objectsLength >= objects.length) {
+				objects = Arrays.copyOf(objects, objects.length << 1);
+			}
+			objects[objectsLength++] = value;
+		}
+
+		public boolean hasNext() {
+			return readIndex < length;
+		}
+
+		public int nextInt() {
+			return data[readIndex++];
+		}
+
+		public boolean nextBoolean() {
+			return nextInt() != 0;
+		}
+
+		public float nextFloat() {
+			return Float.intBitsToFloat(nextInt());
+		}
+
+		public long nextLong() {
+			long low = nextInt() & 0xFFFFFFFFL;
+			return (((long) nextInt()) << 32) | low;
+		}
+
+		public Object nextObject() {
+			return objects[readObjectIndex++];
+		}
+
+		public void clear() {
+			// Release the references to the parameters
+			Arrays.fill(objects, 0, objectsLength, null);
+			length = 0;
+			objectsLength = 0;
+			numberOfCommands = 0;
+			readIndex = 0;
+			readObjectIndex = 0;
+		}
+	}
+
+	public static boolean useCommandBuffer() {
+		return Settings.getInstance().readBool("emu.graphics.asyncGeList");
+	}
+
+	public CommandBufferProxy(IRenderingEngine proxy) {
+		super(proxy);
+	}
+
+	private boolean isRecording() {
+		return Thread.currentThread() == recordingThread;
+	}
+
+	/**
+	 * Start recording the calls from the given thread.
+	 * The copies of the buffers from the previous recording are released,
+	 * i.e. the previous recording must have been completely executed.
+	 *
+	 * @param thread  the thread whose calls are recorded
+	 */
+	public void startRecording(Thread thread) {
+		copyBlockIndex = 0;
+		for (ByteBuffer copyBlock : copyBlocks) {
+			copyBlock.clear();
+		}
+
+		recordingThread = thread;
+	}
+
+	/**
+	 * Stop the recording, called by the recording thread.
+	 * executeCommands() returns after having executed all the recorded commands.
+	 */
+	public void endRecording() {
+		flush();
+		recordingThread = null;
+
+		synchronized (pendingChunks) {
+			pendingChunks.addLast(endOfRecording);
+			pendingChunks.notify();
+		}
+	}
+
+	/**
+	 * Pass the commands recorded so far to the executing thread,
+	 * e.g. before waiting for some time on the recording thread.
+	 * This has no effect when not called from the recording thread.
+	 */
+	public void flush() {
+		if (!isRecording() || chunk.isEmpty()) {
+			return;
+		}
+
+		synchronized (pendingChunks) {
+			pendingChunks.addLast(chunk);
+			pendingChunks.notify();
+			chunk = freeChunks.isEmpty() ? new CommandChunk() : freeChunks.removeFirst();
+		}
+	}
+
+	/**
+	 * Execute the recorded commands, called by the thread owning the OpenGL context.
+	 * Returns when the recording has ended and all the commands have been executed.
+	 */
+	public void executeCommands() {
+		while (true) {
+			CommandChunk executedChunk;
+			synchronized (pendingChunks) {
+				while (pendingChunks.isEmpty()) {
+					try {
+						pendingChunks.wait();
+					} catch (InterruptedException e) {
+						// Ignore exception and retry
+					}
+				}
+				executedChunk = pendingChunks.removeFirst();
+			}
+
+			if (executedChunk == endOfRecording) {
+				break;
+			}
+
+			while (executedChunk.hasNext()) {
+				int command = executedChunk.nextInt();
+				if ((command & SYNC_COMMAND) != 0) {
+					try {
+						executeCommand(command & ~SYNC_COMMAND, executedChunk);
+					} catch (RuntimeException e) {
+						syncException = e;
+					} finally {
+						syncDone.release();
+					}
+				} else {
+					try {
+						executeCommand(command, executedChunk);
+					} catch (RuntimeException e) {
+						log.error("CommandBufferProxy", e);
+					}
+				}
+			}
+
+			executedChunk.clear();
+			synchronized (pendingChunks) {
+				freeChunks.addLast(executedChunk);
+			}
+		}
+	}
+
+	private void executeCommand(int command, CommandChunk chunk) {
+		switch (command) {
+			case CMD_START_DIRECT_RENDERING:
+				proxy.startDirectRendering(chunk.nextBoolean(), chunk.nextBoolean(), chunk.nextBoolean(), chunk.nextBoolean(), chunk.nextBoolean(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_END_DIRECT_RENDERING:
+				proxy.endDirectRendering();
+				break;
+			case CMD_START_DISPLAY:
+				proxy.startDisplay();
+				break;
+			case CMD_END_DISPLAY:
+				proxy.endDisplay();
+				break;
+			case CMD_ENABLE_FLAG:
+				proxy.enableFlag(chunk.nextInt());
+				break;
+			case CMD_DISABLE_FLAG:
+				proxy.disableFlag(chunk.nextInt());
+				break;
+			case CMD_SET_MORPH_WEIGHT:
+				proxy.setMorphWeight(chunk.nextInt(), chunk.nextFloat());
+				break;
+			case CMD_SET_PATCH_DIV:
+				proxy.setPatchDiv(chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_PATCH_PRIM:
+				proxy.setPatchPrim(chunk.nextInt());
+				break;
+			case CMD_SET_MATRIX_MODE:
+				proxy.setMatrixMode(chunk.nextInt());
+				break;
+			case CMD_SET_MATRIX:
+				proxy.setMatrix((float[]) chunk.nextObject());
+				break;
+			case CMD_MULT_MATRIX:
+				proxy.multMatrix((float[]) chunk.nextObject());
+				break;
+			case CMD_SET_PROJECTION_MATRIX:
+				proxy.setProjectionMatrix((float[]) chunk.nextObject());
+				break;
+			case CMD_SET_VIEW_MATRIX:
+				proxy.setViewMatrix((float[]) chunk.nextObject());
+				break;
+			case CMD_SET_MODEL_MATRIX:
+				proxy.setModelMatrix((float[]) chunk.nextObject());
+				break;
+			case CMD_SET_MODEL_VIEW_MATRIX:
+				proxy.setModelViewMatrix((float[]) chunk.nextObject());
+				break;
+			case CMD_SET_TEXTURE_MATRIX:
+				proxy.setTextureMatrix((float[]) chunk.nextObject());
+				break;
+			case CMD_END_MODEL_VIEW_MATRIX_UPDATE:
+				proxy.endModelViewMatrixUpdate();
+				break;
+			case CMD_SET_VIEWPORT:
+				proxy.setViewport(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_DEPTH_RANGE:
+				proxy.setDepthRange(chunk.nextFloat(), chunk.nextFloat(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_DEPTH_FUNC:
+				proxy.setDepthFunc(chunk.nextInt());
+				break;
+			case CMD_SET_SHADE_MODEL:
+				proxy.setShadeModel(chunk.nextInt());
+				break;
+			case CMD_SET_MATERIAL_EMISSIVE_COLOR:
+				proxy.setMaterialEmissiveColor((float[]) chunk.nextObject());
+				break;
+			case CMD_SET_MATERIAL_AMBIENT_COLOR:
+				proxy.setMaterialAmbientColor((float[]) chunk.nextObject());
+				break;
+			case CMD_SET_MATERIAL_DIFFUSE_COLOR:
+				proxy.setMaterialDiffuseColor((float[]) chunk.nextObject());
+				break;
+			case CMD_SET_MATERIAL_SPECULAR_COLOR:
+				proxy.setMaterialSpecularColor((float[]) chunk.nextObject());
+				break;
+			case CMD_SET_MATERIAL_SHININESS:
+				proxy.setMaterialShininess(chunk.nextFloat());
+				break;
+			case CMD_SET_LIGHT_MODEL_AMBIENT_COLOR:
+				proxy.setLightModelAmbientColor((float[]) chunk.nextObject());
+				break;
+			case CMD_SET_LIGHT_MODE:
+				proxy.setLightMode(chunk.nextInt());
+				break;
+			case CMD_SET_LIGHT_POSITION:
+				proxy.setLightPosition(chunk.nextInt(), (float[]) chunk.nextObject());
+				break;
+			case CMD_SET_LIGHT_DIRECTION:
+				proxy.setLightDirection(chunk.nextInt(), (float[]) chunk.nextObject());
+				break;
+			case CMD_SET_LIGHT_SPOT_EXPONENT:
+				proxy.setLightSpotExponent(chunk.nextInt(), chunk.nextFloat());
+				break;
+			case CMD_SET_LIGHT_SPOT_CUTOFF:
+				proxy.setLightSpotCutoff(chunk.nextInt(), chunk.nextFloat());
+				break;
+			case CMD_SET_LIGHT_CONSTANT_ATTENUATION:
+				proxy.setLightConstantAttenuation(chunk.nextInt(), chunk.nextFloat());
+				break;
+			case CMD_SET_LIGHT_LINEAR_ATTENUATION:
+				proxy.setLightLinearAttenuation(chunk.nextInt(), chunk.nextFloat());
+				break;
+			case CMD_SET_LIGHT_QUADRATIC_ATTENUATION:
+				proxy.setLightQuadraticAttenuation(chunk.nextInt(), chunk.nextFloat());
+				break;
+			case CMD_SET_LIGHT_AMBIENT_COLOR:
+				proxy.setLightAmbientColor(chunk.nextInt(), (float[]) chunk.nextObject());
+				break;
+			case CMD_SET_LIGHT_DIFFUSE_COLOR:
+				proxy.setLightDiffuseColor(chunk.nextInt(), (float[]) chunk.nextObject());
+				break;
+			case CMD_SET_LIGHT_SPECULAR_COLOR:
+				proxy.setLightSpecularColor(chunk.nextInt(), (float[]) chunk.nextObject());
+				break;
+			case CMD_SET_LIGHT_TYPE:
+				proxy.setLightType(chunk.nextInt(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_BLEND_FUNC:
+				proxy.setBlendFunc(chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_BLEND_COLOR:
+				proxy.setBlendColor((float[]) chunk.nextObject());
+				break;
+			case CMD_SET_LOGIC_OP:
+				proxy.setLogicOp(chunk.nextInt());
+				break;
+			case CMD_SET_DEPTH_MASK:
+				proxy.setDepthMask(chunk.nextBoolean());
+				break;
+			case CMD_SET_COLOR_MASK_IIII:
+				proxy.setColorMask(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_COLOR_MASK_ZZZZ:
+				proxy.setColorMask(chunk.nextBoolean(), chunk.nextBoolean(), chunk.nextBoolean(), chunk.nextBoolean());
+				break;
+			case CMD_SET_TEXTURE_WRAP_MODE:
+				proxy.setTextureWrapMode(chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_TEXTURE_MIPMAP_MIN_LEVEL:
+				proxy.setTextureMipmapMinLevel(chunk.nextInt());
+				break;
+			case CMD_SET_TEXTURE_MIPMAP_MAX_LEVEL:
+				proxy.setTextureMipmapMaxLevel(chunk.nextInt());
+				break;
+			case CMD_SET_TEXTURE_MIPMAP_MIN_FILTER:
+				proxy.setTextureMipmapMinFilter(chunk.nextInt());
+				break;
+			case CMD_SET_TEXTURE_MIPMAP_MAG_FILTER:
+				proxy.setTextureMipmapMagFilter(chunk.nextInt());
+				break;
+			case CMD_SET_COLOR_MATERIAL:
+				proxy.setColorMaterial(chunk.nextBoolean(), chunk.nextBoolean(), chunk.nextBoolean());
+				break;
+			case CMD_SET_TEXTURE_MAP_MODE:
+				proxy.setTextureMapMode(chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_TEXTURE_ENVIRONMENT_MAPPING:
+				proxy.setTextureEnvironmentMapping(chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_VERTEX_COLOR:
+				proxy.setVertexColor((float[]) chunk.nextObject());
+				break;
+			case CMD_SET_UNIFORM_II:
+				proxy.setUniform(chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_UNIFORM_III:
+				proxy.setUniform(chunk.nextInt(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_UNIFORM_IF:
+				proxy.setUniform(chunk.nextInt(), chunk.nextFloat());
+				break;
+			case CMD_SET_UNIFORM2:
+				proxy.setUniform2(chunk.nextInt(), (int[]) chunk.nextObject());
+				break;
+			case CMD_SET_UNIFORM3_IIV:
+				proxy.setUniform3(chunk.nextInt(), (int[]) chunk.nextObject());
+				break;
+			case CMD_SET_UNIFORM3_IFV:
+				proxy.setUniform3(chunk.nextInt(), (float[]) chunk.nextObject());
+				break;
+			case CMD_SET_UNIFORM4_IIV:
+				proxy.setUniform4(chunk.nextInt(), (int[]) chunk.nextObject());
+				break;
+			case CMD_SET_UNIFORM4_IFV:
+				proxy.setUniform4(chunk.nextInt(), (float[]) chunk.nextObject());
+				break;
+			case CMD_SET_UNIFORM_MATRIX4:
+				proxy.setUniformMatrix4(chunk.nextInt(), chunk.nextInt(), (float[]) chunk.nextObject());
+				break;
+			case CMD_SET_COLOR_TEST_FUNC:
+				proxy.setColorTestFunc(chunk.nextInt());
+				break;
+			case CMD_SET_COLOR_TEST_REFERENCE:
+				proxy.setColorTestReference((int[]) chunk.nextObject());
+				break;
+			case CMD_SET_COLOR_TEST_MASK:
+				proxy.setColorTestMask((int[]) chunk.nextObject());
+				break;
+			case CMD_SET_TEXTURE_FUNC:
+				proxy.setTextureFunc(chunk.nextInt(), chunk.nextBoolean(), chunk.nextBoolean());
+				break;
+			case CMD_SET_BONES:
+				syncIntResult = proxy.setBones(chunk.nextInt(), (float[]) chunk.nextObject());
+				break;
+			case CMD_SET_TEX_ENV_II:
+				proxy.setTexEnv(chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_TEX_ENV_IF:
+				proxy.setTexEnv(chunk.nextInt(), chunk.nextFloat());
+				break;
+			case CMD_START_CLEAR_MODE:
+				proxy.startClearMode(chunk.nextBoolean(), chunk.nextBoolean(), chunk.nextBoolean());
+				break;
+			case CMD_END_CLEAR_MODE:
+				proxy.endClearMode();
+				break;
+			case CMD_CREATE_SHADER:
+				syncIntResult = proxy.createShader(chunk.nextInt());
+				break;
+			case CMD_COMPILER_SHADER:
+				syncBooleanResult = proxy.compilerShader(chunk.nextInt(), (String) chunk.nextObject());
+				break;
+			case CMD_CREATE_PROGRAM:
+				syncIntResult = proxy.createProgram();
+				break;
+			case CMD_USE_PROGRAM:
+				proxy.useProgram(chunk.nextInt());
+				break;
+			case CMD_ATTACH_SHADER:
+				proxy.attachShader(chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_LINK_PROGRAM:
+				syncBooleanResult = proxy.linkProgram(chunk.nextInt());
+				break;
+			case CMD_VALIDATE_PROGRAM:
+				syncBooleanResult = proxy.validateProgram(chunk.nextInt());
+				break;
+			case CMD_GET_UNIFORM_LOCATION:
+				syncIntResult = proxy.getUniformLocation(chunk.nextInt(), (String) chunk.nextObject());
+				break;
+			case CMD_GET_ATTRIB_LOCATION:
+				syncIntResult = proxy.getAttribLocation(chunk.nextInt(), (String) chunk.nextObject());
+				break;
+			case CMD_BIND_ATTRIB_LOCATION:
+				proxy.bindAttribLocation(chunk.nextInt(), chunk.nextInt(), (String) chunk.nextObject());
+				break;
+			case CMD_GET_SHADER_INFO_LOG:
+				syncObjectResult = proxy.getShaderInfoLog(chunk.nextInt());
+				break;
+			case CMD_GET_PROGRAM_INFO_LOG:
+				syncObjectResult = proxy.getProgramInfoLog(chunk.nextInt());
+				break;
+			case CMD_IS_EXTENSION_AVAILABLE:
+				syncBooleanResult = proxy.isExtensionAvailable((String) chunk.nextObject());
+				break;
+			case CMD_DRAW_ARRAYS:
+				proxy.drawArrays(chunk.nextInt(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_DRAW_ELEMENTS_IIIBI:
+				proxy.drawElements(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), (Buffer) chunk.nextObject(), chunk.nextInt());
+				break;
+			case CMD_DRAW_ELEMENTS_IIIJ:
+				proxy.drawElements(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextLong());
+				break;
+			case CMD_GEN_BUFFER:
+				syncIntResult = proxy.genBuffer();
+				break;
+			case CMD_DELETE_BUFFER:
+				proxy.deleteBuffer(chunk.nextInt());
+				break;
+			case CMD_SET_BUFFER_DATA:
+				proxy.setBufferData(chunk.nextInt(), chunk.nextInt(), (Buffer) chunk.nextObject(), chunk.nextInt());
+				break;
+			case CMD_SET_BUFFER_SUB_DATA:
+				proxy.setBufferSubData(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), (Buffer) chunk.nextObject());
+				break;
+			case CMD_BIND_BUFFER:
+				proxy.bindBuffer(chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_ENABLE_CLIENT_STATE:
+				proxy.enableClientState(chunk.nextInt());
+				break;
+			case CMD_DISABLE_CLIENT_STATE:
+				proxy.disableClientState(chunk.nextInt());
+				break;
+			case CMD_ENABLE_VERTEX_ATTRIB_ARRAY:
+				proxy.enableVertexAttribArray(chunk.nextInt());
+				break;
+			case CMD_DISABLE_VERTEX_ATTRIB_ARRAY:
+				proxy.disableVertexAttribArray(chunk.nextInt());
+				break;
+			case CMD_SET_TEX_COORD_POINTER_IIIJ:
+				proxy.setTexCoordPointer(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextLong());
+				break;
+			case CMD_SET_TEX_COORD_POINTER_IIIIB:
+				proxy.setTexCoordPointer(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), (Buffer) chunk.nextObject());
+				break;
+			case CMD_SET_COLOR_POINTER_IIIJ:
+				proxy.setColorPointer(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextLong());
+				break;
+			case CMD_SET_COLOR_POINTER_IIIIB:
+				proxy.setColorPointer(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), (Buffer) chunk.nextObject());
+				break;
+			case CMD_SET_VERTEX_POINTER_IIIJ:
+				proxy.setVertexPointer(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextLong());
+				break;
+			case CMD_SET_VERTEX_POINTER_IIIIB:
+				proxy.setVertexPointer(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), (Buffer) chunk.nextObject());
+				break;
+			case CMD_SET_NORMAL_POINTER_IIJ:
+				proxy.setNormalPointer(chunk.nextInt(), chunk.nextInt(), chunk.nextLong());
+				break;
+			case CMD_SET_NORMAL_POINTER_IIIB:
+				proxy.setNormalPointer(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), (Buffer) chunk.nextObject());
+				break;
+			case CMD_SET_WEIGHT_POINTER_IIIJ:
+				proxy.setWeightPointer(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextLong());
+				break;
+			case CMD_SET_WEIGHT_POINTER_IIIIB:
+				proxy.setWeightPointer(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), (Buffer) chunk.nextObject());
+				break;
+			case CMD_SET_VERTEX_ATTRIB_POINTER_IIIZIJ:
+				proxy.setVertexAttribPointer(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextBoolean(), chunk.nextInt(), chunk.nextLong());
+				break;
+			case CMD_SET_VERTEX_ATTRIB_POINTER_IIIZIIB:
+				proxy.setVertexAttribPointer(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextBoolean(), chunk.nextInt(), chunk.nextInt(), (Buffer) chunk.nextObject());
+				break;
+			case CMD_SET_PIXEL_STORE:
+				proxy.setPixelStore(chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_GEN_TEXTURE:
+				syncIntResult = proxy.genTexture();
+				break;
+			case CMD_BIND_TEXTURE:
+				proxy.bindTexture(chunk.nextInt());
+				break;
+			case CMD_DELETE_TEXTURE:
+				proxy.deleteTexture(chunk.nextInt());
+				break;
+			case CMD_SET_COMPRESSED_TEX_IMAGE:
+				proxy.setCompressedTexImage(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), (Buffer) chunk.nextObject());
+				break;
+			case CMD_SET_TEX_IMAGE:
+				proxy.setTexImage(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), (Buffer) chunk.nextObject());
+				break;
+			case CMD_SET_TEX_IMAGEX_BRZ:
+				proxy.setTexImagexBRZ(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), (Buffer) chunk.nextObject());
+				break;
+			case CMD_SET_TEX_SUB_IMAGE:
+				proxy.setTexSubImage(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), (Buffer) chunk.nextObject());
+				break;
+			case CMD_GET_TEX_IMAGE:
+				proxy.getTexImage(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), (Buffer) chunk.nextObject());
+				break;
+			case CMD_COPY_TEX_SUB_IMAGE:
+				proxy.copyTexSubImage(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_STENCIL_OP:
+				proxy.setStencilOp(chunk.nextInt(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_STENCIL_FUNC:
+				proxy.setStencilFunc(chunk.nextInt(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_ALPHA_FUNC:
+				proxy.setAlphaFunc(chunk.nextInt(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_FOG_HINT:
+				proxy.setFogHint();
+				break;
+			case CMD_SET_FOG_COLOR:
+				proxy.setFogColor((float[]) chunk.nextObject());
+				break;
+			case CMD_SET_FOG_DIST:
+				proxy.setFogDist(chunk.nextFloat(), chunk.nextFloat());
+				break;
+			case CMD_SET_TEXTURE_ENV_COLOR:
+				proxy.setTextureEnvColor((float[]) chunk.nextObject());
+				break;
+			case CMD_SET_FRONT_FACE:
+				proxy.setFrontFace(chunk.nextBoolean());
+				break;
+			case CMD_SET_SCISSOR:
+				proxy.setScissor(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_BLEND_EQUATION:
+				proxy.setBlendEquation(chunk.nextInt());
+				break;
+			case CMD_SET_LINE_SMOOTH_HINT:
+				proxy.setLineSmoothHint();
+				break;
+			case CMD_BEGIN_BOUNDING_BOX:
+				proxy.beginBoundingBox(chunk.nextInt());
+				break;
+			case CMD_DRAW_BOUNDING_BOX:
+				proxy.drawBoundingBox((float[][]) chunk.nextObject());
+				break;
+			case CMD_END_BOUNDING_BOX:
+				proxy.endBoundingBox((VertexInfo) chunk.nextObject());
+				break;
+			case CMD_IS_BOUNDING_BOX_VISIBLE:
+				syncBooleanResult = proxy.isBoundingBoxVisible();
+				break;
+			case CMD_GEN_QUERY:
+				syncIntResult = proxy.genQuery();
+				break;
+			case CMD_BEGIN_QUERY:
+				proxy.beginQuery(chunk.nextInt());
+				break;
+			case CMD_END_QUERY:
+				proxy.endQuery();
+				break;
+			case CMD_GET_QUERY_RESULT_AVAILABLE:
+				syncBooleanResult = proxy.getQueryResultAvailable(chunk.nextInt());
+				break;
+			case CMD_GET_QUERY_RESULT:
+				syncIntResult = proxy.getQueryResult(chunk.nextInt());
+				break;
+			case CMD_CLEAR:
+				proxy.clear(chunk.nextFloat(), chunk.nextFloat(), chunk.nextFloat(), chunk.nextFloat());
+				break;
+			case CMD_SET_VERTEX_INFO:
+				proxy.setVertexInfo((VertexInfo) chunk.nextObject(), chunk.nextBoolean(), chunk.nextBoolean(), chunk.nextBoolean(), chunk.nextInt());
+				break;
+			case CMD_SET_PROGRAM_PARAMETER:
+				proxy.setProgramParameter(chunk.nextInt(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_IS_QUERY_AVAILABLE:
+				syncBooleanResult = proxy.isQueryAvailable();
+				break;
+			case CMD_IS_SHADER_AVAILABLE:
+				syncBooleanResult = proxy.isShaderAvailable();
+				break;
+			case CMD_GET_UNIFORM_BLOCK_INDEX:
+				syncIntResult = proxy.getUniformBlockIndex(chunk.nextInt(), (String) chunk.nextObject());
+				break;
+			case CMD_BIND_BUFFER_BASE:
+				proxy.bindBufferBase(chunk.nextInt(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_UNIFORM_BLOCK_BINDING:
+				proxy.setUniformBlockBinding(chunk.nextInt(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_GET_UNIFORM_INDEX:
+				syncIntResult = proxy.getUniformIndex(chunk.nextInt(), (String) chunk.nextObject());
+				break;
+			case CMD_GET_UNIFORM_INDICES:
+				syncObjectResult = proxy.getUniformIndices(chunk.nextInt(), (String[]) chunk.nextObject());
+				break;
+			case CMD_GET_ACTIVE_UNIFORM_OFFSET:
+				syncIntResult = proxy.getActiveUniformOffset(chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_IS_FRAMEBUFFER_OBJECT_AVAILABLE:
+				syncBooleanResult = proxy.isFramebufferObjectAvailable();
+				break;
+			case CMD_GEN_FRAMEBUFFER:
+				syncIntResult = proxy.genFramebuffer();
+				break;
+			case CMD_GEN_RENDERBUFFER:
+				syncIntResult = proxy.genRenderbuffer();
+				break;
+			case CMD_DELETE_FRAMEBUFFER:
+				proxy.deleteFramebuffer(chunk.nextInt());
+				break;
+			case CMD_DELETE_RENDERBUFFER:
+				proxy.deleteRenderbuffer(chunk.nextInt());
+				break;
+			case CMD_BIND_FRAMEBUFFER:
+				proxy.bindFramebuffer(chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_BIND_RENDERBUFFER:
+				proxy.bindRenderbuffer(chunk.nextInt());
+				break;
+			case CMD_SET_RENDERBUFFER_STORAGE:
+				proxy.setRenderbufferStorage(chunk.nextInt(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_FRAMEBUFFER_RENDERBUFFER:
+				proxy.setFramebufferRenderbuffer(chunk.nextInt(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_FRAMEBUFFER_TEXTURE:
+				proxy.setFramebufferTexture(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_GEN_VERTEX_ARRAY:
+				syncIntResult = proxy.genVertexArray();
+				break;
+			case CMD_BIND_VERTEX_ARRAY:
+				proxy.bindVertexArray(chunk.nextInt());
+				break;
+			case CMD_DELETE_VERTEX_ARRAY:
+				proxy.deleteVertexArray(chunk.nextInt());
+				break;
+			case CMD_IS_VERTEX_ARRAY_AVAILABLE:
+				syncBooleanResult = proxy.isVertexArrayAvailable();
+				break;
+			case CMD_MULTI_DRAW_ARRAYS:
+				proxy.multiDrawArrays(chunk.nextInt(), (IntBuffer) chunk.nextObject(), (IntBuffer) chunk.nextObject());
+				break;
+			case CMD_DRAW_ARRAYS_BURST_MODE:
+				proxy.drawArraysBurstMode(chunk.nextInt(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_MULTI_DRAW_ELEMENTS:
+				proxy.multiDrawElements(chunk.nextInt(), (IntBuffer) chunk.nextObject(), (IntBuffer) chunk.nextObject(), chunk.nextInt(), chunk.nextLong());
+				break;
+			case CMD_DRAW_ELEMENTS_BURST_MODE:
+				proxy.drawElementsBurstMode(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextLong());
+				break;
+			case CMD_SET_PIXEL_TRANSFER_II:
+				proxy.setPixelTransfer(chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_PIXEL_TRANSFER_IF:
+				proxy.setPixelTransfer(chunk.nextInt(), chunk.nextFloat());
+				break;
+			case CMD_SET_PIXEL_TRANSFER_IZ:
+				proxy.setPixelTransfer(chunk.nextInt(), chunk.nextBoolean());
+				break;
+			case CMD_SET_PIXEL_MAP:
+				proxy.setPixelMap(chunk.nextInt(), chunk.nextInt(), (Buffer) chunk.nextObject());
+				break;
+			case CMD_SET_ACTIVE_TEXTURE:
+				proxy.setActiveTexture(chunk.nextInt());
+				break;
+			case CMD_SET_TEXTURE_FORMAT:
+				proxy.setTextureFormat(chunk.nextInt(), chunk.nextBoolean());
+				break;
+			case CMD_BIND_ACTIVE_TEXTURE:
+				proxy.bindActiveTexture(chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_SET_TEXTURE_ANISOTROPY:
+				proxy.setTextureAnisotropy(chunk.nextFloat());
+				break;
+			case CMD_GET_MAX_TEXTURE_ANISOTROPY:
+				syncFloatResult = proxy.getMaxTextureAnisotropy();
+				break;
+			case CMD_GET_SHADING_LANGUAGE_VERSION:
+				syncObjectResult = proxy.getShadingLanguageVersion();
+				break;
+			case CMD_SET_BLEND_SFIX:
+				proxy.setBlendSFix(chunk.nextInt(), (float[]) chunk.nextObject());
+				break;
+			case CMD_SET_BLEND_DFIX:
+				proxy.setBlendDFix(chunk.nextInt(), (float[]) chunk.nextObject());
+				break;
+			case CMD_WAIT_FOR_RENDERING_COMPLETION:
+				proxy.waitForRenderingCompletion();
+				break;
+			case CMD_READ_STENCIL:
+				proxy.readStencil(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), (Buffer) chunk.nextObject());
+				break;
+			case CMD_BLIT_FRAMEBUFFER:
+				proxy.blitFramebuffer(chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt(), chunk.nextInt());
+				break;
+			case CMD_CHECK_AND_LOG_ERRORS:
+				syncBooleanResult = proxy.checkAndLogErrors((String) chunk.nextObject());
+				break;
+			case CMD_SET_COPY_RED_TO_ALPHA:
+				syncBooleanResult = proxy.setCopyRedToAlpha(chunk.nextBoolean());
+				break;
+			case CMD_IS_TEXTURE_BARRIER_AVAILABLE:
+				syncBooleanResult = proxy.isTextureBarrierAvailable();
+				break;
+			case CMD_TEXTURE_BARRIER:
+				proxy.textureBarrier();
+				break;
+			default:
+				throw new IllegalArgumentException(String.format("CommandBufferProxy unknown command %d", command));
+		}
+	}
+
+	private void addCommand(int command) {
+		if (chunk.isFull()) {
+			flush();
+		}
+		chunk.addCommand(command);
+	}
+
+	private void addSyncCommand(int command) {
+		addCommand(command | SYNC_COMMAND);
+	}
+
+	private void addInt(int value) {
+		chunk.addInt(value);
+	}
+
+	private void addBoolean(boolean value) {
+		chunk.addInt(value ? 1 : 0);
+	}
+
+	private void addFloat(float value) {
+		chunk.addInt(Float.floatToRawIntBits(value));
+	}
+
+	private void addLong(long value) {
+		chunk.addInt((int) value);
+		chunk.addInt((int) (value >>> 32));
+	}
+
+	private void addObject(Object value) {
+		chunk.addObject(value);
+	}
+
+	/**
+	 * Execute the commands recorded so far, up to the last synchronous command,
+	 * and wait for their completion.
+	 * The results of the synchronous command are then available.
+	 */
+	private void executeSync() {
+		flush();
+		syncDone.acquireUninterruptibly();
+		if (syncException != null) {
+			RuntimeException exception = syncException;
+			syncException = null;
+			throw exception;
+		}
+	}
+
+	private ByteBuffer allocateCopy(int size) {
+		size = round4(size);
+		if (size > copyBlockSize) {
+			return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+		}
+
+		while (copyBlockIndex < copyBlocks.size() && copyBlocks.get(copyBlockIndex).remaining() < size) {
+			copyBlockIndex++;
+		}
+		if (copyBlockIndex >= copyBlocks.size()) {
+			copyBlocks.add(ByteBuffer.allocateDirect(copyBlockSize));
+		}
+
+		ByteBuffer copyBlock = copyBlocks.get(copyBlockIndex);
+		ByteBuffer copy = copyBlock.slice().order(ByteOrder.nativeOrder());
+		copy.limit(size);
+		copyBlock.position(copyBlock.position() + size);
+
+		return copy;
+	}
+
+	/**
+	 * Copy the buffer content, starting at the current buffer position.
+	 * The copies stay valid until the next recording, e.g. for the
+	 * vertex data pointers used by the following draw commands.
+	 *
+	 * @param buffer  the buffer to be copied, or null
+	 * @param size    the number of bytes to be copied
+	 * @return        a copy of the buffer, using the same buffer type
+	 */
+	private Buffer copyBuffer(Buffer buffer, int size) {
+		if (buffer == null) {
+			return null;
+		}
+
+		ByteBuffer copy = allocateCopy(size);
+		if (buffer instanceof ByteBuffer) {
+			ByteBuffer src = ((ByteBuffer) buffer).duplicate();
+			src.limit(Math.min(src.capacity(), src.position() + size));
+			copy.put(src);
+			copy.rewind();
+			return copy;
+		} else if (buffer instanceof IntBuffer) {
+			IntBuffer src = ((IntBuffer) buffer).duplicate();
+			src.limit(Math.min(src.capacity(), src.position() + ((size + 3) >> 2)));
+			IntBuffer dst = copy.asIntBuffer();
+			dst.put(src);
+			dst.rewind();
+			return dst;
+		} else if (buffer instanceof ShortBuffer) {
+			ShortBuffer src = ((ShortBuffer) buffer).duplicate();
+			src.limit(Math.min(src.capacity(), src.position() + ((size + 1) >> 1)));
+			ShortBuffer dst = copy.asShortBuffer();
+			dst.put(src);
+			dst.rewind();
+			return dst;
+		} else if (buffer instanceof FloatBuffer) {
+			FloatBuffer src = ((FloatBuffer) buffer).duplicate();
+			src.limit(Math.min(src.capacity(), src.position() + ((size + 3) >> 2)));
+			FloatBuffer dst = copy.asFloatBuffer();
+			dst.put(src);
+			dst.rewind();
+			return dst;
+		}
+
+		throw new IllegalArgumentException();
+	}
+
+	private static float[] copy(float[] values) {
+		return values == null ? null : values.clone();
+	}
+
+	private static int[] copy(int[] values) {
+		return values == null ? null : values.clone();
+	}
+
+	private static float[][] copy(float[][] values) {
+		if (values == null) {
+			return null;
+		}
+
+		float[][] copy = new float[values.length][];
+		for (int i = 0; i < values.length; i++) {
+			copy[i] = copy(values[i]);
+		}
+
+		return copy;
+	}
+
+	private static VertexInfo copy(VertexInfo vinfo) {
+		return vinfo == null ? null : new VertexInfo(vinfo);
+	}
+
+	@Override
+	public void startDirectRendering(boolean textureEnabled, boolean depthWriteEnabled, boolean colorWriteEnabled, boolean setOrthoMatrix, boolean orthoInverted, int width, int height) {
+		if (!isRecording()) {
+			super.startDirectRendering(textureEnabled, depthWriteEnabled, colorWriteEnabled, setOrthoMatrix, orthoInverted, width, height);
+			return;
+		}
+
+		addCommand(CMD_START_DIRECT_RENDERING);
+		addBoolean(textureEnabled);
+		addBoolean(depthWriteEnabled);
+		addBoolean(colorWriteEnabled);
+		addBoolean(setOrthoMatrix);
+		addBoolean(orthoInverted);
+		addInt(width);
+		addInt(height);
+	}
+
+	@Override
+	public void endDirectRendering() {
+		if (!isRecording()) {
+			super.endDirectRendering();
+			return;
+		}
+
+		addCommand(CMD_END_DIRECT_RENDERING);
+	}
+
+	@Override
+	public void startDisplay() {
+		if (!isRecording()) {
+			super.startDisplay();
+			return;
+		}
+
+		addCommand(CMD_START_DISPLAY);
+	}
+
+	@Override
+	public void endDisplay() {
+		if (!isRecording()) {
+			super.endDisplay();
+			return;
+		}
+
+		addCommand(CMD_END_DISPLAY);
+	}
+
+	@Override
+	public void enableFlag(int flag) {
+		if (!isRecording()) {
+			super.enableFlag(flag);
+			return;
+		}
+
+		addCommand(CMD_ENABLE_FLAG);
+		addInt(flag);
+	}
+
+	@Override
+	public void disableFlag(int flag) {
+		if (!isRecording()) {
+			super.disableFlag(flag);
+			return;
+		}
+
+		addCommand(CMD_DISABLE_FLAG);
+		addInt(flag);
+	}
+
+	@Override
+	public void setMorphWeight(int index, float value) {
+		if (!isRecording()) {
+			super.setMorphWeight(index, value);
+			return;
+		}
+
+		addCommand(CMD_SET_MORPH_WEIGHT);
+		addInt(index);
+		addFloat(value);
+	}
+
+	@Override
+	public void setPatchDiv(int s, int t) {
+		if (!isRecording()) {
+			super.setPatchDiv(s, t);
+			return;
+		}
+
+		addCommand(CMD_SET_PATCH_DIV);
+		addInt(s);
+		addInt(t);
+	}
+
+	@Override
+	public void setPatchPrim(int prim) {
+		if (!isRecording()) {
+			super.setPatchPrim(prim);
+			return;
+		}
+
+		addCommand(CMD_SET_PATCH_PRIM);
+		addInt(prim);
+	}
+
+	@Override
+	public void setMatrixMode(int type) {
+		if (!isRecording()) {
+			super.setMatrixMode(type);
+			return;
+		}
+
+		addCommand(CMD_SET_MATRIX_MODE);
+		addInt(type);
+	}
+
+	@Override
+	public void setMatrix(float[] values) {
+		if (!isRecording()) {
+			super.setMatrix(values);
+			return;
+		}
+
+		addCommand(CMD_SET_MATRIX);
+		addObject(copy(values));
+	}
+
+	@Override
+	public void multMatrix(float[] values) {
+		if (!isRecording()) {
+			super.multMatrix(values);
+			return;
+		}
+
+		addCommand(CMD_MULT_MATRIX);
+		addObject(copy(values));
+	}
+
+	@Override
+	public void setProjectionMatrix(float[] values) {
+		if (!isRecording()) {
+			super.setProjectionMatrix(values);
+			return;
+		}
+
+		addCommand(CMD_SET_PROJECTION_MATRIX);
+		addObject(copy(values));
+	}
+
+	@Override
+	public void setViewMatrix(float[] values) {
+		if (!isRecording()) {
+			super.setViewMatrix(values);
+			return;
+		}
+
+		addCommand(CMD_SET_VIEW_MATRIX);
+		addObject(copy(values));
+	}
+
+	@Override
+	public void setModelMatrix(float[] values) {
+		if (!isRecording()) {
+			super.setModelMatrix(values);
+			return;
+		}
+
+		addCommand(CMD_SET_MODEL_MATRIX);
+		addObject(copy(values));
+	}
+
+	@Override
+	public void setModelViewMatrix(float[] values) {
+		if (!isRecording()) {
+			super.setModelViewMatrix(values);
+			return;
+		}
+
+		addCommand(CMD_SET_MODEL_VIEW_MATRIX);
+		addObject(copy(values));
+	}
+
+	@Override
+	public void setTextureMatrix(float[] values) {
+		if (!isRecording()) {
+			super.setTextureMatrix(values);
+			return;
+		}
+
+		addCommand(CMD_SET_TEXTURE_MATRIX);
+		addObject(copy(values));
+	}
+
+	@Override
+	public void endModelViewMatrixUpdate() {
+		if (!isRecording()) {
+			super.endModelViewMatrixUpdate();
+			return;
+		}
+
+		addCommand(CMD_END_MODEL_VIEW_MATRIX_UPDATE);
+	}
+
+	@Override
+	public void setViewport(int x, int y, int width, int height) {
+		if (!isRecording()) {
+			super.setViewport(x, y, width, height);
+			return;
+		}
+
+		addCommand(CMD_SET_VIEWPORT);
+		addInt(x);
+		addInt(y);
+		addInt(width);
+		addInt(height);
+	}
+
+	@Override
+	public void setDepthRange(float zpos, float zscale, int near, int far) {
+		if (!isRecording()) {
+			super.setDepthRange(zpos, zscale, near, far);
+			return;
+		}
+
+		addCommand(CMD_SET_DEPTH_RANGE);
+		addFloat(zpos);
+		addFloat(zscale);
+		addInt(near);
+		addInt(far);
+	}
+
+	@Override
+	public void setDepthFunc(int func) {
+		if (!isRecording()) {
+			super.setDepthFunc(func);
+			return;
+		}
+
+		addCommand(CMD_SET_DEPTH_FUNC);
+		addInt(func);
+	}
+
+	@Override
+	public void setShadeModel(int model) {
+		if (!isRecording()) {
+			super.setShadeModel(model);
+			return;
+		}
+
+		addCommand(CMD_SET_SHADE_MODEL);
+		addInt(model);
+	}
+
+	@Override
+	public void setMaterialEmissiveColor(float[] color) {
+		if (!isRecording()) {
+			super.setMaterialEmissiveColor(color);
+			return;
+		}
+
+		addCommand(CMD_SET_MATERIAL_EMISSIVE_COLOR);
+		addObject(copy(color));
+	}
+
+	@Override
+	public void setMaterialAmbientColor(float[] color) {
+		if (!isRecording()) {
+			super.setMaterialAmbientColor(color);
+			return;
+		}
+
+		addCommand(CMD_SET_MATERIAL_AMBIENT_COLOR);
+		addObject(copy(color));
+	}
+
+	@Override
+	public void setMaterialDiffuseColor(float[] color) {
+		if (!isRecording()) {
+			super.setMaterialDiffuseColor(color);
+			return;
+		}
+
+		addCommand(CMD_SET_MATERIAL_DIFFUSE_COLOR);
+		addObject(copy(color));
+	}
+
+	@Override
+	public void setMaterialSpecularColor(float[] color) {
+		if (!isRecording()) {
+			super.setMaterialSpecularColor(color);
+			return;
+		}
+
+		addCommand(CMD_SET_MATERIAL_SPECULAR_COLOR);
+		addObject(copy(color));
+	}
+
+	@Override
+	public void setMaterialShininess(float shininess) {
+		if (!isRecording()) {
+			super.setMaterialShininess(shininess);
+			return;
+		}
+
+		addCommand(CMD_SET_MATERIAL_SHININESS);
+		addFloat(shininess);
+	}
+
+	@Override
+	public void setLightModelAmbientColor(float[] color) {
+		if (!isRecording()) {
+			super.setLightModelAmbientColor(color);
+			return;
+		}
+
+		addCommand(CMD_SET_LIGHT_MODEL_AMBIENT_COLOR);
+		addObject(copy(color));
+	}
+
+	@Override
+	public void setLightMode(int mode) {
+		if (!isRecording()) {
+			super.setLightMode(mode);
+			return;
+		}
+
+		addCommand(CMD_SET_LIGHT_MODE);
+		addInt(mode);
+	}
+
+	@Override
+	public void setLightPosition(int light, float[] position) {
+		if (!isRecording()) {
+			super.setLightPosition(light, position);
+			return;
+		}
+
+		addCommand(CMD_SET_LIGHT_POSITION);
+		addInt(light);
+		addObject(copy(position));
+	}
+
+	@Override
+	public void setLightDirection(int light, float[] direction) {
+		if (!isRecording()) {
+			super.setLightDirection(light, direction);
+			return;
+		}
+
+		addCommand(CMD_SET_LIGHT_DIRECTION);
+		addInt(light);
+		addObject(copy(direction));
+	}
+
+	@Override
+	public void setLightSpotExponent(int light, float exponent) {
+		if (!isRecording()) {
+			super.setLightSpotExponent(light, exponent);
+			return;
+		}
+
+		addCommand(CMD_SET_LIGHT_SPOT_EXPONENT);
+		addInt(light);
+		addFloat(exponent);
+	}
+
+	@Override
+	public void setLightSpotCutoff(int light, float cutoff) {
+		if (!isRecording()) {
+			super.setLightSpotCutoff(light, cutoff);
+			return;
+		}
+
+		addCommand(CMD_SET_LIGHT_SPOT_CUTOFF);
+		addInt(light);
+		addFloat(cutoff);
+	}
+
+	@Override
+	public void setLightConstantAttenuation(int light, float constant) {
+		if (!isRecording()) {
+			super.setLightConstantAttenuation(light, constant);
+			return;
+		}
+
+		addCommand(CMD_SET_LIGHT_CONSTANT_ATTENUATION);
+		addInt(light);
+		addFloat(constant);
+	}
+
+	@Override
+	public void setLightLinearAttenuation(int light, float linear) {
+		if (!isRecording()) {
+			super.setLightLinearAttenuation(light, linear);
+			return;
+		}
+
+		addCommand(CMD_SET_LIGHT_LINEAR_ATTENUATION);
+		addInt(light);
+		addFloat(linear);
+	}
+
+	@Override
+	public void setLightQuadraticAttenuation(int light, float quadratic) {
+		if (!isRecording()) {
+			super.setLightQuadraticAttenuation(light, quadratic);
+			return;
+		}
+
+		addCommand(CMD_SET_LIGHT_QUADRATIC_ATTENUATION);
+		addInt(light);
+		addFloat(quadratic);
+	}
+
+	@Override
+	public void setLightAmbientColor(int light, float[] color) {
+		if (!isRecording()) {
+			super.setLightAmbientColor(light, color);
+			return;
+		}
+
+		addCommand(CMD_SET_LIGHT_AMBIENT_COLOR);
+		addInt(light);
+		addObject(copy(color));
+	}
+
+	@Override
+	public void setLightDiffuseColor(int light, float[] color) {
+		if (!isRecording()) {
+			super.setLightDiffuseColor(light, color);
+			return;
+		}
+
+		addCommand(CMD_SET_LIGHT_DIFFUSE_COLOR);
+		addInt(light);
+		addObject(copy(color));
+	}
+
+	@Override
+	public void setLightSpecularColor(int light, float[] color) {
+		if (!isRecording()) {
+			super.setLightSpecularColor(light, color);
+			return;
+		}
+
+		addCommand(CMD_SET_LIGHT_SPECULAR_COLOR);
+		addInt(light);
+		addObject(copy(color));
+	}
+
+	@Override
+	public void setLightType(int light, int type, int kind) {
+		if (!isRecording()) {
+			super.setLightType(light, type, kind);
+			return;
+		}
+
+		addCommand(CMD_SET_LIGHT_TYPE);
+		addInt(light);
+		addInt(type);
+		addInt(kind);
+	}
+
+	@Override
+	public void setBlendFunc(int src, int dst) {
+		if (!isRecording()) {
+			super.setBlendFunc(src, dst);
+			return;
+		}
+
+		addCommand(CMD_SET_BLEND_FUNC);
+		addInt(src);
+		addInt(dst);
+	}
+
+	@Override
+	public void setBlendColor(float[] color) {
+		if (!isRecording()) {
+			super.setBlendColor(color);
+			return;
+		}
+
+		addCommand(CMD_SET_BLEND_COLOR);
+		addObject(copy(color));
+	}
+
+	@Override
+	public void setLogicOp(int logicOp) {
+		if (!isRecording()) {
+			super.setLogicOp(logicOp);
+			return;
+		}
+
+		addCommand(CMD_SET_LOGIC_OP);
+		addInt(logicOp);
+	}
+
+	@Override
+	public void setDepthMask(boolean depthWriteEnabled) {
+		if (!isRecording()) {
+			super.setDepthMask(depthWriteEnabled);
+			return;
+		}
+
+		addCommand(CMD_SET_DEPTH_MASK);
+		addBoolean(depthWriteEnabled);
+	}
+
+	@Override
+	public void setColorMask(int redMask, int greenMask, int blueMask, int alphaMask) {
+		if (!isRecording()) {
+			super.setColorMask(redMask, greenMask, blueMask, alphaMask);
+			return;
+		}
+
+		addCommand(CMD_SET_COLOR_MASK_IIII);
+		addInt(redMask);
+		addInt(greenMask);
+		addInt(blueMask);
+		addInt(alphaMask);
+	}
+
+	@Override
+	public void setColorMask(boolean redWriteEnabled, boolean greenWriteEnabled, boolean blueWriteEnabled, boolean alphaWriteEnabled) {
+		if (!isRecording()) {
+			super.setColorMask(redWriteEnabled, greenWriteEnabled, blueWriteEnabled, alphaWriteEnabled);
+			return;
+		}
+
+		addCommand(CMD_SET_COLOR_MASK_ZZZZ);
+		addBoolean(redWriteEnabled);
+		addBoolean(greenWriteEnabled);
+		addBoolean(blueWriteEnabled);
+		addBoolean(alphaWriteEnabled);
+	}
+
+	@Override
+	public void setTextureWrapMode(int s, int t) {
+		if (!isRecording()) {
+			super.setTextureWrapMode(s, t);
+			return;
+		}
+
+		addCommand(CMD_SET_TEXTURE_WRAP_MODE);
+		addInt(s);
+		addInt(t);
+	}
+
+	@Override
+	public void setTextureMipmapMinLevel(int level) {
+		if (!isRecording()) {
+			super.setTextureMipmapMinLevel(level);
+			return;
+		}
+
+		addCommand(CMD_SET_TEXTURE_MIPMAP_MIN_LEVEL);
+		addInt(level);
+	}
+
+	@Override
+	public void setTextureMipmapMaxLevel(int level) {
+		if (!isRecording()) {
+			super.setTextureMipmapMaxLevel(level);
+			return;
+		}
+
+		addCommand(CMD_SET_TEXTURE_MIPMAP_MAX_LEVEL);
+		addInt(level);
+	}
+
+	@Override
+	public void setTextureMipmapMinFilter(int filter) {
+		if (!isRecording()) {
+			super.setTextureMipmapMinFilter(filter);
+			return;
+		}
+
+		addCommand(CMD_SET_TEXTURE_MIPMAP_MIN_FILTER);
+		addInt(filter);
+	}
+
+	@Override
+	public void setTextureMipmapMagFilter(int filter) {
+		if (!isRecording()) {
+			super.setTextureMipmapMagFilter(filter);
+			return;
+		}
+
+		addCommand(CMD_SET_TEXTURE_MIPMAP_MAG_FILTER);
+		addInt(filter);
+	}
+
+	@Override
+	public void setColorMaterial(boolean ambient, boolean diffuse, boolean specular) {
+		if (!isRecording()) {
+			super.setColorMaterial(ambient, diffuse, specular);
+			return;
+		}
+
+		addCommand(CMD_SET_COLOR_MATERIAL);
+		addBoolean(ambient);
+		addBoolean(diffuse);
+		addBoolean(specular);
+	}
+
+	@Override
+	public void setTextureMapMode(int mode, int proj) {
+		if (!isRecording()) {
+			super.setTextureMapMode(mode, proj);
+			return;
+		}
+
+		addCommand(CMD_SET_TEXTURE_MAP_MODE);
+		addInt(mode);
+		addInt(proj);
+	}
+
+	@Override
+	public void setTextureEnvironmentMapping(int u, int v) {
+		if (!isRecording()) {
+			super.setTextureEnvironmentMapping(u, v);
+			return;
+		}
+
+		addCommand(CMD_SET_TEXTURE_ENVIRONMENT_MAPPING);
+		addInt(u);
+		addInt(v);
+	}
+
+	@Override
+	public void setVertexColor(float[] color) {
+		if (!isRecording()) {
+			super.setVertexColor(color);
+			return;
+		}
+
+		addCommand(CMD_SET_VERTEX_COLOR);
+		addObject(copy(color));
+	}
+
+	@Override
+	public void setUniform(int id, int value) {
+		if (!isRecording()) {
+			super.setUniform(id, value);
+			return;
+		}
+
+		addCommand(CMD_SET_UNIFORM_II);
+		addInt(id);
+		addInt(value);
+	}
+
+	@Override
+	public void setUniform(int id, int value1, int value2) {
+		if (!isRecording()) {
+			super.setUniform(id, value1, value2);
+			return;
+		}
+
+		addCommand(CMD_SET_UNIFORM_III);
+		addInt(id);
+		addInt(value1);
+		addInt(value2);
+	}
+
+	@Override
+	public void setUniform(int id, float value) {
+		if (!isRecording()) {
+			super.setUniform(id, value);
+			return;
+		}
+
+		addCommand(CMD_SET_UNIFORM_IF);
+		addInt(id);
+		addFloat(value);
+	}
+
+	@Override
+	public void setUniform2(int id, int[] values) {
+		if (!isRecording()) {
+			super.setUniform2(id, values);
+			return;
+		}
+
+		addCommand(CMD_SET_UNIFORM2);
+		addInt(id);
+		addObject(copy(values));
+	}
+
+	@Override
+	public void setUniform3(int id, int[] values) {
+		if (!isRecording()) {
+			super.setUniform3(id, values);
+			return;
+		}
+
+		addCommand(CMD_SET_UNIFORM3_IIV);
+		addInt(id);
+		addObject(copy(values));
+	}
+
+	@Override
+	public void setUniform3(int id, float[] values) {
+		if (!isRecording()) {
+			super.setUniform3(id, values);
+			return;
+		}
+
+		addCommand(CMD_SET_UNIFORM3_IFV);
+		addInt(id);
+		addObject(copy(values));
+	}
+
+	@Override
+	public void setUniform4(int id, int[] values) {
+		if (!isRecording()) {
+			super.setUniform4(id, values);
+			return;
+		}
+
+		addCommand(CMD_SET_UNIFORM4_IIV);
+		addInt(id);
+		addObject(copy(values));
+	}
+
+	@Override
+	public void setUniform4(int id, float[] values) {
+		if (!isRecording()) {
+			super.setUniform4(id, values);
+			return;
+		}
+
+		addCommand(CMD_SET_UNIFORM4_IFV);
+		addInt(id);
+		addObject(copy(values));
+	}
+
+	@Override
+	public void setUniformMatrix4(int id, int count, float[] values) {
+		if (!isRecording()) {
+			super.setUniformMatrix4(id, count, values);
+			return;
+		}
+
+		addCommand(CMD_SET_UNIFORM_MATRIX4);
+		addInt(id);
+		addInt(count);
+		addObject(copy(values));
+	}
+
+	@Override
+	public void setColorTestFunc(int func) {
+		if (!isRecording()) {
+			super.setColorTestFunc(func);
+			return;
+		}
+
+		addCommand(CMD_SET_COLOR_TEST_FUNC);
+		addInt(func);
+	}
+
+	@Override
+	public void setColorTestReference(int[] values) {
+		if (!isRecording()) {
+			super.setColorTestReference(values);
+			return;
+		}
+
+		addCommand(CMD_SET_COLOR_TEST_REFERENCE);
+		addObject(copy(values));
+	}
+
+	@Override
+	public void setColorTestMask(int[] values) {
+		if (!isRecording()) {
+			super.setColorTestMask(values);
+			return;
+		}
+
+		addCommand(CMD_SET_COLOR_TEST_MASK);
+		addObject(copy(values));
+	}
+
+	@Override
+	public void setTextureFunc(int func, boolean alphaUsed, boolean colorDoubled) {
+		if (!isRecording()) {
+			super.setTextureFunc(func, alphaUsed, colorDoubled);
+			return;
+		}
+
+		addCommand(CMD_SET_TEXTURE_FUNC);
+		addInt(func);
+		addBoolean(alphaUsed);
+		addBoolean(colorDoubled);
+	}
+
+	@Override
+	public int setBones(int count, float[] values) {
+		if (!isRecording()) {
+			return super.setBones(count, values);
+		}
+
+		addSyncCommand(CMD_SET_BONES);
+		addInt(count);
+		addObject(values);
+		executeSync();
+		return syncIntResult;
+	}
+
+	@Override
+	public void setTexEnv(int name, int param) {
+		if (!isRecording()) {
+			super.setTexEnv(name, param);
+			return;
+		}
+
+		addCommand(CMD_SET_TEX_ENV_II);
+		addInt(name);
+		addInt(param);
+	}
+
+	@Override
+	public void setTexEnv(int name, float param) {
+		if (!isRecording()) {
+			super.setTexEnv(name, param);
+			return;
+		}
+
+		addCommand(CMD_SET_TEX_ENV_IF);
+		addInt(name);
+		addFloat(param);
+	}
+
+	@Override
+	public void startClearMode(boolean color, boolean stencil, boolean depth) {
+		if (!isRecording()) {
+			super.startClearMode(color, stencil, depth);
+			return;
+		}
+
+		addCommand(CMD_START_CLEAR_MODE);
+		addBoolean(color);
+		addBoolean(stencil);
+		addBoolean(depth);
+	}
+
+	@Override
+	public void endClearMode() {
+		if (!isRecording()) {
+			super.endClearMode();
+			return;
+		}
+
+		addCommand(CMD_END_CLEAR_MODE);
+	}
+
+	@Override
+	public int createShader(int type) {
+		if (!isRecording()) {
+			return super.createShader(type);
+		}
+
+		addSyncCommand(CMD_CREATE_SHADER);
+		addInt(type);
+		executeSync();
+		return syncIntResult;
+	}
+
+	@Override
+	public boolean compilerShader(int shader, String source) {
+		if (!isRecording()) {
+			return super.compilerShader(shader, source);
+		}
+
+		addSyncCommand(CMD_COMPILER_SHADER);
+		addInt(shader);
+		addObject(source);
+		executeSync();
+		return syncBooleanResult;
+	}
+
+	@Override
+	public int createProgram() {
+		if (!isRecording()) {
+			return super.createProgram();
+		}
+
+		addSyncCommand(CMD_CREATE_PROGRAM);
+		executeSync();
+		return syncIntResult;
+	}
+
+	@Override
+	public void useProgram(int program) {
+		if (!isRecording()) {
+			super.useProgram(program);
+			return;
+		}
+
+		addCommand(CMD_USE_PROGRAM);
+		addInt(program);
+	}
+
+	@Override
+	public void attachShader(int program, int shader) {
+		if (!isRecording()) {
+			super.attachShader(program, shader);
+			return;
+		}
+
+		addCommand(CMD_ATTACH_SHADER);
+		addInt(program);
+		addInt(shader);
+	}
+
+	@Override
+	public boolean linkProgram(int program) {
+		if (!isRecording()) {
+			return super.linkProgram(program);
+		}
+
+		addSyncCommand(CMD_LINK_PROGRAM);
+		addInt(program);
+		executeSync();
+		return syncBooleanResult;
+	}
+
+	@Override
+	public boolean validateProgram(int program) {
+		if (!isRecording()) {
+			return super.validateProgram(program);
+		}
+
+		addSyncCommand(CMD_VALIDATE_PROGRAM);
+		addInt(program);
+		executeSync();
+		return syncBooleanResult;
+	}
+
+	@Override
+	public int getUniformLocation(int program, String name) {
+		if (!isRecording()) {
+			return super.getUniformLocation(program, name);
+		}
+
+		addSyncCommand(CMD_GET_UNIFORM_LOCATION);
+		addInt(program);
+		addObject(name);
+		executeSync();
+		return syncIntResult;
+	}
+
+	@Override
+	public int getAttribLocation(int program, String name) {
+		if (!isRecording()) {
+			return super.getAttribLocation(program, name);
+		}
+
+		addSyncCommand(CMD_GET_ATTRIB_LOCATION);
+		addInt(program);
+		addObject(name);
+		executeSync();
+		return syncIntResult;
+	}
+
+	@Override
+	public void bindAttribLocation(int program, int index, String name) {
+		if (!isRecording()) {
+			super.bindAttribLocation(program, index, name);
+			return;
+		}
+
+		addCommand(CMD_BIND_ATTRIB_LOCATION);
+		addInt(program);
+		addInt(index);
+		addObject(name);
+	}
+
+	@Override
+	public String getShaderInfoLog(int shader) {
+		if (!isRecording()) {
+			return super.getShaderInfoLog(shader);
+		}
+
+		addSyncCommand(CMD_GET_SHADER_INFO_LOG);
+		addInt(shader);
+		executeSync();
+		return (String) syncObjectResult;
+	}
+
+	@Override
+	public String getProgramInfoLog(int program) {
+		if (!isRecording()) {
+			return super.getProgramInfoLog(program);
+		}
+
+		addSyncCommand(CMD_GET_PROGRAM_INFO_LOG);
+		addInt(program);
+		executeSync();
+		return (String) syncObjectResult;
+	}
+
+	@Override
+	public boolean isExtensionAvailable(String name) {
+		if (!isRecording()) {
+			return super.isExtensionAvailable(name);
+		}
+
+		addSyncCommand(CMD_IS_EXTENSION_AVAILABLE);
+		addObject(name);
+		executeSync();
+		return syncBooleanResult;
+	}
+
+	@Override
+	public void drawArrays(int primitive, int first, int count) {
+		if (!isRecording()) {
+			super.drawArrays(primitive, first, count);
+			return;
+		}
+
+		addCommand(CMD_DRAW_ARRAYS);
+		addInt(primitive);
+		addInt(first);
+		addInt(count);
+	}
+
+	@Override
+	public void drawElements(int primitive, int count, int indexType, Buffer indices, int indicesOffset) {
+		if (!isRecording()) {
+			super.drawElements(primitive, count, indexType, indices, indicesOffset);
+			return;
+		}
+
+		addSyncCommand(CMD_DRAW_ELEMENTS_IIIBI);
+		addInt(primitive);
+		addInt(count);
+		addInt(indexType);
+		addObject(indices);
+		addInt(indicesOffset);
+		executeSync();
+	}
+
+	@Override
+	public void drawElements(int primitive, int count, int indexType, long indicesOffset) {
+		if (!isRecording()) {
+			super.drawElements(primitive, count, indexType, indicesOffset);
+			return;
+		}
+
+		addCommand(CMD_DRAW_ELEMENTS_IIIJ);
+		addInt(primitive);
+		addInt(count);
+		addInt(indexType);
+		addLong(indicesOffset);
+	}
+
+	@Override
+	public int genBuffer() {
+		if (!isRecording()) {
+			return super.genBuffer();
+		}
+
+		addSyncCommand(CMD_GEN_BUFFER);
+		executeSync();
+		return syncIntResult;
+	}
+
+	@Override
+	public void deleteBuffer(int buffer) {
+		if (!isRecording()) {
+			super.deleteBuffer(buffer);
+			return;
+		}
+
+		addCommand(CMD_DELETE_BUFFER);
+		addInt(buffer);
+	}
+
+	@Override
+	public void setBufferData(int target, int size, Buffer buffer, int usage) {
+		if (!isRecording()) {
+			super.setBufferData(target, size, buffer, usage);
+			return;
+		}
+
+		addCommand(CMD_SET_BUFFER_DATA);
+		addInt(target);
+		addInt(size);
+		addObject(copyBuffer(buffer, size));
+		addInt(usage);
+	}
+
+	@Override
+	public void setBufferSubData(int target, int offset, int size, Buffer buffer) {
+		if (!isRecording()) {
+			super.setBufferSubData(target, offset, size, buffer);
+			return;
+		}
+
+		addCommand(CMD_SET_BUFFER_SUB_DATA);
+		addInt(target);
+		addInt(offset);
+		addInt(size);
+		addObject(copyBuffer(buffer, size));
+	}
+
+	@Override
+	public void bindBuffer(int target, int buffer) {
+		if (!isRecording()) {
+			super.bindBuffer(target, buffer);
+			return;
+		}
+
+		addCommand(CMD_BIND_BUFFER);
+		addInt(target);
+		addInt(buffer);
+	}
+
+	@Override
+	public void enableClientState(int type) {
+		if (!isRecording()) {
+			super.enableClientState(type);
+			return;
+		}
+
+		addCommand(CMD_ENABLE_CLIENT_STATE);
+		addInt(type);
+	}
+
+	@Override
+	public void disableClientState(int type) {
+		if (!isRecording()) {
+			super.disableClientState(type);
+			return;
+		}
+
+		addCommand(CMD_DISABLE_CLIENT_STATE);
+		addInt(type);
+	}
+
+	@Override
+	public void enableVertexAttribArray(int id) {
+		if (!isRecording()) {
+			super.enableVertexAttribArray(id);
+			return;
+		}
+
+		addCommand(CMD_ENABLE_VERTEX_ATTRIB_ARRAY);
+		addInt(id);
+	}
+
+	@Override
+	public void disableVertexAttribArray(int id) {
+		if (!isRecording()) {
+			super.disableVertexAttribArray(id);
+			return;
+		}
+
+		addCommand(CMD_DISABLE_VERTEX_ATTRIB_ARRAY);
+		addInt(id);
+	}
+
+	@Override
+	public void setTexCoordPointer(int size, int type, int stride, long offset) {
+		if (!isRecording()) {
+			super.setTexCoordPointer(size, type, stride, offset);
+			return;
+		}
+
+		addCommand(CMD_SET_TEX_COORD_POINTER_IIIJ);
+		addInt(size);
+		addInt(type);
+		addInt(stride);
+		addLong(offset);
+	}
+
+	@Override
+	public void setTexCoordPointer(int size, int type, int stride, int bufferSize, Buffer buffer) {
+		if (!isRecording()) {
+			super.setTexCoordPointer(size, type, stride, bufferSize, buffer);
+			return;
+		}
+
+		addCommand(CMD_SET_TEX_COORD_POINTER_IIIIB);
+		addInt(size);
+		addInt(type);
+		addInt(stride);
+		addInt(bufferSize);
+		addObject(copyBuffer(buffer, bufferSize));
+	}
+
+	@Override
+	public void setColorPointer(int size, int type, int stride, long offset) {
+		if (!isRecording()) {
+			super.setColorPointer(size, type, stride, offset);
+			return;
+		}
+
+		addCommand(CMD_SET_COLOR_POINTER_IIIJ);
+		addInt(size);
+		addInt(type);
+		addInt(stride);
+		addLong(offset);
+	}
+
+	@Override
+	public void setColorPointer(int size, int type, int stride, int bufferSize, Buffer buffer) {
+		if (!isRecording()) {
+			super.setColorPointer(size, type, stride, bufferSize, buffer);
+			return;
+		}
+
+		addCommand(CMD_SET_COLOR_POINTER_IIIIB);
+		addInt(size);
+		addInt(type);
+		addInt(stride);
+		addInt(bufferSize);
+		addObject(copyBuffer(buffer, bufferSize));
+	}
+
+	@Override
+	public void setVertexPointer(int size, int type, int stride, long offset) {
+		if (!isRecording()) {
+			super.setVertexPointer(size, type, stride, offset);
+			return;
+		}
+
+		addCommand(CMD_SET_VERTEX_POINTER_IIIJ);
+		addInt(size);
+		addInt(type);
+		addInt(stride);
+		addLong(offset);
+	}
+
+	@Override
+	public void setVertexPointer(int size, int type, int stride, int bufferSize, Buffer buffer) {
+		if (!isRecording()) {
+			super.setVertexPointer(size, type, stride, bufferSize, buffer);
+			return;
+		}
+
+		addCommand(CMD_SET_VERTEX_POINTER_IIIIB);
+		addInt(size);
+		addInt(type);
+		addInt(stride);
+		addInt(bufferSize);
+		addObject(copyBuffer(buffer, bufferSize));
+	}
+
+	@Override
+	public void setNormalPointer(int type, int stride, long offset) {
+		if (!isRecording()) {
+			super.setNormalPointer(type, stride, offset);
+			return;
+		}
+
+		addCommand(CMD_SET_NORMAL_POINTER_IIJ);
+		addInt(type);
+		addInt(stride);
+		addLong(offset);
+	}
+
+	@Override
+	public void setNormalPointer(int type, int stride, int bufferSize, Buffer buffer) {
+		if (!isRecording()) {
+			super.setNormalPointer(type, stride, bufferSize, buffer);
+			return;
+		}
+
+		addCommand(CMD_SET_NORMAL_POINTER_IIIB);
+		addInt(type);
+		addInt(stride);
+		addInt(bufferSize);
+		addObject(copyBuffer(buffer, bufferSize));
+	}
+
+	@Override
+	public void setWeightPointer(int size, int type, int stride, long offset) {
+		if (!isRecording()) {
+			super.setWeightPointer(size, type, stride, offset);
+			return;
+		}
+
+		addCommand(CMD_SET_WEIGHT_POINTER_IIIJ);
+		addInt(size);
+		addInt(type);
+		addInt(stride);
+		addLong(offset);
+	}
+
+	@Override
+	public void setWeightPointer(int size, int type, int stride, int bufferSize, Buffer buffer) {
+		if (!isRecording()) {
+			super.setWeightPointer(size, type, stride, bufferSize, buffer);
+			return;
+		}
+
+		addCommand(CMD_SET_WEIGHT_POINTER_IIIIB);
+		addInt(size);
+		addInt(type);
+		addInt(stride);
+		addInt(bufferSize);
+		addObject(copyBuffer(buffer, bufferSize));
+	}
+
+	@Override
+	public void setVertexAttribPointer(int id, int size, int type, boolean normalized, int stride, long offset) {
+		if (!isRecording()) {
+			super.setVertexAttribPointer(id, size, type, normalized, stride, offset);
+			return;
+		}
+
+		addCommand(CMD_SET_VERTEX_ATTRIB_POINTER_IIIZIJ);
+		addInt(id);
+		addInt(size);
+		addInt(type);
+		addBoolean(normalized);
+		addInt(stride);
+		addLong(offset);
+	}
+
+	@Override
+	public void setVertexAttribPointer(int id, int size, int type, boolean normalized, int stride, int bufferSize, Buffer buffer) {
+		if (!isRecording()) {
+			super.setVertexAttribPointer(id, size, type, normalized, stride, bufferSize, buffer);
+			return;
+		}
+
+		addCommand(CMD_SET_VERTEX_ATTRIB_POINTER_IIIZIIB);
+		addInt(id);
+		addInt(size);
+		addInt(type);
+		addBoolean(normalized);
+		addInt(stride);
+		addInt(bufferSize);
+		addObject(copyBuffer(buffer, bufferSize));
+	}
+
+	@Override
+	public void setPixelStore(int rowLength, int alignment) {
+		if (!isRecording()) {
+			super.setPixelStore(rowLength, alignment);
+			return;
+		}
+
+		addCommand(CMD_SET_PIXEL_STORE);
+		addInt(rowLength);
+		addInt(alignment);
+	}
+
+	@Override
+	public int genTexture() {
+		if (!isRecording()) {
+			return super.genTexture();
+		}
+
+		addSyncCommand(CMD_GEN_TEXTURE);
+		executeSync();
+		return syncIntResult;
+	}
+
+	@Override
+	public void bindTexture(int texture) {
+		if (!isRecording()) {
+			super.bindTexture(texture);
+			return;
+		}
+
+		addCommand(CMD_BIND_TEXTURE);
+		addInt(texture);
+	}
+
+	@Override
+	public void deleteTexture(int texture) {
+		if (!isRecording()) {
+			super.deleteTexture(texture);
+			return;
+		}
+
+		addCommand(CMD_DELETE_TEXTURE);
+		addInt(texture);
+	}
+
+	@Override
+	public void setCompressedTexImage(int level, int internalFormat, int width, int height, int compressedSize, Buffer buffer) {
+		if (!isRecording()) {
+			super.setCompressedTexImage(level, internalFormat, width, height, compressedSize, buffer);
+			return;
+		}
+
+		addCommand(CMD_SET_COMPRESSED_TEX_IMAGE);
+		addInt(level);
+		addInt(internalFormat);
+		addInt(width);
+		addInt(height);
+		addInt(compressedSize);
+		addObject(copyBuffer(buffer, compressedSize));
+	}
+
+	@Override
+	public void setTexImage(int level, int internalFormat, int width, int height, int format, int type, int textureSize, Buffer buffer) {
+		if (!isRecording()) {
+			super.setTexImage(level, internalFormat, width, height, format, type, textureSize, buffer);
+			return;
+		}
+
+		addCommand(CMD_SET_TEX_IMAGE);
+		addInt(level);
+		addInt(internalFormat);
+		addInt(width);
+		addInt(height);
+		addInt(format);
+		addInt(type);
+		addInt(textureSize);
+		addObject(copyBuffer(buffer, textureSize));
+	}
+
+	@Override
+	public void setTexImagexBRZ(int level, int internalFormat, int width, int height, int bufwidth, int format, int type, int textureSize, Buffer buffer) {
+		if (!isRecording()) {
+			super.setTexImagexBRZ(level, internalFormat, width, height, bufwidth, format, type, textureSize, buffer);
+			return;
+		}
+
+		addCommand(CMD_SET_TEX_IMAGEX_BRZ);
+		addInt(level);
+		addInt(internalFormat);
+		addInt(width);
+		addInt(height);
+		addInt(bufwidth);
+		addInt(format);
+		addInt(type);
+		addInt(textureSize);
+		addObject(copyBuffer(buffer, textureSize));
+	}
+
+	@Override
+	public void setTexSubImage(int level, int xOffset, int yOffset, int width, int height, int format, int type, int textureSize, Buffer buffer) {
+		if (!isRecording()) {
+			super.setTexSubImage(level, xOffset, yOffset, width, height, format, type, textureSize, buffer);
+			return;
+		}
+
+		addCommand(CMD_SET_TEX_SUB_IMAGE);
+		addInt(level);
+		addInt(xOffset);
+		addInt(yOffset);
+		addInt(width);
+		addInt(height);
+		addInt(format);
+		addInt(type);
+		addInt(textureSize);
+		addObject(copyBuffer(buffer, textureSize));
+	}
+
+	@Override
+	public void getTexImage(int level, int format, int type, Buffer buffer) {
+		if (!isRecording()) {
+			super.getTexImage(level, format, type, buffer);
+			return;
+		}
+
+		addSyncCommand(CMD_GET_TEX_IMAGE);
+		addInt(level);
+		addInt(format);
+		addInt(type);
+		addObject(buffer);
+		executeSync();
+	}
+
+	@Override
+	public void copyTexSubImage(int level, int xOffset, int yOffset, int x, int y, int width, int height) {
+		if (!isRecording()) {
+			super.copyTexSubImage(level, xOffset, yOffset, x, y, width, height);
+			return;
+		}
+
+		addCommand(CMD_COPY_TEX_SUB_IMAGE);
+		addInt(level);
+		addInt(xOffset);
+		addInt(yOffset);
+		addInt(x);
+		addInt(y);
+		addInt(width);
+		addInt(height);
+	}
+
+	@Override
+	public void setStencilOp(int fail, int zfail, int zpass) {
+		if (!isRecording()) {
+			super.setStencilOp(fail, zfail, zpass);
+			return;
+		}
+
+		addCommand(CMD_SET_STENCIL_OP);
+		addInt(fail);
+		addInt(zfail);
+		addInt(zpass);
+	}
+
+	@Override
+	public void setStencilFunc(int func, int ref, int mask) {
+		if (!isRecording()) {
+			super.setStencilFunc(func, ref, mask);
+			return;
+		}
+
+		addCommand(CMD_SET_STENCIL_FUNC);
+		addInt(func);
+		addInt(ref);
+		addInt(mask);
+	}
+
+	@Override
+	public void setAlphaFunc(int func, int ref, int mask) {
+		if (!isRecording()) {
+			super.setAlphaFunc(func, ref, mask);
+			return;
+		}
+
+		addCommand(CMD_SET_ALPHA_FUNC);
+		addInt(func);
+		addInt(ref);
+		addInt(mask);
+	}
+
+	@Override
+	public void setFogHint() {
+		if (!isRecording()) {
+			super.setFogHint();
+			return;
+		}
+
+		addCommand(CMD_SET_FOG_HINT);
+	}
+
+	@Override
+	public void setFogColor(float[] color) {
+		if (!isRecording()) {
+			super.setFogColor(color);
+			return;
+		}
+
+		addCommand(CMD_SET_FOG_COLOR);
+		addObject(copy(color));
+	}
+
+	@Override
+	public void setFogDist(float end, float scale) {
+		if (!isRecording()) {
+			super.setFogDist(end, scale);
+			return;
+		}
+
+		addCommand(CMD_SET_FOG_DIST);
+		addFloat(end);
+		addFloat(scale);
+	}
+
+	@Override
+	public void setTextureEnvColor(float[] color) {
+		if (!isRecording()) {
+			super.setTextureEnvColor(color);
+			return;
+		}
+
+		addCommand(CMD_SET_TEXTURE_ENV_COLOR);
+		addObject(copy(color));
+	}
+
+	@Override
+	public void setFrontFace(boolean cw) {
+		if (!isRecording()) {
+			super.setFrontFace(cw);
+			return;
+		}
+
+		addCommand(CMD_SET_FRONT_FACE);
+		addBoolean(cw);
+	}
+
+	@Override
+	public void setScissor(int x, int y, int width, int height) {
+		if (!isRecording()) {
+			super.setScissor(x, y, width, height);
+			return;
+		}
+
+		addCommand(CMD_SET_SCISSOR);
+		addInt(x);
+		addInt(y);
+		addInt(width);
+		addInt(height);
+	}
+
+	@Override
+	public void setBlendEquation(int mode) {
+		if (!isRecording()) {
+			super.setBlendEquation(mode);
+			return;
+		}
+
+		addCommand(CMD_SET_BLEND_EQUATION);
+		addInt(mode);
+	}
+
+	@Override
+	public void setLineSmoothHint() {
+		if (!isRecording()) {
+			super.setLineSmoothHint();
+			return;
+		}
+
+		addCommand(CMD_SET_LINE_SMOOTH_HINT);
+	}
+
+	@Override
+	public void beginBoundingBox(int numberOfVertexBoundingBox) {
+		if (!isRecording()) {
+			super.beginBoundingBox(numberOfVertexBoundingBox);
+			return;
+		}
+
+		addCommand(CMD_BEGIN_BOUNDING_BOX);
+		addInt(numberOfVertexBoundingBox);
+	}
+
+	@Override
+	public void drawBoundingBox(float[][] values) {
+		if (!isRecording()) {
+			super.drawBoundingBox(values);
+			return;
+		}
+
+		addCommand(CMD_DRAW_BOUNDING_BOX);
+		addObject(copy(values));
+	}
+
+	@Override
+	public void endBoundingBox(VertexInfo vinfo) {
+		if (!isRecording()) {
+			super.endBoundingBox(vinfo);
+			return;
+		}
+
+		addCommand(CMD_END_BOUNDING_BOX);
+		addObject(copy(vinfo));
+	}
+
+	@Override
+	public boolean isBoundingBoxVisible() {
+		if (!isRecording()) {
+			return super.isBoundingBoxVisible();
+		}
+
+		addSyncCommand(CMD_IS_BOUNDING_BOX_VISIBLE);
+		executeSync();
+		return syncBooleanResult;
+	}
+
+	@Override
+	public int genQuery() {
+		if (!isRecording()) {
+			return super.genQuery();
+		}
+
+		addSyncCommand(CMD_GEN_QUERY);
+		executeSync();
+		return syncIntResult;
+	}
+
+	@Override
+	public void beginQuery(int id) {
+		if (!isRecording()) {
+			super.beginQuery(id);
+			return;
+		}
+
+		addCommand(CMD_BEGIN_QUERY);
+		addInt(id);
+	}
+
+	@Override
+	public void endQuery() {
+		if (!isRecording()) {
+			super.endQuery();
+			return;
+		}
+
+		addCommand(CMD_END_QUERY);
+	}
+
+	@Override
+	public boolean getQueryResultAvailable(int id) {
+		if (!isRecording()) {
+			return super.getQueryResultAvailable(id);
+		}
+
+		addSyncCommand(CMD_GET_QUERY_RESULT_AVAILABLE);
+		addInt(id);
+		executeSync();
+		return syncBooleanResult;
+	}
+
+	@Override
+	public int getQueryResult(int id) {
+		if (!isRecording()) {
+			return super.getQueryResult(id);
+		}
+
+		addSyncCommand(CMD_GET_QUERY_RESULT);
+		addInt(id);
+		executeSync();
+		return syncIntResult;
+	}
+
+	@Override
+	public void clear(float red, float green, float blue, float alpha) {
+		if (!isRecording()) {
+			super.clear(red, green, blue, alpha);
+			return;
+		}
+
+		addCommand(CMD_CLEAR);
+		addFloat(red);
+		addFloat(green);
+		addFloat(blue);
+		addFloat(alpha);
+	}
+
+	@Override
+	public void setVertexInfo(VertexInfo vinfo, boolean allNativeVertexInfo, boolean useVertexColor, boolean useTexture, int type) {
+		if (!isRecording()) {
+			super.setVertexInfo(vinfo, allNativeVertexInfo, useVertexColor, useTexture, type);
+			return;
+		}
+
+		addCommand(CMD_SET_VERTEX_INFO);
+		addObject(copy(vinfo));
+		addBoolean(allNativeVertexInfo);
+		addBoolean(useVertexColor);
+		addBoolean(useTexture);
+		addInt(type);
+	}
+
+	@Override
+	public void setProgramParameter(int program, int parameter, int value) {
+		if (!isRecording()) {
+			super.setProgramParameter(program, parameter, value);
+			return;
+		}
+
+		addCommand(CMD_SET_PROGRAM_PARAMETER);
+		addInt(program);
+		addInt(parameter);
+		addInt(value);
+	}
+
+	@Override
+	public boolean isQueryAvailable() {
+		if (!isRecording()) {
+			return super.isQueryAvailable();
+		}
+
+		addSyncCommand(CMD_IS_QUERY_AVAILABLE);
+		executeSync();
+		return syncBooleanResult;
+	}
+
+	@Override
+	public boolean isShaderAvailable() {
+		if (!isRecording()) {
+			return super.isShaderAvailable();
+		}
+
+		addSyncCommand(CMD_IS_SHADER_AVAILABLE);
+		executeSync();
+		return syncBooleanResult;
+	}
+
+	@Override
+	public int getUniformBlockIndex(int program, String name) {
+		if (!isRecording()) {
+			return super.getUniformBlockIndex(program, name);
+		}
+
+		addSyncCommand(CMD_GET_UNIFORM_BLOCK_INDEX);
+		addInt(program);
+		addObject(name);
+		executeSync();
+		return syncIntResult;
+	}
+
+	@Override
+	public void bindBufferBase(int target, int bindingPoint, int buffer) {
+		if (!isRecording()) {
+			super.bindBufferBase(target, bindingPoint, buffer);
+			return;
+		}
+
+		addCommand(CMD_BIND_BUFFER_BASE);
+		addInt(target);
+		addInt(bindingPoint);
+		addInt(buffer);
+	}
+
+	@Override
+	public void setUniformBlockBinding(int program, int blockIndex, int bindingPoint) {
+		if (!isRecording()) {
+			super.setUniformBlockBinding(program, blockIndex, bindingPoint);
+			return;
+		}
+
+		addCommand(CMD_SET_UNIFORM_BLOCK_BINDING);
+		addInt(program);
+		addInt(blockIndex);
+		addInt(bindingPoint);
+	}
+
+	@Override
+	public int getUniformIndex(int program, String name) {
+		if (!isRecording()) {
+			return super.getUniformIndex(program, name);
+		}
+
+		addSyncCommand(CMD_GET_UNIFORM_INDEX);
+		addInt(program);
+		addObject(name);
+		executeSync();
+		return syncIntResult;
+	}
+
+	@Override
+	public int[] getUniformIndices(int program, String[] names) {
+		if (!isRecording()) {
+			return super.getUniformIndices(program, names);
+		}
+
+		addSyncCommand(CMD_GET_UNIFORM_INDICES);
+		addInt(program);
+		addObject(names);
+		executeSync();
+		return (int[]) syncObjectResult;
+	}
+
+	@Override
+	public int getActiveUniformOffset(int program, int uniformIndex) {
+		if (!isRecording()) {
+			return super.getActiveUniformOffset(program, uniformIndex);
+		}
+
+		addSyncCommand(CMD_GET_ACTIVE_UNIFORM_OFFSET);
+		addInt(program);
+		addInt(uniformIndex);
+		executeSync();
+		return syncIntResult;
+	}
+
+	@Override
+	public boolean isFramebufferObjectAvailable() {
+		if (!isRecording()) {
+			return super.isFramebufferObjectAvailable();
+		}
+
+		addSyncCommand(CMD_IS_FRAMEBUFFER_OBJECT_AVAILABLE);
+		executeSync();
+		return syncBooleanResult;
+	}
+
+	@Override
+	public int genFramebuffer() {
+		if (!isRecording()) {
+			return super.genFramebuffer();
+		}
+
+		addSyncCommand(CMD_GEN_FRAMEBUFFER);
+		executeSync();
+		return syncIntResult;
+	}
+
+	@Override
+	public int genRenderbuffer() {
+		if (!isRecording()) {
+			return super.genRenderbuffer();
+		}
+
+		addSyncCommand(CMD_GEN_RENDERBUFFER);
+		executeSync();
+		return syncIntResult;
+	}
+
+	@Override
+	public void deleteFramebuffer(int framebuffer) {
+		if (!isRecording()) {
+			super.deleteFramebuffer(framebuffer);
+			return;
+		}
+
+		addCommand(CMD_DELETE_FRAMEBUFFER);
+		addInt(framebuffer);
+	}
+
+	@Override
+	public void deleteRenderbuffer(int renderbuffer) {
+		if (!isRecording()) {
+			super.deleteRenderbuffer(renderbuffer);
+			return;
+		}
+
+		addCommand(CMD_DELETE_RENDERBUFFER);
+		addInt(renderbuffer);
+	}
+
+	@Override
+	public void bindFramebuffer(int target, int framebuffer) {
+		if (!isRecording()) {
+			super.bindFramebuffer(target, framebuffer);
+			return;
+		}
+
+		addCommand(CMD_BIND_FRAMEBUFFER);
+		addInt(target);
+		addInt(framebuffer);
+	}
+
+	@Override
+	public void bindRenderbuffer(int renderbuffer) {
+		if (!isRecording()) {
+			super.bindRenderbuffer(renderbuffer);
+			return;
+		}
+
+		addCommand(CMD_BIND_RENDERBUFFER);
+		addInt(renderbuffer);
+	}
+
+	@Override
+	public void setRenderbufferStorage(int internalFormat, int width, int height) {
+		if (!isRecording()) {
+			super.setRenderbufferStorage(internalFormat, width, height);
+			return;
+		}
+
+		addCommand(CMD_SET_RENDERBUFFER_STORAGE);
+		addInt(internalFormat);
+		addInt(width);
+		addInt(height);
+	}
+
+	@Override
+	public void setFramebufferRenderbuffer(int target, int attachment, int renderbuffer) {
+		if (!isRecording()) {
+			super.setFramebufferRenderbuffer(target, attachment, renderbuffer);
+			return;
+		}
+
+		addCommand(CMD_SET_FRAMEBUFFER_RENDERBUFFER);
+		addInt(target);
+		addInt(attachment);
+		addInt(renderbuffer);
+	}
+
+	@Override
+	public void setFramebufferTexture(int target, int attachment, int texture, int level) {
+		if (!isRecording()) {
+			super.setFramebufferTexture(target, attachment, texture, level);
+			return;
+		}
+
+		addCommand(CMD_SET_FRAMEBUFFER_TEXTURE);
+		addInt(target);
+		addInt(attachment);
+		addInt(texture);
+		addInt(level);
+	}
+
+	@Override
+	public int genVertexArray() {
+		if (!isRecording()) {
+			return super.genVertexArray();
+		}
+
+		addSyncCommand(CMD_GEN_VERTEX_ARRAY);
+		executeSync();
+		return syncIntResult;
+	}
+
+	@Override
+	public void bindVertexArray(int id) {
+		if (!isRecording()) {
+			super.bindVertexArray(id);
+			return;
+		}
+
+		addCommand(CMD_BIND_VERTEX_ARRAY);
+		addInt(id);
+	}
+
+	@Override
+	public void deleteVertexArray(int id) {
+		if (!isRecording()) {
+			super.deleteVertexArray(id);
+			return;
+		}
+
+		addCommand(CMD_DELETE_VERTEX_ARRAY);
+		addInt(id);
+	}
+
+	@Override
+	public boolean isVertexArrayAvailable() {
+		if (!isRecording()) {
+			return super.isVertexArrayAvailable();
+		}
+
+		addSyncCommand(CMD_IS_VERTEX_ARRAY_AVAILABLE);
+		executeSync();
+		return syncBooleanResult;
+	}
+
+	@Override
+	public void multiDrawArrays(int primitive, IntBuffer first, IntBuffer count) {
+		if (!isRecording()) {
+			super.multiDrawArrays(primitive, first, count);
+			return;
+		}
+
+		addCommand(CMD_MULTI_DRAW_ARRAYS);
+		addInt(primitive);
+		addObject((IntBuffer) copyBuffer(first, first.remaining() << 2));
+		addObject((IntBuffer) copyBuffer(count, count.remaining() << 2));
+	}
+
+	@Override
+	public void drawArraysBurstMode(int primitive, int first, int count) {
+		if (!isRecording()) {
+			super.drawArraysBurstMode(primitive, first, count);
+			return;
+		}
+
+		addCommand(CMD_DRAW_ARRAYS_BURST_MODE);
+		addInt(primitive);
+		addInt(first);
+		addInt(count);
+	}
+
+	@Override
+	public void multiDrawElements(int primitive, IntBuffer first, IntBuffer count, int indexType, long indicesOffset) {
+		if (!isRecording()) {
+			super.multiDrawElements(primitive, first, count, indexType, indicesOffset);
+			return;
+		}
+
+		addCommand(CMD_MULTI_DRAW_ELEMENTS);
+		addInt(primitive);
+		addObject((IntBuffer) copyBuffer(first, first.remaining() << 2));
+		addObject((IntBuffer) copyBuffer(count, count.remaining() << 2));
+		addInt(indexType);
+		addLong(indicesOffset);
+	}
+
+	@Override
+	public void drawElementsBurstMode(int primitive, int count, int indexType, long indicesOffset) {
+		if (!isRecording()) {
+			super.drawElementsBurstMode(primitive, count, indexType, indicesOffset);
+			return;
+		}
+
+		addCommand(CMD_DRAW_ELEMENTS_BURST_MODE);
+		addInt(primitive);
+		addInt(count);
+		addInt(indexType);
+		addLong(indicesOffset);
+	}
+
+	@Override
+	public void setPixelTransfer(int parameter, int value) {
+		if (!isRecording()) {
+			super.setPixelTransfer(parameter, value);
+			return;
+		}
+
+		addCommand(CMD_SET_PIXEL_TRANSFER_II);
+		addInt(parameter);
+		addInt(value);
+	}
+
+	@Override
+	public void setPixelTransfer(int parameter, float value) {
+		if (!isRecording()) {
+			super.setPixelTransfer(parameter, value);
+			return;
+		}
+
+		addCommand(CMD_SET_PIXEL_TRANSFER_IF);
+		addInt(parameter);
+		addFloat(value);
+	}
+
+	@Override
+	public void setPixelTransfer(int parameter, boolean value) {
+		if (!isRecording()) {
+			super.setPixelTransfer(parameter, value);
+			return;
+		}
+
+		addCommand(CMD_SET_PIXEL_TRANSFER_IZ);
+		addInt(parameter);
+		addBoolean(value);
+	}
+
+	@Override
+	public void setPixelMap(int map, int mapSize, Buffer buffer) {
+		if (!isRecording()) {
+			super.setPixelMap(map, mapSize, buffer);
+			return;
+		}
+
+		addCommand(CMD_SET_PIXEL_MAP);
+		addInt(map);
+		addInt(mapSize);
+		addObject(copyBuffer(buffer, mapSize));
+	}
+
+	@Override
+	public void setActiveTexture(int index) {
+		if (!isRecording()) {
+			super.setActiveTexture(index);
+			return;
+		}
+
+		addCommand(CMD_SET_ACTIVE_TEXTURE);
+		addInt(index);
+	}
+
+	@Override
+	public void setTextureFormat(int pixelFormat, boolean swizzle) {
+		if (!isRecording()) {
+			super.setTextureFormat(pixelFormat, swizzle);
+			return;
+		}
+
+		addCommand(CMD_SET_TEXTURE_FORMAT);
+		addInt(pixelFormat);
+		addBoolean(swizzle);
+	}
+
+	@Override
+	public void bindActiveTexture(int index, int texture) {
+		if (!isRecording()) {
+			super.bindActiveTexture(index, texture);
+			return;
+		}
+
+		addCommand(CMD_BIND_ACTIVE_TEXTURE);
+		addInt(index);
+		addInt(texture);
+	}
+
+	@Override
+	public void setTextureAnisotropy(float value) {
+		if (!isRecording()) {
+			super.setTextureAnisotropy(value);
+			return;
+		}
+
+		addCommand(CMD_SET_TEXTURE_ANISOTROPY);
+		addFloat(value);
+	}
+
+	@Override
+	public float getMaxTextureAnisotropy() {
+		if (!isRecording()) {
+			return super.getMaxTextureAnisotropy();
+		}
+
+		addSyncCommand(CMD_GET_MAX_TEXTURE_ANISOTROPY);
+		executeSync();
+		return syncFloatResult;
+	}
+
+	@Override
+	public String getShadingLanguageVersion() {
+		if (!isRecording()) {
+			return super.getShadingLanguageVersion();
+		}
+
+		addSyncCommand(CMD_GET_SHADING_LANGUAGE_VERSION);
+		executeSync();
+		return (String) syncObjectResult;
+	}
+
+	@Override
+	public void setBlendSFix(int sfix, float[] color) {
+		if (!isRecording()) {
+			super.setBlendSFix(sfix, color);
+			return;
+		}
+
+		addCommand(CMD_SET_BLEND_SFIX);
+		addInt(sfix);
+		addObject(copy(color));
+	}
+
+	@Override
+	public void setBlendDFix(int dfix, float[] color) {
+		if (!isRecording()) {
+			super.setBlendDFix(dfix, color);
+			return;
+		}
+
+		addCommand(CMD_SET_BLEND_DFIX);
+		addInt(dfix);
+		addObject(copy(color));
+	}
+
+	@Override
+	public void waitForRenderingCompletion() {
+		if (!isRecording()) {
+			super.waitForRenderingCompletion();
+			return;
+		}
+
+		addSyncCommand(CMD_WAIT_FOR_RENDERING_COMPLETION);
+		executeSync();
+	}
+
+	@Override
+	public void readStencil(int x, int y, int width, int height, int bufferSize, Buffer buffer) {
+		if (!isRecording()) {
+			super.readStencil(x, y, width, height, bufferSize, buffer);
+			return;
+		}
+
+		addSyncCommand(CMD_READ_STENCIL);
+		addInt(x);
+		addInt(y);
+		addInt(width);
+		addInt(height);
+		addInt(bufferSize);
+		addObject(buffer);
+		executeSync();
+	}
+
+	@Override
+	public void blitFramebuffer(int srcX0, int srcY0, int srcX1, int srcY1, int dstX0, int dstY0, int dstX1, int dstY1, int mask, int filter) {
+		if (!isRecording()) {
+			super.blitFramebuffer(srcX0, srcY0, srcX1, srcY1, dstX0, dstY0, dstX1, dstY1, mask, filter);
+			return;
+		}
+
+		addCommand(CMD_BLIT_FRAMEBUFFER);
+		addInt(srcX0);
+		addInt(srcY0);
+		addInt(srcX1);
+		addInt(srcY1);
+		addInt(dstX0);
+		addInt(dstY0);
+		addInt(dstX1);
+		addInt(dstY1);
+		addInt(mask);
+		addInt(filter);
+	}
+
+	@Override
+	public boolean checkAndLogErrors(String logComment) {
+		if (!isRecording()) {
+			return super.checkAndLogErrors(logComment);
+		}
+
+		addSyncCommand(CMD_CHECK_AND_LOG_ERRORS);
+		addObject(logComment);
+		executeSync();
+		return syncBooleanResult;
+	}
+
+	@Override
+	public boolean setCopyRedToAlpha(boolean copyRedToAlpha) {
+		if (!isRecording()) {
+			return super.setCopyRedToAlpha(copyRedToAlpha);
+		}
+
+		addSyncCommand(CMD_SET_COPY_RED_TO_ALPHA);
+		addBoolean(copyRedToAlpha);
+		executeSync();
+		return syncBooleanResult;
+	}
+
+	@Override
+	public boolean isTextureBarrierAvailable() {
+		if (!isRecording()) {
+			return super.isTextureBarrierAvailable();
+		}
+
+		addSyncCommand(CMD_IS_TEXTURE_BARRIER_AVAILABLE);
+		executeSync();
+		return syncBooleanResult;
+	}
+
+	@Override
+	public void textureBarrier() {
+		if (!isRecording()) {
+			super.textureBarrier();
+			return;
+		}
+
+		addCommand(CMD_TEXTURE_BARRIER);
+	}
+}
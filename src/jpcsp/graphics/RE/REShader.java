@@ -1225,11 +1225,11 @@ public class REShader extends BaseRenderingEngineFunction {
 			TextureCache textureCache = TextureCache.getInstance();
 
 			textureCacheLookupStatistics.start();
-			texture = textureCache.getTexture(context.tex_clut_addr, numEntries, numEntries, 1, clutPixelFormat, 0, 0, 0, 0, 0, 0, 0, false, clut16, clut32);
+			texture = textureCache.getTexture(context.tex_clut_addr, numEntries, numEntries, 1, clutPixelFormat, false, 0, 0, 0, 0, 0, 0, 0, false, clut16, clut32);
 			textureCacheLookupStatistics.end();
 
 			if (texture == null) {
-				texture = new Texture(textureCache, context.tex_clut_addr, numEntries, numEntries, 1, clutPixelFormat, 0, 0, 0, 0, 0, 0, 0, false, clut16, clut32);
+				texture = new Texture(textureCache, context.tex_clut_addr, numEntries, numEntries, 1, clutPixelFormat, false, 0, 0, 0, 0, 0, 0, 0, false, clut16, clut32);
 				textureCache.addTexture(re, texture);
 			}
 
@@ -28,13 +28,19 @@ public class RenderingEngineFactory {
 	private static final boolean enableDebugProxy = false;
 	private static final boolean enableCheckErrorsProxy = false;
 	private static final boolean enableStatisticsProxy = false;
+	private static boolean enableNullRendering = false;
+	private static CommandBufferProxy commandBuffer;
 
 	@SuppressWarnings("unused")
-	private static IRenderingEngine createRenderingEngine(boolean enableSoftwareRendering) {
+	private static IRenderingEngine createRenderingEngine(boolean enableSoftwareRendering, boolean enableCommandBuffer) {
 		// Build the rendering pipeline, from the last entry to the first one.
 		IRenderingEngine re;
 
-		if (enableSoftwareRendering) {
+		if (enableSoftwareRendering && enableNullRendering) {
+			// RenderingEngine processing the GE lists without rendering anything,
+			// e.g. when running headless
+			re = new NullRenderingEngine();
+		} else if (enableSoftwareRendering) {
 			// RenderingEngine using a complete software implementation, i.e. not using the GPU
 			re = new RESoftware();
 		} else {
@@ -56,6 +62,16 @@ public class RenderingEngineFactory {
 			re = new DebugProxy(re);
 		}
 
+		if (!enableSoftwareRendering && enableCommandBuffer && CommandBufferProxy.useCommandBuffer()) {
+			// Proxy recording the OpenGL calls so that the GE lists can be
+			// processed on a separate thread (see VideoEngineThread).
+			// The shader/fixed-function rendering engines are depending on the GeContext
+			// and have to be run on the thread processing the GE lists,
+			// i.e. above the command buffer in the pipeline.
+			commandBuffer = new CommandBufferProxy(re);
+			re = commandBuffer;
+		}
+
 		if (!enableSoftwareRendering) {
 			if (REShader.useShaders(re)) {
 				// RenderingEngine using shaders
@@ -84,13 +100,37 @@ public class RenderingEngineFactory {
 		return re;
 	}
 
+	/**
+	 * Replace the software rendering by a rendering engine not rendering anything.
+	 * The GE lists are still processed, but nothing is drawn into the GE memory.
+	 * Only used when the software renderer is enabled, i.e. when running headless.
+	 * 
+	 * @param enableNullRendering true to use the NullRenderingEngine
+	 *                            instead of the software rendering.
+	 */
+	public static void setEnableNullRendering(boolean enableNullRendering) {
+		RenderingEngineFactory.enableNullRendering = enableNullRendering;
+	}
+
 	/**
 	 * Create a rendering engine to be used for processing the GE lists.
 	 * 
 	 * @return the rendering engine to be used
 	 */
 	public static IRenderingEngine createRenderingEngine() {
-		return createRenderingEngine(Modules.sceDisplayModule.isUsingSoftwareRenderer());
+		commandBuffer = null;
+		return createRenderingEngine(Modules.sceDisplayModule.isUsingSoftwareRenderer(), true);
+	}
+
+	/**
+	 * Return the command buffer used by the rendering engine
+	 * created for processing the GE lists.
+	 * 
+	 * @return the command buffer, or null if the OpenGL calls
+	 *         are not recorded into a command buffer.
+	 */
+	public static CommandBufferProxy getCommandBuffer() {
+		return commandBuffer;
 	}
 
 	/**
@@ -100,7 +140,7 @@ public class RenderingEngineFactory {
 	 * @return the rendering engine to be used for display
 	 */
 	public static IRenderingEngine createRenderingEngineForDisplay() {
-		return createRenderingEngine(false);
+		return createRenderingEngine(false, false);
 	}
 
 	/**
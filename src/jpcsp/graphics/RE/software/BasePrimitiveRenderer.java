@@ -669,6 +669,44 @@ public abstract class BasePrimitiveRenderer extends BaseRenderer {
         depthWriterSkipEOL = zbw - prim.destinationWidth;
 	}
 
+	/**
+	 * @return true if the rendering of this primitive can be restricted
+	 *         to a range of rows using setRows().
+	 */
+	public boolean canRenderRows() {
+		return true;
+	}
+
+	/**
+	 * Restrict the rendering of this primitive to the rows [yMin..yMax].
+	 * This method can only be called after a successful prepare().
+	 *
+	 * @param yMin   the first row to be rendered
+	 * @param yMax   the last row to be rendered
+	 * @return       true if something has to be rendered
+	 *               false if the primitive has no row in the given range
+	 */
+	public boolean setRows(int yMin, int yMax) {
+		if (yMin > prim.pyMax || yMax < prim.pyMin) {
+			return false;
+		}
+
+		if (yMin > prim.pyMin) {
+			// The texture coordinates of the skipped rows
+			// are computed by the RendererTemplate
+			prim.skippedRows += yMin - prim.pyMin;
+			prim.pyMin = yMin;
+		}
+		if (yMax < prim.pyMax) {
+			prim.pyMax = yMax;
+		}
+		prim.destinationHeight = prim.pyMax - prim.pyMin + 1;
+
+		prepareWriters();
+
+		return true;
+	}
+
 	protected boolean isVisible() {
     	if (!transform2D) {
     		// Each vertex screen coordinates (without offset) has to be in the range:
@@ -827,13 +865,16 @@ public abstract class BasePrimitiveRenderer extends BaseRenderer {
 			pixelStatistics.end();
 			final int pixelsGrouping = 1000;
 			int n = pixel.getNumberPixels() / pixelsGrouping;
-			if (!pixelsStatistics.containsKey(n)) {
-				pixelsStatistics.put(n, new DurationStatistics(String.format("Pixels count=%d", n * pixelsGrouping)));
-			}
 			if (isLogTraceEnabled) {
 				log.trace(String.format("Pixels statistics count=%d, real count=%d", n * pixelsGrouping, pixel.getNumberPixels()));
 			}
-			pixelsStatistics.get(n).add(pixelStatistics);
+			// The renderers can be executed by multiple threads (see RendererExecutor)
+			synchronized (pixelsStatistics) {
+				if (!pixelsStatistics.containsKey(n)) {
+					pixelsStatistics.put(n, new DurationStatistics(String.format("Pixels count=%d", n * pixelsGrouping)));
+				}
+				pixelsStatistics.get(n).add(pixelStatistics);
+			}
 		}
 
 		if (rendererWriter != null) {
@@ -20,6 +20,7 @@ import static jpcsp.graphics.RE.software.PixelColor.getColor;
 import static jpcsp.graphics.RE.software.PixelColor.getColorBGR;
 
 import java.nio.Buffer;
+import java.nio.IntBuffer;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -36,7 +37,6 @@ import jpcsp.graphics.GeContext;
 import jpcsp.graphics.VideoEngine;
 import jpcsp.graphics.RE.IRenderingEngine;
 import jpcsp.graphics.capture.CaptureManager;
-import jpcsp.memory.IMemoryReader;
 import jpcsp.memory.ImageReader;
 import jpcsp.util.DurationStatistics;
 import jpcsp.util.LongLongKey;
@@ -138,6 +138,11 @@ public abstract class BaseRenderer implements IRenderer {
 		scissorY1 = from.scissorY1;
 		scissorX2 = from.scissorX2;
 		scissorY2 = from.scissorY2;
+		fbp = from.fbp;
+		fbw = from.fbw;
+		psm = from.psm;
+		zbp = from.zbp;
+		zbw = from.zbw;
 		cachedTexture = from.cachedTexture;
 		isTriangle = from.isTriangle;
 		colorTestRef = from.colorTestRef;
@@ -329,8 +334,9 @@ public abstract class BaseRenderer implements IRenderer {
             	int[] clut32 = VideoEngine.getInstance().readClut32(mipmapLevel);
             	short[] clut16 = VideoEngine.getInstance().readClut16(mipmapLevel);
 	        	// Always request the whole buffer width
-	            IMemoryReader imageReader = ImageReader.getImageReader(textureAddress, textureBufferWidth, textureHeight, textureBufferWidth, context.texture_storage, context.texture_swizzle, context.tex_clut_addr, context.tex_clut_mode, context.tex_clut_num_blocks, context.tex_clut_start, context.tex_clut_shift, context.tex_clut_mask, clut32, clut16);
-	            textureAccess = new RandomTextureAccessReader(imageReader, textureBufferWidth, textureHeight);
+	            int[] pixels = new int[textureBufferWidth * textureHeight];
+	            ImageReader.readImage(IntBuffer.wrap(pixels), textureAddress, textureBufferWidth, textureHeight, textureBufferWidth, context.texture_storage, context.texture_swizzle, context.tex_clut_addr, context.tex_clut_mode, context.tex_clut_num_blocks, context.tex_clut_start, context.tex_clut_shift, context.tex_clut_mask, clut32, clut16);
+	            textureAccess = new RandomTextureAccessReader(pixels, textureBufferWidth, textureHeight);
         	} else {
         		textureAccess = cachedTexture.getOriginalTexture();
         	}
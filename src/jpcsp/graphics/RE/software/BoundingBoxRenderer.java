@@ -46,6 +46,11 @@ public class BoundingBoxRenderer extends BasePrimitiveRenderer {
 		return true;
 	}
 
+	@Override
+	public boolean canRenderRows() {
+		return false;
+	}
+
 	@Override
 	public void render() {
 	}
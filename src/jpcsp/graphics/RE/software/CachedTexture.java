@@ -65,6 +65,17 @@ public abstract class CachedTexture implements IRandomTextureAccess {
 		return cachedTexture;
 	}
 
+	/**
+	 * @param image  the texture already decoded in the format 8888 ABGR
+	 *               (e.g. by ImageReader.readImage()), used without copy
+	 */
+	public static CachedTexture getCachedTexture(int width, int height, int pixelFormat, int[] image) {
+		CachedTexture cachedTexture = getCachedTexture(width, height, pixelFormat, 0);
+		cachedTexture.buffer = image;
+
+		return cachedTexture;
+	}
+
 	public static CachedTexture getCachedTexture(int width, int height, int pixelFormat, int[] buffer, int bufferOffset, int bufferLength) {
 		int offset = 0;
 		// When the texture is directly available from the memory,
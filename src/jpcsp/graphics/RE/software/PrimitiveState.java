@@ -36,6 +36,8 @@ public class PrimitiveState {
 	public boolean needResample;
 	public float resampleFactorWidth;
 	public float resampleFactorHeight;
+	// Number of rows of the primitive above pyMin which are not rendered
+	public int skippedRows;
 
 	// Pre-computed values for triangle weights
 	public float diff13x;
@@ -58,6 +60,7 @@ public class PrimitiveState {
 		tvMin = from.tvMin; tvMax = from.tvMax;
 		uStart = from.uStart; uStep = from.uStep;
 		vStart = from.vStart; vStep = from.vStep;
+		skippedRows = from.skippedRows;
 		destinationWidth = from.destinationWidth;
 		destinationHeight = from.destinationHeight;
 		diff13x = from.diff13x;
@@ -27,7 +27,6 @@ import jpcsp.graphics.VertexState;
 import jpcsp.graphics.VideoEngine;
 import jpcsp.graphics.RE.IRenderingEngine;
 import jpcsp.graphics.RE.NullRenderingEngine;
-import jpcsp.memory.IMemoryReader;
 import jpcsp.memory.ImageReader;
 import jpcsp.util.DurationStatistics;
 import jpcsp.util.Utilities;
@@ -398,8 +397,10 @@ public class RESoftware extends NullRenderingEngine {
 			// TODO Cache all the texture levels
 			if (level == 0) {
 				int bufferWidth = context.texture_buffer_width[level];
-				IMemoryReader imageReader = ImageReader.getImageReader(context.texture_base_pointer[level], width, height, bufferWidth, internalFormat, false, 0, 0, 0, 0, 0, 0, null, null);
-				CachedTexture cachedTexture = CachedTexture.getCachedTexture(Math.min(width, bufferWidth), height, internalFormat, imageReader);
+				int readWidth = Math.min(width, bufferWidth);
+				int[] image = new int[readWidth * height];
+				ImageReader.readImage(IntBuffer.wrap(image), context.texture_base_pointer[level], width, height, bufferWidth, internalFormat, false, 0, 0, 0, 0, 0, 0, null, null);
+				CachedTexture cachedTexture = CachedTexture.getCachedTexture(readWidth, height, internalFormat, image);
 				CachedTextureResampled cachedTextureResampled = new CachedTextureResampled(cachedTexture);
 				cachedTextures.put(bindTexture, cachedTextureResampled);
 			}
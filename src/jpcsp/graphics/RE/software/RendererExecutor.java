@@ -17,22 +17,63 @@ package jpcsp.graphics.RE.software;
 
 import static jpcsp.util.Utilities.sleep;
 
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import jpcsp.graphics.VideoEngine;
+import jpcsp.settings.AbstractIntSettingsListener;
+import jpcsp.settings.Settings;
 
 /**
+ * Execute the software renderers, possibly in parallel.
+ *
+ * By default, the renderers are executed in the GE order by one
+ * ThreadRenderer thread.
+ *
+ * When the option "emu.softwareRenderer.tileThreads" is set, the
+ * frame buffer is split into tiles of tileHeight rows.
+ * Each primitive is split into the tiles it is covering and each tile
+ * keeps its own queue of primitives in the GE order.
+ * A tile is rendered by at most one thread at a time, so that the GE order
+ * is preserved for each pixel, while different tiles are rendered in
+ * parallel on a work-stealing pool.
+ *
+ * The tiles are covering complete frame buffer rows: with 16-bit pixel
+ * formats, 2 pixels are sharing the same 32-bit memory word and
+ * must therefore be rendered by the same thread.
+ *
  * @author gid15
  *
  */
 public class RendererExecutor {
 	private static final int numberThreads = 1;
+	// Number of frame buffer rows in one tile
+	private static final int tileHeight = 16;
+	// The scissor area is limited to 1024 rows
+	private static final int numberTiles = 1024 / tileHeight;
 	private static RendererExecutor instance;
 	private final LinkedBlockingQueue<IRenderer> renderersQueue = new LinkedBlockingQueue<IRenderer>();
 	private volatile boolean ended;
 	private volatile int numberThreadsRendering;
 	private final Object numberThreadsRenderingLock = new Object();
+	private volatile int tileThreads;
+	private ForkJoinPool tilePool;
+	private int tilePoolThreads;
+	private final Tile[] tiles = new Tile[numberTiles];
+	// Number of primitive parts queued in the tiles and not yet rendered
+	private final AtomicInteger pendingTileRenderers = new AtomicInteger();
+
+	private class TileThreadsSettingsListerner extends AbstractIntSettingsListener {
+		@Override
+		protected void settingsValueChanged(int value) {
+			setTileThreads(value);
+		}
+	}
 
 	public static RendererExecutor getInstance() {
 		if (instance == null) {
@@ -49,6 +90,12 @@ public class RendererExecutor {
 			thread.setDaemon(true);
 			thread.start();
 		}
+
+		for (int i = 0; i < tiles.length; i++) {
+			tiles[i] = new Tile();
+		}
+
+		Settings.getInstance().registerSettingsListener("RendererExecutor", "emu.softwareRenderer.tileThreads", new TileThreadsSettingsListerner());
 	}
 
 	public static void exit() {
@@ -57,22 +104,103 @@ public class RendererExecutor {
 		}
 	}
 
+	/**
+	 * Set the number of threads used to render the tiles.
+	 *
+	 * @param tileThreads  0 to disable the rendering by tiles,
+	 *                     otherwise the number of threads rendering the tiles
+	 */
+	public void setTileThreads(int tileThreads) {
+		this.tileThreads = Math.max(tileThreads, 0);
+	}
+
+	private boolean useTiles() {
+		if (tileThreads <= 0) {
+			if (tilePool != null) {
+				waitForRenderingCompletion();
+				shutdownTilePool();
+			}
+			return false;
+		}
+
+		if (tilePool == null || tilePoolThreads != tileThreads) {
+			// Create the pool with the new number of threads,
+			// all the previous renderers must have been completed.
+			waitForRenderingCompletion();
+			shutdownTilePool();
+			tilePoolThreads = tileThreads;
+			tilePool = new ForkJoinPool(tilePoolThreads, new TileThreadFactory(), null, true);
+		}
+
+		return true;
+	}
+
+	private void shutdownTilePool() {
+		if (tilePool != null) {
+			tilePool.shutdown();
+			tilePool = null;
+		}
+	}
+
 	public void render(IRenderer renderer) {
-		if (numberThreads > 0 && !VideoEngine.log.isTraceEnabled()) {
+		if (VideoEngine.log.isTraceEnabled()) {
+			// Capture is active, render immediately
+			waitForRenderingCompletion();
+			renderImmediately(renderer);
+		} else if (useTiles()) {
+			renderTiles(renderer);
+		} else if (numberThreads > 0) {
 			// Queue for rendering in a ThreadRenderer thread
 			renderer = renderer.duplicate();
 			renderersQueue.add(renderer);
 		} else {
-			// Threads are disabled or capture is active, render immediately
-			try {
-				renderer.render();
-			} catch (Exception e) {
-				VideoEngine.log.error("Error while rendering", e);
+			// Threads are disabled, render immediately
+			renderImmediately(renderer);
+		}
+	}
+
+	private static void renderImmediately(IRenderer renderer) {
+		try {
+			renderer.render();
+		} catch (Exception e) {
+			VideoEngine.log.error("Error while rendering", e);
+		}
+	}
+
+	private void renderTiles(IRenderer renderer) {
+		// The renderers from the previous mode must have been completed
+		waitForThreadRendererCompletion();
+
+		if (!(renderer instanceof BasePrimitiveRenderer) || !((BasePrimitiveRenderer) renderer).canRenderRows()) {
+			// This renderer cannot be split into tiles,
+			// render it after all the previous renderers.
+			waitForRenderingCompletion();
+			renderImmediately(renderer);
+			return;
+		}
+
+		BasePrimitiveRenderer primitiveRenderer = (BasePrimitiveRenderer) renderer;
+		int yMin = primitiveRenderer.prim.pyMin;
+		int yMax = primitiveRenderer.prim.pyMax;
+		int firstTile = Math.max(yMin / tileHeight, 0);
+		int lastTile = Math.min(yMax / tileHeight, numberTiles - 1);
+		if (firstTile > lastTile || yMin < 0) {
+			// Outside of the tiles, should not happen after the scissoring
+			waitForRenderingCompletion();
+			renderImmediately(renderer);
+			return;
+		}
+
+		for (int i = firstTile; i <= lastTile; i++) {
+			BasePrimitiveRenderer tileRenderer = (BasePrimitiveRenderer) primitiveRenderer.duplicate();
+			if (tileRenderer.setRows(i * tileHeight, (i + 1) * tileHeight - 1)) {
+				pendingTileRenderers.incrementAndGet();
+				tiles[i].add(tileRenderer);
 			}
 		}
 	}
 
-	public void waitForRenderingCompletion() {
+	private void waitForThreadRendererCompletion() {
 		if (numberThreads > 0) {
 			while (!renderersQueue.isEmpty() || numberThreadsRendering > 0) {
 				sleep(1, 0);
@@ -80,6 +208,14 @@ public class RendererExecutor {
 		}
 	}
 
+	public void waitForRenderingCompletion() {
+		waitForThreadRendererCompletion();
+
+		while (pendingTileRenderers.get() > 0) {
+			sleep(1, 0);
+		}
+	}
+
 	private class ThreadRenderer extends Thread {
 		@Override
 		public void run() {
@@ -109,4 +245,55 @@ public class RendererExecutor {
 			}
 		}
 	}
+
+	/**
+	 * The renderers of one tile, in the GE order.
+	 * The tile is submitted to the pool when it has renderers to be executed
+	 * and it is not already being rendered by another thread.
+	 */
+	private class Tile implements Runnable {
+		private final ConcurrentLinkedQueue<IRenderer> queue = new ConcurrentLinkedQueue<IRenderer>();
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+
+		public void add(IRenderer renderer) {
+			queue.add(renderer);
+			schedule();
+		}
+
+		private void schedule() {
+			if (scheduled.compareAndSet(false, true)) {
+				tilePool.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				IRenderer renderer = queue.poll();
+				if (renderer == null) {
+					scheduled.set(false);
+					// A renderer could have been added just before clearing the flag
+					if (queue.isEmpty() || !scheduled.compareAndSet(false, true)) {
+						break;
+					}
+					continue;
+				}
+
+				renderImmediately(renderer);
+				pendingTileRenderers.decrementAndGet();
+			}
+		}
+	}
+
+	private static class TileThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName(String.format("Thread SoftwareRenderer Tile #%d", threadNumber.incrementAndGet()));
+
+			return thread;
+		}
+	}
 }
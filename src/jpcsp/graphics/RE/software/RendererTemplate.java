@@ -278,6 +278,17 @@ public class RendererTemplate {
 		final int primSourceDepth = (int) prim.p2z;
 		float u = prim.uStart;
 		float v = prim.vStart;
+		if (needTextureUV && simpleTextureUV) {
+			// Advance the texture coordinates over the rows which are not rendered
+			// (see RendererExecutor), exactly as if they were rendered.
+			for (int i = 0; i < prim.skippedRows; i++) {
+				if (swapTextureUV) {
+					u += prim.uStep;
+				} else {
+					v += prim.vStep;
+				}
+			}
+		}
 		ColorDepth colorDepth = new ColorDepth();
 		PrimarySecondaryColors colors = new PrimarySecondaryColors();
 
@@ -25,6 +25,7 @@ import java.util.Set;
 import jpcsp.graphics.RE.IRenderingEngine;
 import jpcsp.util.CacheStatistics;
 import jpcsp.util.DurationStatistics;
+import jpcsp.util.metrics.MetricsRegistry;
 
 public class VertexCache {
 	public static final int cacheMaxSize = 30000;
@@ -52,6 +53,7 @@ public class VertexCache {
 		//
 		cache = new LinkedHashMap<Integer, VertexInfo>((int) (cacheMaxSize / cacheLoadFactor) + 1, cacheLoadFactor, true);
 		vertexAlreadyChecked = new HashSet<Integer>();
+		MetricsRegistry.getInstance().registerCacheStatistics("Vertex", statistics);
 	}
 
 	public void exit() {
@@ -23,6 +23,7 @@ import jpcsp.Memory;
 import jpcsp.graphics.RE.IRenderingEngine;
 import jpcsp.memory.IMemoryReader;
 import jpcsp.memory.MemoryReader;
+import jpcsp.memory.MemoryWriteTracker;
 
 // Based on soywiz/pspemulator
 public class VertexInfo {
@@ -86,6 +87,8 @@ public class VertexInfo {
     private int vertexArrayId = -1;
     private int[] cachedVertices;
     private int[] cachedIndices;
+    // The MemoryWriteTracker stamp when the vertices and indices were last read or compared
+    private int cachedStamp;
     private int cachedNumberOfVertex;
     private float[] cachedMorphWeights;
     private float[][] cachedBoneMatrix;
@@ -118,6 +121,7 @@ public class VertexInfo {
         morph_weight = vertexInfo.morph_weight;
         cachedIndices = vertexInfo.cachedIndices;
         cachedVertices = vertexInfo.cachedVertices;
+        cachedStamp = vertexInfo.cachedStamp;
         vertexCache = vertexInfo.vertexCache;
     }
 
@@ -259,12 +263,17 @@ public class VertexInfo {
         // Do not compare the vertices and indices of the new vertex if it has already
         // been checked during this display cycle
         if (!vertexCache.vertexAlreadyChecked(vertexInfo)) {
-            vertexInfo.readForCache(numberOfVertex);
-            if (!equals(cachedVertices, vertexInfo.cachedVertices)) {
-                return false;
-            }
-            if (!equals(cachedIndices, vertexInfo.cachedIndices)) {
-                return false;
+            // Do not compare the vertices and indices if their memory has not been written
+            if (!isMemoryUnchanged(numberOfVertex)) {
+                int stamp = MemoryWriteTracker.getStamp();
+                vertexInfo.readForCache(numberOfVertex);
+                if (!equals(cachedVertices, vertexInfo.cachedVertices)) {
+                    return false;
+                }
+                if (!equals(cachedIndices, vertexInfo.cachedIndices)) {
+                    return false;
+                }
+                cachedStamp = stamp;
             }
             vertexCache.setVertexAlreadyChecked(vertexInfo);
         } else {
@@ -385,11 +394,48 @@ public class VertexInfo {
         cachedVertices = null;
     }
 
+    /**
+     * Check if the memory of the cached vertices and indices has been written
+     * since they were last read or compared.
+     * The VRAM is not tracked as it is also written by the GE.
+     *
+     * @param numberOfVertex  the number of vertices
+     * @return                true if the memory has not been written
+     */
+    private boolean isMemoryUnchanged(int numberOfVertex) {
+        if (numberOfVertex != cachedNumberOfVertex) {
+            return false;
+        }
+
+        if (ptr_index != 0 && index != 0) {
+            if (cachedIndices == null || cachedIndices.length != numberOfVertex || Memory.isVRAM(ptr_index)) {
+                return false;
+            }
+            int indexSize = index == 3 ? 4 : index;
+            if (!MemoryWriteTracker.isUnchanged(ptr_index, indexSize * numberOfVertex, cachedStamp)) {
+                return false;
+            }
+        }
+
+        if (ptr_vertex != 0) {
+            if (cachedVertices == null || Memory.isVRAM(ptr_vertex)) {
+                return false;
+            }
+            if (!MemoryWriteTracker.isUnchanged(ptr_vertex, cachedVertices.length << 2, cachedStamp)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     private void readForCache(int numberOfVertex) {
         if (cachedIndices != null || cachedVertices != null) {
             return;
         }
 
+        cachedStamp = MemoryWriteTracker.getStamp();
+
         int vertexArraySize;
         if (ptr_index != 0 && index != 0) {
             IMemoryReader memoryReader = null;
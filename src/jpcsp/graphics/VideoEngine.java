@@ -72,7 +72,9 @@ import jpcsp.HLE.kernel.types.PspGeList;
 import jpcsp.HLE.modules.sceDisplay;
 import jpcsp.HLE.modules.sceGe_user;
 import jpcsp.graphics.GeContext.EnableDisableFlag;
+import jpcsp.graphics.RE.CommandBufferProxy;
 import jpcsp.graphics.RE.IRenderingEngine;
+import jpcsp.graphics.RE.RenderingEngineFactory;
 import jpcsp.graphics.RE.buffer.IREBufferManager;
 import jpcsp.graphics.RE.externalge.ExternalGE;
 import jpcsp.graphics.RE.software.PixelColor;
@@ -88,11 +90,15 @@ import jpcsp.hardware.Screen;
 import jpcsp.memory.IMemoryReader;
 import jpcsp.memory.ImageReader;
 import jpcsp.memory.MemoryReader;
+import jpcsp.memory.MemoryWriteTracker;
 import jpcsp.settings.AbstractBoolSettingsListener;
 import jpcsp.settings.Settings;
 import jpcsp.util.CpuDurationStatistics;
 import jpcsp.util.DurationStatistics;
 import jpcsp.util.Utilities;
+import jpcsp.util.metrics.Counter;
+import jpcsp.util.metrics.Histogram;
+import jpcsp.util.metrics.MetricsRegistry;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -175,6 +181,9 @@ public class VideoEngine {
     private IRenderingEngine re;
     private GeContext context;
     private IREBufferManager bufferManager;
+    // Processing the GE lists on a separate thread, recording the OpenGL calls
+    private CommandBufferProxy commandBuffer;
+    private VideoEngineThread videoEngineThread;
     public static Logger log = Logger.getLogger("ge");
     public static final boolean useTextureCache = true;
     private boolean useVertexCache = false;
@@ -184,6 +193,8 @@ public class VideoEngine {
     private boolean usexBRZFilter = false;
     private boolean disableOptimizedVertexInfoReading = false;
     private boolean avoidDrawElementsWithNonZeroIndexOffset = false;
+    // Merge consecutive PRIM's having the same rendering state into one draw call
+    private boolean useDrawBatching = false;
     private boolean enableTextureModding = true;
     private static GeCommands helper;
     private int command;
@@ -259,6 +270,7 @@ public class VideoEngine {
     private IntBuffer multiDrawFirst;
     private IntBuffer multiDrawCount;
     private static final int maxMultiDrawElements = 1000;
+    private final int[] batchVertexAddress = new int[maxMultiDrawElements];
     private int multiTrxkickStart;
     private int multiTrxkickEnd;
     private boolean multiTrxkickCopyGeToMemoryDone;
@@ -280,6 +292,10 @@ public class VideoEngine {
     private boolean hasModdedTextureDirectory;
     private HashMap<Integer, int[]> cachedInstructions;
     private long listStartMicroTime;
+    private long listStartNanos;
+    private static final Histogram geListDurationMetric = MetricsRegistry.getInstance().register(new Histogram("jpcsp_ge_list_duration_seconds", "Real time spent executing one GE list"));
+    private static final Counter multiDrawCallsMetric = MetricsRegistry.getInstance().register(new Counter("jpcsp_ge_multi_draw_calls_total", "Number of draw calls merging multiple PRIM's"));
+    private static final Counter multiDrawPrimsMetric = MetricsRegistry.getInstance().register(new Counter("jpcsp_ge_multi_draw_prims_total", "Number of PRIM's drawn by the draw calls merging multiple PRIM's"));
     private boolean wantClearTextureCache;
     private boolean wantClearVertexCache;
     // The PSP can handle textures of maximum size 512x512.
@@ -374,6 +390,14 @@ public class VideoEngine {
         }
     }
 
+    private class UseDrawBatchingSettingsListerner extends AbstractBoolSettingsListener {
+
+        @Override
+        protected void settingsValueChanged(boolean value) {
+            useDrawBatching = value;
+        }
+    }
+
     private static void log(String msg) {
         log.debug(msg);
     }
@@ -558,6 +582,7 @@ public class VideoEngine {
         Settings.getInstance().registerSettingsListener(name, "emu.graphics.filters.anisotropic", new UseTextureAnisotropicFilterSettingsListerner());
         Settings.getInstance().registerSettingsListener(name, "emu.plugins.xbrz", new UsexBRZFilterSettingsListerner());
         Settings.getInstance().registerSettingsListener(name, "emu.disableoptimizedvertexinforeading", new DisableOptimizedVertexInfoReadingListener());
+        Settings.getInstance().registerSettingsListener(name, "emu.graphics.drawBatching", new UseDrawBatchingSettingsListerner());
 
         setMaxTextureSize(Settings.getInstance().readInt("maxTextureSize", 512));
         setDoubleTexture2DCoords(Settings.getInstance().readBool("doubleTexture2DCoords"));
@@ -584,6 +609,23 @@ public class VideoEngine {
             AsyncVertexCache.getInstance().setUseVertexArray(re.isVertexArrayAvailable());
         }
 
+        if (videoEngineThread != null) {
+            videoEngineThread.exit();
+            videoEngineThread = null;
+        }
+        commandBuffer = RenderingEngineFactory.getCommandBuffer();
+        if (commandBuffer != null) {
+            if (bufferManager.useVBO()) {
+                videoEngineThread = new VideoEngineThread(commandBuffer);
+                videoEngineThread.start();
+            } else {
+                // Without VBO, the vertex data would be copied into the command buffer
+                // before being loaded into the client arrays.
+                log.warn("Processing the GE lists on a separate thread requires VBO, disabled");
+                commandBuffer = null;
+            }
+        }
+
         context.setDirty();
         projectionMatrixUpload.setChanged(true);
         modelMatrixUpload.setChanged(true);
@@ -611,6 +653,10 @@ public class VideoEngine {
 
     public static void exit() {
         if (instance != null) {
+            if (instance.videoEngineThread != null) {
+                instance.videoEngineThread.exit();
+                instance.videoEngineThread = null;
+            }
             if (instance.re != null) {
                 instance.re.exit();
             }
@@ -649,6 +695,15 @@ public class VideoEngine {
      * @return true if an update was made
      */
     public boolean update() {
+        if (videoEngineThread != null && Thread.currentThread() != videoEngineThread) {
+            if (!hasDrawLists()) {
+                return false;
+            }
+            // Process the GE lists on the VideoEngineThread
+            // and execute the recorded OpenGL calls on this thread.
+            return videoEngineThread.update();
+        }
+
         int listCount;
         synchronized (drawListQueue) {
             listCount = drawListQueue.size();
@@ -728,6 +783,7 @@ public class VideoEngine {
      * that they see these changes.
      */
     private void memoryForGEUpdated() {
+        MemoryWriteTracker.collect();
         if (useTextureCache) {
             TextureCache.getInstance().resetTextureAlreadyHashed();
         }
@@ -946,6 +1002,10 @@ public class VideoEngine {
             log.debug(String.format("Stall address 0x%08X reached, waiting for Sync", currentList.getPc()));
         }
         currentList.status = PSP_GE_LIST_STALL_REACHED;
+        if (commandBuffer != null) {
+            // Execute the OpenGL calls recorded so far while waiting
+            commandBuffer.flush();
+        }
         long startWaitClockMillis = Emulator.getClock().milliTime();
         int waitMillis = 10;
         if (!currentList.waitForSync(waitMillis)) {
@@ -1004,6 +1064,10 @@ public class VideoEngine {
         }
 
         waitSignalStatistics.start();
+        if (commandBuffer != null) {
+            // Execute the OpenGL calls recorded so far while waiting
+            commandBuffer.flush();
+        }
         long startWaitClockMillis = Emulator.getClock().milliTime();
         if (!currentList.waitForSync(10)) {
             long endWaitClockMillis = Emulator.getClock().milliTime();
@@ -1074,6 +1138,7 @@ public class VideoEngine {
             listStartMicroTime = Emulator.getClock().microTime();
             GEProfiler.startGeList();
         }
+        listStartNanos = MetricsRegistry.isEnabled() ? System.nanoTime() : 0L;
 
         waitForSyncCount = 0;
         while (!listHasEnded && (!Emulator.pause || State.captureGeNextFrame)) {
@@ -1112,6 +1177,9 @@ public class VideoEngine {
                 long listEndMicroTime = Emulator.getClock().microTime();
                 GEProfiler.geListDuration(listEndMicroTime - listStartMicroTime);
             }
+            if (listStartNanos != 0L) {
+            	geListDurationMetric.observeNanos(System.nanoTime() - listStartNanos);
+            }
             Modules.sceGe_userModule.hleGeListSyncDone(currentList);
         }
 
@@ -1127,6 +1195,14 @@ public class VideoEngine {
         return currentList;
     }
 
+    /**
+     * Only used by the tests, the current list is normally
+     * set when starting the execution of a list.
+     */
+    void setCurrentList(PspGeList currentList) {
+        this.currentList = currentList;
+    }
+
     public float[] getMatrix(int mtxtype) {
         float[] resmtx;
         switch (mtxtype) {
@@ -2067,50 +2143,20 @@ public class VideoEngine {
                     }
                     break;
                 }
-            } else if (cmd == TBIAS) {
-                int tex_mipmap_mode = instruction & 0x3;
-                if (context.tex_mipmap_mode == tex_mipmap_mode && tex_mipmap_mode == TBIAS_MODE_AUTO) {
-                    // Skip TBIAS with TBIAS_MODE_AUTO, ignore tex_mipmap_bias parameter
-                    if (isLogDebugEnabled) {
-                        log.debug(String.format("%s 0x%06X integrated in MultiDrawArrays", helper.getCommandString(cmd), intArgument(instruction)));
-                    }
-                } else {
-                    if (isLogDebugEnabled) {
-                        log.debug(String.format("%s 0x%06X has stopped integration in MultiDrawArrays", helper.getCommandString(cmd), intArgument(instruction)));
-                    }
-                    break;
-                }
-            } else if (cmd == NOP) {
+            } else if (cmd == FFACE) {
+                // Some applications generate the following sequence:
+                //   FFACE 0
+                //   PRIM xxx
+                //   FFACE 1
+                //   FFACE 0
+                //   PRIM xxx
+                // Detect such sequences (changing the FFACE with no effect)
+                // and integrate them in multiDraw.
+                frontFaceCw = intArgument(instruction) != 0;
                 if (isLogDebugEnabled) {
-                    log.debug(String.format("%s 0x%06X integrated in MultiDrawArrays", helper.getCommandString(cmd), intArgument(instruction)));
-                }
-            } else if (GeCommands.pureStateCommands[cmd]) {
-                if (cmd == FFACE) {
-                    // Some applications generate the following sequence:
-                    //   FFACE 0
-                    //   PRIM xxx
-                    //   FFACE 1
-                    //   FFACE 0
-                    //   PRIM xxx
-                    // Detect such sequences (changing the FFACE with no effect)
-                    // and integrate them in multiDraw.
-                    frontFaceCw = intArgument(instruction) != 0;
-                    if (isLogDebugEnabled) {
-                        log.debug(String.format("%s 0x%06X trying to integrate in MultiDrawArrays", helper.getCommandString(cmd), intArgument(instruction)));
-                    }
-                } else if (currentListCMDValues[cmd] == instruction) {
-                    // The command has been repeated with the same parameters,
-                    // it can be ignored.
-                    if (isLogDebugEnabled) {
-                        log.debug(String.format("%s 0x%06X pure state cmd integrated in MultiDrawArrays", helper.getCommandString(cmd), intArgument(instruction)));
-                    }
-                } else {
-                    if (isLogDebugEnabled) {
-                        log.debug(String.format("%s 0x%06X pure state cmd has stopped integration in MultiDrawArrays", helper.getCommandString(cmd), intArgument(instruction)));
-                    }
-                    break;
+                    log.debug(String.format("%s 0x%06X trying to integrate in MultiDrawArrays", helper.getCommandString(cmd), intArgument(instruction)));
                 }
-            } else {
+            } else if (!isIgnoredInMultiDraw(cmd, instruction)) {
                 if (isLogDebugEnabled) {
                     log.debug(String.format("%s 0x%06X has stopped integration in MultiDrawArrays", helper.getCommandString(cmd), intArgument(instruction)));
                 }
@@ -2136,6 +2182,195 @@ public class VideoEngine {
         return currentFirst + currentNumberOfVertex - initialFirst;
     }
 
+    /**
+     * Check if a command found between two PRIM commands can be ignored
+     * when merging the PRIM commands into a single draw call,
+     * i.e. if the command is not changing the rendering state.
+     *
+     * @param cmd          the command
+     * @param instruction  the complete instruction
+     * @return             true if the command has no effect on the rendering
+     */
+    boolean isIgnoredInMultiDraw(int cmd, int instruction) {
+        if (cmd == TBIAS) {
+            int tex_mipmap_mode = instruction & 0x3;
+            if (context.tex_mipmap_mode != tex_mipmap_mode || tex_mipmap_mode != TBIAS_MODE_AUTO) {
+                return false;
+            }
+            // Skip TBIAS with TBIAS_MODE_AUTO, ignore tex_mipmap_bias parameter
+        } else if (cmd == NOP) {
+            // Ignore NOP
+        } else if (GeCommands.pureStateCommands[cmd] && currentListCMDValues[cmd] == instruction) {
+            // The command has been repeated with the same parameters,
+            // it can be ignored.
+        } else {
+            return false;
+        }
+
+        if (isLogDebugEnabled) {
+            log.debug(String.format("%s 0x%06X integrated in MultiDrawArrays", helper.getCommandString(cmd), intArgument(instruction)));
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if multiple PRIM's with the same rendering state are following
+     * the current PRIM, so that they can be drawn in a single multiDrawArrays call.
+     * The vertex data of each PRIM is copied into the draw buffer,
+     * the vertex addresses of the PRIM's do not need to be in sequence.
+     *
+     * The vertex addresses of the PRIM's are stored into batchVertexAddress
+     * and the first/count of each PRIM in the draw buffer into
+     * multiDrawFirst/multiDrawCount.
+     *
+     * @param currentType           the type of the current PRIM
+     * @param currentNumberOfVertex the number of vertex of the current PRIM
+     * @param maxNumberOfVertex     the maximum total number of vertex
+     *                              fitting into the draw buffer
+     * @return                      the number of PRIM's to be drawn together,
+     *                              or -1 if the following PRIM's cannot be merged
+     */
+    int checkBatchDraw(int currentType, int currentNumberOfVertex, int maxNumberOfVertex) {
+        if (isLogDebugEnabled) {
+            log(String.format("checkBatchDraw at 0x%08X", currentList.getPc()));
+        }
+
+        int beforeBatchPc = currentList.getPc();
+        int afterBatchPc = beforeBatchPc;
+        int vertexSize = context.vinfo.vertexSize;
+        int currentPtrVertex = context.vinfo.ptr_vertex + vertexSize * currentNumberOfVertex;
+        int totalNumberOfVertex = currentNumberOfVertex;
+        boolean frontFaceCw = context.frontFaceCw;
+        multiDrawFirst.clear();
+        multiDrawCount.clear();
+        multiDrawFirst.put(0);
+        multiDrawCount.put(currentNumberOfVertex);
+        batchVertexAddress[0] = context.vinfo.ptr_vertex;
+        int numberOfPrims = 1;
+
+        while (numberOfPrims < maxMultiDrawElements) {
+            if (currentList.isStallReached()) {
+                break;
+            }
+            int instruction = currentList.readNextInstruction();
+
+            int cmd = command(instruction);
+            if (cmd == PRIM) {
+                int type = ((instruction >> 16) & 0x7);
+                int numberOfVertex = instruction & 0xFFFF;
+                if (context.frontFaceCw != frontFaceCw || type != currentType) {
+                    break;
+                }
+                // The native vertex data is copied without offset,
+                // only accept vertex addresses aligned on 32-bit.
+                if (numberOfVertex < minimumNumberOfVertex[type] || (currentPtrVertex & 3) != 0 || !Memory.isAddressGood(currentPtrVertex)) {
+                    break;
+                }
+                if (totalNumberOfVertex + numberOfVertex > maxNumberOfVertex) {
+                    break;
+                }
+
+                multiDrawFirst.put(totalNumberOfVertex);
+                multiDrawCount.put(numberOfVertex);
+                batchVertexAddress[numberOfPrims] = currentPtrVertex;
+                numberOfPrims++;
+                totalNumberOfVertex += numberOfVertex;
+                currentPtrVertex += vertexSize * numberOfVertex;
+                afterBatchPc = currentList.getPc();
+                if (isLogDebugEnabled) {
+                    log.debug(String.format("%s type=%d, numberOfVertex=%d integrated in batch draw", helper.getCommandString(cmd), type, numberOfVertex));
+                }
+            } else if (cmd == VADDR) {
+                // Any vertex address can be used as the vertex data is copied
+                currentPtrVertex = currentList.getAddressRelOffset(intArgument(instruction));
+            } else if (cmd == FFACE) {
+                // Changing the FFACE with no effect, see checkMultiDraw()
+                frontFaceCw = intArgument(instruction) != 0;
+            } else if (!isIgnoredInMultiDraw(cmd, instruction)) {
+                if (isLogDebugEnabled) {
+                    log.debug(String.format("%s 0x%06X has stopped integration in batch draw", helper.getCommandString(cmd), intArgument(instruction)));
+                }
+                break;
+            }
+        }
+
+        if (numberOfPrims <= 1) {
+            currentList.setPc(beforeBatchPc);
+            return -1;
+        }
+
+        multiDrawFirst.flip();
+        multiDrawCount.flip();
+
+        // Continue after the last merged PRIM, the commands following it
+        // have not been integrated and will be executed normally.
+        currentList.setPc(afterBatchPc);
+
+        return numberOfPrims;
+    }
+
+    /**
+     * Continue as after the last PRIM merged by checkBatchDraw():
+     * VADDR is updated by endRendering() from the vertex address of the last PRIM.
+     *
+     * @param numberOfPrims  the number of PRIM's returned by checkBatchDraw()
+     * @return               the number of vertex of the last PRIM
+     */
+    int endBatchDraw(int numberOfPrims) {
+        primCount += numberOfPrims - 1;
+        context.vinfo.ptr_vertex = batchVertexAddress[numberOfPrims - 1];
+
+        return multiDrawCount.get(numberOfPrims - 1);
+    }
+
+    private boolean canBatchDraw() {
+        // - the indexed vertices are not copied
+        // - the native vertex data is copied without offset
+        // - in clear mode STENCIL, the stencil value is taken from each PRIM
+        // - the capture and the export are working on single PRIM's
+        return useDrawBatching
+                && context.vinfo.index == 0
+                && (context.vinfo.ptr_vertex & 3) == 0
+                && !(context.clearMode && context.clearModeStencil)
+                && !State.captureGeNextFrame
+                && !export3D;
+    }
+
+    /**
+     * Copy the vertex data of the PRIM's found by checkBatchDraw()
+     * one after the other into the draw buffers.
+     *
+     * @param mem            the memory
+     * @param numberOfPrims  the number of PRIM's returned by checkBatchDraw()
+     * @param buffer         the vertex data already read for the first PRIM
+     * @param stride         the stride of the vertex data read
+     */
+    private void loadBatchDraw(Memory mem, int numberOfPrims, Buffer buffer, int stride) {
+        int vertexSize = context.vinfo.vertexSize;
+        boolean hasNative = vertexInfoReader.hasNative();
+        for (int i = 0; i < numberOfPrims; i++) {
+            int vertexAddr = batchVertexAddress[i];
+            int first = multiDrawFirst.get(i);
+            int count = multiDrawCount.get(i);
+            if (i > 0) {
+                vertexReadingStatistics.start();
+                buffer = vertexInfoReader.read(context.vinfo, vertexAddr, 0, count, re.canAllNativeVertexInfo());
+                vertexReadingStatistics.end();
+            }
+
+            if (buffer != null) {
+                bufferManager.setBufferSubData(IRenderingEngine.RE_ARRAY_BUFFER, bufferId, first * stride, count * stride, buffer, IRenderingEngine.RE_STREAM_DRAW);
+            }
+
+            if (hasNative) {
+                int size = count * vertexSize;
+                Buffer vertexData = mem.getBuffer(vertexAddr, size);
+                bufferManager.setBufferSubData(IRenderingEngine.RE_ARRAY_BUFFER, nativeBufferId, first * vertexSize, size, vertexData, IRenderingEngine.RE_STREAM_DRAW);
+            }
+        }
+    }
+
     private void checkMultiTrxkick() {
     	int startPc = currentList.getPc();
         if (isLogDebugEnabled) {
@@ -2495,6 +2730,7 @@ public class VideoEngine {
                 int size = context.vinfo.vertexSize * numberOfVertexInfo;
                 boolean useBufferManager;
                 boolean multiDrawArrays = false;
+                int numberOfBatchedPrims = -1;
                 if (useVertexCache && buffer == null) {
                     stride = context.vinfo.vertexSize;
                     useBufferManager = false;
@@ -2559,17 +2795,30 @@ public class VideoEngine {
                     stride = vertexInfoReader.getStride();
                     useBufferManager = true;
 
-                    if (buffer != null) {
-                        bufferManager.setBufferSubData(IRenderingEngine.RE_ARRAY_BUFFER, bufferId, firstVertexInfo * stride, stride * numberOfVertexInfo, buffer, IRenderingEngine.RE_STREAM_DRAW);
+                    // Check if the following PRIM's can be merged with this one
+                    // into a single multiDrawArrays call.
+                    if (canBatchDraw()) {
+                        // Keep some space for the alignment of the buffer data size
+                        int maxNumberOfVertex = (drawBufferSizeInBytes - 8) / Math.max(stride, context.vinfo.vertexSize);
+                        numberOfBatchedPrims = checkBatchDraw(type, numberOfVertex, maxNumberOfVertex);
                     }
 
-                    if (vertexInfoReader.hasNative()) {
-                        // Copy the VertexInfo from Memory to the nativeBuffer
-                        // (a direct buffer is required by glXXXPointer())
-                        int vertexAddr = context.vinfo.ptr_vertex + firstVertexInfo * context.vinfo.vertexSize;
-                        Buffer vertexData = mem.getBuffer(vertexAddr, size);
-                        size = fixNativeBufferOffset(vertexData, vertexAddr, size);
-                        bufferManager.setBufferSubData(IRenderingEngine.RE_ARRAY_BUFFER, nativeBufferId, firstVertexInfo * context.vinfo.vertexSize, size, vertexData, IRenderingEngine.RE_STREAM_DRAW);
+                    if (numberOfBatchedPrims > 0) {
+                        loadBatchDraw(mem, numberOfBatchedPrims, buffer, stride);
+                        multiDrawArrays = true;
+                    } else {
+                        if (buffer != null) {
+                            bufferManager.setBufferSubData(IRenderingEngine.RE_ARRAY_BUFFER, bufferId, firstVertexInfo * stride, stride * numberOfVertexInfo, buffer, IRenderingEngine.RE_STREAM_DRAW);
+                        }
+
+                        if (vertexInfoReader.hasNative()) {
+                            // Copy the VertexInfo from Memory to the nativeBuffer
+                            // (a direct buffer is required by glXXXPointer())
+                            int vertexAddr = context.vinfo.ptr_vertex + firstVertexInfo * context.vinfo.vertexSize;
+                            Buffer vertexData = mem.getBuffer(vertexAddr, size);
+                            size = fixNativeBufferOffset(vertexData, vertexAddr, size);
+                            bufferManager.setBufferSubData(IRenderingEngine.RE_ARRAY_BUFFER, nativeBufferId, firstVertexInfo * context.vinfo.vertexSize, size, vertexData, IRenderingEngine.RE_STREAM_DRAW);
+                        }
                     }
                 }
 
@@ -2618,6 +2867,11 @@ public class VideoEngine {
                     }
                 }
 
+                if (multiDrawArrays && MetricsRegistry.isEnabled()) {
+                    multiDrawCallsMetric.increment();
+                    multiDrawPrimsMetric.add(multiDrawCount.remaining());
+                }
+
                 drawArraysStatistics.start();
                 if (hasIndex) {
                     if (multiDrawArrays) {
@@ -2631,6 +2885,10 @@ public class VideoEngine {
                     re.drawArrays(type, firstVertex, numberOfVertex);
                 }
                 drawArraysStatistics.end();
+
+                if (numberOfBatchedPrims > 0) {
+                    numberOfVertex = endBatchDraw(numberOfBatchedPrims);
+                }
             } else {
                 // Non-optimized VertexInfo reading
                 VertexInfo cachedVertexInfo = null;
@@ -3077,8 +3335,11 @@ public class VideoEngine {
             int textureWidth = context.texture_width[level];
             int textureHeight = context.texture_height[level];
             int textureBufferWidth = context.texture_buffer_width[level];
-            IMemoryReader imageReader = ImageReader.getImageReader(textureAddr, textureWidth, textureHeight, textureBufferWidth, context.texture_storage, context.texture_swizzle, context.tex_clut_addr, context.tex_clut_mode, context.tex_clut_num_blocks, context.tex_clut_start, context.tex_clut_shift, context.tex_clut_mask, clut_buffer32, clut_buffer16);
-            CaptureImage captureImage = new CaptureImage(textureAddr, level, imageReader, textureWidth, textureHeight, textureBufferWidth, false, true, null);
+            int readWidth = Math.min(textureWidth, textureBufferWidth);
+            IntBuffer image = IntBuffer.allocate(readWidth * textureHeight);
+            ImageReader.readImage(image, textureAddr, textureWidth, textureHeight, textureBufferWidth, context.texture_storage, context.texture_swizzle, context.tex_clut_addr, context.tex_clut_mode, context.tex_clut_num_blocks, context.tex_clut_start, context.tex_clut_shift, context.tex_clut_mask, clut_buffer32, clut_buffer16);
+            image.rewind();
+            CaptureImage captureImage = new CaptureImage(textureAddr, level, image, textureWidth, textureHeight, readWidth, TPSM_PIXEL_STORAGE_MODE_32BIT_ABGR8888, false, 0, false, true, null);
             captureImage.setDirectory(export3DDirectory);
             captureImage.setFileFormat("png");
             if (IRenderingEngine.isTextureTypeIndexed[context.texture_storage]) {
@@ -6238,18 +6499,18 @@ public class VideoEngine {
             textureCacheLookupStatistics.start();
             // Check if the texture is in the cache
             if (textureRequiresClut) {
-                texture = textureCache.getTexture(context.texture_base_pointer[mipmapIndex], context.texture_buffer_width[mipmapIndex], context.texture_width[mipmapIndex], context.texture_height[mipmapIndex], context.texture_storage, context.tex_clut_addr, context.tex_clut_mode, context.tex_clut_start, context.tex_clut_shift, context.tex_clut_mask, context.tex_clut_num_blocks, context.texture_num_mip_maps, context.mipmapShareClut, null, null);
+                texture = textureCache.getTexture(context.texture_base_pointer[mipmapIndex], context.texture_buffer_width[mipmapIndex], context.texture_width[mipmapIndex], context.texture_height[mipmapIndex], context.texture_storage, context.texture_swizzle, context.tex_clut_addr, context.tex_clut_mode, context.tex_clut_start, context.tex_clut_shift, context.tex_clut_mask, context.tex_clut_num_blocks, context.texture_num_mip_maps, context.mipmapShareClut, null, null);
             } else {
-                texture = textureCache.getTexture(context.texture_base_pointer[mipmapIndex], context.texture_buffer_width[mipmapIndex], context.texture_width[mipmapIndex], context.texture_height[mipmapIndex], context.texture_storage, 0, 0, 0, 0, 0, 0, context.texture_num_mip_maps, false, null, null);
+                texture = textureCache.getTexture(context.texture_base_pointer[mipmapIndex], context.texture_buffer_width[mipmapIndex], context.texture_width[mipmapIndex], context.texture_height[mipmapIndex], context.texture_storage, context.texture_swizzle, 0, 0, 0, 0, 0, 0, context.texture_num_mip_maps, false, null, null);
             }
             textureCacheLookupStatistics.end();
 
             // Create the texture if not yet in the cache
             if (texture == null) {
                 if (textureRequiresClut) {
-                    texture = new Texture(textureCache, context.texture_base_pointer[mipmapIndex], context.texture_buffer_width[mipmapIndex], context.texture_width[mipmapIndex], context.texture_height[mipmapIndex], context.texture_storage, context.tex_clut_addr, context.tex_clut_mode, context.tex_clut_start, context.tex_clut_shift, context.tex_clut_mask, context.tex_clut_num_blocks, context.texture_num_mip_maps, context.mipmapShareClut, null, null);
+                    texture = new Texture(textureCache, context.texture_base_pointer[mipmapIndex], context.texture_buffer_width[mipmapIndex], context.texture_width[mipmapIndex], context.texture_height[mipmapIndex], context.texture_storage, context.texture_swizzle, context.tex_clut_addr, context.tex_clut_mode, context.tex_clut_start, context.tex_clut_shift, context.tex_clut_mask, context.tex_clut_num_blocks, context.texture_num_mip_maps, context.mipmapShareClut, null, null);
                 } else {
-                    texture = new Texture(textureCache, context.texture_base_pointer[mipmapIndex], context.texture_buffer_width[mipmapIndex], context.texture_width[mipmapIndex], context.texture_height[mipmapIndex], context.texture_storage, 0, 0, 0, 0, 0, 0, context.texture_num_mip_maps, false, null, null);
+                    texture = new Texture(textureCache, context.texture_base_pointer[mipmapIndex], context.texture_buffer_width[mipmapIndex], context.texture_width[mipmapIndex], context.texture_height[mipmapIndex], context.texture_storage, context.texture_swizzle, 0, 0, 0, 0, 0, 0, context.texture_num_mip_maps, false, null, null);
                 }
                 textureCache.addTexture(re, texture);
             }
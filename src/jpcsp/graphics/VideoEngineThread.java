@@ -0,0 +1,82 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.graphics;
+
+import java.util.concurrent.Semaphore;
+
+import jpcsp.graphics.RE.CommandBufferProxy;
+
+/**
+ * @author gid15
+ *
+ * Thread processing the GE lists when the OpenGL calls are recorded
+ * into a command buffer (see CommandBufferProxy).
+ *
+ * The thread owning the OpenGL context is calling update(), which
+ * starts the processing of the GE lists on this thread and executes
+ * the recorded OpenGL calls while the GE lists are still being processed.
+ */
+public class VideoEngineThread extends Thread {
+	private final CommandBufferProxy commandBuffer;
+	private final Semaphore sync = new Semaphore(0);
+	private volatile boolean exit;
+	private volatile boolean somethingDisplayed;
+
+	public VideoEngineThread(CommandBufferProxy commandBuffer) {
+		this.commandBuffer = commandBuffer;
+		setName("GE List Thread");
+		setDaemon(true);
+	}
+
+	/**
+	 * Process the GE lists, called by the thread owning the OpenGL context.
+	 *
+	 * @return true if an update was made
+	 */
+	public boolean update() {
+		commandBuffer.startRecording(this);
+		sync.release();
+		commandBuffer.executeCommands();
+
+		return somethingDisplayed;
+	}
+
+	public void exit() {
+		exit = true;
+		sync.release();
+	}
+
+	@Override
+	public void run() {
+		while (!exit) {
+			sync.acquireUninterruptibly();
+			if (exit) {
+				break;
+			}
+
+			boolean result = false;
+			try {
+				result = VideoEngine.getInstance().update();
+			} catch (RuntimeException e) {
+				VideoEngine.log.error("VideoEngineThread", e);
+			} finally {
+				somethingDisplayed = result;
+				commandBuffer.endRecording();
+			}
+		}
+	}
+}
@@ -16,12 +16,23 @@ along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
  */
 package jpcsp.graphics.textures;
 
+import jpcsp.Memory;
 import jpcsp.graphics.GeCommands;
 import jpcsp.graphics.VideoEngine;
 import jpcsp.graphics.RE.IRenderingEngine;
+import jpcsp.memory.MemoryWriteTracker;
 import jpcsp.util.Hash;
+import jpcsp.util.Utilities;
 
 public class Texture {
+	/**
+	 * The host texture, possibly shared between textures having the same content.
+	 */
+	private static class GlTexture {
+		public int id = -1;	// id created by genTexture
+		public int references = 1;
+	}
+
 	private int addr;
 	private int lineWidth;
 	private int width;
@@ -33,27 +44,38 @@ public class Texture {
 	private int clutShift;
 	private int clutMask;
 	private int clutNumBlocks;
-	private int hashCode;
 	private int mipmapLevels;
 	private boolean mipmapShareClut;
-	private int textureId = -1;	// id created by genTexture
+	private boolean swizzle;
+	private GlTexture glTexture = new GlTexture();
 	private boolean loaded = false;	// is the texture already loaded?
 	private TextureCache textureCache;
 	private final static int defaultHashStride = 64 + 8;
 	private final static int smallHashStride = 12;
+	// The texture buffer is hashed by blocks: a changed texture is detected
+	// at the first changed block, without hashing the complete texture.
+	private final static int hashBlockSize = 4096;
+	private int[] hashCodes;
+	private int clutHashCode;
+	// The MemoryWriteTracker stamp when the hashCodes were last computed
+	private int hashStamp;
+	private int contentHashCode;
+	private boolean contentHashCodeComputed;
+	private int sizeInBytes;
 	private short[] cachedValues16;
 	private int[] cachedValues32;
 	private int bufferLengthInBytes;
 	private int lineWidthInBytes;
 	private int hashStrideInBytes;
 
-	public Texture(TextureCache textureCache, int addr, int lineWidth, int width, int height, int pixelStorage, int clutAddr, int clutMode, int clutStart, int clutShift, int clutMask, int clutNumBlocks, int mipmapLevels, boolean mipmapShareClut, short[] values16, int[] values32) {
+	public Texture(TextureCache textureCache, int addr, int lineWidth, int width, int height, int pixelStorage, boolean swizzle, int clutAddr, int clutMode, int clutStart, int clutShift, int clutMask, int clutNumBlocks, int mipmapLevels, boolean mipmapShareClut, short[] values16, int[] values32) {
 		this.textureCache = textureCache;
 		this.addr = addr;
 		this.lineWidth = lineWidth;
 		this.width = width;
 		this.height = height;
 		this.pixelStorage = pixelStorage;
+		this.swizzle = swizzle;
 		this.clutAddr = clutAddr;
 		this.clutMode = clutMode;
 		this.clutStart = clutStart;
@@ -105,51 +127,201 @@ public class Texture {
 					hashStrideInBytes = lineWidthInBytes - 4;
 				}
 			}
-			hashCode = hashCode(addr, bufferLengthInBytes, lineWidthInBytes, hashStrideInBytes, clutAddr, clutNumBlocks, mipmapLevels);
+			hashCodes = new int[Math.max((bufferLengthInBytes + hashBlockSize - 1) / hashBlockSize, 1)];
+			computeHashCodes(false);
+		}
+
+		// Estimated size of the texture in the host memory, as 32-bit pixels
+		sizeInBytes = width * height * 4;
+		if (mipmapLevels > 0) {
+			sizeInBytes += sizeInBytes / 3;
 		}
 	}
 
 	/**
-	 * Compute the Texture hashCode value,
+	 * Compute the Texture hashCode values,
 	 * based on the pixel buffer and the clut table.
 	 *
-	 * @param addr                pixel buffer
-	 * @param bufferLengthInBytes texture buffer length in bytes
-	 * @param lineWidthInBytes    texture buffer line width in bytes
-	 * @param clutAddr            clut table address
-	 * @param clutNumBlocks       clut number of blocks
-	 * @param mipmapLevels        number of mipmaps
-	 * @return                    hashcode value
+	 * @param check   true to check the hashCode values against the values
+	 *                computed previously
+	 * @return        false if the texture has changed since the previous
+	 *                computation (only when check is true)
 	 */
-	private static int hashCode(int addr, int bufferLengthInBytes, int lineWidthInBytes, int strideInBytes, int clutAddr, int clutNumBlocks, int mipmapLevels) {
-		int hashCode = mipmapLevels;
+	private boolean computeHashCodes(boolean check) {
+		int stamp = MemoryWriteTracker.getStamp();
 
 		if (addr != 0) {
 			if (VideoEngine.log.isDebugEnabled()) {
 				VideoEngine.log.debug("Texture.hashCode: " + bufferLengthInBytes + " bytes");
 			}
 
-			hashCode = Hash.getHashCode(hashCode, addr, bufferLengthInBytes, strideInBytes);
+			if (!Hash.getHashCodesByBlock(hashCodes, check ? hashCodes : null, addr, bufferLengthInBytes, hashStrideInBytes, hashBlockSize)) {
+				return false;
+			}
 		}
 
 		if (clutAddr != 0) {
-			hashCode = Hash.getHashCode(hashCode, clutAddr, clutNumBlocks * 32);
+			int hashCode = Hash.getHashCode(0, clutAddr, clutNumBlocks * 32);
+			if (check && hashCode != clutHashCode) {
+				return false;
+			}
+			clutHashCode = hashCode;
 		}
 
-		return hashCode;
+		hashStamp = stamp;
+
+		return true;
+	}
+
+	/**
+	 * Check if the texture and clut memory have been written since
+	 * the hashCodes were last computed.
+	 * The VRAM is not tracked as it is also written by the GE.
+	 *
+	 * @return true if the memory has not been written and the hashCodes
+	 *         do not need to be computed again
+	 */
+	private boolean isMemoryUnchanged() {
+		if (addr != 0) {
+			if (Memory.isVRAM(addr) || !MemoryWriteTracker.isUnchanged(addr, bufferLengthInBytes, hashStamp)) {
+				return false;
+			}
+		}
+		if (clutAddr != 0) {
+			if (Memory.isVRAM(clutAddr) || !MemoryWriteTracker.isUnchanged(clutAddr, clutNumBlocks * 32, hashStamp)) {
+				return false;
+			}
+		}
+
+		return true;
 	}
 
 	@Override
 	public int hashCode() {
-		return hashCode;
+		int hashCode = mipmapLevels;
+		if (hashCodes != null) {
+			for (int i = 0; i < hashCodes.length; i++) {
+				hashCode = hashCode * 31 + hashCodes[i];
+			}
+		}
+
+		return hashCode ^ clutHashCode;
 	}
 
-	public boolean equals(int addr, int lineWidth, int width, int height, int pixelStorage, int clutAddr, int clutMode, int clutStart, int clutShift, int clutMask, int clutNumBlocks, int mipmapLevels, boolean mipmapShareClut, short[] values16, int[] values32) {
+	/**
+	 * Compute a hashCode on the complete texture content (without any stride),
+	 * independent of the texture address.
+	 * This hashCode is used to share the same host texture between
+	 * identical textures stored at different addresses.
+	 *
+	 * @return the texture content hashCode
+	 */
+	public int getContentHashCode() {
+		if (!contentHashCodeComputed) {
+			int hashCode = Hash.getContentHashCode(pixelStorage, addr, bufferLengthInBytes);
+			if (clutAddr != 0) {
+				hashCode = Hash.getContentHashCode(hashCode, clutAddr, clutNumBlocks * 32);
+			}
+			contentHashCode = hashCode;
+			contentHashCodeComputed = true;
+		}
+
+		return contentHashCode;
+	}
+
+	/**
+	 * Only the textures without mipmaps and stored in memory can be shared:
+	 * the mipmaps are not covered by the content hashCode.
+	 *
+	 * @return true if the host texture can be shared with another texture
+	 */
+	public boolean canBeShared() {
+		return addr != 0 && mipmapLevels == 0 && cachedValues16 == null && cachedValues32 == null;
+	}
+
+	/**
+	 * The content hashCode is only used to find candidate textures,
+	 * the texture data and CLUT are compared byte per byte.
+	 *
+	 * @return true if both textures have the same parameters (including the
+	 *         swizzle) and content, even if stored at different addresses
+	 */
+	public boolean contentEquals(Texture texture) {
+		return lineWidth == texture.lineWidth &&
+			width == texture.width &&
+			height == texture.height &&
+			pixelStorage == texture.pixelStorage &&
+			swizzle == texture.swizzle &&
+			clutMode == texture.clutMode &&
+			clutStart == texture.clutStart &&
+			clutShift == texture.clutShift &&
+			clutMask == texture.clutMask &&
+			clutNumBlocks == texture.clutNumBlocks &&
+			mipmapLevels == texture.mipmapLevels &&
+			mipmapShareClut == texture.mipmapShareClut &&
+			bufferLengthInBytes == texture.bufferLengthInBytes &&
+			getContentHashCode() == texture.getContentHashCode() &&
+			Utilities.memoryEquals(addr, texture.addr, bufferLengthInBytes) &&
+			(clutAddr == 0) == (texture.clutAddr == 0) &&
+			(clutAddr == 0 || Utilities.memoryEquals(clutAddr, texture.clutAddr, clutNumBlocks * 32));
+	}
+
+	/**
+	 * Use the host texture of another texture having the same content.
+	 * Must be called before the host texture of this texture has been created.
+	 *
+	 * @param texture  the texture to be shared, already loaded
+	 * @return true if the host texture is shared
+	 */
+	public boolean shareTexture(Texture texture) {
+		if (glTexture.id != -1 || !texture.isLoaded() || texture.glTexture.id == -1) {
+			return false;
+		}
+
+		glTexture = texture.glTexture;
+		glTexture.references++;
+		setLoaded(true);
+
+		return true;
+	}
+
+	public boolean isShared() {
+		return glTexture.references > 1;
+	}
+
+	/**
+	 * @return the estimated size of the texture in the host memory
+	 */
+	public int getSizeInBytes() {
+		return sizeInBytes;
+	}
+
+	/**
+	 * Check if the texture content has been changed since it was created.
+	 * The texture content is only hashed once during each display cycle.
+	 *
+	 * @return true if the texture content is unchanged
+	 */
+	public boolean isUnchanged() {
+		// Do not compute the hashCode of the texture if it has already
+		// been checked during this display cycle
+		if (!textureCache.textureAlreadyHashed(addr, clutAddr, clutStart, clutMode)) {
+			if (cachedValues16 != null || cachedValues32 != null) {
+				return false;
+			}
+			return checkHashCodes();
+		}
+
+		return true;
+	}
+
+	public boolean equals(int addr, int lineWidth, int width, int height, int pixelStorage, boolean swizzle, int clutAddr, int clutMode, int clutStart, int clutShift, int clutMask, int clutNumBlocks, int mipmapLevels, boolean mipmapShareClut, short[] values16, int[] values32) {
 		if (this.addr != addr ||
 			this.lineWidth != lineWidth ||
 			this.width != width ||
 			this.height != height ||
 			this.pixelStorage != pixelStorage ||
+			this.swizzle != swizzle ||
 			this.clutAddr != clutAddr ||
 			this.clutMode != clutMode ||
 			this.clutStart != clutStart ||
@@ -171,16 +343,23 @@ public class Texture {
 			if (values32 != null) {
 				return equals(values32);
 			}
-			int hashCode = hashCode(addr, bufferLengthInBytes, lineWidthInBytes, hashStrideInBytes, clutAddr, clutNumBlocks, mipmapLevels);
-			if (hashCode != hashCode()) {
-				return false;
-			}
-			textureCache.setTextureAlreadyHashed(addr, clutAddr, clutStart, clutMode);
+			return checkHashCodes();
 		}
 
 		return true;
 	}
 
+	private boolean checkHashCodes() {
+		if (isMemoryUnchanged()) {
+			textureCache.memoryUnchangedHits++;
+		} else if (!computeHashCodes(true)) {
+			return false;
+		}
+		textureCache.setTextureAlreadyHashed(addr, clutAddr, clutStart, clutMode);
+
+		return true;
+	}
+
 	private boolean equals(short[] values16) {
 		if (cachedValues16 == null) {
 			return false;
@@ -214,19 +393,35 @@ public class Texture {
 	}
 
 	public int getTextureId(IRenderingEngine re) {
-		if (textureId == -1) {
-			textureId = re.genTexture();
+		if (glTexture.id == -1) {
+			glTexture.id = re.genTexture();
 		}
-		return textureId;
+		return glTexture.id;
 	}
 
-	public void deleteTexture(IRenderingEngine re) {
-		if (textureId != -1) {
-			re.deleteTexture(textureId);
-            textureId = -1;
+	/**
+	 * Delete the host texture, if it is no longer shared with other textures.
+	 *
+	 * @return true if the host texture has been deleted,
+	 *         false if it is still used by other textures.
+	 */
+	public boolean deleteTexture(IRenderingEngine re) {
+		boolean deleted;
+		if (glTexture.references > 1) {
+			glTexture.references--;
+			glTexture = new GlTexture();
+			deleted = false;
+		} else {
+			if (glTexture.id != -1) {
+				re.deleteTexture(glTexture.id);
+				glTexture.id = -1;
+			}
+			deleted = true;
 		}
 
 		setLoaded(false);
+
+		return deleted;
 	}
 
 	public boolean isLoaded() {
@@ -258,7 +453,7 @@ public class Texture {
 	}
 
 	public int getGlId() {
-		return textureId;
+		return glTexture.id;
 	}
 	
 	public int getMipmapLevels() {
@@ -16,6 +16,7 @@ along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
  */
 package jpcsp.graphics.textures;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -30,15 +31,38 @@ import jpcsp.Memory;
 import jpcsp.graphics.GeCommands;
 import jpcsp.graphics.VideoEngine;
 import jpcsp.graphics.RE.IRenderingEngine;
+import jpcsp.settings.Settings;
 import jpcsp.util.CacheStatistics;
+import jpcsp.util.DurationStatistics;
+import jpcsp.util.metrics.MetricsRegistry;
 
+/**
+ * Cache of the textures loaded into the rendering engine.
+ *
+ * The cache is limited by the estimated size of the textures in the host
+ * memory (option "emu.graphics.textureCacheSize", in MB) and the least
+ * recently used textures are removed first.
+ *
+ * Identical textures stored at different addresses are sharing the same
+ * host texture: they are recognized by a hashCode on their complete content,
+ * computed once when the texture is added to the cache.
+ */
 public class TextureCache {
-	public static final int cacheMaxSize = 1000;
+	public static final int defaultCacheMaxSizeInMB = 128;
 	public static final float cacheLoadFactor = 0.75f;
+	public static final boolean shareTextures = true;
 	private static Logger log = VideoEngine.log;
 	private static TextureCache instance = null;
 	private LinkedHashMap<Integer, Texture> cache;
-	public CacheStatistics statistics = new CacheStatistics("Texture", cacheMaxSize);
+	// The textures which can be shared, by their content hashCode
+	private HashMap<Integer, Texture> contentCache;
+	private final long cacheMaxSizeInBytes;
+	private long cacheSizeInBytes;
+	public CacheStatistics statistics;
+	// Number of textures sharing the host texture of another texture
+	public long sharedHits;
+	// Number of times a texture has not been hashed as its memory has not been written
+	public long memoryUnchangedHits;
 	// Remember which textures have already been hashed during one display
 	// (for applications reusing the same texture multiple times in one display)
 	private Set<Integer> textureAlreadyHashed;
@@ -55,15 +79,25 @@ public class TextureCache {
 	}
 
 	private TextureCache() {
+		cacheMaxSizeInBytes = Settings.getInstance().readInt("emu.graphics.textureCacheSize", defaultCacheMaxSizeInMB) * 1024L * 1024L;
+		statistics = new CacheStatistics("Texture", (int) Math.min(cacheMaxSizeInBytes, Integer.MAX_VALUE));
+		MetricsRegistry.getInstance().registerCacheStatistics("Texture", statistics);
+
 		//
-		// Create a cache having
-		// - initial size large enough so that no rehash will occur
-		// - the LinkedList is based on access-order for LRU
+		// Create a cache where the LinkedList is based on access-order for LRU
 		//
-		cache = new LinkedHashMap<Integer, Texture>((int) (cacheMaxSize / cacheLoadFactor) + 1, cacheLoadFactor, true);
+		cache = new LinkedHashMap<Integer, Texture>(1024, cacheLoadFactor, true);
+		contentCache = new HashMap<Integer, Texture>();
 		textureAlreadyHashed = new HashSet<Integer>();
 	}
 
+	public void exit() {
+		if (DurationStatistics.collectStatistics) {
+			log.info(statistics);
+			log.info(String.format("Texture Cache: %d textures, %d bytes used out of %d, %d shared textures, %d textures not hashed", cache.size(), cacheSizeInBytes, cacheMaxSizeInBytes, sharedHits, memoryUnchangedHits));
+		}
+	}
+
 	private Integer getKey(int addr, int clutAddr, int clutStart, int clutMode) {
 		// Some games use the same texture address with different cluts.
 		// Keep a combination of both texture address and clut address in the cache.
@@ -72,6 +106,10 @@ public class TextureCache {
 		return addr + clutAddr + (clutStart << 4) * clutEntrySize;
 	}
 
+	private Integer getKey(Texture texture) {
+		return getKey(texture.getAddr(), texture.getClutAddr(), texture.getClutStart(), texture.getClutMode());
+	}
+
 	public boolean hasTexture(int addr, int clutAddr, int clutStart, int clutMode) {
 		return cache.containsKey(getKey(addr, clutAddr, clutStart, clutMode));
 	}
@@ -80,40 +118,89 @@ public class TextureCache {
 		return cache.get(getKey(addr, clutAddr, clutStart, clutMode));
 	}
 
-	public void addTexture(IRenderingEngine re, Texture texture) {
-		Integer key = getKey(texture.getAddr(), texture.getClutAddr(), texture.getClutStart(), texture.getClutMode());
-		Texture previousTexture = cache.get(key);
-		if (previousTexture != null) {
-		    previousTexture.deleteTexture(re);
-		    vramTextures.remove(previousTexture);
-		} else {
-			// Check if the cache is not growing too large
-			if (cache.size() >= cacheMaxSize) {
-				// Remove the LRU cache entry
-				Iterator<Map.Entry<Integer, Texture>> it = cache.entrySet().iterator();
-				if (it.hasNext()) {
-					Map.Entry<Integer, Texture> entry = it.next();
-					Texture lruTexture = entry.getValue();
-					lruTexture.deleteTexture(re);
-					vramTextures.remove(lruTexture);
-					it.remove();
-
-					statistics.entriesRemoved++;
+	/**
+	 * Delete a texture which has been removed from the cache.
+	 */
+	private void deleteTexture(IRenderingEngine re, Texture texture) {
+		if (texture.deleteTexture(re)) {
+			// The host texture has been released
+			cacheSizeInBytes -= texture.getSizeInBytes();
+		}
+		vramTextures.remove(texture);
+
+		if (shareTextures && texture.canBeShared()) {
+			Integer contentKey = texture.getContentHashCode();
+			if (contentCache.get(contentKey) == texture) {
+				contentCache.remove(contentKey);
+			}
+		}
+	}
+
+	/**
+	 * Share the host texture of an identical texture stored at another address.
+	 */
+	private void shareTexture(Texture texture) {
+		Integer contentKey = texture.getContentHashCode();
+		Texture sameTexture = contentCache.get(contentKey);
+		if (sameTexture != null && sameTexture.contentEquals(texture) && sameTexture.isUnchanged()) {
+			if (texture.shareTexture(sameTexture)) {
+				sharedHits++;
+				if (log.isDebugEnabled()) {
+					log.debug(String.format("Sharing %s with %s", texture, sameTexture));
 				}
 			}
+		} else {
+			contentCache.put(contentKey, texture);
+		}
+	}
+
+	public void addTexture(IRenderingEngine re, Texture texture) {
+		Integer key = getKey(texture);
+		Texture previousTexture = cache.remove(key);
+		if (previousTexture != null) {
+			deleteTexture(re, previousTexture);
+		}
+
+		if (shareTextures && texture.canBeShared()) {
+			shareTexture(texture);
+		}
+
+		// A shared host texture is only accounted once
+		int sizeInBytes = texture.isShared() ? 0 : texture.getSizeInBytes();
+
+		// Remove the LRU textures until the new texture fits into the cache
+		for (Iterator<Texture> it = cache.values().iterator(); cacheSizeInBytes + sizeInBytes > cacheMaxSizeInBytes && it.hasNext(); ) {
+			Texture lruTexture = it.next();
+			it.remove();
+			deleteTexture(re, lruTexture);
+
+			statistics.entriesRemoved++;
 		}
 
         cache.put(key, texture);
+        cacheSizeInBytes += sizeInBytes;
         if (isVramTexture(texture)) {
         	vramTextures.add(texture);
         }
 
-        if (cache.size() > statistics.maxSizeUsed) {
-            statistics.maxSizeUsed = cache.size();
+        if (cacheSizeInBytes > statistics.maxSizeUsed) {
+            statistics.maxSizeUsed = cacheSizeInBytes;
         }
 	}
 
-	public Texture getTexture(int addr, int lineWidth, int width, int height, int pixelStorage, int clutAddr, int clutMode, int clutStart, int clutShift, int clutMask, int clutNumBlocks, int mipmapLevels, boolean mipmapShareClut, short[] values16, int[] values32) {
+	public int size() {
+		return cache.size();
+	}
+
+	public long getSizeInBytes() {
+		return cacheSizeInBytes;
+	}
+
+	public long getMaxSizeInBytes() {
+		return cacheMaxSizeInBytes;
+	}
+
+	public Texture getTexture(int addr, int lineWidth, int width, int height, int pixelStorage, boolean swizzle, int clutAddr, int clutMode, int clutStart, int clutShift, int clutMask, int clutNumBlocks, int mipmapLevels, boolean mipmapShareClut, short[] values16, int[] values32) {
 		statistics.totalHits++;
 		Texture texture = getTexture(addr, clutAddr, clutStart, clutMode);
 
@@ -122,7 +209,7 @@ public class TextureCache {
 			return texture;
 		}
 
-		if (texture.equals(addr, lineWidth, width, height, pixelStorage, clutAddr, clutMode, clutStart, clutShift, clutMask, clutNumBlocks, mipmapLevels, mipmapShareClut, values16, values32)) {
+		if (texture.equals(addr, lineWidth, width, height, pixelStorage, swizzle, clutAddr, clutMode, clutStart, clutShift, clutMask, clutNumBlocks, mipmapLevels, mipmapShareClut, values16, values32)) {
 			statistics.successfulHits++;
 			return texture;
 		}
@@ -152,6 +239,9 @@ public class TextureCache {
 			texture.deleteTexture(re);
 		}
 		cache.clear();
+		contentCache.clear();
+		vramTextures.clear();
+		cacheSizeInBytes = 0;
 		resetTextureAlreadyHashed();
 	}
 
@@ -166,10 +256,9 @@ public class TextureCache {
 				if (log.isDebugEnabled()) {
 					log.debug(String.format("Delete VRAM texture inside GE %s", texture.toString()));
 				}
-				texture.deleteTexture(re);
 				lit.remove();
-				Integer key = getKey(texture.getAddr(), texture.getClutAddr(), texture.getClutStart(), texture.getClutMode());
-				cache.remove(key);
+				cache.remove(getKey(texture));
+				deleteTexture(re, texture);
 				statistics.entriesRemoved++;
 			}
 		}
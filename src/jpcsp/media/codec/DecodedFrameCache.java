@@ -0,0 +1,268 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.media.codec;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import jpcsp.HLE.modules.sceAudiocodec;
+import jpcsp.settings.Settings;
+import jpcsp.util.CacheStatistics;
+import jpcsp.util.DurationStatistics;
+import jpcsp.util.metrics.MetricsRegistry;
+
+/**
+ * Cache of the decoded audio frames (PCM samples), so that the frames
+ * decoded again and again (e.g. a background music being looped)
+ * are copied from the cache instead of being decoded.
+ *
+ * The output of an audio codec does not only depend on the current input frame,
+ * but also on the codec state built by the previous frames (overlapping
+ * of the IMDCT, bit reservoir...). The cache key is therefore composed of
+ * the first bytes of the current input buffer, of the hashes of the previous
+ * input frames and of the codec parameters.
+ * The input buffer can be larger than the frame (e.g. sceAac and sceMp3 are
+ * passing their whole remaining stream buffer), so only its first bytes are
+ * part of the key. The bytes really consumed by the codec are stored with
+ * the cached frame and have to be verified by the caller.
+ * The number of previous frames is depending on the codec
+ * (see getHistoryFrames() and isHistoryComplete()).
+ *
+ * The cache is limited to a maximum size in bytes and
+ * evicts the least recently used frames.
+ *
+ * @author gid15
+ *
+ */
+public class DecodedFrameCache {
+	private static Logger log = CodecFactory.log;
+	// Overhead of one cached frame in bytes (objects, map entry)
+	private static final int frameOverhead = 128;
+	// Number of bytes of the input buffer being part of the key
+	public static final int keyInputLength = 32;
+	// MP3: size of the frame header and of the largest side information
+	private static final int mp3MaxHeaderLength = 4 + 32;
+	// MP3: largest main_data_begin, the bit reservoir can reference
+	// up to 511 bytes of main data from the previous frames
+	private static final int mp3MaxReservoirLength = 511;
+	private static DecodedFrameCache instance;
+	private static boolean initialized;
+	private final long cacheMaxSizeInBytes;
+	private long cacheSizeInBytes;
+	// Access-ordered: the first frame is the least recently used
+	private final LinkedHashMap<Key, Frame> frames = new LinkedHashMap<Key, Frame>(256, 0.75f, true);
+	private final CacheStatistics statistics;
+
+	public static class Key {
+		private final int codecParameters;
+		private final int[] previousHashes;
+		private final byte[] input;
+		private final int hashCode;
+
+		/**
+		 * @param codecParameters  the codec type and parameters
+		 * @param previousHashes   the hashes of the previous input frames,
+		 *                         the array is not copied
+		 * @param input            the first bytes of the current input buffer
+		 *                         (at most keyInputLength bytes),
+		 *                         the array is not copied
+		 */
+		public Key(int codecParameters, int[] previousHashes, byte[] input) {
+			this.codecParameters = codecParameters;
+			this.previousHashes = previousHashes;
+			this.input = input;
+
+			int hashCode = Arrays.hashCode(input) * 31 + codecParameters;
+			for (int i = 0; i < previousHashes.length; i++) {
+				hashCode = hashCode * 31 + previousHashes[i];
+			}
+			this.hashCode = hashCode;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			Key key = (Key) obj;
+			return hashCode == key.hashCode && codecParameters == key.codecParameters && Arrays.equals(previousHashes, key.previousHashes) && Arrays.equals(input, key.input);
+		}
+	}
+
+	public static class Frame {
+		public final int result;
+		public final int numberOfSamples;
+		public final int[] output;
+		public final byte[] input;
+		public final int inputHash;
+
+		/**
+		 * @param result           the value returned by ICodec.decode()
+		 * @param numberOfSamples  the value returned by ICodec.getNumberOfSamples()
+		 *                         after the decode
+		 * @param output           the decoded samples
+		 * @param input            the input bytes consumed by the codec
+		 * @param inputHash        the hash of the consumed input bytes
+		 */
+		public Frame(int result, int numberOfSamples, int[] output, byte[] input, int inputHash) {
+			this.result = result;
+			this.numberOfSamples = numberOfSamples;
+			this.output = output;
+			this.input = input;
+			this.inputHash = inputHash;
+		}
+	}
+
+	/**
+	 * @return the cache instance, or null when the cache is disabled
+	 *         ("emu.codec.decodedFrameCacheSize" set to 0 MB).
+	 */
+	public static synchronized DecodedFrameCache getInstance() {
+		if (!initialized) {
+			int cacheMaxSizeInMB = Settings.getInstance().readInt("emu.codec.decodedFrameCacheSize", 0);
+			if (cacheMaxSizeInMB > 0) {
+				instance = new DecodedFrameCache(cacheMaxSizeInMB * 1024L * 1024L);
+			}
+			initialized = true;
+		}
+
+		return instance;
+	}
+
+	/**
+	 * @param codecType  the codec type (sceAudiocodec.PSP_CODEC_xxx)
+	 * @return           the number of previous frames building the codec state,
+	 *                   or 0 when the frames of this codec cannot be cached.
+	 */
+	public static int getHistoryFrames(int codecType) {
+		switch (codecType) {
+			case sceAudiocodec.PSP_CODEC_AT3PLUS:
+			case sceAudiocodec.PSP_CODEC_AT3:
+			case sceAudiocodec.PSP_CODEC_AAC:
+				// The IMDCT overlapping only depends on the previous frame
+				return 2;
+			case sceAudiocodec.PSP_CODEC_MP3:
+				// The previous frame for the IMDCT overlapping, the frame
+				// before for the synthesis filter, and the frames holding
+				// the bit reservoir referenced by these 2 frames.
+				// 10 frames are holding enough main data even for the smallest
+				// MPEG-1 frames (96 bytes), see isHistoryComplete() for the
+				// smaller frames.
+				return 12;
+		}
+
+		return 0;
+	}
+
+	/**
+	 * @param codecType       the codec type (sceAudiocodec.PSP_CODEC_xxx)
+	 * @param previousInputs  the input bytes of the previous frames,
+	 *                        the most recent first, null before the first frame
+	 * @return                true if the previous frames are building
+	 *                        the complete codec state
+	 */
+	public static boolean isHistoryComplete(int codecType, byte[][] previousInputs) {
+		if (codecType == sceAudiocodec.PSP_CODEC_MP3) {
+			// The bit reservoir of the 2 last frames has to be
+			// found in the main data of the frames before them
+			int mainDataLength = 0;
+			for (int i = 2; i < previousInputs.length; i++) {
+				if (previousInputs[i] == null) {
+					// The history is starting with the initial codec state
+					return true;
+				}
+				mainDataLength += previousInputs[i].length - mp3MaxHeaderLength;
+			}
+			return mainDataLength >= mp3MaxReservoirLength;
+		}
+
+		return true;
+	}
+
+	public DecodedFrameCache(long cacheMaxSizeInBytes) {
+		this.cacheMaxSizeInBytes = cacheMaxSizeInBytes;
+		statistics = new CacheStatistics("Decoded Audio Frame", (int) Math.min(cacheMaxSizeInBytes, Integer.MAX_VALUE));
+		MetricsRegistry.getInstance().registerCacheStatistics("Decoded Audio Frame", statistics);
+	}
+
+	private static long getSize(Key key, Frame frame) {
+		return frameOverhead + key.input.length + frame.input.length + (frame.output.length << 2) + (key.previousHashes.length << 2);
+	}
+
+	public synchronized Frame get(Key key) {
+		statistics.totalHits++;
+		Frame frame = frames.get(key);
+		if (frame == null) {
+			statistics.notPresentHits++;
+		} else {
+			statistics.successfulHits++;
+		}
+
+		return frame;
+	}
+
+	public synchronized void put(Key key, Frame frame) {
+		long size = getSize(key, frame);
+		if (size > cacheMaxSizeInBytes) {
+			return;
+		}
+
+		Frame previousFrame = frames.put(key, frame);
+		if (previousFrame != null) {
+			cacheSizeInBytes -= getSize(key, previousFrame);
+		}
+		cacheSizeInBytes += size;
+
+		// Evict the least recently used frames
+		Iterator<Map.Entry<Key, Frame>> lit = frames.entrySet().iterator();
+		while (cacheSizeInBytes > cacheMaxSizeInBytes && lit.hasNext()) {
+			Map.Entry<Key, Frame> entry = lit.next();
+			cacheSizeInBytes -= getSize(entry.getKey(), entry.getValue());
+			lit.remove();
+			statistics.entriesRemoved++;
+		}
+
+		if (cacheSizeInBytes > statistics.maxSizeUsed) {
+			statistics.maxSizeUsed = cacheSizeInBytes;
+		}
+	}
+
+	public synchronized long getCacheSizeInBytes() {
+		return cacheSizeInBytes;
+	}
+
+	public CacheStatistics getStatistics() {
+		return statistics;
+	}
+
+	public static void exit() {
+		DecodedFrameCache instance = DecodedFrameCache.instance;
+		if (DurationStatistics.collectStatistics && instance != null) {
+			log.info(instance.statistics);
+		}
+	}
+}
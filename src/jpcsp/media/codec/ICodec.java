@@ -16,6 +16,8 @@ along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
  */
 package jpcsp.media.codec;
 
+import jpcsp.Memory;
+
 /**
  * Codec interface.
  * 
@@ -48,6 +50,18 @@ public interface ICodec {
 	 */
 	public int decode(int inputAddr, int inputLength, int outputAddr);
 
+	/**
+	 * Decode a frame from/to the given memory instead of the PSP memory,
+	 * e.g. to decode a frame again from a host buffer.
+	 * 
+	 * @param mem         the memory holding the input and output buffers
+	 * @param inputAddr   the address of the input buffer
+	 * @param inputLength the maximum length of the input buffer
+	 * @param outputAddr  the address where to store the decode samples
+	 * @return            see decode(int, int, int)
+	 */
+	public int decode(Memory mem, int inputAddr, int inputLength, int outputAddr);
+
 	/**
 	 * @return  the number of samples generated by one decode() call.
 	 */
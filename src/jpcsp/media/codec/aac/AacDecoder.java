@@ -58,6 +58,7 @@ import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
 
+import jpcsp.Memory;
 import jpcsp.media.codec.ICodec;
 import jpcsp.media.codec.util.BitReader;
 import jpcsp.media.codec.util.CodecUtils;
@@ -2692,7 +2693,12 @@ public class AacDecoder implements ICodec {
 
 	@Override
 	public int decode(int inputAddr, int inputLength, int outputAddr) {
-		br = new BitReader(inputAddr, inputLength);
+		return decode(Memory.getInstance(), inputAddr, inputLength, outputAddr);
+	}
+
+	@Override
+	public int decode(Memory mem, int inputAddr, int inputLength, int outputAddr) {
+		br = new BitReader(mem, inputAddr, inputLength);
 		ac.br = br;
 
 		ac.dmonoMode = 0;
@@ -2714,7 +2720,7 @@ public class AacDecoder implements ICodec {
 			return err;
 		}
 
-		CodecUtils.writeOutput(ac.samples, outputAddr, ac.nbSamples, ac.channels, ac.outputChannels);
+		CodecUtils.writeOutput(mem, ac.samples, outputAddr, ac.nbSamples, ac.channels, ac.outputChannels);
 
 		return br.getBytesRead();
 	}
@@ -35,6 +35,7 @@ import java.util.Arrays;
 
 import org.apache.log4j.Logger;
 
+import jpcsp.Memory;
 import jpcsp.media.codec.ICodec;
 import jpcsp.media.codec.atrac3plus.Atrac;
 import jpcsp.media.codec.util.BitReader;
@@ -637,7 +638,12 @@ public class Atrac3Decoder implements ICodec {
 
 	@Override
 	public int decode(int inputAddr, int inputLength, int outputAddr) {
-		br = new BitReader(inputAddr, inputLength);
+		return decode(Memory.getInstance(), inputAddr, inputLength, outputAddr);
+	}
+
+	@Override
+	public int decode(Memory mem, int inputAddr, int inputLength, int outputAddr) {
+		br = new BitReader(mem, inputAddr, inputLength);
 		ctx.br = br;
 
 		int ret = decodeFrame();
@@ -645,7 +651,7 @@ public class Atrac3Decoder implements ICodec {
 			return ret;
 		}
 
-		writeOutput(ctx.samples, outputAddr, SAMPLES_PER_FRAME, ctx.channels, ctx.outputChannels);
+		writeOutput(mem, ctx.samples, outputAddr, SAMPLES_PER_FRAME, ctx.channels, ctx.outputChannels);
 
 		if (log.isDebugEnabled()) {
 			log.debug(String.format("Bytes read 0x%X", ctx.br.getBytesRead()));
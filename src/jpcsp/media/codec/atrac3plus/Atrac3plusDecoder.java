@@ -17,9 +17,19 @@ along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
 package jpcsp.media.codec.atrac3plus;
 
 import static jpcsp.media.codec.util.CodecUtils.writeOutput;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jpcsp.Memory;
 import jpcsp.media.codec.ICodec;
 import jpcsp.media.codec.util.BitReader;
 import jpcsp.media.codec.util.FFT;
+import jpcsp.settings.Settings;
 
 import org.apache.log4j.Logger;
 
@@ -40,6 +50,62 @@ public class Atrac3plusDecoder implements ICodec {
 	public static final int ATRAC3P_FRAME_SAMPLES = ATRAC3P_SUBBANDS * ATRAC3P_SUBBAND_SAMPLES;
 	public static final int ATRAC3P_PQF_FIR_LEN = 12;      ///< length of the prototype FIR of the PQF
 	private Context ctx;
+	private static int threads = -1;
+	// Reconstructing the 2nd channel of stereo channel units, shared by all the decoders
+	private static ExecutorService channelExecutor;
+
+	private static class ChannelThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, String.format("Atrac3plus Channel Decoder #%d", threadNumber.incrementAndGet()));
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
+
+	private static synchronized int getThreads() {
+		if (threads < 0) {
+			threads = Settings.getInstance().readInt("emu.atrac3plus.decoderThreads", 0);
+			if (threads <= 0) {
+				// One thread per channel of a stereo channel unit, when possible
+				threads = Runtime.getRuntime().availableProcessors() > 1 ? 2 : 1;
+			}
+			if (threads > 1) {
+				channelExecutor = Executors.newFixedThreadPool(threads - 1, new ChannelThreadFactory());
+			}
+		}
+
+		return threads;
+	}
+
+	/**
+	 * @return true if the channels of a stereo channel unit
+	 *         have to be reconstructed in parallel.
+	 */
+	static boolean isParallelChannels() {
+		return getThreads() > 1;
+	}
+
+	static Future<?> submitChannel(Runnable reconstructChannel) {
+		return channelExecutor.submit(reconstructChannel);
+	}
+
+	static void waitFor(Future<?> future) {
+		while (true) {
+			try {
+				future.get();
+				break;
+			} catch (InterruptedException e) {
+				// Ignore exception and retry
+			} catch (ExecutionException e) {
+				log.error("Atrac3plusDecoder", e.getCause());
+				break;
+			}
+		}
+	}
 
 	@Override
 	public int init(int bytesPerFrame, int channels, int outputChannels, int codingMode) {
@@ -70,6 +136,11 @@ public class Atrac3plusDecoder implements ICodec {
 
 	@Override
 	public int decode(int inputAddr, int inputLength, int outputAddr) {
+		return decode(Memory.getInstance(), inputAddr, inputLength, outputAddr);
+	}
+
+	@Override
+	public int decode(Memory mem, int inputAddr, int inputLength, int outputAddr) {
 		int ret;
 
 		if (ctx == null) {
@@ -83,7 +154,11 @@ public class Atrac3plusDecoder implements ICodec {
 			return 0;
 		}
 
-		ctx.br = new BitReader(inputAddr, inputLength);
+		if (ctx.br == null) {
+			ctx.br = new BitReader(mem, inputAddr, inputLength);
+		} else {
+			ctx.br.reset(mem, inputAddr, inputLength);
+		}
 		if (ctx.br.readBool()) {
 			log.error(String.format("Invalid start bit"));
 			return AT3P_ERROR;
@@ -120,7 +195,7 @@ public class Atrac3plusDecoder implements ICodec {
 			ctx.channelUnits[chBlock].decodeResidualSpectrum(ctx.samples);
 			ctx.channelUnits[chBlock].reconstructFrame(ctx);
 
-			writeOutput(ctx.outpBuf, outputAddr, ATRAC3P_FRAME_SAMPLES, channelsToProcess, ctx.outputChannels);
+			writeOutput(mem, ctx.outpBuf, outputAddr, ATRAC3P_FRAME_SAMPLES, channelsToProcess, ctx.outputChannels);
 
 			chBlock++;
 		}
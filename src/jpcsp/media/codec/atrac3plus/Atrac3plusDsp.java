@@ -395,7 +395,7 @@ public class Atrac3plusDsp {
 	}
 
 	public void powerCompensation(ChannelUnitContext ctx, int chIndex, float[] sp, int rngIndex, int sb) {
-		float pwcsp[] = new float[ATRAC3P_SUBBAND_SAMPLES];
+		final float pwcsp[] = ctx.channels[chIndex].pwcsp;
 		int gcv = 0;
 		int swapCh = (ctx.unitType == CH_UNIT_STEREO && ctx.swapChannels[sb] ? 1 : 0);
 
@@ -535,8 +535,10 @@ public class Atrac3plusDsp {
 	}
 
 	public void generateTones(ChannelUnitContext ctx, int chNum, int sb, float out[], int outOffset) {
-		float[] wavreg1 = new float[128];
-		float[] wavreg2 = new float[128];
+		final float[] wavreg1 = ctx.channels[chNum].wavreg1;
+		final float[] wavreg2 = ctx.channels[chNum].wavreg2;
+		Arrays.fill(wavreg1, 0f);
+		Arrays.fill(wavreg2, 0f);
 		WavesData tonesNow = ctx.channels[chNum].tonesInfoPrev[sb];
 		WavesData tonesNext = ctx.channels[chNum].tonesInfo[sb];
 
@@ -597,8 +599,8 @@ public class Atrac3plusDsp {
 	}
 
 	public void ipqf(FFT dctCtx, IPQFChannelContext hist, float[] in, float[] out) {
-		float[] idctIn  = new float[ATRAC3P_SUBBANDS];
-		float[] idctOut = new float[ATRAC3P_SUBBANDS];
+		final float[] idctIn  = hist.idctIn;
+		final float[] idctOut = hist.idctOut;
 
 		Arrays.fill(out, 0, ATRAC3P_FRAME_SAMPLES, 0f);
 
@@ -17,6 +17,7 @@ along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
 package jpcsp.media.codec.atrac3plus;
 
 import static jpcsp.media.codec.atrac3plus.Atrac3plusDecoder.ATRAC3P_SUBBANDS;
+import static jpcsp.media.codec.atrac3plus.Atrac3plusDecoder.ATRAC3P_SUBBAND_SAMPLES;
 
 /** Sound channel parameters */
 public class Channel {
@@ -47,6 +48,11 @@ public class Channel {
 	WavesData tonesInfo[];
 	WavesData tonesInfoPrev[];
 
+	// work buffers, preallocated to avoid allocations while decoding a frame
+	final float pwcsp[] = new float[ATRAC3P_SUBBAND_SAMPLES];   ///< power compensation noise spectrum
+	final float wavreg1[] = new float[ATRAC3P_SUBBAND_SAMPLES]; ///< tones of the 1st overlapping region
+	final float wavreg2[] = new float[ATRAC3P_SUBBAND_SAMPLES]; ///< tones of the 2nd overlapping region
+
 	public Channel(int chNum) {
 		this.chNum    = chNum;
 
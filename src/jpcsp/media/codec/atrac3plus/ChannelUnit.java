@@ -38,6 +38,7 @@ import static jpcsp.media.codec.util.CodecUtils.avLog2;
 import static jpcsp.util.Utilities.signExtend;
 
 import java.util.Arrays;
+import java.util.concurrent.Future;
 
 import jpcsp.media.codec.atrac3plus.Atrac3plusData1.Atrac3pSpecCodeTab;
 import jpcsp.media.codec.util.BitReader;
@@ -55,6 +56,11 @@ public class ChannelUnit {
 	private BitReader br;
 	private Atrac3plusDsp dsp;
 	private int numChannels;
+	// work buffers, preallocated to avoid allocations while decoding a frame
+	private final int refwaves[] = new int[48];
+	private final int sbRNGindex[] = new int[ATRAC3P_SUBBANDS];
+	private final float swapBuf[] = new float[ATRAC3P_SUBBAND_SAMPLES];
+	private final ReconstructChannel reconstructChannel1 = new ReconstructChannel(1);
 
 	private static final VLC wl_vlc_tabs[] = new VLC[4];
 	private static final VLC sf_vlc_tabs[] = new VLC[8];
@@ -1471,7 +1477,7 @@ public class ChannelUnit {
 	private void decodeTonesAmplitude(int chNum, boolean bandHasTones[]) {
 		WavesData dst[] = ctx.channels[chNum].tonesInfo;
 		WavesData ref[] = ctx.channels[0].tonesInfo;
-		final int refwaves[] = new int[48];
+		Arrays.fill(refwaves, 0);
 
 		if (chNum > 0) {
 			for (int sb = 0; sb < ctx.wavesInfo.numToneBands; sb++) {
@@ -1656,8 +1662,6 @@ public class ChannelUnit {
 	}
 
 	public void decodeResidualSpectrum(float[][] out) {
-		final int sbRNGindex[] = new int[ATRAC3P_SUBBANDS];
-
 		if (ctx.muteFlag) {
 			for (int ch = 0; ch < numChannels; ch++) {
 				Arrays.fill(out[ch], 0f);
@@ -1698,7 +1702,7 @@ public class ChannelUnit {
 		}
 
 		if (ctx.unitType == CH_UNIT_STEREO) {
-			final float tmp[] = new float[ATRAC3P_SUBBAND_SAMPLES];
+			final float tmp[] = swapBuf;
 			for (int sb = 0; sb < ctx.numCodedSubbands; sb++) {
 				if (ctx.swapChannels[sb]) {
 					// Swap both channels
@@ -1717,31 +1721,32 @@ public class ChannelUnit {
 		}
 	}
 
-	public void reconstructFrame(Context at3pContext) {
-		for (int ch = 0; ch < numChannels; ch++) {
-			for (int sb = 0; sb < ctx.numSubbands; sb++) {
-				// inverse transform and windowing
-				dsp.imdct(at3pContext.mdctCtx, at3pContext.samples[ch], sb * ATRAC3P_SUBBAND_SAMPLES, at3pContext.mdctBuf[ch], sb * ATRAC3P_SUBBAND_SAMPLES, (ctx.channels[ch].wndShapePrev[sb] ? 2 : 0) + (ctx.channels[ch].wndShape[sb] ? 1 : 0), sb);
+	private class ReconstructChannel implements Runnable {
+		private final int ch;
+		private Context at3pContext;
 
-				// gain compensation and overlapping
-				at3pContext.gaincCtx.gainCompensation(at3pContext.mdctBuf[ch], sb * ATRAC3P_SUBBAND_SAMPLES, ctx.prevBuf[ch], sb * ATRAC3P_SUBBAND_SAMPLES, ctx.channels[ch].gainDataPrev[sb], ctx.channels[ch].gainData[sb], ATRAC3P_SUBBAND_SAMPLES, at3pContext.timeBuf[ch], sb * ATRAC3P_SUBBAND_SAMPLES);
-			}
+		public ReconstructChannel(int ch) {
+			this.ch = ch;
+		}
 
-			// zero unused subbands in both output and overlapping buffers
-			Arrays.fill(        ctx.prevBuf[ch], ctx.numSubbands * ATRAC3P_SUBBAND_SAMPLES,         ctx.prevBuf[ch].length, 0f);
-			Arrays.fill(at3pContext.timeBuf[ch], ctx.numSubbands * ATRAC3P_SUBBAND_SAMPLES, at3pContext.timeBuf[ch].length, 0f);
+		@Override
+		public void run() {
+			reconstructChannel(at3pContext, ch);
+		}
+	}
 
-			// resynthesize and add tonal signal
-			if (ctx.wavesInfo.tonesPresent || ctx.wavesInfoPrev.tonesPresent) {
-				for (int sb = 0; sb < ctx.numSubbands; sb++) {
-					if (ctx.channels[ch].tonesInfo[sb].numWavs > 0 || ctx.channels[ch].tonesInfoPrev[sb].numWavs > 0) {
-						dsp.generateTones(ctx, ch, sb, at3pContext.timeBuf[ch], sb * 128);
-					}
-				}
+	public void reconstructFrame(Context at3pContext) {
+		if (numChannels > 1 && Atrac3plusDecoder.isParallelChannels()) {
+			// The channels are independent from each other:
+			// reconstruct the 2nd channel in parallel to the 1st one.
+			reconstructChannel1.at3pContext = at3pContext;
+			Future<?> channel1 = Atrac3plusDecoder.submitChannel(reconstructChannel1);
+			reconstructChannel(at3pContext, 0);
+			Atrac3plusDecoder.waitFor(channel1);
+		} else {
+			for (int ch = 0; ch < numChannels; ch++) {
+				reconstructChannel(at3pContext, ch);
 			}
-
-			// subband synthesis and acoustic signal output
-			dsp.ipqf(at3pContext.ipqfDctCtx, ctx.ipqfCtx[ch], at3pContext.timeBuf[ch], at3pContext.outpBuf[ch]);
 		}
 
 		// swap window shape and gain control buffers
@@ -1763,4 +1768,35 @@ public class ChannelUnit {
 		ctx.wavesInfo = ctx.wavesInfoPrev;
 		ctx.wavesInfoPrev = tmp;
 	}
+
+	/**
+	 * Reconstruct the output of one channel.
+	 * Only the buffers of the given channel are written,
+	 * so that different channels can be reconstructed in parallel.
+	 */
+	private void reconstructChannel(Context at3pContext, int ch) {
+		for (int sb = 0; sb < ctx.numSubbands; sb++) {
+			// inverse transform and windowing
+			dsp.imdct(at3pContext.mdctCtx, at3pContext.samples[ch], sb * ATRAC3P_SUBBAND_SAMPLES, at3pContext.mdctBuf[ch], sb * ATRAC3P_SUBBAND_SAMPLES, (ctx.channels[ch].wndShapePrev[sb] ? 2 : 0) + (ctx.channels[ch].wndShape[sb] ? 1 : 0), sb);
+
+			// gain compensation and overlapping
+			at3pContext.gaincCtx.gainCompensation(at3pContext.mdctBuf[ch], sb * ATRAC3P_SUBBAND_SAMPLES, ctx.prevBuf[ch], sb * ATRAC3P_SUBBAND_SAMPLES, ctx.channels[ch].gainDataPrev[sb], ctx.channels[ch].gainData[sb], ATRAC3P_SUBBAND_SAMPLES, at3pContext.timeBuf[ch], sb * ATRAC3P_SUBBAND_SAMPLES);
+		}
+
+		// zero unused subbands in both output and overlapping buffers
+		Arrays.fill(        ctx.prevBuf[ch], ctx.numSubbands * ATRAC3P_SUBBAND_SAMPLES,         ctx.prevBuf[ch].length, 0f);
+		Arrays.fill(at3pContext.timeBuf[ch], ctx.numSubbands * ATRAC3P_SUBBAND_SAMPLES, at3pContext.timeBuf[ch].length, 0f);
+
+		// resynthesize and add tonal signal
+		if (ctx.wavesInfo.tonesPresent || ctx.wavesInfoPrev.tonesPresent) {
+			for (int sb = 0; sb < ctx.numSubbands; sb++) {
+				if (ctx.channels[ch].tonesInfo[sb].numWavs > 0 || ctx.channels[ch].tonesInfoPrev[sb].numWavs > 0) {
+					dsp.generateTones(ctx, ch, sb, at3pContext.timeBuf[ch], sb * 128);
+				}
+			}
+		}
+
+		// subband synthesis and acoustic signal output
+		dsp.ipqf(at3pContext.ipqfDctCtx, ctx.ipqfCtx[ch], at3pContext.timeBuf[ch], at3pContext.outpBuf[ch]);
+	}
 }
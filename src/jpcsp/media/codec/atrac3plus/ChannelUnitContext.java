@@ -48,6 +48,9 @@ public class ChannelUnitContext {
 		public float[][] buf1 = new float[ATRAC3P_PQF_FIR_LEN * 2][8];
 		public float[][] buf2 = new float[ATRAC3P_PQF_FIR_LEN * 2][8];
 		public int pos;
+		// work buffers, preallocated to avoid allocations while decoding a frame
+		public float[] idctIn = new float[ATRAC3P_SUBBANDS];
+		public float[] idctOut = new float[ATRAC3P_SUBBANDS];
 	}
 
 	public ChannelUnitContext() {
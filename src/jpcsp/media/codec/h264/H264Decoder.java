@@ -25,6 +25,17 @@ import com.twilight.h264.decoder.MpegEncContext;
 
 import jpcsp.media.codec.IVideoCodec;
 
+/**
+ * H264 video decoder, based on com.twilight.h264.
+ *
+ * The decoding is single-threaded: the frames, and the slices of a frame,
+ * are decoded one after the other. Decoding frames or slices in parallel
+ * would require a reference picture management aware of the frames
+ * being decoded concurrently, which is not supported by MpegEncContext.
+ *
+ * @author gid15
+ *
+ */
 public class H264Decoder implements IVideoCodec {
 	private static Logger log = Logger.getLogger("h264");
 	private MpegEncContext context;
@@ -0,0 +1,204 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.media.codec.h264;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import jpcsp.settings.Settings;
+
+/**
+ * Color conversion of the decoded H264 images, as a separate stage
+ * of the video decoding pipeline.
+ *
+ * The conversion of one image is split into bands of rows converted
+ * in parallel, and can be run asynchronously (submitYUV2ABGR) so that
+ * the decoder can already decode the next image while the previous one
+ * is being converted.
+ * Only the color conversion is parallel: the H264 decoding itself
+ * is still single-threaded, one frame after the other (see H264Decoder).
+ *
+ * @author gid15
+ *
+ */
+public class H264ImageConverter {
+	private static Logger log = Logger.getLogger("h264");
+	// Do not split the images into smaller bands
+	private static final int minRowsPerBand = 32;
+	private static int threads = -1;
+	// Converting the bands of rows
+	private static ExecutorService bandExecutor;
+	// Converting the complete images asynchronously.
+	// This has to be a different executor than the bandExecutor
+	// as its tasks are waiting for the completion of the band tasks.
+	private static ExecutorService imageExecutor;
+
+	private static class ConverterThreadFactory implements ThreadFactory {
+		private final String name;
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		public ConverterThreadFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, String.format("%s #%d", name, threadNumber.incrementAndGet()));
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
+
+	private static class ConvertBand implements Runnable {
+		private final int width;
+		private final int startY;
+		private final int endY;
+		private final int luma[];
+		private final int cb[];
+		private final int cr[];
+		private final int output[];
+		private final boolean argb;
+
+		public ConvertBand(int width, int startY, int endY, int luma[], int cb[], int cr[], int output[], boolean argb) {
+			this.width = width;
+			this.startY = startY;
+			this.endY = endY;
+			this.luma = luma;
+			this.cb = cb;
+			this.cr = cr;
+			this.output = output;
+			this.argb = argb;
+		}
+
+		@Override
+		public void run() {
+			if (argb) {
+				H264Utils.YUV2ARGB(width, startY, endY, luma, cb, cr, output);
+			} else {
+				H264Utils.YUV2ABGR(width, startY, endY, luma, cb, cr, output);
+			}
+		}
+	}
+
+	private static synchronized int getThreads() {
+		if (threads < 0) {
+			threads = Settings.getInstance().readInt("emu.video.converterThreads", 0);
+			if (threads <= 0) {
+				// One thread per processor, at most 4
+				threads = Math.min(Runtime.getRuntime().availableProcessors(), 4);
+			}
+			if (threads > 1) {
+				bandExecutor = Executors.newFixedThreadPool(threads - 1, new ConverterThreadFactory("Video Converter Band"));
+				imageExecutor = Executors.newSingleThreadExecutor(new ConverterThreadFactory("Video Converter"));
+			}
+		}
+
+		return threads;
+	}
+
+	private static void convert(int width, int height, int luma[], int cb[], int cr[], int output[], boolean argb) {
+		int bands = Math.min(getThreads(), height / minRowsPerBand);
+		if (bands <= 1) {
+			new ConvertBand(width, 0, height, luma, cb, cr, output, argb).run();
+			return;
+		}
+
+		// Each band is starting on an even row, i.e. on a new chroma row
+		int rowsPerBand = ((height + bands - 1) / bands + 1) & ~1;
+		Future<?> futures[] = new Future<?>[bands];
+		for (int i = 1; i < bands; i++) {
+			int startY = i * rowsPerBand;
+			int endY = Math.min(startY + rowsPerBand, height);
+			if (startY < endY) {
+				futures[i] = bandExecutor.submit(new ConvertBand(width, startY, endY, luma, cb, cr, output, argb));
+			}
+		}
+
+		// The first band is converted by the current thread
+		new ConvertBand(width, 0, Math.min(rowsPerBand, height), luma, cb, cr, output, argb).run();
+
+		for (int i = 1; i < bands; i++) {
+			waitFor(futures[i]);
+		}
+	}
+
+	/**
+	 * Convert a YUV image to ABGR, using multiple threads.
+	 */
+	public static void YUV2ABGR(int width, int height, int luma[], int cb[], int cr[], int abgr[]) {
+		convert(width, height, luma, cb, cr, abgr, false);
+	}
+
+	/**
+	 * Convert a YUV image to ARGB, using multiple threads.
+	 */
+	public static void YUV2ARGB(int width, int height, int luma[], int cb[], int cr[], int argb[]) {
+		convert(width, height, luma, cb, cr, argb, true);
+	}
+
+	/**
+	 * Convert asynchronously a YUV image to ABGR.
+	 * The luma, cb and cr arrays must not be modified and
+	 * the abgr array must not be read before the conversion is completed.
+	 *
+	 * @return the conversion to be waited for using waitFor(),
+	 *         or null if the conversion has been done synchronously.
+	 */
+	public static Future<?> submitYUV2ABGR(final int width, final int height, final int luma[], final int cb[], final int cr[], final int abgr[]) {
+		if (getThreads() <= 1) {
+			YUV2ABGR(width, height, luma, cb, cr, abgr);
+			return null;
+		}
+
+		return imageExecutor.submit(new Runnable() {
+			@Override
+			public void run() {
+				YUV2ABGR(width, height, luma, cb, cr, abgr);
+			}
+		});
+	}
+
+	/**
+	 * Wait for the completion of a conversion.
+	 *
+	 * @param future  the conversion returned by submitYUV2ABGR(), or null
+	 */
+	public static void waitFor(Future<?> future) {
+		if (future == null) {
+			return;
+		}
+
+		while (true) {
+			try {
+				future.get();
+				break;
+			} catch (InterruptedException e) {
+				// Ignore exception and retry
+			} catch (ExecutionException e) {
+				log.error("H264ImageConverter", e.getCause());
+				break;
+			}
+		}
+	}
+}
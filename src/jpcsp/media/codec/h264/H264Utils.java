@@ -23,6 +23,9 @@ public class H264Utils {
 	private static final int redMap[][] = new int[256][256];
 	private static final int blueMap[][] = new int[256][256];
 	private static final int lumaYuvjToYuvTable[] = new int[256];
+	// Use the arithmetic conversion instead of the conversion based on lookup tables
+	private static final boolean useVectorizableConversion = true;
+	private static int alphaMask = 0xFF << 24;
 
 	static {
 		initClamp();
@@ -94,11 +97,20 @@ public class H264Utils {
 	}
 
 	public static void YUV2ARGB(int width, int height, int luma[], int cb[], int cr[], int argb[]) {
+		YUV2ARGB(width, 0, height, luma, cb, cr, argb);
+	}
+
+	/**
+	 * Convert the rows [startY..endY[ of a YUV image to ARGB.
+	 * Different row ranges of the same image can be converted in parallel.
+	 */
+	public static void YUV2ARGB(int width, int startY, int endY, int luma[], int cb[], int cr[], int argb[]) {
 		// Convert YUV to ABGR
-		YUV2ABGR(width, height, luma, cb, cr, argb);
+		YUV2ABGR(width, startY, endY, luma, cb, cr, argb);
 
 		// Convert ABGR to ARGB (i.e. switch blue and red color components)
-		for (int i = 0; i < argb.length; i++) {
+		int end = endY * width;
+		for (int i = startY * width; i < end; i++) {
 			int color = argb[i];
 			color = (color & 0xFF00FF00) | ((color & 0x00FF0000) >> 16) | ((color & 0x000000FF) << 16);
 			argb[i] = color;
@@ -106,10 +118,102 @@ public class H264Utils {
 	}
 
 	public static void YUV2ABGR(int width, int height, int luma[], int cb[], int cr[], int abgr[]) {
+		YUV2ABGR(width, 0, height, luma, cb, cr, abgr);
+	}
+
+	/**
+	 * Convert the rows [startY..endY[ of a YUV image to ABGR.
+	 * Different row ranges of the same image can be converted in parallel.
+	 */
+	public static void YUV2ABGR(int width, int startY, int endY, int luma[], int cb[], int cr[], int abgr[]) {
+		if (useVectorizableConversion) {
+			YUV2ABGRVectorizable(width, startY, endY, luma, cb, cr, abgr);
+		} else {
+			YUV2ABGRTable(width, startY, endY, luma, cb, cr, abgr);
+		}
+	}
+
+	/**
+	 * Clamp a value to [0..255] without any branch,
+	 * so that the loops using it can be vectorized by the JIT.
+	 */
+	private static int clampPixel(int value) {
+		value &= ~(value >> 31);
+		return (value | ((255 - value) >> 31)) & 0xFF;
+	}
+
+	/**
+	 * Convert one row, all the arrays being accessed from index 0.
+	 */
+	private static void convertRow(int width, int lumaRow[], int redRow[], int greenRow[], int blueRow[], int alpha, int abgrRow[]) {
+		for (int x = 0; x < width; x++) {
+			int c = 298 * ((lumaRow[x] & 0xFF) - 16);
+			int red = clampPixel((c + redRow[x]) >> 8);
+			int green = clampPixel((c + greenRow[x]) >> 8);
+			abgrRow[x] = alpha | (green << 8) | red;
+		}
+		for (int x = 0; x < width; x++) {
+			int c = 298 * ((lumaRow[x] & 0xFF) - 16);
+			abgrRow[x] |= clampPixel((c + blueRow[x]) >> 8) << 16;
+		}
+	}
+
+	/**
+	 * Same as YUV2ABGRTable, but using arithmetic instead of lookup tables.
+	 *
+	 * The chroma components of each row are first expanded to one value per pixel,
+	 * so that the main loops only perform straight-line arithmetic on
+	 * consecutive array elements: these loops can be vectorized (SIMD) by the JIT.
+	 * The blue component is computed in a second loop as the JIT
+	 * does not vectorize a loop body computing all the 3 components.
+	 * The luma and abgr rows are copied from/to scratch rows as the JIT
+	 * does not vectorize loops accessing arrays at different offsets.
+	 * The result is identical to the conversion using lookup tables.
+	 */
+	public static void YUV2ABGRVectorizable(int width, int startY, int endY, int luma[], int cb[], int cr[], int abgr[]) {
+		final int width2 = width >> 1;
+		final int alpha = alphaMask;
+		final int redRow[] = new int[width];
+		final int greenRow[] = new int[width];
+		final int blueRow[] = new int[width];
+		final int lumaRow[] = new int[width];
+		final int abgrRow[] = new int[width];
+
+		int offset = startY * width;
+		for (int y = startY; y < endY; y++, offset += width) {
+			// The chroma components are shared by 2 rows
+			if (y == startY || (y & 1) == 0) {
+				int offset2 = (y >> 1) * width2;
+				for (int x2 = 0, x = 0; x2 < width2; x2++, x += 2) {
+					int d = (cb[offset2 + x2] & 0xFF) - 128;
+					int e = (cr[offset2 + x2] & 0xFF) - 128;
+					int red = 409 * e + 128;
+					int green = 128 - 100 * d - 208 * e;
+					int blue = 516 * d + 128;
+					redRow[x] = red;
+					redRow[x + 1] = red;
+					greenRow[x] = green;
+					greenRow[x + 1] = green;
+					blueRow[x] = blue;
+					blueRow[x + 1] = blue;
+				}
+			}
+
+			System.arraycopy(luma, offset, lumaRow, 0, width);
+			convertRow(width, lumaRow, redRow, greenRow, blueRow, alpha, abgrRow);
+			System.arraycopy(abgrRow, 0, abgr, offset, width);
+		}
+	}
+
+	/**
+	 * Convert the rows [startY..endY[ of a YUV image to ABGR,
+	 * using pre-computed lookup tables.
+	 */
+	public static void YUV2ABGRTable(int width, int startY, int endY, int luma[], int cb[], int cr[], int abgr[]) {
 		final int width2 = width >> 1;
 
-		int offset = 0;
-		for (int y = 0; y < height; y++) {
+		int offset = startY * width;
+		for (int y = startY; y < endY; y++) {
 			int offset2 = (y >> 1) * width2;
 			for (int x = 0; x < width; x++, offset++) {
 				int c = luma[offset] & 0xFF;
@@ -140,6 +244,7 @@ public class H264Utils {
 
 	public static void setAlpha(int alpha) {
 		initRedMap(alpha & 0xFF);
+		alphaMask = (alpha & 0xFF) << 24;
 	}
 
 	public static void YUVJ2YUV(int lumaYuvj[], int lumaYuv[], int size) {
@@ -39,6 +39,7 @@ import java.util.Arrays;
 
 import org.apache.log4j.Logger;
 
+import jpcsp.Memory;
 import jpcsp.media.codec.ICodec;
 import jpcsp.media.codec.mp3.Mp3Data.HuffTable;
 import jpcsp.media.codec.util.BitBuffer;
@@ -1182,7 +1183,12 @@ public class Mp3Decoder implements ICodec {
 
 	@Override
 	public int decode(int inputAddr, int inputLength, int outputAddr) {
-		br = new BitReader(inputAddr, inputLength);
+		return decode(Memory.getInstance(), inputAddr, inputLength, outputAddr);
+	}
+
+	@Override
+	public int decode(Memory mem, int inputAddr, int inputLength, int outputAddr) {
+		br = new BitReader(mem, inputAddr, inputLength);
 		ctx.br = br;
 
 		int skippedBytes = 0;
@@ -1213,7 +1219,7 @@ public class Mp3Decoder implements ICodec {
 			return ret;
 		}
 
-		CodecUtils.writeOutput(ctx.samples, outputAddr, ctx.header.maxSamples, ctx.header.nbChannels, ctx.outputChannels);
+		CodecUtils.writeOutput(mem, ctx.samples, outputAddr, ctx.header.maxSamples, ctx.header.nbChannels, ctx.outputChannels);
 
 		return ctx.header.frameSize + skippedBytes;
 	}
@@ -29,12 +29,29 @@ public class BitReader implements IBitReader {
 	private int direction;
 
 	public BitReader(int addr, int size) {
+		reset(addr, size);
+	}
+
+	public BitReader(Memory mem, int addr, int size) {
+		reset(mem, addr, size);
+	}
+
+	/**
+	 * Restart reading from a new memory area,
+	 * allowing the reuse of the same BitReader for each decoded frame.
+	 */
+	public void reset(int addr, int size) {
+		reset(Memory.getInstance(), addr, size);
+	}
+
+	public void reset(Memory mem, int addr, int size) {
+		this.mem = mem;
 		this.addr = addr;
 		this.size = size;
 		initialAddr = addr;
 		initialSize = size;
-		mem = Memory.getInstance();
 		bits = 0;
+		value = 0;
 		direction = 1;
 	}
 
@@ -18,6 +18,7 @@ package jpcsp.media.codec.util;
 
 import static java.lang.Math.max;
 import static java.lang.Math.min;
+import jpcsp.Memory;
 import jpcsp.memory.IMemoryWriter;
 import jpcsp.memory.MemoryWriter;
 
@@ -44,7 +45,11 @@ public class CodecUtils {
 	}
 
 	public static void writeOutput(float[][] samples, int outputAddr, int numberOfSamples, int decodedChannels, int outputChannels) {
-		IMemoryWriter writer = MemoryWriter.getMemoryWriter(outputAddr, numberOfSamples * 2 * outputChannels, 2);
+		writeOutput(Memory.getInstance(), samples, outputAddr, numberOfSamples, decodedChannels, outputChannels);
+	}
+
+	public static void writeOutput(Memory mem, float[][] samples, int outputAddr, int numberOfSamples, int decodedChannels, int outputChannels) {
+		IMemoryWriter writer = MemoryWriter.getMemoryWriter(mem, outputAddr, numberOfSamples * 2 * outputChannels, 2);
 		switch (outputChannels) {
 			case 1:
 				for (int i = 0; i < numberOfSamples; i++) {
@@ -26,6 +26,7 @@ import jpcsp.Emulator;
 import jpcsp.Memory;
 import jpcsp.MemoryMap;
 import jpcsp.HLE.Modules;
+import jpcsp.settings.Settings;
 
 public class FastMemory extends Memory {
 	//
@@ -76,6 +77,9 @@ public class FastMemory extends Memory {
 			return false;
 		}
 
+		// The memory writes can only be tracked when all the writes are going through the FastMemory
+		MemoryWriteTracker.setEnabled(Settings.getInstance().readBool("emu.memory.writeTracking"));
+
 		return super.allocate();
 	}
 
@@ -163,6 +167,7 @@ public class FastMemory extends Memory {
 		}
 
 		all[address >> 2] = memData;
+		MemoryWriteTracker.write(address);
         Modules.sceDisplayModule.write8(address);
 	}
 
@@ -179,6 +184,7 @@ public class FastMemory extends Memory {
 		}
 
 		all[address >> 2] = memData;
+		MemoryWriteTracker.write(address);
         Modules.sceDisplayModule.write16(address);
 	}
 
@@ -193,6 +199,7 @@ public class FastMemory extends Memory {
 		}
 
 		all[address >> 2] = data;
+		MemoryWriteTracker.write(address);
 		Modules.sceDisplayModule.write32(address);
 	}
 
@@ -208,6 +215,7 @@ public class FastMemory extends Memory {
 
 		all[address >> 2] = (int) data;
 		all[(address >> 2) + 1] = (int) (data >> 32);
+		MemoryWriteTracker.write(address, 8);
 	}
 
 	@Override
@@ -235,6 +243,7 @@ public class FastMemory extends Memory {
 		address = normalizeAddress(address);
 
         Modules.sceDisplayModule.write(address);
+        MemoryWriteTracker.write(address, length);
 
         for (; !isIntAligned(address) && length > 0; address++, length--) {
 			write8(address, data);
@@ -327,6 +336,7 @@ public class FastMemory extends Memory {
 		source = normalizeAddress(source);
 
         Modules.sceDisplayModule.write(destination);
+        MemoryWriteTracker.write(destination, length);
 
         if (isIntAligned(source) && isIntAligned(destination) && isIntAligned(length)) {
 			// Source, destination and length are "int"-aligned
@@ -31,6 +31,10 @@ import static jpcsp.graphics.GeCommands.CMODE_FORMAT_16BIT_ABGR5551;
 import static jpcsp.graphics.GeCommands.CMODE_FORMAT_16BIT_ABGR4444;
 import static jpcsp.graphics.GeCommands.CMODE_FORMAT_32BIT_ABGR8888;
 
+import java.nio.IntBuffer;
+
+import jpcsp.Memory;
+import jpcsp.Allegrex.compiler.RuntimeContext;
 import jpcsp.graphics.GeCommands;
 import jpcsp.graphics.RE.IRenderingEngine;
 
@@ -233,6 +237,120 @@ public class ImageReader {
 		return imageReader;
 	}
 
+	/**
+	 * Read a complete image from memory into a buffer.
+	 * The parameters and the decoded pixels are the same as for
+	 * getImageReader(), but the image is decoded row by row by a compiled
+	 * image reader (see ImageReaderCompiler) when the image format allows it.
+	 * The other images are read through getImageReader().
+	 *
+	 * height * Math.min(width, bufferWidth) pixels in format 8888 ABGR
+	 * are stored into the output buffer.
+	 *
+	 * @param output        the buffer receiving the decoded pixels
+	 * @see #getImageReader(int, int, int, int, int, boolean, int, int, int, int, int, int, int[], short[])
+	 */
+	public static void readImage(IntBuffer output, int address, int width, int height, int bufferWidth, int pixelFormat, boolean swizzle, int clutAddr, int clutMode, int clutNumBlocks, int clutStart, int clutShift, int clutMask, int[] clut32, short[] clut16) {
+		if (isCompiledImageReaderSupported(address, width, height, bufferWidth, pixelFormat, swizzle)) {
+			int[] clut = null;
+			boolean simpleClut = false;
+			if (IRenderingEngine.isTextureTypeIndexed[pixelFormat]) {
+				int indexBits = getBytesPerPixel(pixelFormat) == 0 ? 4 : getBytesPerPixel(pixelFormat) << 3;
+				// The index is not masked for a simple clut,
+				// this is only possible for 4-bit and 8-bit indexes
+				simpleClut = indexBits <= 8 && clutStart == 0 && clutShift == 0 && isSimpleClutMask(indexBits, clutMask);
+				clut = getClut(clutAddr, clutMode, clutNumBlocks, clutStart, clutShift, simpleClut ? (1 << indexBits) - 1 : clutMask, clut32, clut16);
+			}
+
+			ImageReaderTemplate compiledImageReader = ImageReaderCompiler.getInstance().getCompiledImageReader(pixelFormat, swizzle, simpleClut, bufferWidth);
+			if (compiledImageReader != null) {
+				int[] memoryInt = RuntimeContext.hasMemoryInt() ? RuntimeContext.getMemoryInt() : null;
+				compiledImageReader.readImage(address, width, height, clut, clutStart, clutShift, clutMask, memoryInt, output);
+				return;
+			}
+		}
+
+		IMemoryReader imageReader = getImageReader(address, width, height, bufferWidth, pixelFormat, swizzle, clutAddr, clutMode, clutNumBlocks, clutStart, clutShift, clutMask, clut32, clut16);
+		int length = height * Math.min(width, bufferWidth);
+		for (int i = 0; i < length; i++) {
+			output.put(imageReader.readNext());
+		}
+	}
+
+	private static boolean isCompiledImageReaderSupported(int address, int width, int height, int bufferWidth, int pixelFormat, boolean swizzle) {
+		// The compressed formats are not supported
+		if (pixelFormat < TPSM_PIXEL_STORAGE_MODE_16BIT_BGR5650 || pixelFormat > TPSM_PIXEL_STORAGE_MODE_32BIT_INDEXED) {
+			return false;
+		}
+		if (width <= 0 || height <= 0 || bufferWidth <= 0) {
+			return false;
+		}
+		if ((address & 3) != 0 || !Memory.isAddressGood(address)) {
+			return false;
+		}
+
+		// Each row has to start on a 32-bit boundary,
+		// or on a 16-byte boundary for a swizzled image
+		int bytesPerPixel = getBytesPerPixel(pixelFormat);
+		if (bytesPerPixel == 0 && (bufferWidth & 1) != 0) {
+			return false;
+		}
+		int rowWidth = bytesPerPixel == 0 ? bufferWidth >> 1 : bufferWidth * bytesPerPixel;
+		if ((rowWidth & (swizzle ? 15 : 3)) != 0) {
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Build a clut with all the entries that can be indexed,
+	 * already converted to the format 8888 ABGR.
+	 */
+	private static int[] getClut(int clutAddr, int clutMode, int clutNumBlocks, int clutStart, int clutShift, int clutMask, int[] clut32, short[] clut16) {
+		int maxIndex = clutMask | (clutStart << 4);
+		int[] clut = new int[maxIndex + 1];
+
+		if (clutMode == CMODE_FORMAT_32BIT_ABGR8888 && clut32 != null) {
+			System.arraycopy(clut32, 0, clut, 0, Math.min(clut.length, clut32.length));
+		} else if (clut16 != null) {
+			int length = Math.min(clut.length, clut16.length);
+			for (int i = 0; i < length; i++) {
+				clut[i] = clut16[i] & 0xFFFF;
+			}
+		} else {
+			int clutEntrySize = clutMode == CMODE_FORMAT_32BIT_ABGR8888 ? 4 : 2;
+			int clutOffset = clutStart << 4;
+			int clutNumEntries = Math.min(clut.length, clutNumBlocks * 32 / clutEntrySize);
+			if (clutOffset < clutNumEntries) {
+				IMemoryReader clutReader = MemoryReader.getMemoryReader(clutAddr + clutOffset * clutEntrySize, clutNumEntries * clutEntrySize, clutEntrySize);
+				for (int i = clutOffset; i < clutNumEntries; i++) {
+					clut[i] = clutReader.readNext();
+				}
+			}
+		}
+
+		switch (clutMode) {
+			case CMODE_FORMAT_16BIT_BGR5650:
+				for (int i = 0; i < clut.length; i++) {
+					clut[i] = color565to8888(clut[i]);
+				}
+				break;
+			case CMODE_FORMAT_16BIT_ABGR5551:
+				for (int i = 0; i < clut.length; i++) {
+					clut[i] = color5551to8888(clut[i]);
+				}
+				break;
+			case CMODE_FORMAT_16BIT_ABGR4444:
+				for (int i = 0; i < clut.length; i++) {
+					clut[i] = color4444to8888(clut[i]);
+				}
+				break;
+		}
+
+		return clut;
+	}
+
 	/**
 	 * The ImageReader classes are based on a decoder concept, receiving
 	 * a IMemoryReader as input and delivering the transformed output also
@@ -0,0 +1,104 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.memory;
+
+import java.util.HashMap;
+
+import jpcsp.Memory;
+import jpcsp.util.ClassSpecializer;
+
+import org.apache.log4j.Logger;
+
+/**
+ * @author gid15
+ *
+ * Compile the image readers: the class ImageReaderTemplate is specialized
+ * for a given pixel format, swizzle, clut indexing and buffer width.
+ * The compiled image readers are cached and shared by all the images
+ * having the same characteristics.
+ */
+public class ImageReaderCompiler {
+	private static Logger log = Memory.log;
+	private static ImageReaderCompiler instance;
+	private HashMap<Integer, ImageReaderTemplate> compiledImageReaders = new HashMap<Integer, ImageReaderTemplate>();
+
+	public static ImageReaderCompiler getInstance() {
+		if (instance == null) {
+			instance = new ImageReaderCompiler();
+		}
+
+		return instance;
+	}
+
+	private ImageReaderCompiler() {
+	}
+
+	public ImageReaderTemplate getCompiledImageReader(int pixelFormat, boolean swizzle, boolean simpleClut, int bufferWidth) {
+		int key = (bufferWidth << 8) | pixelFormat;
+		if (swizzle) {
+			key |= 0x10;
+		}
+		if (simpleClut) {
+			key |= 0x20;
+		}
+
+		ImageReaderTemplate compiledImageReader;
+		// Synchronize this block as it can be called by different threads in parallel
+		// (GUI and software renderer threads)
+		synchronized (compiledImageReaders) {
+			compiledImageReader = compiledImageReaders.get(key);
+			if (compiledImageReader == null) {
+				compiledImageReader = compileImageReader(key, pixelFormat, swizzle, simpleClut, bufferWidth);
+				if (compiledImageReader != null) {
+					compiledImageReaders.put(key, compiledImageReader);
+				}
+			}
+		}
+
+		return compiledImageReader;
+	}
+
+	@SuppressWarnings("deprecation")
+	private ImageReaderTemplate compileImageReader(int key, int pixelFormat, boolean swizzle, boolean simpleClut, int bufferWidth) {
+		if (log.isDebugEnabled()) {
+			log.debug(String.format("Compiling ImageReader for pixelFormat=%d, swizzle=%b, simpleClut=%b, bufferWidth=%d", pixelFormat, swizzle, simpleClut, bufferWidth));
+		}
+
+		HashMap<String, Object> variables = new HashMap<String, Object>();
+		// All these variables have to be defined as static members in the class ImageReaderTemplate.
+		variables.put("pixelFormat", Integer.valueOf(pixelFormat));
+		variables.put("swizzle", Boolean.valueOf(swizzle));
+		variables.put("simpleClut", Boolean.valueOf(simpleClut));
+		variables.put("bufferWidth", Integer.valueOf(bufferWidth));
+
+		String specializedClassName = String.format("ImageReader%08X", key);
+		ClassSpecializer cs = new ClassSpecializer();
+		Class<?> specializedClass = cs.specialize(specializedClassName, ImageReaderTemplate.class, variables);
+		ImageReaderTemplate compiledImageReader = null;
+		if (specializedClass != null) {
+			try {
+				compiledImageReader = (ImageReaderTemplate) specializedClass.newInstance();
+			} catch (InstantiationException e) {
+				log.error("Error while instanciating compiled imageReader", e);
+			} catch (IllegalAccessException e) {
+				log.error("Error while instanciating compiled imageReader", e);
+			}
+		}
+
+		return compiledImageReader;
+	}
+}
@@ -0,0 +1,235 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.memory;
+
+import static jpcsp.graphics.GeCommands.TPSM_PIXEL_STORAGE_MODE_16BIT_ABGR4444;
+import static jpcsp.graphics.GeCommands.TPSM_PIXEL_STORAGE_MODE_16BIT_ABGR5551;
+import static jpcsp.graphics.GeCommands.TPSM_PIXEL_STORAGE_MODE_16BIT_BGR5650;
+import static jpcsp.graphics.GeCommands.TPSM_PIXEL_STORAGE_MODE_16BIT_INDEXED;
+import static jpcsp.graphics.GeCommands.TPSM_PIXEL_STORAGE_MODE_32BIT_ABGR8888;
+import static jpcsp.graphics.GeCommands.TPSM_PIXEL_STORAGE_MODE_32BIT_INDEXED;
+import static jpcsp.graphics.GeCommands.TPSM_PIXEL_STORAGE_MODE_4BIT_INDEXED;
+import static jpcsp.graphics.GeCommands.TPSM_PIXEL_STORAGE_MODE_8BIT_INDEXED;
+
+import java.nio.IntBuffer;
+
+import jpcsp.Memory;
+
+/**
+ * @author gid15
+ *
+ * Template of a compiled image reader.
+ * This class is specialized by the ImageReaderCompiler for a given
+ * pixel format, swizzle, clut indexing and buffer width: the specialized class
+ * is decoding the image row by row, without any per-pixel virtual call.
+ *
+ * Only the non-compressed pixel formats are supported.
+ * The rows have to start on a 32-bit boundary and, for a swizzled image,
+ * on a 16-byte boundary.
+ */
+public class ImageReaderTemplate {
+	public static int pixelFormat;
+	public static boolean swizzle;
+	public static boolean simpleClut;
+	public static int bufferWidth;
+
+	/**
+	 * Read an image from memory, as described for ImageReader.getImageReader().
+	 * height * Math.min(width, bufferWidth) pixels in format 8888 ABGR
+	 * are stored into the output buffer.
+	 *
+	 * @param address    the address of the top left pixel of the image,
+	 *                   32-bit aligned
+	 * @param width      the width (in pixels) of the image
+	 * @param height     the height (in pixels) of the image
+	 * @param clut       the clut entries already converted to 8888 ABGR,
+	 *                   or null when the pixel format is not indexed
+	 * @param clutStart  the clut start index
+	 * @param clutShift  the clut index shift
+	 * @param clutMask   the clut index mask
+	 * @param memoryInt  the memory as returned by RuntimeContext.getMemoryInt(),
+	 *                   or null
+	 * @param output     the buffer receiving the decoded pixels
+	 */
+	public void readImage(int address, int width, int height, int[] clut, int clutStart, int clutShift, int clutMask, int[] memoryInt, IntBuffer output) {
+		final int rowWords = getRowWidth() >> 2;
+		final int minWidth = Math.min(width, bufferWidth);
+		final int[] row = new int[minWidth];
+
+		if (swizzle) {
+			// One swizzled block is 16 bytes wide and 8 rows high
+			final int[] swizzled = new int[rowWords * 8];
+			final int[] words = new int[rowWords * 8];
+			for (int y = 0; y < height; y++) {
+				if ((y & 7) == 0) {
+					int length = swizzled.length;
+					int rows = height - y;
+					if (rows < 8) {
+						// Last rows when the height is not a multiple of 8:
+						// do not read past the last row of the last block,
+						// which could be past the end of the memory.
+						length -= (8 - rows) << 2;
+					}
+					readWords(memoryInt, address + y * (rowWords << 2), swizzled, length);
+					unswizzle(swizzled, words, rowWords);
+				}
+				decodeRow(words, (y & 7) * rowWords, row, minWidth, clut, clutStart, clutShift, clutMask);
+				output.put(row, 0, minWidth);
+			}
+		} else {
+			final int[] words = new int[getWordsForPixels(minWidth)];
+			for (int y = 0; y < height; y++) {
+				readWords(memoryInt, address + y * (rowWords << 2), words, words.length);
+				decodeRow(words, 0, row, minWidth, clut, clutStart, clutShift, clutMask);
+				output.put(row, 0, minWidth);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of bytes for one image row in memory
+	 */
+	private static int getRowWidth() {
+		switch (pixelFormat) {
+			case TPSM_PIXEL_STORAGE_MODE_4BIT_INDEXED:
+				return bufferWidth >> 1;
+			case TPSM_PIXEL_STORAGE_MODE_8BIT_INDEXED:
+				return bufferWidth;
+			case TPSM_PIXEL_STORAGE_MODE_16BIT_BGR5650:
+			case TPSM_PIXEL_STORAGE_MODE_16BIT_ABGR5551:
+			case TPSM_PIXEL_STORAGE_MODE_16BIT_ABGR4444:
+			case TPSM_PIXEL_STORAGE_MODE_16BIT_INDEXED:
+				return bufferWidth << 1;
+		}
+
+		return bufferWidth << 2;
+	}
+
+	/**
+	 * @return the number of 32-bit values required to store the given number of pixels
+	 */
+	private static int getWordsForPixels(int pixels) {
+		switch (pixelFormat) {
+			case TPSM_PIXEL_STORAGE_MODE_4BIT_INDEXED:
+				return (pixels + 7) >> 3;
+			case TPSM_PIXEL_STORAGE_MODE_8BIT_INDEXED:
+				return (pixels + 3) >> 2;
+			case TPSM_PIXEL_STORAGE_MODE_16BIT_BGR5650:
+			case TPSM_PIXEL_STORAGE_MODE_16BIT_ABGR5551:
+			case TPSM_PIXEL_STORAGE_MODE_16BIT_ABGR4444:
+			case TPSM_PIXEL_STORAGE_MODE_16BIT_INDEXED:
+				return (pixels + 1) >> 1;
+		}
+
+		return pixels;
+	}
+
+	private static void readWords(int[] memoryInt, int address, int[] words, int length) {
+		if (memoryInt != null) {
+			System.arraycopy(memoryInt, (address & Memory.addressMask) >> 2, words, 0, length);
+		} else {
+			IMemoryReader memoryReader = MemoryReader.getMemoryReader(address, length << 2, 4);
+			for (int i = 0; i < length; i++) {
+				words[i] = memoryReader.readNext();
+			}
+		}
+	}
+
+	/**
+	 * Unswizzle 8 rows: the swizzled memory is composed of blocks
+	 * of 16 bytes * 8 rows, stored one after the other.
+	 */
+	private static void unswizzle(int[] swizzled, int[] words, int rowWords) {
+		int src = 0;
+		for (int bx = 0; bx < rowWords; bx += 4) {
+			int dest = bx;
+			for (int n = 0; n < 8; n++) {
+				words[dest    ] = swizzled[src    ];
+				words[dest + 1] = swizzled[src + 1];
+				words[dest + 2] = swizzled[src + 2];
+				words[dest + 3] = swizzled[src + 3];
+				src += 4;
+				dest += rowWords;
+			}
+		}
+	}
+
+	private static void decodeRow(int[] words, int offset, int[] row, int width, int[] clut, int clutStart, int clutShift, int clutMask) {
+		switch (pixelFormat) {
+			case TPSM_PIXEL_STORAGE_MODE_32BIT_ABGR8888:
+				System.arraycopy(words, offset, row, 0, width);
+				break;
+			case TPSM_PIXEL_STORAGE_MODE_16BIT_BGR5650:
+			case TPSM_PIXEL_STORAGE_MODE_16BIT_ABGR5551:
+			case TPSM_PIXEL_STORAGE_MODE_16BIT_ABGR4444:
+			case TPSM_PIXEL_STORAGE_MODE_16BIT_INDEXED:
+				// 2 pixels per 32-bit value
+				for (int x = 0, i = offset; x < width; x += 2, i++) {
+					int value = words[i];
+					row[x] = decodePixel(value & 0xFFFF, clut, clutStart, clutShift, clutMask);
+					if (x + 1 < width) {
+						row[x + 1] = decodePixel(value >>> 16, clut, clutStart, clutShift, clutMask);
+					}
+				}
+				break;
+			case TPSM_PIXEL_STORAGE_MODE_8BIT_INDEXED:
+				// 4 pixels per 32-bit value
+				for (int x = 0, i = offset; x < width; i++) {
+					int value = words[i];
+					for (int n = 0; n < 4 && x < width; n++, x++) {
+						row[x] = decodePixel(value & 0xFF, clut, clutStart, clutShift, clutMask);
+						value >>= 8;
+					}
+				}
+				break;
+			case TPSM_PIXEL_STORAGE_MODE_4BIT_INDEXED:
+				// 8 pixels per 32-bit value
+				for (int x = 0, i = offset; x < width; i++) {
+					int value = words[i];
+					for (int n = 0; n < 8 && x < width; n++, x++) {
+						row[x] = decodePixel(value & 0xF, clut, clutStart, clutShift, clutMask);
+						value >>= 4;
+					}
+				}
+				break;
+			case TPSM_PIXEL_STORAGE_MODE_32BIT_INDEXED:
+				for (int x = 0; x < width; x++) {
+					row[x] = decodePixel(words[offset + x], clut, clutStart, clutShift, clutMask);
+				}
+				break;
+		}
+	}
+
+	/**
+	 * Convert one pixel value from memory to the format 8888 ABGR.
+	 */
+	private static int decodePixel(int value, int[] clut, int clutStart, int clutShift, int clutMask) {
+		switch (pixelFormat) {
+			case TPSM_PIXEL_STORAGE_MODE_16BIT_BGR5650:
+				return ImageReader.color565to8888(value);
+			case TPSM_PIXEL_STORAGE_MODE_16BIT_ABGR5551:
+				return ImageReader.color5551to8888(value);
+			case TPSM_PIXEL_STORAGE_MODE_16BIT_ABGR4444:
+				return ImageReader.color4444to8888(value);
+		}
+
+		if (simpleClut) {
+			return clut[value];
+		}
+		return clut[((value >> clutShift) & clutMask) | (clutStart << 4)];
+	}
+}
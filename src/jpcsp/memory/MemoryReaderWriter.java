@@ -115,6 +115,7 @@ public class MemoryReaderWriter {
 
 		@Override
 		public void writeNext(int value) {
+			MemoryWriteTracker.writeIndex(offset);
 			buffer[offset++] = value;
 		}
 
@@ -159,6 +160,7 @@ public class MemoryReaderWriter {
 				value = n & 0xFFFF;
 				index = 1;
 			} else {
+				MemoryWriteTracker.writeIndex(offset);
 				buffer[offset++] = (n << 16) | value;
 				index = 0;
 			}
@@ -180,6 +182,7 @@ public class MemoryReaderWriter {
 		@Override
 		public void flush() {
 			if (index != 0) {
+				MemoryWriteTracker.writeIndex(offset);
 				buffer[offset] = (buffer[offset] & 0xFFFF0000) | value;
 			}
 		}
@@ -0,0 +1,196 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.memory;
+
+import jpcsp.Memory;
+import jpcsp.MemoryMap;
+
+/**
+ * Tracking of the memory pages written since a given time,
+ * used by the caches (textures, vertices) to avoid hashing again
+ * memory areas that have not been written.
+ *
+ * The memory is divided into pages of pageSize bytes.
+ * Each write into a page marks the page as dirty.
+ * At the start of each display list, the dirty pages are collected:
+ * they are marked with a new stamp and are no longer dirty.
+ * A memory area is unchanged since a given stamp when none of its pages
+ * is dirty and none of its pages has been collected with a later stamp.
+ *
+ * The tracking is only possible with the FastMemory: all the writes
+ * into its "all" array have to mark the written pages
+ * (FastMemory, MemoryWriter, MemoryReaderWriter, compiled code, ...).
+ * When the tracking is disabled, all the memory areas are reported as changed.
+ *
+ * @author gid15
+ *
+ */
+public class MemoryWriteTracker {
+	public static final int pageShift = 12;
+	public static final int pageSize = 1 << pageShift;
+	// Number of pages for the memory int index (index = address >> 2)
+	private static final int indexPageShift = pageShift - 2;
+	private static boolean[] dirtyPages;
+	private static int[] pageStamps;
+	private static int stamp;
+
+	/**
+	 * Enable or disable the tracking.
+	 * The tracking has to be enabled before any code is compiled
+	 * as the compiler is generating the marking of the written pages
+	 * only when the tracking is enabled.
+	 *
+	 * @param enabled  true to enable the tracking
+	 */
+	public static void setEnabled(boolean enabled) {
+		if (enabled) {
+			int numberPages = (MemoryMap.END_RAM + 1) >>> pageShift;
+			pageStamps = new int[numberPages];
+			stamp = 1;
+			dirtyPages = new boolean[numberPages];
+		} else {
+			dirtyPages = null;
+			pageStamps = null;
+		}
+	}
+
+	public static boolean isEnabled() {
+		return dirtyPages != null;
+	}
+
+	/**
+	 * Mark a page as written.
+	 *
+	 * @param address  the address written, already masked with Memory.addressMask
+	 */
+	public static void write(int address) {
+		boolean[] dirtyPages = MemoryWriteTracker.dirtyPages;
+		if (dirtyPages != null) {
+			dirtyPages[address >>> pageShift] = true;
+		}
+	}
+
+	/**
+	 * Mark a page as written.
+	 *
+	 * @param index  the index written in the FastMemory "all" array
+	 */
+	public static void writeIndex(int index) {
+		boolean[] dirtyPages = MemoryWriteTracker.dirtyPages;
+		if (dirtyPages != null) {
+			dirtyPages[index >>> indexPageShift] = true;
+		}
+	}
+
+	/**
+	 * Mark a memory area as written.
+	 *
+	 * @param index  the first index written in the FastMemory "all" array
+	 * @param count  the number of ints written
+	 */
+	public static void writeIndex(int index, int count) {
+		boolean[] dirtyPages = MemoryWriteTracker.dirtyPages;
+		if (dirtyPages != null && count > 0) {
+			int lastPage = Math.min((index + count - 1) >>> indexPageShift, dirtyPages.length - 1);
+			for (int page = index >>> indexPageShift; page <= lastPage; page++) {
+				dirtyPages[page] = true;
+			}
+		}
+	}
+
+	/**
+	 * Mark a memory area as written.
+	 *
+	 * @param address  the first address written
+	 * @param length   the number of bytes written
+	 */
+	public static void write(int address, int length) {
+		boolean[] dirtyPages = MemoryWriteTracker.dirtyPages;
+		if (dirtyPages != null && length > 0) {
+			address &= Memory.addressMask;
+			int lastPage = Math.min((address + length - 1) >>> pageShift, dirtyPages.length - 1);
+			for (int page = address >>> pageShift; page <= lastPage; page++) {
+				dirtyPages[page] = true;
+			}
+		}
+	}
+
+	/**
+	 * Collect the pages written since the last call and assign them a new stamp.
+	 * To be called at the start of each display list.
+	 */
+	public static void collect() {
+		boolean[] dirtyPages = MemoryWriteTracker.dirtyPages;
+		if (dirtyPages == null) {
+			return;
+		}
+
+		stamp++;
+		for (int page = 0; page < dirtyPages.length; page++) {
+			if (dirtyPages[page]) {
+				// Clear the dirty flag before stamping the page:
+				// a concurrent write will mark again the page as dirty.
+				dirtyPages[page] = false;
+				pageStamps[page] = stamp;
+			}
+		}
+	}
+
+	/**
+	 * @return the current stamp, to be stored with the cached data.
+	 *         The cached data can be compared to this stamp in
+	 *         isUnchanged() to check if its memory has been written.
+	 */
+	public static int getStamp() {
+		return stamp;
+	}
+
+	/**
+	 * Check if a memory area has been written since a given stamp.
+	 *
+	 * @param address  the first address of the memory area
+	 * @param length   the length of the memory area in bytes
+	 * @param since    the stamp returned by getStamp() when the memory
+	 *                 area was last validated
+	 * @return         true if the memory area has not been written since the stamp,
+	 *                 false if it has been written or if the tracking is disabled.
+	 */
+	public static boolean isUnchanged(int address, int length, int since) {
+		boolean[] dirtyPages = MemoryWriteTracker.dirtyPages;
+		if (dirtyPages == null || since <= 0) {
+			return false;
+		}
+		if (length <= 0) {
+			return true;
+		}
+
+		address &= Memory.addressMask;
+		int lastPage = (address + length - 1) >>> pageShift;
+		if (lastPage >= dirtyPages.length) {
+			return false;
+		}
+
+		int[] pageStamps = MemoryWriteTracker.pageStamps;
+		for (int page = address >>> pageShift; page <= lastPage; page++) {
+			if (dirtyPages[page] || pageStamps[page] > since) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
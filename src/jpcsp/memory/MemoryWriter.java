@@ -214,6 +214,7 @@ public class MemoryWriter {
 		public void writeNext(int n) {
 			n &= 0xFF;
 			if (index == 4) {
+				MemoryWriteTracker.writeIndex(offset);
 				buffer[offset++] = value;
 				value = n;
 				index = 1;
@@ -226,6 +227,7 @@ public class MemoryWriter {
 		@Override
 		public void flush() {
 			if (index > 0) {
+				MemoryWriteTracker.writeIndex(offset);
 				buffer[offset] = (buffer[offset] & ~mask[index]) | value;
 			}
 		}
@@ -268,6 +270,7 @@ public class MemoryWriter {
 				value = n & 0xFFFF;
 				index = 1;
 			} else {
+				MemoryWriteTracker.writeIndex(offset);
 				buffer[offset++] = (n << 16) | value;
 				index = 0;
 			}
@@ -276,6 +279,7 @@ public class MemoryWriter {
 		@Override
 		public void flush() {
 			if (index != 0) {
+				MemoryWriteTracker.writeIndex(offset);
 				buffer[offset] = (buffer[offset] & 0xFFFF0000) | value;
 			}
 		}
@@ -310,6 +314,7 @@ public class MemoryWriter {
 
 		@Override
 		public void writeNext(int value) {
+			MemoryWriteTracker.writeIndex(offset);
 			buffer[offset++] = value;
 		}
 
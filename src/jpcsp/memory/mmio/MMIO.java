@@ -21,18 +21,102 @@ import static jpcsp.MemoryMap.START_IO_0;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 
 import jpcsp.Memory;
 import jpcsp.MemoryMap;
 import jpcsp.hardware.Screen;
 
 public class MMIO extends Memory {
+	// The handlers are stored in a two-level page table:
+	// - the first level is indexed by the 1MB region of the address and
+	//   is null when the region has no handler,
+	// - the second level is indexed by the 4KB page inside the region and
+	//   is null when the page has no handler (plain RAM), the handler itself
+	//   when it is covering the complete page, or a PartialPageHandler
+	//   when the page is shared by several handlers or by a handler and RAM.
+	private static final int REGION_SHIFT = 20;
+	private static final int PAGES_PER_REGION = 1 << (REGION_SHIFT - MEMORY_PAGE_SHIFT);
+	private static final int PAGE_SIZE = 1 << MEMORY_PAGE_SHIFT;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
     private final Memory mem;
-    private final Map<Integer, IMMIOHandler> handlers = new HashMap<Integer, IMMIOHandler>();
+    private final IMMIOHandler[][] handlers = new IMMIOHandler[1 << (32 - REGION_SHIFT)][];
     protected static final boolean[] validMemoryPage = new boolean[Memory.validMemoryPage.length];
 
+    /**
+     * Dispatching the accesses to a page shared by several handlers,
+     * or by a handler and RAM, based on the address offset inside the page.
+     */
+    private static class PartialPageHandler implements IMMIOHandler {
+    	private final Memory mem;
+    	private final IMMIOHandler[] handlers = new IMMIOHandler[PAGE_SIZE];
+
+    	public PartialPageHandler(Memory mem, IMMIOHandler pageHandler) {
+    		this.mem = mem;
+    		Arrays.fill(handlers, pageHandler);
+    	}
+
+    	public void setHandler(int offset, int length, IMMIOHandler handler) {
+    		Arrays.fill(handlers, offset, offset + length, handler);
+    	}
+
+		@Override
+		public int read8(int address) {
+			IMMIOHandler handler = handlers[address & PAGE_MASK];
+			if (handler != null) {
+				return handler.read8(address);
+			}
+			return mem.read8(address);
+		}
+
+		@Override
+		public int read16(int address) {
+			IMMIOHandler handler = handlers[address & PAGE_MASK];
+			if (handler != null) {
+				return handler.read16(address);
+			}
+			return mem.read16(address);
+		}
+
+		@Override
+		public int read32(int address) {
+			IMMIOHandler handler = handlers[address & PAGE_MASK];
+			if (handler != null) {
+				return handler.read32(address);
+			}
+			return mem.read32(address);
+		}
+
+		@Override
+		public void write8(int address, byte value) {
+			IMMIOHandler handler = handlers[address & PAGE_MASK];
+			if (handler != null) {
+				handler.write8(address, value);
+			} else {
+				mem.write8(address, value);
+			}
+		}
+
+		@Override
+		public void write16(int address, short value) {
+			IMMIOHandler handler = handlers[address & PAGE_MASK];
+			if (handler != null) {
+				handler.write16(address, value);
+			} else {
+				mem.write16(address, value);
+			}
+		}
+
+		@Override
+		public void write32(int address, int value) {
+			IMMIOHandler handler = handlers[address & PAGE_MASK];
+			if (handler != null) {
+				handler.write32(address, value);
+			} else {
+				mem.write32(address, value);
+			}
+		}
+    }
+
     public MMIO(Memory mem) {
     	this.mem = mem;
     }
@@ -47,7 +131,7 @@ public class MMIO extends Memory {
 
     @Override
 	public void Initialise() {
-    	handlers.clear();
+    	Arrays.fill(handlers, null);
 
     	addHandlerRW(0xBC000000, 0x54); // Memory interface
     	addHandler(MMIOHandlerSystemControl.BASE_ADDRESS, MMIOHandlerSystemControl.SIZE_OF, MMIOHandlerSystemControl.getInstance());
@@ -104,17 +188,52 @@ public class MMIO extends Memory {
     }
 
     private void addHandler(int baseAddress, int length, int[] additionalOffsets, IMMIOHandler handler) {
-    	for (int i = 0; i < length; i++) {
-    		handlers.put(baseAddress + i, handler);
-    	}
+    	setHandler(baseAddress, length, handler);
 
     	if (additionalOffsets != null) {
 	    	for (int offset : additionalOffsets) {
-	    		handlers.put(baseAddress + offset, handler);
+	    		setHandler(baseAddress + offset, 1, handler);
 	    	}
     	}
     }
 
+    /**
+     * Set the handler for each byte of the address range,
+     * replacing any handler previously set in this range.
+     */
+    private void setHandler(int address, int length, IMMIOHandler handler) {
+    	while (length > 0) {
+    		int pageOffset = address & PAGE_MASK;
+    		int pageLength = Math.min(length, PAGE_SIZE - pageOffset);
+
+    		int regionIndex = address >>> REGION_SHIFT;
+    		IMMIOHandler[] region = handlers[regionIndex];
+    		if (region == null) {
+    			region = new IMMIOHandler[PAGES_PER_REGION];
+    			handlers[regionIndex] = region;
+    		}
+
+    		int pageIndex = (address >>> MEMORY_PAGE_SHIFT) & (PAGES_PER_REGION - 1);
+    		if (pageLength == PAGE_SIZE) {
+    			// The handler is covering the complete page
+    			region[pageIndex] = handler;
+    		} else {
+    			IMMIOHandler pageHandler = region[pageIndex];
+    			PartialPageHandler partialPageHandler;
+    			if (pageHandler instanceof PartialPageHandler) {
+    				partialPageHandler = (PartialPageHandler) pageHandler;
+    			} else {
+    				partialPageHandler = new PartialPageHandler(mem, pageHandler);
+    				region[pageIndex] = partialPageHandler;
+    			}
+    			partialPageHandler.setHandler(pageOffset, pageLength, handler);
+    		}
+
+    		address += pageLength;
+    		length -= pageLength;
+    	}
+    }
+
     protected void addHandlerRW(int baseAddress, int length) {
     	addHandler(baseAddress, length, new MMIOHandlerReadWrite(baseAddress, length));
     }
@@ -124,7 +243,11 @@ public class MMIO extends Memory {
     }
 
     private IMMIOHandler getHandler(int address) {
-    	return handlers.get(address);
+    	IMMIOHandler[] region = handlers[address >>> REGION_SHIFT];
+    	if (region == null) {
+    		return null;
+    	}
+    	return region[(address >>> MEMORY_PAGE_SHIFT) & (PAGES_PER_REGION - 1)];
     }
 
     public static boolean isAddressGood(int address) {
@@ -24,10 +24,12 @@ import static jpcsp.HLE.kernel.managers.IntrManager.PSP_THREAD0_INTR;
 import jpcsp.HLE.kernel.managers.SystemTimeManager;
 import jpcsp.HLE.kernel.types.IAction;
 import jpcsp.scheduler.Scheduler;
+import jpcsp.scheduler.SchedulerAction;
 
 public class MMIOHandlerSystemTime extends MMIOHandlerBase {
 	private long alarm;
 	private TriggerAlarmInterruptAction triggerAlarmInterruptAction;
+	private SchedulerAction triggerAlarmSchedulerAction;
 
 	private class TriggerAlarmInterruptAction implements IAction {
 		@Override
@@ -50,13 +52,13 @@ public class MMIOHandlerSystemTime extends MMIOHandlerBase {
 		if (triggerAlarmInterruptAction == null) {
 			triggerAlarmInterruptAction = new TriggerAlarmInterruptAction();
 		} else {
-			scheduler.removeAction(this.alarm, triggerAlarmInterruptAction);
+			scheduler.removeAction(triggerAlarmSchedulerAction);
 			clearInterrupt(getProcessor(), PSP_THREAD0_INTR);
 		}
 
 		this.alarm = alarm & 0xFFFFFFFFL;
 
-		scheduler.addAction(this.alarm, triggerAlarmInterruptAction);
+		triggerAlarmSchedulerAction = scheduler.addAction(this.alarm, triggerAlarmInterruptAction);
 	}
 
 	private void triggerAlarmInterrupt() {
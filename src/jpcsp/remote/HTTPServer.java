@@ -76,6 +76,7 @@ import jpcsp.Emulator;
 import jpcsp.MainGUI;
 import jpcsp.State;
 import jpcsp.HLE.Modules;
+import jpcsp.HLE.SyscallProfiler;
 import jpcsp.HLE.kernel.types.IAction;
 import jpcsp.HLE.kernel.types.SceNpTicket;
 import jpcsp.HLE.kernel.types.SceNpTicket.TicketParam;
@@ -84,8 +85,10 @@ import jpcsp.filesystems.umdiso.UmdIsoFile;
 import jpcsp.filesystems.umdiso.UmdIsoReader;
 import jpcsp.format.Elf32Header;
 import jpcsp.remote.HTTPConfiguration.HttpServerConfiguration;
+import jpcsp.settings.AbstractBoolSettingsListener;
 import jpcsp.settings.Settings;
 import jpcsp.util.Utilities;
+import jpcsp.util.metrics.MetricsRegistry;
 
 import org.apache.log4j.Logger;
 
@@ -114,6 +117,8 @@ public class HTTPServer {
 	private static final String indexFile = "index.html";
 	private static final String naclDirectory = "nacl";
 	private static final String widgetlistFile = "/widgetlist.xml";
+	private static final String metricsFile = "/metrics";
+	private static final String syscallsFile = "/syscalls";
 	private HTTPServerThread[] serverThreads;
 	private Robot captureRobot;
 	private UmdIsoReader previousUmdIsoReader;
@@ -140,6 +145,13 @@ public class HTTPServer {
 		return instance;
 	}
 
+	private static class MetricsSettingsListener extends AbstractBoolSettingsListener {
+		@Override
+		protected void settingsValueChanged(boolean value) {
+			MetricsRegistry.setEnabled(value);
+		}
+	}
+
 	private static class HTTPServerDescriptor {
 		private int index;
 		private int port;
@@ -291,6 +303,9 @@ public class HTTPServer {
 	private HTTPServer() {
 		keyMapping = new HashMap<Integer, keyCode>();
 
+		// The metrics can be collected from the start, otherwise only after the first scrape
+		Settings.getInstance().registerSettingsListener("HTTPServer", "emu.metrics", new MetricsSettingsListener());
+
 		serverThreads = new HTTPServerThread[serverDescriptors.length];
 		for (HTTPServerDescriptor descriptor : serverDescriptors) {
 			if (descriptor.getIndex() == 0) {
@@ -717,6 +732,10 @@ public class HTTPServer {
 					sendAudioWAV(os);
 				} else if ("/audio.raw".equals(pathValue)) {
 					sendAudioRAW(os);
+				} else if (metricsFile.equals(pathValue)) {
+					sendMetrics(os);
+				} else if (syscallsFile.equals(pathValue)) {
+					sendSyscalls(os, request.get(parameters));
 				} else if ("/controls".equals(pathValue)) {
 					processControls(os, request.get(parameters));
 				} else if (pathValue.startsWith(iconDirectory)) {
@@ -880,6 +899,58 @@ public class HTTPServer {
 		sendError(os, 404);
 	}
 
+	private void sendMetrics(OutputStream os) throws IOException {
+		// Start collecting the metrics only when somebody is scraping them
+		MetricsRegistry.setEnabled(true);
+
+		StringBuilder metrics = new StringBuilder();
+		MetricsRegistry.getInstance().write(metrics);
+		byte[] buffer = metrics.toString().getBytes("UTF-8");
+
+		sendOK(os);
+		sendNoCache(os);
+		sendResponseHeader(os, "Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+		sendResponseHeader(os, "Content-Length", buffer.length);
+		sendEndOfHeaders(os);
+		os.write(buffer);
+	}
+
+	/**
+	 * Send the report of the syscall profiler.
+	 * Parameters:
+	 * - enable=true|false: enable or disable the syscall profiler
+	 * - reset=true: reset the syscall profiler
+	 * - top=N: number of HLE functions to be reported
+	 */
+	private void sendSyscalls(OutputStream os, String parameters) throws IOException {
+		int topCount = SyscallProfiler.defaultTopCount;
+		if (parameters != null) {
+			Map<String, String> values = parseParameters(parameters);
+			if (values.containsKey("enable")) {
+				SyscallProfiler.setProfilerEnabled(Boolean.parseBoolean(values.get("enable")));
+			}
+			if (Boolean.parseBoolean(values.get("reset"))) {
+				SyscallProfiler.reset();
+			}
+			if (values.containsKey("top")) {
+				try {
+					topCount = Integer.parseInt(values.get("top"));
+				} catch (NumberFormatException e) {
+					// Ignore exception, keep the default
+				}
+			}
+		}
+
+		byte[] buffer = SyscallProfiler.getReport(topCount).getBytes("UTF-8");
+
+		sendOK(os);
+		sendNoCache(os);
+		sendResponseHeader(os, "Content-Type", "text/plain; charset=utf-8");
+		sendResponseHeader(os, "Content-Length", buffer.length);
+		sendEndOfHeaders(os);
+		os.write(buffer);
+	}
+
 	private void sendScreenImage(OutputStream os, String fileFormat) throws IOException {
         String fileName = String.format("%s%cscreen.%s", Settings.getInstance().readString("emu.tmppath"), File.separatorChar, fileFormat);
 		File file = new File(fileName);
@@ -16,41 +16,60 @@ along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
  */
 package jpcsp.scheduler;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.ListIterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import jpcsp.Emulator;
 import jpcsp.Allegrex.compiler.RuntimeContext;
 import jpcsp.HLE.kernel.types.IAction;
+import jpcsp.util.metrics.Gauge;
+import jpcsp.util.metrics.MetricsRegistry;
 
 public class Scheduler {
+	private static final long noSchedule = Long.MAX_VALUE;
 	private static Scheduler instance = null;
-	private List<SchedulerAction> actions;
-	private SchedulerAction nextAction;
+	private final SchedulerActionQueue actions = new SchedulerActionQueue();
+	// Actions added by the producers without taking the Scheduler lock.
+	// They are moved into the actions queue by the consumer.
+	private final ConcurrentLinkedQueue<SchedulerAction> submittedActions = new ConcurrentLinkedQueue<SchedulerAction>();
+	// Schedule of the next action, can be read without taking the Scheduler lock
+	private final AtomicLong nextSchedule = new AtomicLong(noSchedule);
 
 	public static Scheduler getInstance() {
 		if (instance == null) {
 			instance = new Scheduler();
+			instance.registerMetrics();
 		}
 
 		return instance;
 	}
 
+	private void registerMetrics() {
+		MetricsRegistry.getInstance().register(new Gauge("jpcsp_scheduler_actions", "Number of actions pending in the scheduler") {
+			@Override
+			public double getValue() {
+				return getNumberOfActions();
+			}
+		});
+	}
+
 	public synchronized void reset() {
-		actions = new LinkedList<SchedulerAction>();
-		nextAction = null;
+		actions.clear();
+		submittedActions.clear();
+		nextSchedule.set(noSchedule);
 	}
 
 	public void step() {
-		synchronized (this) {
-			if (nextAction == null) {
-				return;
-			}
+		if (nextSchedule.get() == noSchedule && submittedActions.isEmpty()) {
+			return;
 		}
 
 		long now = getNow();
+		if (now < nextSchedule.get() && submittedActions.isEmpty()) {
+			// Nothing to execute yet, avoid taking the Scheduler lock
+			return;
+		}
+
 		while (true) {
 			IAction action = getAction(now);
 			if (action == null) {
@@ -61,6 +80,9 @@ public class Scheduler {
 	}
 
 	public synchronized long getNextActionDelay(long noActionDelay) {
+		drainSubmittedActions();
+
+		SchedulerAction nextAction = actions.peek();
 		if (nextAction == null) {
 			return noActionDelay;
 		}
@@ -69,78 +91,139 @@ public class Scheduler {
 		return nextAction.getSchedule() - now;
 	}
 
-	private void addSchedulerAction(SchedulerAction schedulerAction) {
-		actions.add(schedulerAction);
-		if (updateNextAction(schedulerAction)) {
-			RuntimeContext.onNextScheduleModified();
+	/**
+	 * Same as getNextActionDelay() but without taking the Scheduler lock.
+	 * The returned delay can be shorter than the real one
+	 * (e.g. when the next action has just been removed), but never longer.
+	 *
+	 * @param noActionDelay	the delay returned when no action is pending.
+	 * @return				the delay in microseconds until the next action.
+	 */
+	public long getNextActionDelayNoLock(long noActionDelay) {
+		long schedule = nextSchedule.get();
+		if (schedule == noSchedule) {
+			return noActionDelay;
+		}
+
+		return schedule - getNow();
+	}
+
+	/**
+	 * @return the number of actions currently pending in the Scheduler.
+	 */
+	public synchronized int getNumberOfActions() {
+		drainSubmittedActions();
+
+		return actions.size();
+	}
+
+	private SchedulerAction submitAction(SchedulerAction schedulerAction) {
+		submittedActions.add(schedulerAction);
+
+		// Notify only when the new action has to be executed before the current next action
+		long schedule = schedulerAction.getSchedule();
+		while (true) {
+			long currentNextSchedule = nextSchedule.get();
+			if (schedule >= currentNextSchedule) {
+				break;
+			}
+			if (nextSchedule.compareAndSet(currentNextSchedule, schedule)) {
+				RuntimeContext.onNextScheduleModified();
+				break;
+			}
 		}
+
+		return schedulerAction;
 	}
 
 	/**
 	 * Add a new action to be executed as soon as possible to the Scheduler.
-	 * This method has to be thread-safe.
+	 * This method is thread-safe and does not block.
 	 *
 	 * @param action	action to be executed on the defined schedule.
+	 * @return			a handle that can be used to remove the action.
 	 */
-	public synchronized void addAction(IAction action) {
-		SchedulerAction schedulerAction = new SchedulerAction(0, action);
-		addSchedulerAction(schedulerAction);
+	public SchedulerAction addAction(IAction action) {
+		return submitAction(new SchedulerAction(0, action));
 	}
 
 	/**
 	 * Add a new action to the Scheduler.
-	 * This method has to be thread-safe.
+	 * This method is thread-safe and does not block.
 	 *
 	 * @param schedule	microTime when the action has to be executed. 0 for now.
 	 * @param action	action to be executed on the defined schedule.
+	 * @return			a handle that can be used to remove the action.
 	 */
-	public synchronized void addAction(long schedule, IAction action) {
-		SchedulerAction schedulerAction = new SchedulerAction(schedule, action);
-		addSchedulerAction(schedulerAction);
+	public SchedulerAction addAction(long schedule, IAction action) {
+		return submitAction(new SchedulerAction(schedule, action));
 	}
 
 	public synchronized void removeAction(long schedule, IAction action) {
-		for (ListIterator<SchedulerAction> lit = actions.listIterator(); lit.hasNext(); ) {
-			SchedulerAction schedulerAction = lit.next();
-			if (schedulerAction.getSchedule() == schedule && schedulerAction.getAction() == action) {
-				lit.remove();
-				updateNextAction();
+		drainSubmittedActions();
+
+		SchedulerAction schedulerAction = actions.find(schedule, action);
+		if (schedulerAction != null) {
+			actions.remove(schedulerAction);
+			updateNextAction();
+		}
+	}
+
+	/**
+	 * Remove an action using the handle returned by addAction().
+	 *
+	 * @param schedulerAction	the handle returned by addAction().
+	 */
+	public synchronized void removeAction(SchedulerAction schedulerAction) {
+		// The action could still be in the submittedActions queue
+		schedulerAction.cancelled = true;
+
+		if (actions.remove(schedulerAction)) {
+			updateNextAction();
+		}
+	}
+
+	private void drainSubmittedActions() {
+		boolean added = false;
+		while (true) {
+			SchedulerAction schedulerAction = submittedActions.poll();
+			if (schedulerAction == null) {
 				break;
 			}
+			if (!schedulerAction.cancelled) {
+				actions.add(schedulerAction);
+				added = true;
+			}
 		}
-	}
 
-	private boolean updateNextAction(SchedulerAction schedulerAction) {
-		if (nextAction == null || schedulerAction.getSchedule() < nextAction.getSchedule()) {
-			nextAction = schedulerAction;
-			return true;
+		if (added) {
+			updateNextSchedule();
 		}
+	}
 
-		return false;
+	private void updateNextSchedule() {
+		SchedulerAction nextAction = actions.peek();
+		nextSchedule.set(nextAction == null ? noSchedule : nextAction.getSchedule());
 	}
 
 	private void updateNextAction() {
-		nextAction = null;
-
-		for (Iterator<SchedulerAction> it = actions.iterator(); it.hasNext(); ) {
-			SchedulerAction schedulerAction = it.next();
-			updateNextAction(schedulerAction);
-		}
+		updateNextSchedule();
 
 		RuntimeContext.onNextScheduleModified();
 	}
 
 	public synchronized IAction getAction(long now) {
+		drainSubmittedActions();
+
+		SchedulerAction nextAction = actions.peek();
 		if (nextAction == null || now < nextAction.getSchedule()) {
 			return null;
 		}
 
-		IAction action = nextAction.getAction();
-
-		actions.remove(nextAction);
+		actions.poll();
 		updateNextAction();
 
-		return action;
+		return nextAction.getAction();
 	}
 
 	public static long getNow() {
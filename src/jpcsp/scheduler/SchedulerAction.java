@@ -18,9 +18,21 @@ package jpcsp.scheduler;
 
 import jpcsp.HLE.kernel.types.IAction;
 
+/**
+ * An action registered in the Scheduler.
+ * The instance returned by Scheduler.addAction() can be used
+ * as a handle to cancel the action.
+ */
 public class SchedulerAction {
-	private long schedule;
-	private IAction action;
+	private final long schedule;
+	private final IAction action;
+	// Insertion order, actions having the same schedule are executed in this order
+	long sequence;
+	// Position in the SchedulerActionQueue heap, -1 when not queued
+	int heapIndex = -1;
+	// Next queued action having the same IAction
+	SchedulerAction nextWithSameAction;
+	volatile boolean cancelled;
 
 	public SchedulerAction(long schedule, IAction action) {
 		this.schedule = schedule;
@@ -31,15 +43,23 @@ public class SchedulerAction {
 		return schedule;
 	}
 
-	public void setSchedule(long schedule) {
-		this.schedule = schedule;
-	}
-
 	public IAction getAction() {
 		return action;
 	}
 
-	public void setAction(IAction action) {
-		this.action = action;
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	boolean isBefore(SchedulerAction schedulerAction) {
+		if (schedule != schedulerAction.schedule) {
+			return schedule < schedulerAction.schedule;
+		}
+		return sequence < schedulerAction.sequence;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("SchedulerAction[schedule=%d, action=%s]", schedule, action);
 	}
 }
@@ -0,0 +1,179 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.scheduler;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import jpcsp.HLE.kernel.types.IAction;
+
+/**
+ * Binary heap of SchedulerActions ordered by schedule,
+ * and by insertion order for the same schedule.
+ *
+ * - peek: O(1)
+ * - add, poll, remove: O(log n)
+ * - find by (schedule, action): O(k) where k is the number of queued
+ *   actions using the same IAction (usually 1)
+ *
+ * This class is not thread-safe.
+ */
+public class SchedulerActionQueue {
+	private SchedulerAction[] heap = new SchedulerAction[64];
+	private int size;
+	private long sequence;
+	private final Map<IAction, SchedulerAction> actions = new IdentityHashMap<IAction, SchedulerAction>();
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public SchedulerAction peek() {
+		return size == 0 ? null : heap[0];
+	}
+
+	public void add(SchedulerAction schedulerAction) {
+		if (size >= heap.length) {
+			heap = Arrays.copyOf(heap, heap.length << 1);
+		}
+		schedulerAction.sequence = sequence++;
+		schedulerAction.nextWithSameAction = actions.put(schedulerAction.getAction(), schedulerAction);
+		siftUp(size++, schedulerAction);
+	}
+
+	public SchedulerAction poll() {
+		if (size == 0) {
+			return null;
+		}
+
+		SchedulerAction first = heap[0];
+		removeAt(0);
+
+		return first;
+	}
+
+	public boolean remove(SchedulerAction schedulerAction) {
+		int index = schedulerAction.heapIndex;
+		if (index < 0 || index >= size || heap[index] != schedulerAction) {
+			return false;
+		}
+
+		removeAt(index);
+
+		return true;
+	}
+
+	public SchedulerAction find(long schedule, IAction action) {
+		// The chain is in reverse insertion order, return the oldest matching action
+		SchedulerAction found = null;
+		for (SchedulerAction schedulerAction = actions.get(action); schedulerAction != null; schedulerAction = schedulerAction.nextWithSameAction) {
+			if (schedulerAction.getSchedule() == schedule) {
+				found = schedulerAction;
+			}
+		}
+
+		return found;
+	}
+
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			heap[i].heapIndex = -1;
+			heap[i].nextWithSameAction = null;
+			heap[i] = null;
+		}
+		size = 0;
+		actions.clear();
+	}
+
+	private void removeAt(int index) {
+		SchedulerAction removed = heap[index];
+		unlinkAction(removed);
+		removed.heapIndex = -1;
+
+		size--;
+		if (index != size) {
+			SchedulerAction last = heap[size];
+			heap[size] = null;
+			siftDown(index, last);
+			if (heap[index] == last) {
+				siftUp(index, last);
+			}
+		} else {
+			heap[size] = null;
+		}
+	}
+
+	private void unlinkAction(SchedulerAction schedulerAction) {
+		IAction action = schedulerAction.getAction();
+		SchedulerAction previous = null;
+		for (SchedulerAction current = actions.get(action); current != null; current = current.nextWithSameAction) {
+			if (current == schedulerAction) {
+				if (previous != null) {
+					previous.nextWithSameAction = current.nextWithSameAction;
+				} else if (current.nextWithSameAction != null) {
+					actions.put(action, current.nextWithSameAction);
+				} else {
+					actions.remove(action);
+				}
+				break;
+			}
+			previous = current;
+		}
+		schedulerAction.nextWithSameAction = null;
+	}
+
+	private void siftUp(int index, SchedulerAction schedulerAction) {
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			SchedulerAction parentAction = heap[parent];
+			if (!schedulerAction.isBefore(parentAction)) {
+				break;
+			}
+			heap[index] = parentAction;
+			parentAction.heapIndex = index;
+			index = parent;
+		}
+		heap[index] = schedulerAction;
+		schedulerAction.heapIndex = index;
+	}
+
+	private void siftDown(int index, SchedulerAction schedulerAction) {
+		int half = size >>> 1;
+		while (index < half) {
+			int child = (index << 1) + 1;
+			SchedulerAction childAction = heap[child];
+			int right = child + 1;
+			if (right < size && heap[right].isBefore(childAction)) {
+				child = right;
+				childAction = heap[child];
+			}
+			if (!childAction.isBefore(schedulerAction)) {
+				break;
+			}
+			heap[index] = childAction;
+			childAction.heapIndex = index;
+			index = child;
+		}
+		heap[index] = schedulerAction;
+		schedulerAction.heapIndex = index;
+	}
+}
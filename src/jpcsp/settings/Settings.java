@@ -57,6 +57,7 @@ public class Settings {
     private Properties defaultSettings;
     private SortedProperties loadedSettings;
     private Properties patchSettings;
+    private Properties overriddenSettings;
     private HashMap<String, List<ISettingsListener>> listenersByKey;
     private List<SettingsListenerInfo> allListeners;
     private boolean useUmdIdForDiscDirectory;
@@ -74,6 +75,7 @@ public class Settings {
         allListeners = new LinkedList<SettingsListenerInfo>();
         defaultSettings = new Properties();
         patchSettings = new Properties();
+        overriddenSettings = new Properties();
         directoryMapping = new HashMap<String, String>();
         InputStream defaultSettingsStream = null;
         InputStream loadedSettingsStream = null;
@@ -193,7 +195,10 @@ public class Settings {
     }
 
     private String getProperty(String key) {
-        String value = patchSettings.getProperty(key);
+        String value = overriddenSettings.getProperty(key);
+        if (value == null) {
+            value = patchSettings.getProperty(key);
+        }
         if (value == null) {
             value = loadedSettings.getProperty(key);
         }
@@ -202,7 +207,10 @@ public class Settings {
     }
 
     private String getProperty(String key, String defaultValue) {
-        String value = patchSettings.getProperty(key);
+        String value = overriddenSettings.getProperty(key);
+        if (value == null) {
+            value = patchSettings.getProperty(key);
+        }
         if (value == null) {
             value = loadedSettings.getProperty(key, defaultValue);
         }
@@ -228,6 +236,25 @@ public class Settings {
         }
     }
 
+    /**
+     * Override the value of a settings option for the current session only,
+     * e.g. from the command line.
+     * The overridden value has priority over the patch settings
+     * and is never written to the settings file.
+     *
+     * @param key   the settings option
+     * @param value the new value
+     */
+    public void overrideProperty(String key, String value) {
+        String previousValue = getProperty(key);
+
+        overriddenSettings.setProperty(key, value);
+
+        if (previousValue == null || !previousValue.equals(value)) {
+            triggerSettingsListener(key, value);
+        }
+    }
+
     public boolean hasProperty(String key) {
         return loadedSettings.containsKey(key);
     }
@@ -17,7 +17,9 @@ along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
 package jpcsp.sound;
 
 import java.nio.ByteBuffer;
+import java.util.LinkedList;
 
+import jpcsp.Emulator;
 import jpcsp.HLE.modules.sceAudio;
 
 import org.apache.log4j.Logger;
@@ -29,6 +31,9 @@ import org.lwjgl.openal.AL11;
 public class SoundChannel {
 	private static Logger log = sceAudio.log;
 	private static volatile boolean isExit = false;
+	// Without audio device (e.g. when running headless), OpenAL is not used
+	// and the playing of the queued buffers is only simulated using the emulator clock.
+	private static boolean nullAudio = false;
 	public static final int FORMAT_MONO = 0x10;
 	public static final int FORMAT_STEREO = 0x00;
     //
@@ -61,8 +66,25 @@ public class SoundChannel {
     private int numberBlockingBuffers;
     private int minimumNumberBuffers;
     private boolean busy;
+    // Only used for the null audio: the end time (in microseconds)
+    // of each queued buffer and the start time of the first one.
+    private LinkedList<Long> nullQueuedBuffers;
+    private long nullPlayingStartMicros;
+
+    /**
+     * Do not output any audio and do not use OpenAL.
+     * Has to be called before the audio modules are started.
+     */
+    public static void setNullAudio(boolean nullAudio) {
+    	SoundChannel.nullAudio = nullAudio;
+    }
 
     public static void init() {
+    	if (nullAudio) {
+    		isExit = false;
+    		return;
+    	}
+
 		if (!AL.isCreated()) {
 			try {
 				AL.create();
@@ -74,7 +96,9 @@ public class SoundChannel {
     }
 
     public static void exit() {
-    	if (AL.isCreated()) {
+    	if (nullAudio) {
+    		isExit = true;
+    	} else if (AL.isCreated()) {
     		isExit = true;
     		AL.destroy();
     	}
@@ -86,11 +110,15 @@ public class SoundChannel {
 		reserved = false;
 		leftVolume = DEFAULT_VOLUME;
 		rightVolume = DEFAULT_VOLUME;
-		alSource = AL10.alGenSources();
 		sampleRate = DEFAULT_SAMPLE_RATE;
 		updateNumberBlockingBuffers();
 
-		AL10.alSourcei(alSource, AL10.AL_LOOPING, AL10.AL_FALSE);
+		if (nullAudio) {
+			nullQueuedBuffers = new LinkedList<Long>();
+		} else {
+			alSource = AL10.alGenSources();
+			AL10.alSourcei(alSource, AL10.AL_LOOPING, AL10.AL_FALSE);
+		}
 	}
 
     private void updateNumberBlockingBuffers() {
@@ -193,7 +221,34 @@ public class SoundChannel {
 		}
     }
 
+    private void nullCheckFreeBuffers() {
+    	long now = Emulator.getClock().microTime();
+    	while (!nullQueuedBuffers.isEmpty() && nullQueuedBuffers.getFirst().longValue() <= now) {
+    		// The next buffer starts playing when the previous one is completed
+    		nullPlayingStartMicros = nullQueuedBuffers.removeFirst().longValue();
+    	}
+    }
+
+    private void nullQueueBuffer(byte[] buffer) {
+    	nullCheckFreeBuffers();
+
+    	long start;
+    	if (nullQueuedBuffers.isEmpty()) {
+    		start = Emulator.getClock().microTime();
+    		nullPlayingStartMicros = start;
+    	} else {
+    		start = nullQueuedBuffers.getLast().longValue();
+    	}
+    	int samples = buffer.length / (isFormatStereo() ? 4 : 2);
+    	nullQueuedBuffers.addLast(start + samples * 1000000L / getSampleRate());
+    }
+
     private void alSourceQueueBuffer(byte[] buffer) {
+    	if (nullAudio) {
+    		nullQueueBuffer(buffer);
+    		return;
+    	}
+
     	int alBuffer = soundBufferManager.getBuffer();
     	ByteBuffer directBuffer = soundBufferManager.getDirectBuffer(buffer.length);
 		directBuffer.clear();
@@ -213,10 +268,19 @@ public class SoundChannel {
     }
 
     public void checkFreeBuffers() {
-    	soundBufferManager.checkFreeBuffers(alSource);
+    	if (nullAudio) {
+    		nullCheckFreeBuffers();
+    	} else {
+    		soundBufferManager.checkFreeBuffers(alSource);
+    	}
     }
 
     public void release() {
+    	if (nullAudio) {
+    		nullQueuedBuffers.clear();
+    		return;
+    	}
+
     	AL10.alSourceStop(alSource);
     	checkFreeBuffers();
     }
@@ -228,10 +292,23 @@ public class SoundChannel {
     private int getWaitingBuffers() {
     	checkFreeBuffers();
 
+    	if (nullAudio) {
+    		return nullQueuedBuffers.size();
+    	}
+
     	return AL10.alGetSourcei(alSource, AL10.AL_BUFFERS_QUEUED);
     }
 
     private int getSourceSampleOffset() {
+    	if (nullAudio) {
+    		nullCheckFreeBuffers();
+    		if (nullQueuedBuffers.isEmpty()) {
+    			return 0;
+    		}
+    		long playingMicros = Emulator.getClock().microTime() - nullPlayingStartMicros;
+    		return (int) (playingMicros * getSampleRate() / 1000000L);
+    	}
+
     	int sampleOffset = AL10.alGetSourcei(alSource, AL11.AL_SAMPLE_OFFSET);
     	if (isFormatStereo()) {
     		sampleOffset /= 2;
@@ -302,6 +379,10 @@ public class SoundChannel {
     public boolean isEnded() {
     	checkFreeBuffers();
 
+    	if (nullAudio) {
+    		return nullQueuedBuffers.isEmpty();
+    	}
+
     	int state = AL10.alGetSourcei(alSource, AL10.AL_SOURCE_STATE);
 		if (state == AL10.AL_PLAYING) {
 			return false;
@@ -21,6 +21,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.objectweb.asm.ClassReader;
@@ -29,11 +30,23 @@ import org.objectweb.asm.tree.LocalVariableNode;
 import org.objectweb.asm.tree.MethodNode;
 
 /**
+ * Retrieve the names of the parameters of a method,
+ * as defined in the debugging information of the class file.
+ *
+ * Reading and parsing a class file is expensive (several milliseconds
+ * for the large HLE modules) and the compiler is requesting the parameters
+ * of the HLE functions for each syscall being compiled.
+ * The class file is therefore parsed only once and the parameters
+ * of all its methods are kept in a cache.
+ *
  * @author gid15
  *
  */
 public class ClassAnalyzer {
 	private static Logger log = Logger.getLogger("classAnalyzer");
+	// The parameters of each method, by analyzed class.
+	// The compiler can run on multiple threads, access is synchronized on the map.
+	private static final Map<Class<?>, Map<String, ParameterInfo[]>> parametersCache = new HashMap<Class<?>, Map<String, ParameterInfo[]>>();
 
 	public static class ParameterInfo {
 		public final String name;
@@ -46,62 +59,69 @@ public class ClassAnalyzer {
 	}
 
 	public ParameterInfo[] getParameters(String methodName, Class<?> c) {
-		ParameterInfo[] parameters = null;
+		Map<String, ParameterInfo[]> classParameters;
+		synchronized (parametersCache) {
+			classParameters = parametersCache.get(c);
+			if (classParameters == null) {
+				classParameters = analyzeClass(c);
+				parametersCache.put(c, classParameters);
+			}
+		}
+
+		return classParameters.get(methodName);
+	}
+
+	private Map<String, ParameterInfo[]> analyzeClass(Class<?> c) {
+		Map<String, ParameterInfo[]> classParameters = new HashMap<String, ParameterInfo[]>();
 
 		try {
 			ClassReader cr = new ClassReader(c.getName().replace('.', '/'));
 			Method[] methods = c.getDeclaredMethods();
 			if (methods != null) {
-				AnalyzerClassVisitor cn = null;
+				// Only the first declared method is analyzed in case of overloading
+				Map<String, Method> methodsByName = new HashMap<String, Method>();
 				for (int i = 0; i < methods.length; i++) {
-					if (methodName.equals(methods[i].getName())) {
-						cn = new AnalyzerClassVisitor(methods[i]);
-						break;
+					if (!methodsByName.containsKey(methods[i].getName())) {
+						methodsByName.put(methods[i].getName(), methods[i]);
 					}
 				}
 
-				if (cn != null) {
-					cr.accept(cn, 0);
-					parameters = cn.getParameters();
-				}
+				AnalyzerClassVisitor cn = new AnalyzerClassVisitor(methodsByName, classParameters);
+				cr.accept(cn, ClassReader.SKIP_FRAMES);
 			}
 		} catch (IOException e) {
 			log.error("Cannot read class", e);
 		}
 
-		return parameters;
+		return classParameters;
 	}
 
 	private static class AnalyzerClassVisitor extends ClassNode {
-		private ParameterInfo[] parameters = null;
-		private String methodName;
-		private Method method;
-
-		public AnalyzerClassVisitor(Method method) {
-			this.method = method;
-			this.methodName = method.getName();
-		}
+		private final Map<String, Method> methodsByName;
+		private final Map<String, ParameterInfo[]> classParameters;
 
-		public ParameterInfo[] getParameters() {
-			return parameters;
+		public AnalyzerClassVisitor(Map<String, Method> methodsByName, Map<String, ParameterInfo[]> classParameters) {
+			this.methodsByName = methodsByName;
+			this.classParameters = classParameters;
 		}
 
 		@Override
 		public void visitEnd() {
 			// Visit all the methods
 			for (Iterator<?> it = methods.iterator(); it.hasNext(); ) {
-				MethodNode method = (MethodNode) it.next();
-				if (methodName.equals(method.name)) {
-					visitMethod(method);
+				MethodNode methodNode = (MethodNode) it.next();
+				Method method = methodsByName.get(methodNode.name);
+				if (method != null && methodNode.localVariables != null) {
+					classParameters.put(methodNode.name, getParameters(method, methodNode));
 				}
 			}
 		}
 
-		private void visitMethod(MethodNode methodNode) {
+		private ParameterInfo[] getParameters(Method method, MethodNode methodNode) {
 			// First parameter is "this" for non-static methods
 			int firstIndex = Modifier.isStatic(method.getModifiers()) ? 0 : 1;
 			Class<?>[] parameterTypes = method.getParameterTypes();
-			int numberParameters = Math.min(parameterTypes.length, methodNode.localVariables.size() - firstIndex);
+			int numberParameters = Math.max(Math.min(parameterTypes.length, methodNode.localVariables.size() - firstIndex), 0);
 
 			HashMap<Integer, Integer> parameterIndices = new HashMap<Integer, Integer>();
 			for (int i = 0, currentIndex = firstIndex; i < numberParameters; i++, currentIndex++) {
@@ -111,7 +131,7 @@ public class ClassAnalyzer {
 				}
 			}
 
-			parameters = new ParameterInfo[numberParameters];
+			ParameterInfo[] parameters = new ParameterInfo[numberParameters];
 			for (int i = 0; i < methodNode.localVariables.size(); i++) {
 				LocalVariableNode localVariableNode = (LocalVariableNode) methodNode.localVariables.get(i);
 				if (parameterIndices.containsKey(localVariableNode.index)) {
@@ -119,6 +139,8 @@ public class ClassAnalyzer {
 					parameters[parameterIndex] = new ParameterInfo(localVariableNode.name, parameterTypes[parameterIndex]);
 				}
 			}
+
+			return parameters;
 		}
 	}
 }
@@ -63,6 +63,14 @@ public class CpuDurationStatistics extends DurationStatistics {
 		super.end();
 	}
 
+	@Override
+	public void add(DurationStatistics durationStatistics) {
+		super.add(durationStatistics);
+		if (durationStatistics instanceof CpuDurationStatistics) {
+			cumulatedCpuTimeNanos += ((CpuDurationStatistics) durationStatistics).cumulatedCpuTimeNanos;
+		}
+	}
+
 	@Override
 	public void reset() {
 		cumulatedCpuTimeNanos = 0;
@@ -224,4 +224,80 @@ public class Hash {
 
 		return hashCode;
 	}
+
+	/**
+	 * Generate a hashCode on the complete memory range, using a multiplicative
+	 * method having a better distribution than getHashCodeFloatingMemory().
+	 * The hashCode will be independent of the address, i.e. the same hashCode will
+	 * be generated for the same data at different memory addresses.
+	 * 
+	 * @param hashCode		current hashCode value
+	 * @param addr			start of the memory range to be hashed
+	 * @param lengthInBytes	length of the memory range
+	 * @return updated hashCode value
+	 */
+	public static int getContentHashCode(int hashCode, int addr, int lengthInBytes) {
+		IMemoryReader memoryReader = MemoryReader.getMemoryReader(addr, lengthInBytes, 4);
+		for (int i = 0; i < lengthInBytes; i += 4) {
+			int value = memoryReader.readNext();
+			hashCode = (hashCode ^ value) * 0x01000193;
+			hashCode ^= hashCode >>> 15;
+		}
+
+		return hashCode;
+	}
+
+	/**
+	 * Generate hashCodes on consecutive blocks of a memory range, using a stride.
+	 * The hashCodes are independent of the address, i.e. the same hashCodes will
+	 * be generated for the same data at different memory addresses.
+	 *
+	 * When expected hashCodes are given, the hashing is stopped at the first
+	 * block having a different hashCode, so that a changed memory range
+	 * is detected without hashing it completely.
+	 *
+	 * @param hashCodes			the hashCodes for each block, must have at least
+	 *							(lengthInBytes + blockSizeInBytes - 1) / blockSizeInBytes elements
+	 * @param expectedHashCodes	the expected hashCodes for each block, or null.
+	 *							Can be the same array as hashCodes.
+	 * @param addr				start of the memory range to be hashed
+	 * @param lengthInBytes		length of the memory range
+	 * @param strideInBytes		stride (hash only 4 bytes every stride bytes)
+	 * @param blockSizeInBytes	length of one block
+	 * @return true if all the block hashCodes are matching the expected hashCodes
+	 *         (or when no expected hashCodes are given),
+	 *         false otherwise.
+	 */
+	public static boolean getHashCodesByBlock(int[] hashCodes, int[] expectedHashCodes, int addr, int lengthInBytes, int strideInBytes, int blockSizeInBytes) {
+		int skip = 0;
+		if (strideInBytes > 4) {
+			skip = (strideInBytes / 4) - 1;
+			lengthInBytes -= lengthInBytes % strideInBytes;
+		}
+		int step = (skip + 1) * 4;
+		int numberBlocks = (lengthInBytes + blockSizeInBytes - 1) / blockSizeInBytes;
+
+		IMemoryReader memoryReader = MemoryReader.getMemoryReader(addr, lengthInBytes, 4);
+		int i = 0;
+		int j = 0;
+		for (int block = 0; block < numberBlocks; block++) {
+			int hashCode = block;
+			int blockEnd = Math.min((block + 1) * blockSizeInBytes, lengthInBytes);
+			for (; i < blockEnd; i += step, j++) {
+				int value = memoryReader.readNext();
+				if (skip > 0) {
+					memoryReader.skip(skip);
+				}
+				hashCode ^= value + salt[j & 0xFF];
+				hashCode += i;
+			}
+
+			if (expectedHashCodes != null && expectedHashCodes[block] != hashCode) {
+				return false;
+			}
+			hashCodes[block] = hashCode;
+		}
+
+		return true;
+	}
 }
@@ -0,0 +1,119 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.util;
+
+import java.io.IOException;
+
+/*
+ * LZ4 raw block decompression (without the LZ4 frame format),
+ * as used by the ZSO and CSO v2 file formats.
+ *
+ * See the block format description:
+ * https://github.com/lz4/lz4/blob/dev/doc/lz4_Block_format.md
+ */
+public class LZ4 {
+	private static final int minMatch = 4;
+
+	/**
+	 * Decompress one LZ4 block.
+	 *
+	 * @param in         the compressed data
+	 * @param inOffset   offset of the compressed data
+	 * @param inLength   maximum length of the compressed data
+	 *                   (the compressed data can be followed by padding)
+	 * @param out        the buffer receiving the decompressed data
+	 * @param outOffset  offset where to store the decompressed data
+	 * @param outLength  maximum length of the decompressed data
+	 * @return           the number of decompressed bytes
+	 * @throws IOException  the compressed data is corrupted
+	 */
+	public static int decompress(byte[] in, int inOffset, int inLength, byte[] out, int outOffset, int outLength) throws IOException {
+		int inPtr = inOffset;
+		final int inEnd = inOffset + inLength;
+		int outPtr = outOffset;
+		final int outEnd = outOffset + outLength;
+
+		while (inPtr < inEnd) {
+			int token = in[inPtr++] & 0xFF;
+
+			// Literals
+			int literalLength = token >> 4;
+			if (literalLength == 15) {
+				int b;
+				do {
+					if (inPtr >= inEnd) {
+						throw new IOException("LZ4: truncated literal length");
+					}
+					b = in[inPtr++] & 0xFF;
+					literalLength += b;
+				} while (b == 255);
+			}
+			if (literalLength > 0) {
+				if (inPtr + literalLength > inEnd || outPtr + literalLength > outEnd) {
+					throw new IOException("LZ4: literals outside of buffer");
+				}
+				System.arraycopy(in, inPtr, out, outPtr, literalLength);
+				inPtr += literalLength;
+				outPtr += literalLength;
+			}
+
+			// The last sequence only contains literals
+			if (inPtr >= inEnd || outPtr >= outEnd) {
+				break;
+			}
+
+			// Match
+			if (inPtr + 2 > inEnd) {
+				throw new IOException("LZ4: truncated match offset");
+			}
+			int matchOffset = (in[inPtr] & 0xFF) | ((in[inPtr + 1] & 0xFF) << 8);
+			inPtr += 2;
+			if (matchOffset == 0 || outPtr - matchOffset < outOffset) {
+				throw new IOException(String.format("LZ4: invalid match offset %d", matchOffset));
+			}
+
+			int matchLength = token & 0xF;
+			if (matchLength == 15) {
+				int b;
+				do {
+					if (inPtr >= inEnd) {
+						throw new IOException("LZ4: truncated match length");
+					}
+					b = in[inPtr++] & 0xFF;
+					matchLength += b;
+				} while (b == 255);
+			}
+			matchLength += minMatch;
+			if (outPtr + matchLength > outEnd) {
+				throw new IOException("LZ4: match outside of buffer");
+			}
+
+			int matchPtr = outPtr - matchOffset;
+			if (matchOffset >= matchLength) {
+				System.arraycopy(out, matchPtr, out, outPtr, matchLength);
+				outPtr += matchLength;
+			} else {
+				// Overlapping copy, byte per byte
+				for (int i = 0; i < matchLength; i++) {
+					out[outPtr++] = out[matchPtr++];
+				}
+			}
+		}
+
+		return outPtr - outOffset;
+	}
+}
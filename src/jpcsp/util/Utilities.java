@@ -68,6 +68,7 @@ import jpcsp.filesystems.umdiso.UmdIsoFile;
 import jpcsp.memory.IMemoryReader;
 import jpcsp.memory.IMemoryWriter;
 import jpcsp.memory.MemoryReader;
+import jpcsp.memory.MemoryWriteTracker;
 import jpcsp.memory.MemoryWriter;
 
 public class Utilities {
@@ -1464,6 +1465,7 @@ public class Utilities {
 		// Optimize the most common case
     	if (RuntimeContext.hasMemoryInt()) {
     		System.arraycopy(a, offset, RuntimeContext.getMemoryInt(), (address & addressMask) >> 2, length4);
+    		MemoryWriteTracker.writeIndex((address & addressMask) >> 2, length4);
     	} else {
 	    	IMemoryWriter memoryWriter = MemoryWriter.getMemoryWriter(address, length, 4);
 	    	for (int i = 0; i < length4; i++) {
@@ -1825,6 +1827,30 @@ public class Utilities {
 		return true;
 	}
 
+	/**
+	 * Compare the content of two memory ranges.
+	 *
+	 * @param addr1          start of the first memory range
+	 * @param addr2          start of the second memory range
+	 * @param lengthInBytes  length of the memory ranges, a multiple of 4
+	 * @return true if both memory ranges have the same content
+	 */
+	public static boolean memoryEquals(int addr1, int addr2, int lengthInBytes) {
+		if (addr1 == addr2) {
+			return true;
+		}
+
+		IMemoryReader memoryReader1 = MemoryReader.getMemoryReader(addr1, lengthInBytes, 4);
+		IMemoryReader memoryReader2 = MemoryReader.getMemoryReader(addr2, lengthInBytes, 4);
+		for (int i = 0; i < lengthInBytes; i += 4) {
+			if (memoryReader1.readNext() != memoryReader2.readNext()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
 
     public static void patch(Memory mem, SceModule module, int offset, int oldValue, int newValue) {
     	patch(mem, module, offset, oldValue, newValue, 0xFFFFFFFF);
@@ -0,0 +1,59 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A monotonically increasing count, e.g. a number of cache hits.
+ *
+ * The count can either be maintained by this object (increment/add)
+ * or be read from an existing statistics object at each scrape
+ * by overriding getValue(), which avoids any overhead on the counted path.
+ *
+ * @author gid15
+ *
+ */
+public class Counter extends Metric {
+	private final AtomicLong value = new AtomicLong();
+
+	public Counter(String name, String help, String... labels) {
+		super(name, help, labels);
+	}
+
+	public void increment() {
+		value.incrementAndGet();
+	}
+
+	public void add(long n) {
+		value.addAndGet(n);
+	}
+
+	public long getValue() {
+		return value.get();
+	}
+
+	@Override
+	public String getType() {
+		return "counter";
+	}
+
+	@Override
+	public void writeSamples(StringBuilder s) {
+		writeSample(s, null, null, getValue());
+	}
+}
@@ -0,0 +1,42 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.util.metrics;
+
+/**
+ * A value that can go up and down, e.g. the number of ready threads.
+ * The value is only computed when the metrics are being scraped.
+ *
+ * @author gid15
+ *
+ */
+public abstract class Gauge extends Metric {
+	public Gauge(String name, String help, String... labels) {
+		super(name, help, labels);
+	}
+
+	public abstract double getValue();
+
+	@Override
+	public String getType() {
+		return "gauge";
+	}
+
+	@Override
+	public void writeSamples(StringBuilder s) {
+		writeSample(s, null, null, getValue());
+	}
+}
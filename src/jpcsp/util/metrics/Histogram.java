@@ -0,0 +1,105 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of durations, e.g. the frame time or the compile time.
+ * The durations are recorded in nanoseconds and exposed in seconds,
+ * as usual for Prometheus.
+ *
+ * The callers should only measure and record the durations
+ * when MetricsRegistry.isEnabled() is true.
+ *
+ * @author gid15
+ *
+ */
+public class Histogram extends Metric {
+	// Bucket upper bounds in seconds, from 10us to 10s (16.7ms is one frame at 60 FPS)
+	public static final double[] defaultDurationBuckets = new double[] {
+		0.00001, 0.000025, 0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.0167, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 10
+	};
+	private final double[] buckets;
+	private final long[] bucketsNanos;
+	// Number of observations per bucket (not cumulative),
+	// the last element is the +Inf bucket
+	private final AtomicLongArray counts;
+	private final AtomicLong sumNanos = new AtomicLong();
+
+	public Histogram(String name, String help, String... labels) {
+		this(defaultDurationBuckets, name, help, labels);
+	}
+
+	/**
+	 * @param buckets  the bucket upper bounds in seconds, in ascending order
+	 */
+	public Histogram(double[] buckets, String name, String help, String... labels) {
+		super(name, help, labels);
+		this.buckets = buckets;
+		bucketsNanos = new long[buckets.length];
+		for (int i = 0; i < buckets.length; i++) {
+			bucketsNanos[i] = Math.round(buckets[i] * 1000000000.0);
+		}
+		counts = new AtomicLongArray(buckets.length + 1);
+	}
+
+	public void observeNanos(long nanos) {
+		int bucket = 0;
+		while (bucket < bucketsNanos.length && nanos > bucketsNanos[bucket]) {
+			bucket++;
+		}
+		counts.incrementAndGet(bucket);
+		sumNanos.addAndGet(nanos);
+	}
+
+	public void observeMicros(long micros) {
+		observeNanos(micros * 1000L);
+	}
+
+	public long getCount() {
+		long count = 0L;
+		for (int i = 0; i < counts.length(); i++) {
+			count += counts.get(i);
+		}
+
+		return count;
+	}
+
+	public long getSumNanos() {
+		return sumNanos.get();
+	}
+
+	@Override
+	public String getType() {
+		return "histogram";
+	}
+
+	@Override
+	public void writeSamples(StringBuilder s) {
+		long cumulatedCount = 0L;
+		for (int i = 0; i < buckets.length; i++) {
+			cumulatedCount += counts.get(i);
+			writeSample(s, "_bucket", "le=\"" + formatValue(buckets[i]) + "\"", cumulatedCount);
+		}
+		cumulatedCount += counts.get(buckets.length);
+		writeSample(s, "_bucket", "le=\"+Inf\"", cumulatedCount);
+		writeSample(s, "_sum", null, sumNanos.get() / 1000000000.0);
+		writeSample(s, "_count", null, cumulatedCount);
+	}
+}
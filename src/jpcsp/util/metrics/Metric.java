@@ -0,0 +1,137 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.util.metrics;
+
+import java.math.BigDecimal;
+
+/**
+ * Base class of the metrics exposed by the MetricsRegistry
+ * in the Prometheus text format.
+ *
+ * A metric is identified by its name and its labels: metrics having
+ * the same name but different labels are belonging to the same family
+ * (e.g. the hits of the different caches).
+ *
+ * @author gid15
+ *
+ */
+public abstract class Metric {
+	protected final String name;
+	protected final String help;
+	protected final String labels;
+
+	/**
+	 * @param name    the metric name, e.g. "jpcsp_frame_time_seconds"
+	 * @param help    the description of the metric
+	 * @param labels  the label names and values, e.g. "cache", "Texture"
+	 */
+	protected Metric(String name, String help, String... labels) {
+		this.name = name;
+		this.help = help;
+		this.labels = formatLabels(labels);
+	}
+
+	private static String formatLabels(String[] labels) {
+		if (labels == null || labels.length == 0) {
+			return "";
+		}
+
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i + 1 < labels.length; i += 2) {
+			if (s.length() > 0) {
+				s.append(',');
+			}
+			s.append(labels[i]);
+			s.append("=\"");
+			s.append(escapeLabelValue(labels[i + 1]));
+			s.append('"');
+		}
+
+		return s.toString();
+	}
+
+	private static String escapeLabelValue(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getHelp() {
+		return help;
+	}
+
+	public String getLabels() {
+		return labels;
+	}
+
+	/**
+	 * @return the Prometheus metric type, e.g. "counter"
+	 */
+	public abstract String getType();
+
+	/**
+	 * Write the samples of this metric in the Prometheus text format.
+	 */
+	public abstract void writeSamples(StringBuilder s);
+
+	private void writeSampleName(StringBuilder s, String suffix, String additionalLabel) {
+		s.append(name);
+		if (suffix != null) {
+			s.append(suffix);
+		}
+		if (labels.length() > 0 || additionalLabel != null) {
+			s.append('{');
+			s.append(labels);
+			if (additionalLabel != null) {
+				if (labels.length() > 0) {
+					s.append(',');
+				}
+				s.append(additionalLabel);
+			}
+			s.append('}');
+		}
+		s.append(' ');
+	}
+
+	protected void writeSample(StringBuilder s, String suffix, String additionalLabel, long value) {
+		writeSampleName(s, suffix, additionalLabel);
+		s.append(value);
+		s.append('\n');
+	}
+
+	protected void writeSample(StringBuilder s, String suffix, String additionalLabel, double value) {
+		writeSampleName(s, suffix, additionalLabel);
+		s.append(formatValue(value));
+		s.append('\n');
+	}
+
+	protected static String formatValue(double value) {
+		if (Double.isNaN(value)) {
+			return "NaN";
+		}
+		if (Double.isInfinite(value)) {
+			return value > 0 ? "+Inf" : "-Inf";
+		}
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			return Long.toString((long) value);
+		}
+		// Avoid the exponent notation, e.g. 0.00001 instead of 1.0E-5
+		return BigDecimal.valueOf(value).toPlainString();
+	}
+}
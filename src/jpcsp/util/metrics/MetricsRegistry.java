@@ -0,0 +1,134 @@
+/*
+This file is part of jpcsp.
+
+Jpcsp is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Jpcsp is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Jpcsp.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jpcsp.util.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import jpcsp.util.CacheStatistics;
+
+/**
+ * Registry of the live metrics of the emulator (frame time, compile time,
+ * cache hits, scheduler queue depth, GE list duration...),
+ * exposed in the Prometheus text format through the HTTPServer ("/metrics").
+ *
+ * Collecting the metrics has to be nearly free when nobody is scraping them:
+ * - the counters and gauges built on existing statistics are only
+ *   read when the metrics are scraped;
+ * - the durations are only measured and recorded into the histograms
+ *   when isEnabled() is true, i.e. after the first scrape or
+ *   when enabled by the setting "emu.metrics".
+ *
+ * @author gid15
+ *
+ */
+public class MetricsRegistry {
+	private static final MetricsRegistry instance = new MetricsRegistry();
+	private static volatile boolean enabled;
+	// Metric families sorted by name, each metric of a family identified by its labels
+	private final Map<String, Map<String, Metric>> families = new TreeMap<String, Map<String, Metric>>();
+
+	public static MetricsRegistry getInstance() {
+		return instance;
+	}
+
+	private MetricsRegistry() {
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean enabled) {
+		MetricsRegistry.enabled = enabled;
+	}
+
+	/**
+	 * Register a metric, replacing any metric registered
+	 * with the same name and labels.
+	 *
+	 * @return the registered metric
+	 */
+	public synchronized <T extends Metric> T register(T metric) {
+		Map<String, Metric> family = families.get(metric.getName());
+		if (family == null) {
+			family = new TreeMap<String, Metric>();
+			families.put(metric.getName(), family);
+		}
+		family.put(metric.getLabels(), metric);
+
+		return metric;
+	}
+
+	public synchronized void unregister(Metric metric) {
+		Map<String, Metric> family = families.get(metric.getName());
+		if (family != null && family.get(metric.getLabels()) == metric) {
+			family.remove(metric.getLabels());
+			if (family.isEmpty()) {
+				families.remove(metric.getName());
+			}
+		}
+	}
+
+	/**
+	 * Expose the hits of a cache as counters labelled with the cache name.
+	 * The values are read from the statistics when being scraped.
+	 */
+	public void registerCacheStatistics(String cacheName, final CacheStatistics statistics) {
+		register(new Counter("jpcsp_cache_lookups_total", "Number of cache lookups", "cache", cacheName) {
+			@Override
+			public long getValue() {
+				return statistics.totalHits;
+			}
+		});
+		register(new Counter("jpcsp_cache_hits_total", "Number of cache lookups having found a valid entry", "cache", cacheName) {
+			@Override
+			public long getValue() {
+				return statistics.successfulHits;
+			}
+		});
+		register(new Counter("jpcsp_cache_changed_total", "Number of cache lookups having found a changed entry", "cache", cacheName) {
+			@Override
+			public long getValue() {
+				return statistics.changedHits;
+			}
+		});
+		register(new Counter("jpcsp_cache_evictions_total", "Number of entries removed from the cache due to its size limit", "cache", cacheName) {
+			@Override
+			public long getValue() {
+				return statistics.entriesRemoved;
+			}
+		});
+	}
+
+	/**
+	 * Write all the registered metrics in the Prometheus text format (version 0.0.4).
+	 */
+	public synchronized void write(StringBuilder s) {
+		for (Map<String, Metric> family : families.values()) {
+			boolean first = true;
+			for (Metric metric : family.values()) {
+				if (first) {
+					s.append("# HELP ").append(metric.getName()).append(' ').append(metric.getHelp()).append('\n');
+					s.append("# TYPE ").append(metric.getName()).append(' ').append(metric.getType()).append('\n');
+					first = false;
+				}
+				metric.writeSamples(s);
+			}
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package jpcsp.Allegrex.compiler;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class CodeBlockMapTest {
+    @Test
+    public void testMap() throws Exception {
+        CodeBlockMap map = new CodeBlockMap();
+        Map<Integer, CodeBlock> reference = new HashMap<Integer, CodeBlock>();
+        Random random = new Random(1);
+
+        for (int i = 0; i < 50000; i++) {
+            int address = 0x08800000 + (random.nextInt(4096) << 2);
+            if (random.nextInt(3) == 0) {
+                Assert.assertSame(reference.remove(address), map.remove(address));
+            } else {
+                CodeBlock codeBlock = new CodeBlock(address, 0);
+                Assert.assertSame(reference.put(address, codeBlock), map.put(address, codeBlock));
+            }
+            Assert.assertEquals(reference.size(), map.size());
+        }
+
+        for (int i = 0; i < 4096; i++) {
+            int address = 0x08800000 + (i << 2);
+            Assert.assertSame(reference.get(address), map.get(address));
+            Assert.assertEquals(reference.containsKey(address), map.containsKey(address));
+        }
+        Assert.assertEquals(reference.size(), map.values().size());
+
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertNull(map.get(0x08800000));
+    }
+
+    @Test
+    public void testIntervalTree() throws Exception {
+        CodeBlockIntervalTree tree = new CodeBlockIntervalTree();
+        List<CodeBlock> reference = new ArrayList<CodeBlock>();
+        List<CodeBlock> result = new ArrayList<CodeBlock>();
+        Random random = new Random(2);
+
+        for (int i = 0; i < 5000; i++) {
+            if (!reference.isEmpty() && random.nextInt(3) == 0) {
+                CodeBlock codeBlock = reference.remove(random.nextInt(reference.size()));
+                Assert.assertTrue(tree.remove(codeBlock));
+                Assert.assertFalse(tree.remove(codeBlock));
+            } else {
+                // Several code blocks can share the same address
+                CodeBlock codeBlock = new CodeBlock(0x08800000 + (random.nextInt(1024) << 2), i);
+                reference.add(codeBlock);
+                tree.add(codeBlock);
+            }
+            Assert.assertEquals(reference.size(), tree.size());
+
+            int low = 0x08800000 + (random.nextInt(1024) << 2);
+            int high = random.nextInt(4) == 0 ? Integer.MAX_VALUE : low + random.nextInt(256);
+            Map<CodeBlock, Boolean> expected = new IdentityHashMap<CodeBlock, Boolean>();
+            for (CodeBlock codeBlock : reference) {
+                if (codeBlock.getHighestAddress() >= low && codeBlock.getLowestAddress() <= high) {
+                    expected.put(codeBlock, Boolean.TRUE);
+                }
+            }
+
+            tree.find(low, high, result);
+            Assert.assertEquals(expected.size(), result.size());
+            for (CodeBlock codeBlock : result) {
+                Assert.assertNotNull(expected.remove(codeBlock));
+            }
+        }
+    }
+
+    @Test
+    public void testIntervalTreeNestedFind() throws Exception {
+        CodeBlockIntervalTree tree = new CodeBlockIntervalTree();
+        CodeBlock codeBlock1 = new CodeBlock(0x08800000, 0);
+        CodeBlock codeBlock2 = new CodeBlock(0x08900000, 0);
+        tree.add(codeBlock1);
+        tree.add(codeBlock2);
+
+        // A code block is processed while searching again,
+        // e.g. when invalidating a code block
+        List<CodeBlock> outer = new ArrayList<CodeBlock>();
+        List<CodeBlock> inner = new ArrayList<CodeBlock>();
+        tree.find(0x08800000, 0x08800000, outer);
+        Assert.assertEquals(1, outer.size());
+        tree.find(0x08900000, 0x08900000, inner);
+        Assert.assertEquals(1, inner.size());
+        Assert.assertSame(codeBlock1, outer.get(0));
+        Assert.assertSame(codeBlock2, inner.get(0));
+    }
+}
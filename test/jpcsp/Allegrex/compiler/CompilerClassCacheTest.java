@@ -0,0 +1,57 @@
+package jpcsp.Allegrex.compiler;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import jpcsp.hardware.Screen;
+import jpcsp.memory.MemoryWriteTracker;
+
+public class CompilerClassCacheTest {
+    @BeforeClass
+    public static void setUp() {
+        // The CompilerContext is loading the HLE modules, do not create a display
+        Screen.setHasScreen(false);
+    }
+
+    @After
+    public void tearDown() {
+        MemoryWriteTracker.setEnabled(false);
+    }
+
+    @Test
+    public void testKeyDependsOnMemoryWriteTracking() throws Exception {
+        CompilerClassCache classCache = new CompilerClassCache();
+        CompilerContext context = new CompilerContext(new CompilerClassLoader(null), 0);
+        CodeBlock codeBlock = new CodeBlock(0x08800000, 0);
+
+        MemoryWriteTracker.setEnabled(false);
+        String key = classCache.getKey(context, codeBlock);
+        Assert.assertNotNull(key);
+        Assert.assertEquals(key, classCache.getKey(context, codeBlock));
+
+        // The code generated with the memory write tracking is different
+        MemoryWriteTracker.setEnabled(true);
+        String keyWithTracking = classCache.getKey(context, codeBlock);
+        Assert.assertNotNull(keyWithTracking);
+        Assert.assertFalse(key.equals(keyWithTracking));
+    }
+
+    @Test
+    public void testReadWrite() {
+        CompilerClassCache classCache = new CompilerClassCache();
+        String key = "0000000000000000000000000000000000test";
+        byte[] bytes = new byte[] { (byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0, 50 };
+
+        Assert.assertNull(classCache.read(key));
+        classCache.write(key, bytes);
+        try {
+            Assert.assertArrayEquals(bytes, classCache.read(key));
+        } finally {
+            classCache.remove(key);
+        }
+        Assert.assertNull(classCache.read(key));
+        Assert.assertNull(classCache.read(null));
+    }
+}
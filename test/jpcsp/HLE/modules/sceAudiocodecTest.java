@@ -0,0 +1,152 @@
+package jpcsp.HLE.modules;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import jpcsp.Memory;
+import jpcsp.hardware.Screen;
+import jpcsp.media.codec.DecodedFrameCache;
+import jpcsp.media.codec.ICodec;
+
+public class sceAudiocodecTest {
+    private static final int inputAddr = 0x08800000;
+    private static final int outputAddr = 0x08810000;
+    private static final int frameLength = 32;
+    private static final int numberOfSamples = 16;
+
+    /**
+     * Codec whose output depends on the current and on the 2 previous input frames.
+     */
+    private static class StatefulCodec implements ICodec {
+        private int previous1;
+        private int previous2;
+
+        @Override
+        public int init(int bytesPerFrame, int channels, int outputChannels, int codingMode) {
+            previous1 = 0;
+            previous2 = 0;
+            return 0;
+        }
+
+        @Override
+        public int decode(int inputAddr, int inputLength, int outputAddr) {
+            return decode(Memory.getInstance(), inputAddr, inputLength, outputAddr);
+        }
+
+        @Override
+        public int decode(Memory mem, int inputAddr, int inputLength, int outputAddr) {
+            // Only one frame is consumed from a larger input buffer
+            int length = Math.min(inputLength, frameLength);
+            int sum = 0;
+            for (int i = 0; i < length; i++) {
+                sum = sum * 31 + mem.read8(inputAddr + i);
+            }
+            for (int i = 0; i < numberOfSamples; i++) {
+                mem.write32(outputAddr + (i << 2), sum * 1000003 + previous1 * 31 + previous2 * 17 + i);
+            }
+            previous2 = previous1;
+            previous1 = sum;
+
+            return length;
+        }
+
+        @Override
+        public int getNumberOfSamples() {
+            return numberOfSamples;
+        }
+    }
+
+    private static class TestInfo extends sceAudiocodec.AudiocodecInfo {
+        private final DecodedFrameCache decodedFrameCache;
+
+        public TestInfo(DecodedFrameCache decodedFrameCache) {
+            super(0);
+            this.decodedFrameCache = decodedFrameCache;
+            decodedFrameCacheAllowed = true;
+            initCodec(sceAudiocodec.PSP_CODEC_AT3PLUS);
+            codec = new StatefulCodec();
+            initCodec(frameLength, 2, 2, 0);
+        }
+
+        @Override
+        protected DecodedFrameCache getDecodedFrameCache() {
+            return decodedFrameCache;
+        }
+    }
+
+    @BeforeClass
+    public static void setUp() {
+        // The HLE modules are loaded, do not create a display
+        Screen.setHasScreen(false);
+    }
+
+    private static int[] decode(sceAudiocodec.AudiocodecInfo info, int frame) {
+        Memory mem = Memory.getInstance();
+        for (int i = 0; i < frameLength; i++) {
+            mem.write8(inputAddr + i, (byte) (frame * 7 + i));
+        }
+        info.decode(inputAddr, frameLength, outputAddr);
+
+        int[] output = new int[numberOfSamples];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = mem.read32(outputAddr + (i << 2));
+        }
+
+        return output;
+    }
+
+    @Test
+    public void testLoopedStream() {
+        DecodedFrameCache decodedFrameCache = new DecodedFrameCache(1024 * 1024);
+        TestInfo cachedInfo = new TestInfo(decodedFrameCache);
+        TestInfo uncachedInfo = new TestInfo(null);
+
+        // A stream looped 3 times, then a different frame in the middle of a loop
+        int[] frames = new int[] { 0, 1, 2, 3, 4, 0, 1, 2, 3, 4, 0, 1, 2, 3, 4, 0, 1, 2, 5, 4, 0, 1, 2, 3, 4 };
+        for (int i = 0; i < frames.length; i++) {
+            int[] uncachedOutput = decode(uncachedInfo, frames[i]);
+            int[] cachedOutput = decode(cachedInfo, frames[i]);
+            Assert.assertArrayEquals(String.format("frame #%d", i), uncachedOutput, cachedOutput);
+        }
+
+        Assert.assertTrue(decodedFrameCache.getStatistics().successfulHits > 0);
+    }
+
+    @Test
+    public void testLargeInputBuffer() {
+        DecodedFrameCache decodedFrameCache = new DecodedFrameCache(1024 * 1024);
+        TestInfo cachedInfo = new TestInfo(decodedFrameCache);
+        TestInfo uncachedInfo = new TestInfo(null);
+
+        // The whole remaining stream is passed as input buffer, like sceAac is doing
+        Memory mem = Memory.getInstance();
+        int[] frames = new int[] { 0, 1, 2, 3, 0, 1, 2, 3, 0, 1, 2, 3, 0, 1, 2, 3 };
+        int streamLength = frames.length * frameLength;
+        for (int i = 0; i < frames.length; i++) {
+            for (int j = 0; j < frameLength; j++) {
+                mem.write8(inputAddr + i * frameLength + j, (byte) (frames[i] * 7 + j));
+            }
+        }
+
+        for (int i = 0; i < frames.length; i++) {
+            int offset = i * frameLength;
+            int uncachedResult = uncachedInfo.decode(inputAddr + offset, streamLength - offset, outputAddr);
+            int[] uncachedOutput = new int[numberOfSamples];
+            for (int j = 0; j < uncachedOutput.length; j++) {
+                uncachedOutput[j] = mem.read32(outputAddr + (j << 2));
+            }
+
+            int cachedResult = cachedInfo.decode(inputAddr + offset, streamLength - offset, outputAddr);
+            int[] cachedOutput = new int[numberOfSamples];
+            for (int j = 0; j < cachedOutput.length; j++) {
+                cachedOutput[j] = mem.read32(outputAddr + (j << 2));
+            }
+
+            Assert.assertEquals(uncachedResult, cachedResult);
+            Assert.assertArrayEquals(String.format("frame #%d", i), uncachedOutput, cachedOutput);
+        }
+
+        Assert.assertTrue(decodedFrameCache.getStatistics().successfulHits > 0);
+    }
+}
@@ -0,0 +1,255 @@
+package jpcsp.filesystems.umdiso;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import jpcsp.util.LZ4;
+
+public class CSOFileSectorDeviceTest {
+    private static final int sectorLength = ISectorDevice.sectorLength;
+    private static final int numberSectors = 100;
+
+    private static byte[] createImage() {
+        byte[] image = new byte[numberSectors * sectorLength];
+        Random random = new Random(7);
+        for (int i = 0; i < image.length; i++) {
+            // Compressible data
+            image[i] = (byte) ((i / 64) + random.nextInt(4));
+        }
+        return image;
+    }
+
+    private static byte[] deflate(byte[] image, int offset, int length) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(image, offset, length);
+        deflater.finish();
+        byte[] buffer = new byte[length * 2];
+        int compressedLength = deflater.deflate(buffer);
+        deflater.end();
+        byte[] result = new byte[compressedLength];
+        System.arraycopy(buffer, 0, result, 0, compressedLength);
+        return result;
+    }
+
+    // LZ4 block only made of literals
+    private static byte[] lz4Literals(byte[] image, int offset, int blockSize) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        os.write(0xF0);
+        int length = blockSize - 15;
+        for (; length >= 255; length -= 255) {
+            os.write(255);
+        }
+        os.write(length);
+        os.write(image, offset, blockSize);
+        return os.toByteArray();
+    }
+
+    private static void writeLength(ByteArrayOutputStream os, int length) {
+        for (; length >= 255; length -= 255) {
+            os.write(255);
+        }
+        os.write(length);
+    }
+
+    // Greedy LZ4 block compression, matching the previous occurrence of 4 bytes
+    private static byte[] lz4Compress(byte[] image, int offset, int length) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Map<Integer, Integer> previous = new HashMap<Integer, Integer>();
+        int end = offset + length;
+        int literalStart = offset;
+        int i = offset;
+        // The last 12 bytes are always stored as literals
+        while (i + 12 <= end) {
+            int key = ByteBuffer.wrap(image, i, 4).getInt();
+            Integer match = previous.put(key, i);
+            if (match == null || i - match > 0xFFFF) {
+                i++;
+                continue;
+            }
+            int matchLength = 4;
+            while (i + matchLength + 5 < end && image[match + matchLength] == image[i + matchLength]) {
+                matchLength++;
+            }
+            int literalLength = i - literalStart;
+            os.write((Math.min(literalLength, 15) << 4) | Math.min(matchLength - 4, 15));
+            if (literalLength >= 15) {
+                writeLength(os, literalLength - 15);
+            }
+            os.write(image, literalStart, literalLength);
+            os.write((i - match) & 0xFF);
+            os.write((i - match) >> 8);
+            if (matchLength - 4 >= 15) {
+                writeLength(os, matchLength - 4 - 15);
+            }
+            i += matchLength;
+            literalStart = i;
+        }
+        int literalLength = end - literalStart;
+        os.write(Math.min(literalLength, 15) << 4);
+        if (literalLength >= 15) {
+            writeLength(os, literalLength - 15);
+        }
+        os.write(image, literalStart, literalLength);
+        return os.toByteArray();
+    }
+
+    private static File createFile(byte[] image, boolean zso) throws Exception {
+        return createFile(image, zso, 1, sectorLength);
+    }
+
+    /**
+     * CISO v1: the flag is marking the uncompressed blocks, the other blocks are deflated.
+     * CISO v2: the flag is marking the LZ4 blocks, the other blocks are deflated,
+     *          or uncompressed when their length is the block size.
+     * ZISO:    the flag is marking the uncompressed blocks, the other blocks are LZ4.
+     */
+    private static File createFile(byte[] image, boolean zso, int version, int blockSize) throws Exception {
+        ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+        int numberBlocks = image.length / blockSize;
+        int[] index = new int[numberBlocks + 1];
+        int indexLength = 24 + index.length * 4;
+        for (int i = 0; i < numberBlocks; i++) {
+            index[i] = indexLength + blocks.size();
+            int offset = i * blockSize;
+            if ((i % 5) == 3) {
+                // Uncompressed block
+                if (version < 2 || zso) {
+                    index[i] |= 0x80000000;
+                }
+                blocks.write(image, offset, blockSize);
+            } else if (zso || (version >= 2 && (i % 5) == 1)) {
+                if (!zso) {
+                    index[i] |= 0x80000000;
+                }
+                blocks.write(zso ? lz4Literals(image, offset, blockSize) : lz4Compress(image, offset, blockSize));
+            } else {
+                blocks.write(deflate(image, offset, blockSize));
+            }
+        }
+        index[numberBlocks] = indexLength + blocks.size();
+
+        ByteBuffer header = ByteBuffer.allocate(indexLength).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) (zso ? 'Z' : 'C')).put((byte) 'I').put((byte) 'S').put((byte) 'O');
+        header.putInt(0x18);
+        header.putLong(image.length);
+        header.putInt(blockSize);
+        header.put((byte) version);
+        header.put((byte) 0);
+        header.putShort((short) 0);
+        for (int i = 0; i < index.length; i++) {
+            header.putInt(index[i]);
+        }
+
+        File file = File.createTempFile("CSOFileSectorDeviceTest", zso ? ".zso" : ".cso");
+        file.deleteOnExit();
+        FileOutputStream os = new FileOutputStream(file);
+        os.write(header.array());
+        os.write(blocks.toByteArray());
+        os.close();
+
+        return file;
+    }
+
+    private static void testRead(boolean zso) throws Exception {
+        testRead(zso, 1, sectorLength);
+    }
+
+    private static void testRead(boolean zso, int version, int blockSize) throws Exception {
+        byte[] image = createImage();
+        File file = createFile(image, zso, version, blockSize);
+        RandomAccessFile fileAccess = new RandomAccessFile(file, "r");
+        byte[] header = new byte[24];
+        fileAccess.readFully(header);
+        CSOFileSectorDevice device = new CSOFileSectorDevice(fileAccess, header);
+        Assert.assertEquals(numberSectors, device.getNumSectors());
+
+        byte[] buffer = new byte[numberSectors * sectorLength];
+        // Sequential reads, triggering the prefetch
+        for (int i = 0; i < numberSectors; i++) {
+            device.readSector(i, buffer, i * sectorLength);
+        }
+        Assert.assertArrayEquals(image, buffer);
+
+        // Multiple sectors, decompressed in parallel
+        buffer = new byte[numberSectors * sectorLength];
+        device.readSectors(0, numberSectors, buffer, 0);
+        Assert.assertArrayEquals(image, buffer);
+
+        // Random reads
+        Random random = new Random(3);
+        byte[] sector = new byte[sectorLength];
+        for (int i = 0; i < 50; i++) {
+            int sectorNumber = random.nextInt(numberSectors);
+            device.readSector(sectorNumber, sector, 0);
+            for (int j = 0; j < sectorLength; j++) {
+                Assert.assertEquals(image[sectorNumber * sectorLength + j], sector[j]);
+            }
+        }
+
+        device.close();
+    }
+
+    @Test
+    public void testCSO() throws Exception {
+        testRead(false);
+    }
+
+    @Test
+    public void testZSO() throws Exception {
+        testRead(true);
+    }
+
+    @Test
+    public void testCSOv2() throws Exception {
+        testRead(false, 2, sectorLength);
+    }
+
+    @Test
+    public void testLargeBlocks() throws Exception {
+        // Blocks of 4 sectors: reads are starting and ending in the middle of blocks
+        testRead(false, 1, 4 * sectorLength);
+        testRead(false, 2, 4 * sectorLength);
+        testRead(true, 1, 4 * sectorLength);
+    }
+
+    @Test
+    public void testReadAfterEnd() throws Exception {
+        byte[] image = createImage();
+        File file = createFile(image, false);
+        RandomAccessFile fileAccess = new RandomAccessFile(file, "r");
+        byte[] header = new byte[24];
+        fileAccess.readFully(header);
+        CSOFileSectorDevice device = new CSOFileSectorDevice(fileAccess, header);
+
+        // Only the sectors before the end of the image are read
+        byte[] buffer = new byte[4 * sectorLength];
+        Assert.assertEquals(2, device.readSectors(numberSectors - 2, 4, buffer, 0));
+        for (int i = 0; i < 2 * sectorLength; i++) {
+            Assert.assertEquals(image[(numberSectors - 2) * sectorLength + i], buffer[i]);
+        }
+        Assert.assertEquals(0, device.readSectors(numberSectors, 1, buffer, 0));
+
+        device.close();
+    }
+
+    @Test
+    public void testLZ4Match() throws Exception {
+        // Literals "abc" followed by a match of length 9 at offset 3
+        byte[] input = new byte[] { 0x35, 'a', 'b', 'c', 3, 0, 0x10, 'd' };
+        byte[] output = new byte[13];
+        int length = LZ4.decompress(input, 0, input.length, output, 0, output.length);
+        Assert.assertEquals(13, length);
+        Assert.assertEquals("abcabcabcabcd", new String(output, "US-ASCII"));
+    }
+}
@@ -0,0 +1,102 @@
+package jpcsp.filesystems.umdiso;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class CachedSectorDeviceTest {
+    private static final int sectorLength = ISectorDevice.sectorLength;
+
+    // Each sector is filled with its sector number
+    private static class TestSectorDevice implements ISectorDevice {
+        public int sectorsRead;
+
+        @Override
+        public int getNumSectors() {
+            return 100;
+        }
+
+        @Override
+        public void readSector(int sectorNumber, byte[] buffer, int offset) {
+            Arrays.fill(buffer, offset, offset + sectorLength, (byte) sectorNumber);
+            sectorsRead++;
+        }
+
+        @Override
+        public int readSectors(int sectorNumber, int numberSectors, byte[] buffer, int offset) {
+            for (int i = 0; i < numberSectors; i++) {
+                readSector(sectorNumber + i, buffer, offset + i * sectorLength);
+            }
+            return numberSectors;
+        }
+
+        @Override
+        public void writeSector(int sectorNumber, byte[] buffer, int offset) throws IOException {
+            throw new IOException();
+        }
+
+        @Override
+        public void writeSectors(int sectorNumber, int numberSectors, byte[] buffer, int offset) throws IOException {
+            throw new IOException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static void assertSectors(int sectorNumber, int numberSectors, byte[] buffer) {
+        for (int i = 0; i < numberSectors * sectorLength; i++) {
+            Assert.assertEquals((byte) (sectorNumber + i / sectorLength), buffer[i]);
+        }
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        TestSectorDevice device = new TestSectorDevice();
+        CachedSectorDevice cachedDevice = new CachedSectorDevice(device, 16);
+        byte[] buffer = new byte[4 * sectorLength];
+
+        cachedDevice.readSector(5, buffer, 0);
+        cachedDevice.readSector(5, buffer, 0);
+        assertSectors(5, 1, buffer);
+        Assert.assertEquals(1, device.sectorsRead);
+
+        // Only the missing sectors 3, 4 and 6 are read from the device
+        cachedDevice.readSectors(3, 4, buffer, 0);
+        assertSectors(3, 4, buffer);
+        Assert.assertEquals(4, device.sectorsRead);
+
+        cachedDevice.readSectors(3, 4, buffer, 0);
+        assertSectors(3, 4, buffer);
+        Assert.assertEquals(4, device.sectorsRead);
+        Assert.assertEquals(6, cachedDevice.getStatistics().successfulHits);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        TestSectorDevice device = new TestSectorDevice();
+        CachedSectorDevice cachedDevice = new CachedSectorDevice(device, 4);
+        byte[] buffer = new byte[sectorLength];
+
+        for (int i = 0; i < 4; i++) {
+            cachedDevice.readSector(i, buffer, 0);
+        }
+        // Sector 0 is referenced and survives the eviction
+        cachedDevice.readSector(0, buffer, 0);
+        cachedDevice.readSector(10, buffer, 0);
+        assertSectors(10, 1, buffer);
+        Assert.assertEquals(5, device.sectorsRead);
+
+        cachedDevice.readSector(0, buffer, 0);
+        assertSectors(0, 1, buffer);
+        Assert.assertEquals(5, device.sectorsRead);
+
+        // Sector 1 has been evicted
+        cachedDevice.readSector(1, buffer, 0);
+        assertSectors(1, 1, buffer);
+        Assert.assertEquals(6, device.sectorsRead);
+    }
+}
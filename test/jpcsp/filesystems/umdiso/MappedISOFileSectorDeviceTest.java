@@ -0,0 +1,66 @@
+package jpcsp.filesystems.umdiso;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import jpcsp.Memory;
+
+public class MappedISOFileSectorDeviceTest {
+    private static final int sectorLength = ISectorDevice.sectorLength;
+    private static final int address = 0x08800000;
+    // The last sector is only partially available
+    private static final int imageLength = 40 * sectorLength + 100;
+
+    private static File createFile(byte[] image) throws Exception {
+        File file = File.createTempFile("MappedISOFileSectorDeviceTest", ".iso");
+        file.deleteOnExit();
+        FileOutputStream os = new FileOutputStream(file);
+        os.write(image);
+        os.close();
+
+        return file;
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        byte[] image = new byte[imageLength];
+        new Random(5).nextBytes(image);
+        File file = createFile(image);
+        MappedISOFileSectorDevice device = new MappedISOFileSectorDevice(new RandomAccessFile(file, "r"));
+        Assert.assertEquals(41, device.getNumSectors());
+
+        byte[] expected = Arrays.copyOf(image, 41 * sectorLength);
+        byte[] buffer = new byte[41 * sectorLength];
+        Arrays.fill(buffer, (byte) 0x55);
+        Assert.assertEquals(41, device.readSectors(0, 41, buffer, 0));
+        Assert.assertArrayEquals(expected, buffer);
+
+        byte[] sector = new byte[sectorLength + 1];
+        for (int i = 0; i < 41; i++) {
+            Arrays.fill(sector, (byte) 0x55);
+            device.readSector(i, sector, 1);
+            for (int j = 0; j < sectorLength; j++) {
+                Assert.assertEquals(expected[i * sectorLength + j], sector[j + 1]);
+            }
+            Assert.assertEquals((byte) 0x55, sector[0]);
+        }
+
+        Memory mem = Memory.getInstance();
+        long position = 3 * sectorLength + 7;
+        Assert.assertTrue(device.readToMemory(position, address, 2 * sectorLength));
+        for (int i = 0; i < 2 * sectorLength; i++) {
+            Assert.assertEquals(image[(int) position + i], (byte) mem.read8(address + i));
+        }
+        Assert.assertFalse(device.readToMemory(40 * sectorLength, address, sectorLength));
+
+        // The mappings are released when closing
+        device.close();
+        Assert.assertFalse(device.readToMemory(position, address, 2 * sectorLength));
+    }
+}
@@ -0,0 +1,167 @@
+package jpcsp.graphics.RE;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CommandBufferProxyTest {
+    /**
+     * Rendering engine logging the calls and the thread executing them.
+     */
+    private static class StubRenderingEngine extends NullRenderingEngine {
+        private final List<String> calls = new ArrayList<String>();
+        private final List<Thread> threads = new ArrayList<Thread>();
+        private int nextBuffer = 1;
+
+        private synchronized void call(String call) {
+            calls.add(call);
+            threads.add(Thread.currentThread());
+        }
+
+        @Override
+        public void enableFlag(int flag) {
+            call("enableFlag " + flag);
+        }
+
+        @Override
+        public void disableFlag(int flag) {
+            call("disableFlag " + flag);
+            if (flag < 0) {
+                throw new IllegalArgumentException("disableFlag");
+            }
+        }
+
+        @Override
+        public void setMorphWeight(int index, float value) {
+            call("setMorphWeight " + index + " " + value);
+        }
+
+        @Override
+        public void drawElements(int primitive, int count, int indexType, long indicesOffset) {
+            call(String.format("drawElements %d %d %d 0x%X", primitive, count, indexType, indicesOffset));
+        }
+
+        @Override
+        public void setMatrix(float[] values) {
+            call("setMatrix " + values[0] + " " + values[15]);
+        }
+
+        @Override
+        public int genBuffer() {
+            call("genBuffer");
+            return nextBuffer++;
+        }
+
+        @Override
+        public boolean checkAndLogErrors(String logComment) {
+            call("checkAndLogErrors " + logComment);
+            if ("fail".equals(logComment)) {
+                throw new IllegalStateException(logComment);
+            }
+            return true;
+        }
+    }
+
+    private static class Recorder extends Thread {
+        private final CommandBufferProxy proxy;
+        private final List<String> expectedCalls = new ArrayList<String>();
+        private int buffer1;
+        private int buffer2;
+        private RuntimeException syncException;
+
+        public Recorder(CommandBufferProxy proxy) {
+            this.proxy = proxy;
+        }
+
+        @Override
+        public void run() {
+            // More commands than fitting into one chunk
+            for (int i = 0; i < 1000; i++) {
+                proxy.enableFlag(i);
+                expectedCalls.add("enableFlag " + i);
+            }
+            proxy.setMorphWeight(3, 1.5f);
+            expectedCalls.add("setMorphWeight 3 1.5");
+            proxy.drawElements(4, 10, 2, 0x123456789L);
+            expectedCalls.add("drawElements 4 10 2 0x123456789");
+
+            // The matrix is copied when recording
+            float[] matrix = new float[16];
+            matrix[0] = 1f;
+            matrix[15] = 2f;
+            proxy.setMatrix(matrix);
+            matrix[0] = 3f;
+            expectedCalls.add("setMatrix 1.0 2.0");
+
+            buffer1 = proxy.genBuffer();
+            expectedCalls.add("genBuffer");
+
+            // An exception from an asynchronous command is only logged
+            proxy.disableFlag(-1);
+            expectedCalls.add("disableFlag -1");
+            proxy.enableFlag(2000);
+            expectedCalls.add("enableFlag 2000");
+
+            // An exception from a synchronous command is thrown to the recording thread
+            try {
+                proxy.checkAndLogErrors("fail");
+            } catch (RuntimeException e) {
+                syncException = e;
+            }
+            expectedCalls.add("checkAndLogErrors fail");
+
+            buffer2 = proxy.genBuffer();
+            expectedCalls.add("genBuffer");
+            proxy.enableFlag(3000);
+            expectedCalls.add("enableFlag 3000");
+
+            proxy.endRecording();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testRecording() throws InterruptedException {
+        StubRenderingEngine engine = new StubRenderingEngine();
+        CommandBufferProxy proxy = new CommandBufferProxy(engine);
+
+        for (int recording = 0; recording < 2; recording++) {
+            synchronized (engine) {
+                engine.calls.clear();
+                engine.threads.clear();
+            }
+
+            Recorder recorder = new Recorder(proxy);
+            proxy.startRecording(recorder);
+            recorder.start();
+            // Returns only after endRecording()
+            proxy.executeCommands();
+            recorder.join();
+
+            synchronized (engine) {
+                Assert.assertEquals(recorder.expectedCalls, engine.calls);
+                for (Thread thread : engine.threads) {
+                    Assert.assertSame(Thread.currentThread(), thread);
+                }
+            }
+            Assert.assertEquals(recording * 2 + 1, recorder.buffer1);
+            Assert.assertEquals(recording * 2 + 2, recorder.buffer2);
+            Assert.assertTrue(recorder.syncException instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testNotRecording() {
+        StubRenderingEngine engine = new StubRenderingEngine();
+        CommandBufferProxy proxy = new CommandBufferProxy(engine);
+
+        // The calls from a thread not recording are executed immediately
+        proxy.enableFlag(1);
+        Assert.assertEquals(1, proxy.genBuffer());
+        synchronized (engine) {
+            Assert.assertEquals(2, engine.calls.size());
+            Assert.assertEquals("enableFlag 1", engine.calls.get(0));
+        }
+    }
+}
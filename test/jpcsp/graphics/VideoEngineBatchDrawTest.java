@@ -0,0 +1,136 @@
+package jpcsp.graphics;
+
+import static jpcsp.graphics.GeCommands.ALPHA;
+import static jpcsp.graphics.GeCommands.BASE;
+import static jpcsp.graphics.GeCommands.FFACE;
+import static jpcsp.graphics.GeCommands.NOP;
+import static jpcsp.graphics.GeCommands.PRIM;
+import static jpcsp.graphics.GeCommands.PRIM_SPRITES;
+import static jpcsp.graphics.GeCommands.PRIM_TRIANGLE;
+import static jpcsp.graphics.GeCommands.TBIAS;
+import static jpcsp.graphics.GeCommands.TBIAS_MODE_AUTO;
+import static jpcsp.graphics.GeCommands.VADDR;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import jpcsp.Memory;
+import jpcsp.HLE.kernel.types.PspGeList;
+import jpcsp.hardware.Screen;
+
+public class VideoEngineBatchDrawTest {
+    private static final int listAddr = 0x08800000;
+    private static final int vertexAddr = 0x08100000;
+    private static final int vertexSize = 12;
+    private VideoEngine videoEngine;
+
+    @BeforeClass
+    public static void setUpClass() {
+        Screen.setHasScreen(false);
+    }
+
+    @Before
+    public void setUp() {
+        videoEngine = VideoEngine.getInstance();
+        videoEngine.resetCurrentListCMDValues();
+        // BASE 0x08000000, executed like in a list so that a repeated BASE is redundant
+        videoEngine.executeCommand(instruction(BASE, 0x080000));
+
+        GeContext context = videoEngine.getContext();
+        context.vinfo.ptr_vertex = vertexAddr;
+        context.vinfo.vertexSize = vertexSize;
+        context.vinfo.index = 0;
+        context.frontFaceCw = false;
+        context.tex_mipmap_mode = TBIAS_MODE_AUTO;
+    }
+
+    private static int instruction(int cmd, int argument) {
+        return (cmd << 24) | (argument & 0x00FFFFFF);
+    }
+
+    private static int prim(int type, int numberOfVertex) {
+        return instruction(PRIM, (type << 16) | numberOfVertex);
+    }
+
+    /**
+     * Start a list with the commands following the PRIM being executed.
+     */
+    private PspGeList startList(int... instructions) {
+        Memory mem = Memory.getInstance();
+        for (int i = 0; i < instructions.length; i++) {
+            mem.write32(listAddr + (i << 2), instructions[i]);
+        }
+
+        PspGeList list = new PspGeList(0);
+        list.init(listAddr, listAddr + (instructions.length << 2), 0, null);
+        videoEngine.setCurrentList(list);
+
+        return list;
+    }
+
+    @Test
+    public void testIsIgnoredInMultiDraw() {
+        Assert.assertTrue(videoEngine.isIgnoredInMultiDraw(NOP, instruction(NOP, 0)));
+        // TBIAS is only ignored in auto mode, whatever the bias
+        Assert.assertTrue(videoEngine.isIgnoredInMultiDraw(TBIAS, instruction(TBIAS, 0x1000 | TBIAS_MODE_AUTO)));
+        Assert.assertFalse(videoEngine.isIgnoredInMultiDraw(TBIAS, instruction(TBIAS, 0x1)));
+        // A pure state command is only ignored when repeated with the same parameters
+        Assert.assertTrue(videoEngine.isIgnoredInMultiDraw(BASE, instruction(BASE, 0x080000)));
+        Assert.assertFalse(videoEngine.isIgnoredInMultiDraw(BASE, instruction(BASE, 0x090000)));
+        Assert.assertFalse(videoEngine.isIgnoredInMultiDraw(ALPHA, instruction(ALPHA, 0x000002)));
+    }
+
+    @Test
+    public void testBatchDraw() {
+        PspGeList list = startList(
+                instruction(NOP, 0),
+                prim(PRIM_TRIANGLE, 6),               // Vertex in sequence
+                instruction(BASE, 0x080000),          // Redundant
+                instruction(FFACE, 0),                // No effect
+                instruction(VADDR, 0x200000),
+                prim(PRIM_TRIANGLE, 3),               // Vertex not in sequence
+                instruction(VADDR, 0x300000),
+                instruction(ALPHA, 0x000002),         // State change, ends the batch
+                prim(PRIM_TRIANGLE, 3));
+
+        // The current PRIM has 3 vertex
+        int numberOfPrims = videoEngine.checkBatchDraw(PRIM_TRIANGLE, 3, 10000);
+        Assert.assertEquals(3, numberOfPrims);
+        // Continue after the last merged PRIM: the last VADDR has not been consumed
+        Assert.assertEquals(listAddr + 6 * 4, list.getPc());
+
+        // VADDR as after the sequential execution of the merged PRIM's
+        int numberOfVertex = videoEngine.endBatchDraw(numberOfPrims);
+        Assert.assertEquals(3, numberOfVertex);
+        Assert.assertEquals(0x08200000, videoEngine.getContext().vinfo.ptr_vertex);
+    }
+
+    @Test
+    public void testBatchDrawNotPossible() {
+        PspGeList list = startList(
+                instruction(NOP, 0),
+                instruction(VADDR, 0x200000),
+                prim(PRIM_SPRITES, 2));               // Other primitive type
+
+        Assert.assertEquals(-1, videoEngine.checkBatchDraw(PRIM_TRIANGLE, 3, 10000));
+        // The list is continued after the current PRIM
+        Assert.assertEquals(listAddr, list.getPc());
+        Assert.assertEquals(vertexAddr, videoEngine.getContext().vinfo.ptr_vertex);
+    }
+
+    @Test
+    public void testBatchDrawMaxNumberOfVertex() {
+        PspGeList list = startList(
+                prim(PRIM_TRIANGLE, 3),
+                prim(PRIM_TRIANGLE, 3),
+                prim(PRIM_TRIANGLE, 3));
+
+        // Only 1 more PRIM is fitting into the draw buffer
+        Assert.assertEquals(2, videoEngine.checkBatchDraw(PRIM_TRIANGLE, 3, 8));
+        Assert.assertEquals(listAddr + 4, list.getPc());
+        Assert.assertEquals(3, videoEngine.endBatchDraw(2));
+        Assert.assertEquals(vertexAddr + 3 * vertexSize, videoEngine.getContext().vinfo.ptr_vertex);
+    }
+}
@@ -0,0 +1,69 @@
+package jpcsp.media.codec;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import jpcsp.HLE.modules.sceAudiocodec;
+
+public class DecodedFrameCacheTest {
+    private static DecodedFrameCache.Key createKey(int value, int previousHash) {
+        byte[] input = new byte[] { (byte) value, 1, 2, 3 };
+        return new DecodedFrameCache.Key(0x1234, new int[] { previousHash, 0 }, input);
+    }
+
+    private static DecodedFrameCache.Frame createFrame() {
+        return new DecodedFrameCache.Frame(4, 1024, new int[1024], new byte[4], 0);
+    }
+
+    @Test
+    public void testKey() {
+        DecodedFrameCache cache = new DecodedFrameCache(1024 * 1024);
+        cache.put(createKey(1, 0), createFrame());
+
+        Assert.assertNotNull(cache.get(createKey(1, 0)));
+        // Same input frame but decoded after a different frame
+        Assert.assertNull(cache.get(createKey(1, 5)));
+        Assert.assertNull(cache.get(createKey(2, 0)));
+        Assert.assertEquals(1, cache.getStatistics().successfulHits);
+        Assert.assertEquals(2, cache.getStatistics().notPresentHits);
+    }
+
+    @Test
+    public void testEviction() {
+        // Room for 3 frames of 4KB each
+        DecodedFrameCache cache = new DecodedFrameCache(3 * 4096 + 1024);
+        for (int i = 0; i < 3; i++) {
+            cache.put(createKey(i, 0), createFrame());
+        }
+        // Frame 0 is the most recently used
+        Assert.assertNotNull(cache.get(createKey(0, 0)));
+
+        cache.put(createKey(3, 0), createFrame());
+        Assert.assertTrue(cache.getCacheSizeInBytes() <= 3 * 4096 + 1024);
+        Assert.assertNotNull(cache.get(createKey(0, 0)));
+        Assert.assertNull(cache.get(createKey(1, 0)));
+        Assert.assertNotNull(cache.get(createKey(3, 0)));
+    }
+
+    @Test
+    public void testMp3History() {
+        byte[][] previousInputs = new byte[DecodedFrameCache.getHistoryFrames(sceAudiocodec.PSP_CODEC_MP3)][];
+        // Only 3 frames decoded since the codec initialization
+        for (int i = 0; i < 3; i++) {
+            previousInputs[i] = new byte[48];
+        }
+        Assert.assertTrue(DecodedFrameCache.isHistoryComplete(sceAudiocodec.PSP_CODEC_MP3, previousInputs));
+
+        // Small frames not holding the whole bit reservoir
+        for (int i = 0; i < previousInputs.length; i++) {
+            previousInputs[i] = new byte[48];
+        }
+        Assert.assertFalse(DecodedFrameCache.isHistoryComplete(sceAudiocodec.PSP_CODEC_MP3, previousInputs));
+
+        // Smallest MPEG-1 frames
+        for (int i = 0; i < previousInputs.length; i++) {
+            previousInputs[i] = new byte[96];
+        }
+        Assert.assertTrue(DecodedFrameCache.isHistoryComplete(sceAudiocodec.PSP_CODEC_MP3, previousInputs));
+    }
+}
@@ -0,0 +1,72 @@
+package jpcsp.media.codec.h264;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.Future;
+
+public class H264ImageConverterTest {
+    private static final int width = 480;
+    private static final int height = 290;
+
+    private static int[] createPlane(Random random, int length) {
+        int[] plane = new int[length];
+        for (int i = 0; i < length; i++) {
+            plane[i] = random.nextInt(256);
+        }
+        return plane;
+    }
+
+    @Test
+    public void testConvert() {
+        Random random = new Random(12);
+        int[] luma = createPlane(random, width * height);
+        int[] cb = createPlane(random, (width >> 1) * (height >> 1));
+        int[] cr = createPlane(random, (width >> 1) * (height >> 1));
+
+        int[] expected = new int[width * height];
+        H264Utils.YUV2ABGR(width, height, luma, cb, cr, expected);
+
+        int[] abgr = new int[width * height];
+        H264ImageConverter.YUV2ABGR(width, height, luma, cb, cr, abgr);
+        Assert.assertArrayEquals(expected, abgr);
+
+        abgr = new int[width * height];
+        Future<?> conversion = H264ImageConverter.submitYUV2ABGR(width, height, luma, cb, cr, abgr);
+        H264ImageConverter.waitFor(conversion);
+        Assert.assertArrayEquals(expected, abgr);
+
+        H264Utils.YUV2ARGB(width, height, luma, cb, cr, expected);
+        H264ImageConverter.YUV2ARGB(width, height, luma, cb, cr, abgr);
+        Assert.assertArrayEquals(expected, abgr);
+    }
+
+    @Test
+    public void testVectorizable() {
+        Random random = new Random(13);
+        int[] luma = createPlane(random, width * height);
+        int[] cb = createPlane(random, (width >> 1) * (height >> 1));
+        int[] cr = createPlane(random, (width >> 1) * (height >> 1));
+
+        int[] expected = new int[width * height];
+        int[] abgr = new int[width * height];
+        H264Utils.YUV2ABGRTable(width, 0, height, luma, cb, cr, expected);
+        H264Utils.YUV2ABGRVectorizable(width, 0, height, luma, cb, cr, abgr);
+        Assert.assertArrayEquals(expected, abgr);
+
+        // Band starting on an odd row
+        H264Utils.YUV2ABGRTable(width, 11, 40, luma, cb, cr, expected);
+        H264Utils.YUV2ABGRVectorizable(width, 11, 40, luma, cb, cr, abgr);
+        Assert.assertArrayEquals(expected, abgr);
+
+        H264Utils.setAlpha(0x00);
+        try {
+            H264Utils.YUV2ABGRTable(width, 0, height, luma, cb, cr, expected);
+            H264Utils.YUV2ABGRVectorizable(width, 0, height, luma, cb, cr, abgr);
+            Assert.assertArrayEquals(expected, abgr);
+        } finally {
+            H264Utils.setAlpha(0xFF);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package jpcsp.memory;
+
+import static jpcsp.graphics.GeCommands.CMODE_FORMAT_16BIT_ABGR5551;
+import static jpcsp.graphics.GeCommands.CMODE_FORMAT_32BIT_ABGR8888;
+import static jpcsp.graphics.GeCommands.TPSM_PIXEL_STORAGE_MODE_16BIT_BGR5650;
+import static jpcsp.graphics.GeCommands.TPSM_PIXEL_STORAGE_MODE_32BIT_ABGR8888;
+import static jpcsp.graphics.GeCommands.TPSM_PIXEL_STORAGE_MODE_32BIT_INDEXED;
+import static jpcsp.graphics.GeCommands.TPSM_PIXEL_STORAGE_MODE_8BIT_INDEXED;
+
+import java.nio.IntBuffer;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import jpcsp.Memory;
+import jpcsp.MemoryMap;
+import jpcsp.Allegrex.compiler.RuntimeContext;
+import jpcsp.graphics.RE.IRenderingEngine;
+import jpcsp.hardware.Screen;
+
+public class ImageReaderTest {
+    private static final int address = 0x08900000;
+    private static final int clutAddress = 0x08800000;
+    private static final int width = 64;
+    // Not a multiple of 8, the last swizzled rows are not a complete block
+    private static final int height = 13;
+
+    @BeforeClass
+    public static void setUp() {
+        Screen.setHasScreen(false);
+        RuntimeContext.updateMemory();
+
+        Memory mem = Memory.getInstance();
+        Random random = new Random(0);
+        for (int i = 0; i < 0x10000; i += 4) {
+            mem.write32(address + i, random.nextInt());
+        }
+        for (int i = 0; i < 0x400; i += 4) {
+            mem.write32(clutAddress + i, random.nextInt());
+        }
+        // The last bytes of the RAM
+        for (int i = 0; i < 0x1000; i += 4) {
+            mem.write32(MemoryMap.END_RAM + 1 - 0x1000 + i, random.nextInt());
+        }
+    }
+
+    private static int[] getImageReader(int address, int width, int height, int bufferWidth, int pixelFormat, boolean swizzle, int clutMode, int clutStart, int clutShift, int clutMask, int[] clut32, short[] clut16) {
+        IMemoryReader imageReader = ImageReader.getImageReader(address, width, height, bufferWidth, pixelFormat, swizzle, clutAddress, clutMode, 32, clutStart, clutShift, clutMask, clut32, clut16);
+        int[] pixels = new int[height * Math.min(width, bufferWidth)];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = imageReader.readNext();
+        }
+
+        return pixels;
+    }
+
+    private static int[] readImage(int address, int width, int height, int bufferWidth, int pixelFormat, boolean swizzle, int clutMode, int clutStart, int clutShift, int clutMask, int[] clut32, short[] clut16) {
+        int[] pixels = new int[height * Math.min(width, bufferWidth)];
+        ImageReader.readImage(IntBuffer.wrap(pixels), address, width, height, bufferWidth, pixelFormat, swizzle, clutAddress, clutMode, 32, clutStart, clutShift, clutMask, clut32, clut16);
+
+        return pixels;
+    }
+
+    private static void check(int address, int width, int height, int bufferWidth, int pixelFormat, boolean swizzle, int clutMode, int clutStart, int clutShift, int clutMask, int[] clut32, short[] clut16) {
+        String message = String.format("pixelFormat=%d, swizzle=%b, bufferWidth=%d, clutStart=%d, clutShift=%d, clutMask=0x%X", pixelFormat, swizzle, bufferWidth, clutStart, clutShift, clutMask);
+        int[] expected = getImageReader(address, width, height, bufferWidth, pixelFormat, swizzle, clutMode, clutStart, clutShift, clutMask, clut32, clut16);
+        int[] result = readImage(address, width, height, bufferWidth, pixelFormat, swizzle, clutMode, clutStart, clutShift, clutMask, clut32, clut16);
+        Assert.assertArrayEquals(message, expected, result);
+    }
+
+    @Test
+    public void testPixelFormats() {
+        for (int pixelFormat = TPSM_PIXEL_STORAGE_MODE_16BIT_BGR5650; pixelFormat <= TPSM_PIXEL_STORAGE_MODE_32BIT_ABGR8888; pixelFormat++) {
+            for (int bufferWidth : new int[] { width, 2 * width, width / 2 }) {
+                check(address, width, height, bufferWidth, pixelFormat, false, 0, 0, 0, 0, null, null);
+                check(address, width, height, bufferWidth, pixelFormat, true, 0, 0, 0, 0, null, null);
+            }
+        }
+    }
+
+    @Test
+    public void testIndexed() {
+        int[] clut32 = new int[256];
+        short[] clut16 = new short[256];
+        Random random = new Random(1);
+        for (int i = 0; i < clut32.length; i++) {
+            clut32[i] = random.nextInt();
+            clut16[i] = (short) random.nextInt();
+        }
+
+        for (int pixelFormat = TPSM_PIXEL_STORAGE_MODE_32BIT_ABGR8888 + 1; pixelFormat <= TPSM_PIXEL_STORAGE_MODE_32BIT_INDEXED; pixelFormat++) {
+            Assert.assertTrue(IRenderingEngine.isTextureTypeIndexed[pixelFormat]);
+            for (boolean swizzle : new boolean[] { false, true }) {
+                if (pixelFormat <= TPSM_PIXEL_STORAGE_MODE_8BIT_INDEXED) {
+                    // Simple clut, the index is not masked
+                    check(address, width, height, width, pixelFormat, swizzle, CMODE_FORMAT_32BIT_ABGR8888, 0, 0, 0xFF, clut32, null);
+                    check(address, width, height, width, pixelFormat, swizzle, CMODE_FORMAT_16BIT_ABGR5551, 0, 0, 0xFF, null, clut16);
+                    check(address, width, height, width, pixelFormat, swizzle, CMODE_FORMAT_16BIT_ABGR5551, 0, 0, 0xFF, null, null);
+                }
+                // Clut start, shift and mask
+                check(address, width, height, width, pixelFormat, swizzle, CMODE_FORMAT_32BIT_ABGR8888, 1, 4, 0x3F, clut32, null);
+                check(address, width, height, width, pixelFormat, swizzle, CMODE_FORMAT_16BIT_ABGR5551, 2, 2, 0x1F, null, clut16);
+                // Clut read from memory
+                check(address, width, height, width, pixelFormat, swizzle, CMODE_FORMAT_32BIT_ABGR8888, 1, 3, 0x0F, null, null);
+            }
+        }
+    }
+
+    @Test
+    public void testSwizzleEndOfMemory() {
+        // A 32-bit swizzled image of 16x12 pixels: the last 4 rows
+        // are not a complete block and the image ends with the RAM
+        int bufferWidth = 16;
+        int rowWords = bufferWidth;
+        int imageWords = rowWords * 8 + (rowWords / 4 - 1) * 32 + 4 * 4;
+        int endAddress = MemoryMap.END_RAM + 1 - (imageWords << 2);
+
+        // getImageReader() is reading past the end of the image,
+        // compare with the same image stored at another address
+        Memory mem = Memory.getInstance();
+        mem.memcpy(address, endAddress, imageWords << 2);
+        int pixelFormat = TPSM_PIXEL_STORAGE_MODE_32BIT_ABGR8888;
+        int[] expected = getImageReader(address, bufferWidth, 12, bufferWidth, pixelFormat, true, 0, 0, 0, 0, null, null);
+        int[] result = readImage(endAddress, bufferWidth, 12, bufferWidth, pixelFormat, true, 0, 0, 0, 0, null, null);
+        Assert.assertArrayEquals(expected, result);
+    }
+}
@@ -0,0 +1,49 @@
+package jpcsp.memory;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MemoryWriteTrackerTest {
+    private static final int address = 0x08800000;
+    private static final int pageSize = MemoryWriteTracker.pageSize;
+
+    @Before
+    public void setUp() {
+        MemoryWriteTracker.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        MemoryWriteTracker.setEnabled(false);
+    }
+
+    @Test
+    public void testWrite() {
+        MemoryWriteTracker.collect();
+        int stamp = MemoryWriteTracker.getStamp();
+        Assert.assertTrue(MemoryWriteTracker.isUnchanged(address, 2 * pageSize, stamp));
+
+        // Written during the current stamp
+        MemoryWriteTracker.write(address + pageSize + 4);
+        Assert.assertTrue(MemoryWriteTracker.isUnchanged(address, pageSize, stamp));
+        Assert.assertFalse(MemoryWriteTracker.isUnchanged(address, 2 * pageSize, stamp));
+
+        // Still reported as changed after the collection
+        MemoryWriteTracker.collect();
+        Assert.assertFalse(MemoryWriteTracker.isUnchanged(address, 2 * pageSize, stamp));
+        Assert.assertTrue(MemoryWriteTracker.isUnchanged(address, 2 * pageSize, MemoryWriteTracker.getStamp()));
+
+        // Written through the memory int index, with the kernel address flag
+        MemoryWriteTracker.writeIndex((address + 3 * pageSize) >> 2, 1);
+        Assert.assertFalse(MemoryWriteTracker.isUnchanged(address | 0x80000000, 4 * pageSize, MemoryWriteTracker.getStamp()));
+    }
+
+    @Test
+    public void testDisabled() {
+        MemoryWriteTracker.setEnabled(false);
+        MemoryWriteTracker.write(address);
+        Assert.assertFalse(MemoryWriteTracker.isUnchanged(address + pageSize, pageSize, MemoryWriteTracker.getStamp()));
+    }
+}
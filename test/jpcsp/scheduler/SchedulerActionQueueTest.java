@@ -0,0 +1,89 @@
+package jpcsp.scheduler;
+
+import jpcsp.HLE.kernel.types.IAction;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class SchedulerActionQueueTest {
+    private static class TestAction implements IAction {
+        @Override
+        public void execute() {
+        }
+    }
+
+    @Test
+    public void testOrder() throws Exception {
+        SchedulerActionQueue queue = new SchedulerActionQueue();
+        IAction action = new TestAction();
+        SchedulerAction a = new SchedulerAction(30, action);
+        SchedulerAction b = new SchedulerAction(10, action);
+        SchedulerAction c = new SchedulerAction(20, action);
+        SchedulerAction d = new SchedulerAction(10, action);
+        queue.add(a);
+        queue.add(b);
+        queue.add(c);
+        queue.add(d);
+
+        Assert.assertEquals(4, queue.size());
+        Assert.assertSame(b, queue.peek());
+        // Same schedule: insertion order is preserved
+        Assert.assertSame(b, queue.poll());
+        Assert.assertSame(d, queue.poll());
+        Assert.assertSame(c, queue.poll());
+        Assert.assertSame(a, queue.poll());
+        Assert.assertNull(queue.poll());
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        SchedulerActionQueue queue = new SchedulerActionQueue();
+        IAction action1 = new TestAction();
+        IAction action2 = new TestAction();
+        SchedulerAction a = new SchedulerAction(10, action1);
+        SchedulerAction b = new SchedulerAction(20, action1);
+        SchedulerAction c = new SchedulerAction(15, action2);
+        queue.add(a);
+        queue.add(b);
+        queue.add(c);
+
+        Assert.assertSame(b, queue.find(20, action1));
+        Assert.assertNull(queue.find(20, action2));
+        Assert.assertTrue(queue.remove(a));
+        Assert.assertFalse(queue.remove(a));
+        Assert.assertNull(queue.find(10, action1));
+        Assert.assertSame(c, queue.poll());
+        Assert.assertSame(b, queue.poll());
+        Assert.assertNull(queue.find(20, action1));
+    }
+
+    @Test
+    public void testManyPendingAlarms() throws Exception {
+        final int numberAlarms = 20000;
+        SchedulerActionQueue queue = new SchedulerActionQueue();
+        Random random = new Random(1);
+        SchedulerAction[] alarms = new SchedulerAction[numberAlarms];
+
+        for (int i = 0; i < numberAlarms; i++) {
+            alarms[i] = new SchedulerAction(random.nextInt(1000000), new TestAction());
+            queue.add(alarms[i]);
+        }
+        // Cancel every second alarm, as done when alarms are cancelled before expiring
+        for (int i = 0; i < numberAlarms; i += 2) {
+            Assert.assertSame(alarms[i], queue.find(alarms[i].getSchedule(), alarms[i].getAction()));
+            Assert.assertTrue(queue.remove(alarms[i]));
+        }
+        long previousSchedule = Long.MIN_VALUE;
+        int count = 0;
+        for (SchedulerAction alarm = queue.poll(); alarm != null; alarm = queue.poll()) {
+            Assert.assertTrue(alarm.getSchedule() >= previousSchedule);
+            previousSchedule = alarm.getSchedule();
+            count++;
+        }
+
+        Assert.assertEquals(numberAlarms / 2, count);
+        Assert.assertTrue(queue.isEmpty());
+    }
+}
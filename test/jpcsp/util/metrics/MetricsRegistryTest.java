@@ -0,0 +1,46 @@
+package jpcsp.util.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+    @Test
+    public void testHistogram() {
+        Histogram histogram = new Histogram(new double[] { 0.001, 0.01 }, "test_duration_seconds", "Test", "name", "a\"b");
+        histogram.observeMicros(500);
+        histogram.observeMicros(5000);
+        histogram.observeMicros(50000);
+
+        StringBuilder s = new StringBuilder();
+        histogram.writeSamples(s);
+        String expected = "test_duration_seconds_bucket{name=\"a\\\"b\",le=\"0.001\"} 1\n"
+                        + "test_duration_seconds_bucket{name=\"a\\\"b\",le=\"0.01\"} 2\n"
+                        + "test_duration_seconds_bucket{name=\"a\\\"b\",le=\"+Inf\"} 3\n"
+                        + "test_duration_seconds_sum{name=\"a\\\"b\"} 0.0555\n"
+                        + "test_duration_seconds_count{name=\"a\\\"b\"} 3\n";
+        Assert.assertEquals(expected, s.toString());
+    }
+
+    @Test
+    public void testFamilies() {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        Counter counter1 = registry.register(new Counter("test_total", "Test counter", "id", "1"));
+        Counter counter2 = registry.register(new Counter("test_total", "Test counter", "id", "2"));
+        counter1.increment();
+        counter2.add(5);
+
+        StringBuilder s = new StringBuilder();
+        registry.write(s);
+        String expected = "# HELP test_total Test counter\n"
+                        + "# TYPE test_total counter\n"
+                        + "test_total{id=\"1\"} 1\n"
+                        + "test_total{id=\"2\"} 5\n";
+        Assert.assertTrue(s.toString(), s.toString().contains(expected));
+
+        registry.unregister(counter1);
+        registry.unregister(counter2);
+        s.setLength(0);
+        registry.write(s);
+        Assert.assertFalse(s.toString().contains("test_total"));
+    }
+}